@@ -37,6 +37,11 @@ android {
     kotlinOptions {
         jvmTarget = "17"
     }
+
+    testOptions {
+        // PDFBox-Android logs through android.util.Log, which is only stubbed on the JVM
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -44,6 +49,7 @@ dependencies {
     implementation(libs.appcompat)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
+    implementation(libs.recyclerview)
 
     // Material Components (used for MaterialButton)
     implementation(libs.material)
@@ -61,6 +67,41 @@ dependencies {
 
     // Testing
     testImplementation(libs.junit)
+    testImplementation(libs.jmh.core)
+    testAnnotationProcessor(libs.jmh.generator.annprocess)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
+
+// PDFBox-Android ships its font metrics and glyph lists as AAR assets, which the JVM only finds as classpath resources
+val pdfboxAar: Configuration by configurations.creating {
+    isTransitive = false
+}
+val extractPdfboxAssets = tasks.register<Sync>("extractPdfboxAssets") {
+    from({ pdfboxAar.map { zipTree(it) } }) {
+        include("assets/**")
+        eachFile { path = path.removePrefix("assets/") }
+        includeEmptyDirs = false
+    }
+    into(layout.buildDirectory.dir("intermediates/pdfbox_assets"))
+}
+
+dependencies {
+    pdfboxAar(libs.com.tom.roush.pdfbox.android)
+    testRuntimeOnly(files(extractPdfboxAssets))
+}
+
+// JMH benchmarks live next to the unit tests and run on the local JVM against the same PDFBox-Android classes.
+// ./gradlew :app:jmh [-Pjmh.include=<regex>] [-Pjmh.args="-p pageCount=5 -f 1"]
+tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs the JMH benchmarks with the GC profiler and writes JSON results to build/reports/jmh"
+    val unitTest = tasks.named<Test>("testDebugUnitTest")
+    val resultsFile = layout.buildDirectory.file("reports/jmh/results.json")
+    classpath(unitTest.map { it.classpath })
+    mainClass.set("org.openjdk.jmh.Main")
+    args(providers.gradleProperty("jmh.include").getOrElse("Benchmark"))
+    args("-prof", "gc", "-rf", "json", "-rff", resultsFile.get().asFile.absolutePath)
+    providers.gradleProperty("jmh.args").orNull?.let { args(it.trim().split(Regex("\\s+"))) }
+    doFirst { resultsFile.get().asFile.parentFile.mkdirs() }
+}
@@ -0,0 +1,70 @@
+package com.technikh.java_pdf_annotations.data;
+
+import androidx.annotation.Nullable;
+
+import com.technikh.java_pdf_annotations.data.db.AnnotationDao;
+import com.technikh.java_pdf_annotations.data.db.AnnotationEntity;
+import com.technikh.java_pdf_annotations.data.db.IndexedDocumentEntity;
+import com.technikh.java_pdf_annotations.domain.AnnotationInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the annotations extracted from a document under its fingerprint.
+ * Must be used off the main thread.
+ */
+public class AnnotationIndexRepository {
+    private static final int MAX_DOCUMENTS = 200;
+
+    private final AnnotationDao dao;
+
+    public AnnotationIndexRepository(AnnotationDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Returns the stored annotations of the document, or null if it has not been fully indexed
+     */
+    @Nullable
+    public List<AnnotationInfo> find(String fingerprint) {
+        if (dao.findDocument(fingerprint) == null) {
+            return null;
+        }
+        dao.touch(fingerprint, System.currentTimeMillis());
+
+        List<AnnotationEntity> entities = dao.findAnnotations(fingerprint);
+        List<AnnotationInfo> annotations = new ArrayList<>(entities.size());
+        for (AnnotationEntity entity : entities) {
+            annotations.add(new AnnotationInfo(entity.pageNumber, entity.subtype, entity.title,
+                    entity.contents, entity.modifiedDate));
+        }
+        return annotations;
+    }
+
+    /**
+     * Stores the complete annotation list of a document and evicts the least recently used documents
+     */
+    public void store(String fingerprint, int pageCount, List<AnnotationInfo> annotations) {
+        IndexedDocumentEntity document = new IndexedDocumentEntity();
+        document.fingerprint = fingerprint;
+        document.pageCount = pageCount;
+        document.annotationCount = annotations.size();
+        document.lastUsedAt = System.currentTimeMillis();
+
+        List<AnnotationEntity> entities = new ArrayList<>(annotations.size());
+        for (AnnotationInfo annotation : annotations) {
+            AnnotationEntity entity = new AnnotationEntity();
+            entity.fingerprint = fingerprint;
+            entity.pageNumber = annotation.getPageNumber();
+            entity.subtype = annotation.getSubtype();
+            entity.title = annotation.getTitle();
+            entity.contents = annotation.getContents();
+            entity.modifiedDate = annotation.getModifiedDate();
+            entities.add(entity);
+        }
+
+        dao.replace(document, entities);
+        dao.deleteLeastRecentlyUsed(MAX_DOCUMENTS);
+    }
+}
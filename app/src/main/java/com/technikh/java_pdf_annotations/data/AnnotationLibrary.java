@@ -0,0 +1,139 @@
+package com.technikh.java_pdf_annotations.data;
+
+import android.util.Log;
+
+import com.technikh.java_pdf_annotations.data.db.LibraryAnnotationEntity;
+import com.technikh.java_pdf_annotations.data.db.LibraryDao;
+import com.technikh.java_pdf_annotations.data.db.LibraryFileEntity;
+import com.technikh.java_pdf_annotations.domain.AnnotationInfo;
+import com.technikh.java_pdf_annotations.domain.AnnotationPager;
+import com.technikh.java_pdf_annotations.domain.ScratchPolicy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Full-text search over the Text/FreeText annotations of every PDF in a directory.
+ * Indexing is incremental: a file is only parsed again when its length or modification time changed,
+ * and entries of deleted files are dropped. Must be used off the main thread.
+ */
+public class AnnotationLibrary {
+    private static final String TAG = "AnnotationLibrary";
+    public static final int DEFAULT_SEARCH_LIMIT = 200;
+
+    private final LibraryDao dao;
+    private final ScratchPolicy scratchPolicy;
+
+    public AnnotationLibrary(LibraryDao dao, ScratchPolicy scratchPolicy) {
+        this.dao = dao;
+        this.scratchPolicy = scratchPolicy;
+    }
+
+    /**
+     * Brings the index up to date with the PDFs in the directory
+     *
+     * @return the number of files that were (re)scanned
+     */
+    public int index(File pdfDir) {
+        Map<String, LibraryFileEntity> indexed = new HashMap<>();
+        for (LibraryFileEntity file : dao.getFiles()) {
+            indexed.put(file.path, file);
+        }
+
+        int scanned = 0;
+        File[] pdfFiles = pdfDir.listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".pdf"));
+        if (pdfFiles != null) {
+            for (File pdfFile : pdfFiles) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return scanned;
+                }
+                LibraryFileEntity previous = indexed.remove(pdfFile.getAbsolutePath());
+                if (previous == null || previous.length != pdfFile.length()
+                        || previous.lastModified != pdfFile.lastModified()) {
+                    scan(pdfFile);
+                    scanned++;
+                }
+            }
+        }
+
+        for (String removedPath : indexed.keySet()) {
+            dao.deleteFile(removedPath);
+        }
+        return scanned;
+    }
+
+    /**
+     * Returns the annotations whose text or author contains every word of the query, ordered by file and page
+     */
+    public List<LibrarySearchHit> search(String query, int limit) {
+        String match = toMatchExpression(query);
+        if (match.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<LibraryAnnotationEntity> entities = dao.search(match, limit);
+        List<LibrarySearchHit> hits = new ArrayList<>(entities.size());
+        for (LibraryAnnotationEntity entity : entities) {
+            hits.add(new LibrarySearchHit(new File(entity.path), new AnnotationInfo(entity.pageNumber,
+                    entity.subtype, entity.title, entity.contents, entity.modifiedDate)));
+        }
+        return hits;
+    }
+
+    /**
+     * Quotes each word of user input as an FTS phrase, so operators and punctuation are matched literally
+     * and a code like D-104 still has to appear as one sequence
+     */
+    static String toMatchExpression(String query) {
+        StringBuilder match = new StringBuilder();
+        for (String word : query.trim().split("\\s+")) {
+            String phrase = word.replace("\"", "");
+            if (phrase.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(phrase).append('"');
+        }
+        return match.toString();
+    }
+
+    private void scan(File pdfFile) {
+        LibraryFileEntity file = new LibraryFileEntity();
+        file.path = pdfFile.getAbsolutePath();
+        // Stat before parsing, so a file still being written is scanned again once it changes
+        file.length = pdfFile.length();
+        file.lastModified = pdfFile.lastModified();
+
+        List<AnnotationInfo> annotations;
+        try (AnnotationPager pager = new AnnotationPager(scratchPolicy.load(pdfFile))) {
+            annotations = pager.loadNext(Integer.MAX_VALUE);
+        } catch (IOException | RuntimeException e) {
+            // Recorded anyway so an unreadable file, or one PDFBox chokes on, isn't parsed again until it changes
+            Log.e(TAG, "Error indexing " + pdfFile, e);
+            file.annotationCount = -1;
+            dao.replace(file, Collections.emptyList());
+            return;
+        }
+
+        List<LibraryAnnotationEntity> entities = new ArrayList<>(annotations.size());
+        for (AnnotationInfo annotation : annotations) {
+            LibraryAnnotationEntity entity = new LibraryAnnotationEntity();
+            entity.path = file.path;
+            entity.pageNumber = annotation.getPageNumber();
+            entity.subtype = annotation.getSubtype();
+            entity.title = annotation.getTitle();
+            entity.contents = annotation.getContents();
+            entity.modifiedDate = annotation.getModifiedDate();
+            entities.add(entity);
+        }
+        file.annotationCount = entities.size();
+        dao.replace(file, entities);
+    }
+}
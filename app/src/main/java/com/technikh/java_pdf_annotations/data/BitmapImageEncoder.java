@@ -0,0 +1,208 @@
+package com.technikh.java_pdf_annotations.data;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.technikh.java_pdf_annotations.domain.EncodedImage;
+import com.technikh.java_pdf_annotations.domain.ImageEncoder;
+import com.technikh.java_pdf_annotations.domain.ImageSize;
+import com.technikh.java_pdf_annotations.domain.ImageSource;
+import com.technikh.java_pdf_annotations.domain.JpegHeader;
+import com.technikh.java_pdf_annotations.domain.ResamplePolicy;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Encodes image files using Android's bitmap decoder, as chosen by {@link ResamplePolicy}.
+ * Images wider than the pixels needed at the target DPI are resampled and recompressed as JPEG.
+ * Otherwise gray and RGB JPEG files are passed through untouched, and anything else is decoded
+ * and Flate-compressed as RGB.
+ */
+public class BitmapImageEncoder implements ImageEncoder {
+    private static final String TAG = "BitmapImageEncoder";
+
+    /**
+     * Target DPI that keeps every image at its original resolution
+     */
+    public static final int ORIGINAL_DPI = ResamplePolicy.ORIGINAL_DPI;
+    public static final int DEFAULT_TARGET_DPI = 200;
+    public static final int DEFAULT_JPEG_QUALITY = 85;
+
+    private final int targetDpi;
+    private final ResamplePolicy resamplePolicy;
+    private final int jpegQuality;
+    private final float drawWidthPoints;
+
+    /**
+     * Resamples images encoded without a draw width for the full width of an A4 page
+     */
+    public BitmapImageEncoder(int targetDpi, int jpegQuality) {
+        this(targetDpi, jpegQuality, PDRectangle.A4.getWidth());
+    }
+
+    /**
+     * @param targetDpi       resolution of the drawn image, or {@link #ORIGINAL_DPI} to never resample
+     * @param jpegQuality     JPEG quality from 0 to 100 used when an image is recompressed
+     * @param drawWidthPoints width of the rectangle the image is drawn into, in PDF points, for images
+     *                        encoded without a draw width of their own
+     */
+    public BitmapImageEncoder(int targetDpi, int jpegQuality, float drawWidthPoints) {
+        this.targetDpi = targetDpi;
+        this.resamplePolicy = new ResamplePolicy(targetDpi);
+        this.jpegQuality = jpegQuality;
+        this.drawWidthPoints = drawWidthPoints;
+    }
+
+    @Override
+    public EncodedImage encode(ImageSource source) throws IOException {
+        return encode(source, drawWidthPoints);
+    }
+
+    @Override
+    public EncodedImage encode(ImageSource source, float drawWidthPoints) throws IOException {
+        String name = source.getName();
+        byte[] bytes = source.readAllBytes();
+
+        JpegHeader header = JpegHeader.parse(bytes, bytes.length);
+        int sourceWidth;
+        if (header != null) {
+            sourceWidth = header.getWidth();
+        } else {
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.length, bounds);
+            sourceWidth = bounds.outWidth;
+        }
+        if (sourceWidth <= 0) {
+            throw new IOException("Unsupported image format: " + name);
+        }
+
+        ResamplePolicy.Action action = resamplePolicy.decide(sourceWidth, header != null ? header.getComponents() : 0,
+                drawWidthPoints);
+        if (action == ResamplePolicy.Action.RESAMPLE) {
+            return resample(name, bytes, sourceWidth, resamplePolicy.targetPixelWidth(drawWidthPoints));
+        }
+
+        if (action == ResamplePolicy.Action.PASS_THROUGH) {
+            PDColorSpace colorSpace = header.getComponents() == 1 ? PDDeviceGray.INSTANCE : PDDeviceRGB.INSTANCE;
+            return new EncodedImage(bytes, COSName.DCT_DECODE, header.getWidth(), header.getHeight(), 8, colorSpace);
+        }
+
+        Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+        if (bitmap == null) {
+            throw new IOException("Unsupported image format: " + name);
+        }
+        try {
+            return encodeLossless(bitmap, bytes.length);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Parses known headers and leaves any other format, e.g. HEIF, to the platform decoder with bounds-only decoding
+     */
+    @Override
+    @Nullable
+    public ImageSize readSize(ImageSource source) {
+        ImageSize size = ImageSize.read(source);
+        if (size != null) {
+            return size;
+        }
+        try (InputStream in = source.openStream()) {
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeStream(in, null, bounds);
+            return bounds.outWidth > 0 && bounds.outHeight > 0 ? new ImageSize(bounds.outWidth, bounds.outHeight) : null;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to read the size of " + source.getName(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public String getParametersKey() {
+        return "bitmap;dpi=" + targetDpi + ";quality=" + jpegQuality + ";width=" + drawWidthPoints;
+    }
+
+    /**
+     * Decodes at the coarsest power-of-two subsample that still covers the target width,
+     * then scales to the exact width and recompresses
+     */
+    private EncodedImage resample(String name, byte[] bytes, int sourceWidth, int targetWidth) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = ResamplePolicy.sampleSize(sourceWidth, targetWidth);
+
+        Bitmap decoded = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        if (decoded == null) {
+            throw new IOException("Unsupported image format: " + name);
+        }
+
+        Bitmap scaled = decoded;
+        try {
+            if (decoded.getWidth() > targetWidth) {
+                int targetHeight = ResamplePolicy.scaledHeight(decoded.getWidth(), decoded.getHeight(), targetWidth);
+                scaled = Bitmap.createScaledBitmap(decoded, targetWidth, targetHeight, true);
+            }
+
+            if (scaled.hasAlpha()) {
+                // JPEG has no alpha channel, keep transparency flattening lossless
+                return encodeLossless(scaled, bytes.length);
+            }
+
+            ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+            if (!scaled.compress(Bitmap.CompressFormat.JPEG, jpegQuality, jpeg)) {
+                throw new IOException("Failed to recompress image: " + name);
+            }
+            return new EncodedImage(jpeg.toByteArray(), COSName.DCT_DECODE, scaled.getWidth(), scaled.getHeight(),
+                    8, PDDeviceRGB.INSTANCE, bytes.length);
+        } finally {
+            if (scaled != decoded) {
+                scaled.recycle();
+            }
+            decoded.recycle();
+        }
+    }
+
+    /**
+     * Flate-compresses the bitmap row by row, flattening any transparency onto white
+     */
+    static EncodedImage encodeLossless(Bitmap bitmap, long sourceBytes) throws IOException {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] row = new int[width];
+        byte[] rgb = new byte[width * 3];
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(encoded)) {
+            for (int y = 0; y < height; y++) {
+                bitmap.getPixels(row, 0, width, 0, y, width, 1);
+                for (int x = 0; x < width; x++) {
+                    int pixel = row[x];
+                    int alpha = pixel >>> 24;
+                    rgb[x * 3] = (byte) blendOnWhite((pixel >> 16) & 0xFF, alpha);
+                    rgb[x * 3 + 1] = (byte) blendOnWhite((pixel >> 8) & 0xFF, alpha);
+                    rgb[x * 3 + 2] = (byte) blendOnWhite(pixel & 0xFF, alpha);
+                }
+                out.write(rgb);
+            }
+        }
+        return new EncodedImage(encoded.toByteArray(), COSName.FLATE_DECODE, width, height, 8,
+                PDDeviceRGB.INSTANCE, sourceBytes);
+    }
+
+    private static int blendOnWhite(int channel, int alpha) {
+        return (channel * alpha + 255 * (255 - alpha)) / 255;
+    }
+}
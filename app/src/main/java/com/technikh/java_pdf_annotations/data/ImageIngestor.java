@@ -0,0 +1,133 @@
+package com.technikh.java_pdf_annotations.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import com.technikh.java_pdf_annotations.domain.FileImageSource;
+import com.technikh.java_pdf_annotations.domain.ImageSource;
+import com.technikh.java_pdf_annotations.domain.Metrics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns picked content URIs into image sources for the generator.
+ * URIs backed by a regular file are read in place through their file descriptor.
+ * Only pipe- or stream-backed URIs are spooled to a uniquely named temp file,
+ * which is deleted when the ingestor is closed.
+ */
+public class ImageIngestor implements Closeable {
+    private static final String TAG = "ImageIngestor";
+    private static final long TRANSFER_CHUNK_BYTES = 8L * 1024 * 1024;
+
+    private final ContentResolver contentResolver;
+    private final File spoolDir;
+    private final Metrics metrics;
+    private final List<File> spooledFiles = new ArrayList<>();
+
+    public ImageIngestor(ContentResolver contentResolver, File spoolDir) {
+        this(contentResolver, spoolDir, Metrics.DISABLED);
+    }
+
+    /**
+     * Records the time and bytes of every spool copy
+     */
+    public ImageIngestor(ContentResolver contentResolver, File spoolDir, Metrics metrics) {
+        this.contentResolver = contentResolver;
+        this.spoolDir = spoolDir;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns a source for every readable URI, in order. Unreadable URIs are logged and skipped.
+     */
+    public List<ImageSource> ingest(List<Uri> imageUris) {
+        List<ImageSource> sources = new ArrayList<>(imageUris.size());
+        for (Uri imageUri : imageUris) {
+            if (imageUri == null) {
+                continue;
+            }
+            try {
+                sources.add(ingest(imageUri));
+            } catch (IOException e) {
+                Log.e(TAG, "Error ingesting image: " + imageUri, e);
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Returns a source for the URI, spooling it first if it can't be read in place
+     */
+    public ImageSource ingest(Uri imageUri) throws IOException {
+        long length = seekableLength(imageUri);
+        if (length >= 0) {
+            return new UriImageSource(contentResolver, imageUri, length);
+        }
+        long start = metrics.start();
+        File spoolFile = spool(imageUri);
+        metrics.record(Metrics.COPY, -1, start, 0, metrics.isEnabled() ? spoolFile.length() : 0);
+        return new FileImageSource(spoolFile);
+    }
+
+    /**
+     * Returns the size of the file behind the URI, or -1 if it is not backed by a regular file
+     */
+    private long seekableLength(Uri imageUri) {
+        try (ParcelFileDescriptor descriptor = contentResolver.openFileDescriptor(imageUri, "r")) {
+            return descriptor != null ? descriptor.getStatSize() : -1;
+        } catch (IOException | SecurityException | UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Copies the URI into a temp file using large channel transfers
+     */
+    private File spool(Uri imageUri) throws IOException {
+        if (!spoolDir.exists() && !spoolDir.mkdirs()) {
+            throw new IOException("Failed to create spool directory");
+        }
+
+        File spoolFile = File.createTempFile("image_", ".tmp", spoolDir);
+        spooledFiles.add(spoolFile);
+
+        try (InputStream in = contentResolver.openInputStream(imageUri);
+             FileOutputStream out = new FileOutputStream(spoolFile)) {
+            if (in == null) {
+                throw new IOException("Failed to open input stream for URI: " + imageUri);
+            }
+            ReadableByteChannel source = Channels.newChannel(in);
+            FileChannel target = out.getChannel();
+            long position = 0;
+            long transferred;
+            while ((transferred = target.transferFrom(source, position, TRANSFER_CHUNK_BYTES)) > 0) {
+                position += transferred;
+            }
+        }
+        return spoolFile;
+    }
+
+    /**
+     * Deletes every spooled temp file
+     */
+    @Override
+    public void close() {
+        for (File spooledFile : spooledFiles) {
+            if (spooledFile.exists() && !spooledFile.delete()) {
+                Log.w(TAG, "Failed to delete spooled image: " + spooledFile);
+            }
+        }
+        spooledFiles.clear();
+    }
+}
@@ -0,0 +1,29 @@
+package com.technikh.java_pdf_annotations.data;
+
+import com.technikh.java_pdf_annotations.domain.AnnotationInfo;
+
+import java.io.File;
+
+/**
+ * An annotation matching a library search, with the PDF it was found in
+ */
+public final class LibrarySearchHit {
+    private final File pdfFile;
+    private final AnnotationInfo annotation;
+
+    public LibrarySearchHit(File pdfFile, AnnotationInfo annotation) {
+        this.pdfFile = pdfFile;
+        this.annotation = annotation;
+    }
+
+    public File getPdfFile() {
+        return pdfFile;
+    }
+
+    /**
+     * Returns the matching annotation, including the page it sits on
+     */
+    public AnnotationInfo getAnnotation() {
+        return annotation;
+    }
+}
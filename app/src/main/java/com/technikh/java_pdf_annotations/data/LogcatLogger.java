@@ -0,0 +1,23 @@
+package com.technikh.java_pdf_annotations.data;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.technikh.java_pdf_annotations.domain.DomainLog;
+
+/**
+ * Sends the messages of the domain classes to logcat
+ */
+public class LogcatLogger implements DomainLog.Logger {
+
+    @Override
+    public void warn(String tag, String message, @Nullable Throwable error) {
+        Log.w(tag, message, error);
+    }
+
+    @Override
+    public void error(String tag, String message, @Nullable Throwable error) {
+        Log.e(tag, message, error);
+    }
+}
@@ -0,0 +1,47 @@
+package com.technikh.java_pdf_annotations.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import com.technikh.java_pdf_annotations.domain.FileChannelSource;
+import com.technikh.java_pdf_annotations.domain.ScratchPolicy;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+
+/**
+ * Opens PDFs shared with or viewed by the app.
+ * URIs backed by a regular file are parsed in place by seeking through their file descriptor,
+ * so only the cross-reference table and the objects actually used are read.
+ * Pipe-backed URIs can't seek and are copied into the scratch store instead.
+ * Loading stops with an {@link java.io.InterruptedIOException} when the calling thread is interrupted.
+ */
+public class PdfDocumentLoader {
+    private final ContentResolver contentResolver;
+    private final ScratchPolicy scratchPolicy;
+
+    /**
+     * @param scratchPolicy where parsed stream data is buffered
+     */
+    public PdfDocumentLoader(ContentResolver contentResolver, ScratchPolicy scratchPolicy) {
+        this.contentResolver = contentResolver;
+        this.scratchPolicy = scratchPolicy;
+    }
+
+    public PDDocument load(Uri pdfUri) throws IOException {
+        ParcelFileDescriptor descriptor = contentResolver.openFileDescriptor(pdfUri, "r");
+        if (descriptor == null) {
+            throw new IOException("Failed to open PDF: " + pdfUri);
+        }
+        ParcelFileDescriptor.AutoCloseInputStream inputStream = new ParcelFileDescriptor.AutoCloseInputStream(descriptor);
+        if (descriptor.getStatSize() < 0) {
+            try {
+                return scratchPolicy.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        }
+        return FileChannelSource.load(inputStream.getChannel(), inputStream, scratchPolicy);
+    }
+}
@@ -0,0 +1,108 @@
+package com.technikh.java_pdf_annotations.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.Nullable;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Identifies a PDF by its size, its first and last bytes and its trailer ID, without reading the whole file.
+ * Any change that rewrites the file or appends an incremental update changes the fingerprint.
+ */
+public final class PdfFingerprint {
+    static final int EDGE_BYTES = 64 * 1024;
+    private static final byte[] ID_KEY = "/ID".getBytes(StandardCharsets.US_ASCII);
+
+    private PdfFingerprint() {
+    }
+
+    /**
+     * Fingerprints the document behind a content URI, or returns null if it is not seekable
+     */
+    @Nullable
+    public static String compute(ContentResolver contentResolver, Uri pdfUri) {
+        try (ParcelFileDescriptor descriptor = contentResolver.openFileDescriptor(pdfUri, "r")) {
+            if (descriptor == null || descriptor.getStatSize() < 0) {
+                return null;
+            }
+            try (FileInputStream in = new FileInputStream(descriptor.getFileDescriptor())) {
+                return compute(in.getChannel(), descriptor.getStatSize());
+            }
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Fingerprints size bytes of a seekable channel using positional reads
+     */
+    public static String compute(FileChannel channel, long size) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        digest.update(Long.toString(size).getBytes(StandardCharsets.US_ASCII));
+        byte[] head = read(channel, 0, (int) Math.min(EDGE_BYTES, size));
+        digest.update(head);
+
+        long tailStart = Math.max(0, size - EDGE_BYTES);
+        byte[] tail = tailStart == 0 ? head : read(channel, tailStart, (int) (size - tailStart));
+        digest.update(tail);
+        digest.update(trailerId(tail));
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Returns the bytes of the last /ID array in the tail, or an empty array if there is none
+     */
+    static byte[] trailerId(byte[] tail) {
+        for (int start = tail.length - ID_KEY.length; start >= 0; start--) {
+            if (matchesAt(tail, start, ID_KEY)) {
+                int end = start;
+                while (end < tail.length && tail[end] != ']') {
+                    end++;
+                }
+                byte[] id = new byte[end - start];
+                System.arraycopy(tail, start, id, 0, id.length);
+                return id;
+            }
+        }
+        return new byte[0];
+    }
+
+    private static boolean matchesAt(byte[] data, int offset, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (data[offset + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
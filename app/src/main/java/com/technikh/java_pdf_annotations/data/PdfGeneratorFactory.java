@@ -0,0 +1,58 @@
+package com.technikh.java_pdf_annotations.data;
+
+import android.content.Context;
+
+import com.technikh.java_pdf_annotations.domain.CachingImageEncoder;
+import com.technikh.java_pdf_annotations.domain.ImageEncoder;
+import com.technikh.java_pdf_annotations.domain.PdfGenerator;
+import com.technikh.java_pdf_annotations.domain.ScratchPolicy;
+import com.tom_roush.pdfbox.android.PDFBoxResourceLoader;
+
+import java.io.File;
+
+/**
+ * Creates generators on a device, where PDFBox loads its fonts and glyph lists from the app's assets
+ * and images are decoded with Android's bitmap decoder
+ */
+public final class PdfGeneratorFactory {
+    /**
+     * Stream data kept in memory per document before it spills to a scratch file
+     */
+    private static final long DEFAULT_MAIN_MEMORY_BYTES = 8L * 1024 * 1024;
+    /**
+     * Scratch storage one document may use, so a runaway job fails instead of filling the disk
+     */
+    private static final long DEFAULT_SCRATCH_BUDGET_BYTES = 2L * 1024 * 1024 * 1024;
+
+    private PdfGeneratorFactory() {
+    }
+
+    /**
+     * Image streams beyond a small in-memory budget are spilled to a scratch file in the app cache directory,
+     * so peak heap stays flat regardless of the number of pages. Encodes on one thread per core.
+     */
+    public static PdfGenerator create(Context context) {
+        return create(context, ScratchPolicy.nio(new File(context.getCacheDir(), "scratch"), DEFAULT_MAIN_MEMORY_BYTES,
+                DEFAULT_SCRATCH_BUDGET_BYTES), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Uses an explicit scratch storage policy, e.g. a memory-mapped store with a byte budget per document,
+     * encoding images on up to workerCount threads. Identical images are embedded once.
+     */
+    public static PdfGenerator create(Context context, ScratchPolicy scratchPolicy, int workerCount) {
+        return create(context, scratchPolicy, new CachingImageEncoder(
+                new BitmapImageEncoder(BitmapImageEncoder.DEFAULT_TARGET_DPI, BitmapImageEncoder.DEFAULT_JPEG_QUALITY)),
+                workerCount);
+    }
+
+    /**
+     * Uses a custom image encoder, e.g. one with a different target DPI, or a {@link CachingImageEncoder}
+     * with a cache directory to also reuse encoded images across jobs
+     */
+    public static PdfGenerator create(Context context, ScratchPolicy scratchPolicy, ImageEncoder imageEncoder,
+                                      int workerCount) {
+        PDFBoxResourceLoader.init(context);
+        return new PdfGenerator(scratchPolicy, imageEncoder, workerCount);
+    }
+}
@@ -0,0 +1,121 @@
+package com.technikh.java_pdf_annotations.data;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Encoded thumbnails on disk, bounded by total size.
+ * Reading an entry marks it as recently used, and the least recently used entries are deleted first.
+ * Entries are written under a temp name and renamed into place, so readers never see a partial file.
+ * Thread-safe.
+ */
+public class ThumbnailDiskCache {
+    private static final String TAG = "ThumbnailDiskCache";
+    private static final String TEMP_SUFFIX = ".tmp";
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private final File dir;
+    private final long maxBytes;
+    // Size of all entries, or -1 until the directory has been scanned
+    private long totalBytes = -1;
+
+    public ThumbnailDiskCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the encoded thumbnail, or null if it is not cached
+     */
+    @Nullable
+    public byte[] read(ThumbnailKey key) {
+        File entry = new File(dir, key.getFileName());
+        try {
+            byte[] data = Files.readAllBytes(entry.toPath());
+            //noinspection ResultOfMethodCallIgnored
+            entry.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void write(ThumbnailKey key, byte[] data) {
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Failed to create thumbnail directory");
+            return;
+        }
+        File entry = new File(dir, key.getFileName());
+        File temp = null;
+        try {
+            temp = File.createTempFile(key.getFileName(), TEMP_SUFFIX, dir);
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(data);
+            }
+            long replaced = entry.length();
+            if (!temp.renameTo(entry)) {
+                throw new IOException("Failed to publish " + entry);
+            }
+            temp = null;
+            added(data.length - replaced);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to cache thumbnail " + key, e);
+        } finally {
+            if (temp != null && !temp.delete()) {
+                Log.w(TAG, "Failed to delete " + temp);
+            }
+        }
+    }
+
+    /**
+     * Accounts for a written entry and trims the cache once it exceeds its budget
+     */
+    private synchronized void added(long bytes) {
+        if (totalBytes < 0 || totalBytes + bytes > maxBytes) {
+            trim();
+        } else {
+            totalBytes += bytes;
+        }
+    }
+
+    private void trim() {
+        File[] entries = dir.listFiles((parent, name) -> !name.endsWith(TEMP_SUFFIX));
+        if (entries == null) {
+            return;
+        }
+        long total = 0;
+        long[] lengths = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            lengths[i] = entries[i].length();
+            total += lengths[i];
+        }
+        if (total > maxBytes) {
+            // Trim below the budget, so the next few writes don't have to scan the directory again
+            long target = maxBytes - maxBytes / 10;
+            long[] lastModified = new long[entries.length];
+            Integer[] order = new Integer[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                lastModified[i] = entries[i].lastModified();
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+            for (int i : order) {
+                if (total <= target) {
+                    break;
+                }
+                if (entries[i].delete()) {
+                    total -= lengths[i];
+                }
+            }
+        }
+        totalBytes = total;
+    }
+}
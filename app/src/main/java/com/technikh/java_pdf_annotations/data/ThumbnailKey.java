@@ -0,0 +1,62 @@
+package com.technikh.java_pdf_annotations.data;
+
+import java.util.Locale;
+
+/**
+ * Identifies the thumbnail of one page of one version of a document at one resolution
+ */
+public final class ThumbnailKey {
+    private final String fingerprint;
+    private final int pageIndex;
+    private final int dpi;
+
+    /**
+     * @param fingerprint the document's {@link PdfFingerprint}, so edited documents never reuse stale thumbnails
+     */
+    public ThumbnailKey(String fingerprint, int pageIndex, int dpi) {
+        this.fingerprint = fingerprint;
+        this.pageIndex = pageIndex;
+        this.dpi = dpi;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getPageIndex() {
+        return pageIndex;
+    }
+
+    public int getDpi() {
+        return dpi;
+    }
+
+    /**
+     * Returns the name of the thumbnail's disk cache entry
+     */
+    String getFileName() {
+        return String.format(Locale.US, "%s_%d_%d.jpg", fingerprint, pageIndex, dpi);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ThumbnailKey)) {
+            return false;
+        }
+        ThumbnailKey other = (ThumbnailKey) o;
+        return pageIndex == other.pageIndex && dpi == other.dpi && fingerprint.equals(other.fingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        return (fingerprint.hashCode() * 31 + pageIndex) * 31 + dpi;
+    }
+
+    @Override
+    public String toString() {
+        return getFileName();
+    }
+}
@@ -0,0 +1,272 @@
+package com.technikh.java_pdf_annotations.data;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.rendering.ImageType;
+import com.tom_roush.pdfbox.rendering.PDFRenderer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders low-resolution page thumbnails of the opened document on a background thread.
+ * Thumbnails are kept in a memory LRU bounded by bitmap bytes and in a disk cache keyed by document fingerprint,
+ * page and DPI, so a page is rendered at most once per document version. Pages are rendered nearest
+ * to the most recently shown one first, and pages next to it can be prefetched.
+ * Rendering uses its own copy of the document, so it never blocks annotation loading.
+ */
+public class ThumbnailLoader implements Closeable {
+    private static final String TAG = "ThumbnailLoader";
+    /**
+     * An A4 page becomes roughly 200 x 280 pixels
+     */
+    public static final int DEFAULT_DPI = 24;
+    private static final int QUEUE_CAPACITY = 48;
+    private static final int JPEG_QUALITY = 80;
+
+    /**
+     * Receives thumbnails on the main thread
+     */
+    public interface Callback {
+        void onThumbnailLoaded(ThumbnailKey key, Bitmap thumbnail);
+    }
+
+    private final PdfDocumentLoader documentLoader;
+    private final ThumbnailDiskCache diskCache;
+    private final LruCache<ThumbnailKey, Bitmap> memoryCache;
+    private final int dpi;
+    private final ThumbnailQueue queue = new ThumbnailQueue(QUEUE_CAPACITY);
+    private final ExecutorService renderExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Only touched on the main thread; each callback waits for the latest page it asked for.
+    // Weak, so views of a destroyed activity are not kept alive.
+    private final Map<Callback, ThumbnailKey> waiting = new WeakHashMap<>();
+    // Guarded by this
+    @Nullable
+    private Uri documentUri;
+    @Nullable
+    private String fingerprint;
+    // Only touched on renderExecutor
+    @Nullable
+    private PDDocument document;
+    @Nullable
+    private PDFRenderer renderer;
+    @Nullable
+    private Uri openedUri;
+
+    /**
+     * @param memoryBytes bitmap bytes kept in memory
+     */
+    public ThumbnailLoader(PdfDocumentLoader documentLoader, ThumbnailDiskCache diskCache, long memoryBytes, int dpi) {
+        this.documentLoader = documentLoader;
+        this.diskCache = diskCache;
+        this.dpi = dpi;
+        this.memoryCache = new LruCache<ThumbnailKey, Bitmap>((int) Math.min(Integer.MAX_VALUE, memoryBytes)) {
+            @Override
+            protected int sizeOf(ThumbnailKey key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Switches to the thumbnails of another document, dropping the pages queued for the previous one.
+     * Without a fingerprint, e.g. for a document that can't be reopened, no thumbnails are shown.
+     */
+    public void setDocument(@Nullable Uri pdfUri, @Nullable String fingerprint) {
+        synchronized (this) {
+            this.documentUri = fingerprint != null ? pdfUri : null;
+            this.fingerprint = pdfUri != null ? fingerprint : null;
+        }
+        queue.clear();
+        renderExecutor.execute(this::closeStaleDocument);
+    }
+
+    /**
+     * Returns whether the current document has thumbnails
+     */
+    public synchronized boolean hasDocument() {
+        return fingerprint != null;
+    }
+
+    /**
+     * Returns the page's thumbnail if it is in memory. Otherwise queues the page ahead of the others
+     * and hands its thumbnail to the callback once loaded, unless the callback asks for another page first.
+     * Call on the main thread.
+     */
+    @Nullable
+    public Bitmap load(int pageIndex, Callback callback) {
+        ThumbnailKey key = keyFor(pageIndex);
+        if (key == null) {
+            waiting.remove(callback);
+            return null;
+        }
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            waiting.remove(callback);
+            return cached;
+        }
+        waiting.put(callback, key);
+        queue.request(pageIndex);
+        renderExecutor.execute(this::renderNext);
+        return null;
+    }
+
+    /**
+     * Queues a page that is likely to be shown soon behind the pages being shown
+     */
+    public void prefetch(int pageIndex) {
+        ThumbnailKey key = keyFor(pageIndex);
+        if (key == null || memoryCache.get(key) != null) {
+            return;
+        }
+        queue.prefetch(pageIndex);
+        renderExecutor.execute(this::renderNext);
+    }
+
+    @Nullable
+    private synchronized ThumbnailKey keyFor(int pageIndex) {
+        return fingerprint != null ? new ThumbnailKey(fingerprint, pageIndex, dpi) : null;
+    }
+
+    /**
+     * Loads the most urgent queued page from disk, or renders and caches it
+     */
+    private void renderNext() {
+        int pageIndex = queue.poll();
+        if (pageIndex < 0) {
+            return;
+        }
+        Uri uri;
+        ThumbnailKey key;
+        synchronized (this) {
+            uri = documentUri;
+            key = keyFor(pageIndex);
+        }
+        if (uri == null || key == null) {
+            return;
+        }
+
+        Bitmap thumbnail = memoryCache.get(key);
+        try {
+            if (thumbnail == null) {
+                thumbnail = readFromDisk(key);
+            }
+            if (thumbnail == null) {
+                thumbnail = render(uri, pageIndex);
+                if (thumbnail == null) {
+                    return;
+                }
+                diskCache.write(key, compress(thumbnail));
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to load thumbnail " + key, e);
+            return;
+        }
+        memoryCache.put(key, thumbnail);
+        Bitmap loaded = thumbnail;
+        mainHandler.post(() -> deliver(key, loaded));
+    }
+
+    @Nullable
+    private Bitmap readFromDisk(ThumbnailKey key) {
+        byte[] data = diskCache.read(key);
+        if (data == null) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    /**
+     * Renders the page, or returns null if the document has no such page
+     */
+    @Nullable
+    private Bitmap render(Uri uri, int pageIndex) throws IOException {
+        if (!uri.equals(openedUri)) {
+            closeDocument();
+            document = documentLoader.load(uri);
+            renderer = new PDFRenderer(document);
+            // Images are decoded at roughly the thumbnail's resolution instead of their own
+            renderer.setSubsamplingAllowed(true);
+            openedUri = uri;
+        }
+        if (pageIndex >= document.getNumberOfPages()) {
+            return null;
+        }
+        return renderer.renderImageWithDPI(pageIndex, dpi, ImageType.RGB);
+    }
+
+    private static byte[] compress(Bitmap thumbnail) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        return out.toByteArray();
+    }
+
+    private void deliver(ThumbnailKey key, Bitmap thumbnail) {
+        List<Callback> callbacks = new ArrayList<>();
+        Iterator<Map.Entry<Callback, ThumbnailKey>> entries = waiting.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Callback, ThumbnailKey> entry = entries.next();
+            if (key.equals(entry.getValue())) {
+                callbacks.add(entry.getKey());
+                entries.remove();
+            }
+        }
+        for (Callback callback : callbacks) {
+            callback.onThumbnailLoaded(key, thumbnail);
+        }
+    }
+
+    private void closeStaleDocument() {
+        Uri current;
+        synchronized (this) {
+            current = documentUri;
+        }
+        if (openedUri != null && !openedUri.equals(current)) {
+            closeDocument();
+        }
+    }
+
+    private void closeDocument() {
+        if (document != null) {
+            try {
+                document.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing PDF", e);
+            }
+        }
+        document = null;
+        renderer = null;
+        openedUri = null;
+    }
+
+    /**
+     * Stops rendering and closes the document. The disk cache is kept.
+     */
+    @Override
+    public void close() {
+        queue.clear();
+        memoryCache.evictAll();
+        renderExecutor.execute(this::closeDocument);
+        renderExecutor.shutdown();
+    }
+}
@@ -0,0 +1,84 @@
+package com.technikh.java_pdf_annotations.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pages waiting to be rendered, handed out nearest to the most recently shown page first.
+ * While the list scrolls, pages that went out of view stay queued but fall behind the visible ones,
+ * and once the queue is full the page farthest from view is dropped. Thread-safe.
+ */
+final class ThumbnailQueue {
+    private final int capacity;
+    private final List<Integer> pending = new ArrayList<>();
+    private int focus;
+
+    ThumbnailQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queues a page that is being shown and makes it the focus
+     */
+    synchronized void request(int pageIndex) {
+        focus = pageIndex;
+        add(pageIndex);
+    }
+
+    /**
+     * Queues a page that is likely to be shown soon, without moving the focus
+     */
+    synchronized void prefetch(int pageIndex) {
+        add(pageIndex);
+    }
+
+    /**
+     * Removes and returns the pending page nearest to the focus, or -1 if none is pending
+     */
+    synchronized int poll() {
+        int nearest = nearestIndex();
+        return nearest >= 0 ? pending.remove(nearest) : -1;
+    }
+
+    synchronized void clear() {
+        pending.clear();
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    private void add(int pageIndex) {
+        if (pending.contains(pageIndex)) {
+            return;
+        }
+        pending.add(pageIndex);
+        if (pending.size() > capacity) {
+            pending.remove(farthestIndex());
+        }
+    }
+
+    private int nearestIndex() {
+        int best = -1;
+        for (int i = 0; i < pending.size(); i++) {
+            if (best < 0 || distance(i) < distance(best)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private int farthestIndex() {
+        int worst = 0;
+        for (int i = 1; i < pending.size(); i++) {
+            if (distance(i) > distance(worst)) {
+                worst = i;
+            }
+        }
+        return worst;
+    }
+
+    private int distance(int i) {
+        return Math.abs(pending.get(i) - focus);
+    }
+}
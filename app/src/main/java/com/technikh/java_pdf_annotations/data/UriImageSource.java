@@ -0,0 +1,46 @@
+package com.technikh.java_pdf_annotations.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import com.technikh.java_pdf_annotations.domain.ImageSource;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Image read straight from a seekable content URI through its file descriptor,
+ * without copying it to local storage first
+ */
+public class UriImageSource implements ImageSource {
+    private final ContentResolver contentResolver;
+    private final Uri uri;
+    private final long length;
+
+    UriImageSource(ContentResolver contentResolver, Uri uri, long length) {
+        this.contentResolver = contentResolver;
+        this.uri = uri;
+        this.length = length;
+    }
+
+    @Override
+    public String getName() {
+        return uri.toString();
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        ParcelFileDescriptor descriptor = contentResolver.openFileDescriptor(uri, "r");
+        if (descriptor == null) {
+            throw new FileNotFoundException("No file descriptor for URI: " + uri);
+        }
+        return new ParcelFileDescriptor.AutoCloseInputStream(descriptor);
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+}
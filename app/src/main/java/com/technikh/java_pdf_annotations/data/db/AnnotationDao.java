@@ -0,0 +1,45 @@
+package com.technikh.java_pdf_annotations.data.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public abstract class AnnotationDao {
+
+    @Query("SELECT * FROM documents WHERE fingerprint = :fingerprint")
+    public abstract IndexedDocumentEntity findDocument(String fingerprint);
+
+    @Query("SELECT * FROM annotations WHERE fingerprint = :fingerprint ORDER BY pageNumber, id")
+    public abstract List<AnnotationEntity> findAnnotations(String fingerprint);
+
+    @Query("UPDATE documents SET lastUsedAt = :lastUsedAt WHERE fingerprint = :fingerprint")
+    public abstract void touch(String fingerprint, long lastUsedAt);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void insertDocument(IndexedDocumentEntity document);
+
+    @Insert
+    abstract void insertAnnotations(List<AnnotationEntity> annotations);
+
+    @Query("DELETE FROM documents WHERE fingerprint = :fingerprint")
+    abstract void deleteDocument(String fingerprint);
+
+    @Query("DELETE FROM documents WHERE fingerprint NOT IN "
+            + "(SELECT fingerprint FROM documents ORDER BY lastUsedAt DESC LIMIT :keep)")
+    public abstract void deleteLeastRecentlyUsed(int keep);
+
+    /**
+     * Replaces everything stored for the document; its annotations go with it through the cascade
+     */
+    @Transaction
+    public void replace(IndexedDocumentEntity document, List<AnnotationEntity> annotations) {
+        deleteDocument(document.fingerprint);
+        insertDocument(document);
+        insertAnnotations(annotations);
+    }
+}
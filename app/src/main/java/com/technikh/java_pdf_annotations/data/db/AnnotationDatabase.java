@@ -0,0 +1,34 @@
+package com.technikh.java_pdf_annotations.data.db;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+
+@Database(entities = {IndexedDocumentEntity.class, AnnotationEntity.class,
+        LibraryFileEntity.class, LibraryAnnotationEntity.class, LibraryAnnotationFts.class},
+        version = 2, exportSchema = false)
+public abstract class AnnotationDatabase extends RoomDatabase {
+    private static final String DATABASE_NAME = "annotations.db";
+    private static volatile AnnotationDatabase instance;
+
+    public abstract AnnotationDao annotationDao();
+
+    public abstract LibraryDao libraryDao();
+
+    public static AnnotationDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AnnotationDatabase.class) {
+                if (instance == null) {
+                    instance = Room.databaseBuilder(context.getApplicationContext(),
+                            AnnotationDatabase.class, DATABASE_NAME)
+                            // Everything stored is derived from PDFs on disk and can be rebuilt
+                            .fallbackToDestructiveMigration()
+                            .build();
+                }
+            }
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,39 @@
+package com.technikh.java_pdf_annotations.data.db;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * One extracted annotation of an indexed document
+ */
+@Entity(tableName = "annotations",
+        foreignKeys = @ForeignKey(entity = IndexedDocumentEntity.class,
+                parentColumns = "fingerprint",
+                childColumns = "fingerprint",
+                onDelete = ForeignKey.CASCADE),
+        indices = @Index(value = {"fingerprint", "pageNumber"}))
+public class AnnotationEntity {
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    @NonNull
+    public String fingerprint = "";
+
+    public int pageNumber;
+
+    @NonNull
+    public String subtype = "";
+
+    @Nullable
+    public String title;
+
+    @NonNull
+    public String contents = "";
+
+    @Nullable
+    public String modifiedDate;
+}
@@ -0,0 +1,24 @@
+package com.technikh.java_pdf_annotations.data.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * A document whose annotations have been fully extracted
+ */
+@Entity(tableName = "documents")
+public class IndexedDocumentEntity {
+    @PrimaryKey
+    @NonNull
+    public String fingerprint = "";
+
+    public int pageCount;
+
+    public int annotationCount;
+
+    /**
+     * Last time the entry was written or read, used to evict old documents
+     */
+    public long lastUsedAt;
+}
@@ -0,0 +1,39 @@
+package com.technikh.java_pdf_annotations.data.db;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * One annotation of a library PDF; its text is mirrored into {@link LibraryAnnotationFts} for searching
+ */
+@Entity(tableName = "library_annotations",
+        foreignKeys = @ForeignKey(entity = LibraryFileEntity.class,
+                parentColumns = "path",
+                childColumns = "path",
+                onDelete = ForeignKey.CASCADE),
+        indices = @Index("path"))
+public class LibraryAnnotationEntity {
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    @NonNull
+    public String path = "";
+
+    public int pageNumber;
+
+    @NonNull
+    public String subtype = "";
+
+    @Nullable
+    public String title;
+
+    @NonNull
+    public String contents = "";
+
+    @Nullable
+    public String modifiedDate;
+}
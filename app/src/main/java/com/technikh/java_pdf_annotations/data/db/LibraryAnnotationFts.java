@@ -0,0 +1,20 @@
+package com.technikh.java_pdf_annotations.data.db;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+/**
+ * Full-text index over the contents and authors of library annotations.
+ * Room keeps it in sync with {@link LibraryAnnotationEntity} through triggers, sharing its row IDs.
+ */
+@Fts4(contentEntity = LibraryAnnotationEntity.class)
+@Entity(tableName = "library_annotations_fts")
+public class LibraryAnnotationFts {
+    @NonNull
+    public String contents = "";
+
+    @Nullable
+    public String title;
+}
@@ -0,0 +1,41 @@
+package com.technikh.java_pdf_annotations.data.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public abstract class LibraryDao {
+
+    @Query("SELECT * FROM library_files")
+    public abstract List<LibraryFileEntity> getFiles();
+
+    @Query("SELECT library_annotations.* FROM library_annotations "
+            + "JOIN library_annotations_fts ON library_annotations.id = library_annotations_fts.rowid "
+            + "WHERE library_annotations_fts MATCH :match "
+            + "ORDER BY library_annotations.path, library_annotations.pageNumber LIMIT :limit")
+    public abstract List<LibraryAnnotationEntity> search(String match, int limit);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    protected abstract void insertFile(LibraryFileEntity file);
+
+    @Insert
+    protected abstract void insertAnnotations(List<LibraryAnnotationEntity> annotations);
+
+    @Query("DELETE FROM library_files WHERE path = :path")
+    public abstract void deleteFile(String path);
+
+    /**
+     * Replaces everything stored for the file; its old annotations go with it through the cascade
+     */
+    @Transaction
+    public void replace(LibraryFileEntity file, List<LibraryAnnotationEntity> annotations) {
+        deleteFile(file.path);
+        insertFile(file);
+        insertAnnotations(annotations);
+    }
+}
@@ -0,0 +1,24 @@
+package com.technikh.java_pdf_annotations.data.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * A PDF of the library as it was when its annotations were last scanned
+ */
+@Entity(tableName = "library_files")
+public class LibraryFileEntity {
+    @PrimaryKey
+    @NonNull
+    public String path = "";
+
+    public long length;
+
+    public long lastModified;
+
+    /**
+     * Number of annotations found, or -1 if the file could not be parsed
+     */
+    public int annotationCount;
+}
@@ -0,0 +1,218 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import com.tom_roush.pdfbox.cos.COSArray;
+import com.tom_roush.pdfbox.cos.COSBase;
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.cos.COSObject;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDColor;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotationText;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Adds, edits and removes text annotations on an existing PDF.
+ * Changes are written as an incremental update containing only the touched pages and annotations,
+ * so the original bytes are never rewritten and large scans stay cheap to edit. Not thread-safe.
+ */
+public class AnnotationEditor implements Closeable {
+    private final File pdfFile;
+    private final ScratchPolicy scratchPolicy;
+    private PDDocument document;
+    @Nullable
+    private AnnotationStyles styles;
+    private boolean modified;
+
+    /**
+     * Opens the PDF for editing; page content is only parsed when a page is accessed
+     */
+    public AnnotationEditor(File pdfFile, ScratchPolicy scratchPolicy) throws IOException {
+        this.pdfFile = pdfFile;
+        this.scratchPolicy = scratchPolicy;
+        this.document = scratchPolicy.load(pdfFile);
+    }
+
+    public int getPageCount() {
+        return document.getNumberOfPages();
+    }
+
+    /**
+     * Returns whether there are changes that have not been saved yet
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Returns the text annotations of a page in drawing order
+     *
+     * @param pageNumber 1-based page number
+     */
+    public List<PDAnnotationText> getTextAnnotations(int pageNumber) throws IOException {
+        List<PDAnnotationText> textAnnotations = new ArrayList<>();
+        for (PDAnnotation annotation : getPage(pageNumber).getAnnotations()) {
+            if (annotation instanceof PDAnnotationText) {
+                textAnnotations.add((PDAnnotationText) annotation);
+            }
+        }
+        return textAnnotations;
+    }
+
+    /**
+     * Adds a closed comment annotation to a page
+     *
+     * @param pageNumber 1-based page number
+     */
+    public PDAnnotationText addTextAnnotation(int pageNumber, String contents, PDRectangle rectangle) {
+        PDPage page = getPage(pageNumber);
+        PDAnnotationText textAnnotation = new PDAnnotationText();
+        textAnnotation.setContents(contents);
+        textAnnotation.setRectangle(rectangle);
+        textAnnotation.setOpen(false);
+        textAnnotation.setName("Comment");
+        textAnnotation.setColor(new PDColor(new float[]{1f, 1f, 0.8f}, PDDeviceRGB.INSTANCE));
+        textAnnotation.setModifiedDate(Calendar.getInstance());
+        textAnnotation.setPage(page);
+
+        getAnnotationArray(page).add(textAnnotation.getCOSObject());
+        markChanged(page, textAnnotation);
+        return textAnnotation;
+    }
+
+    /**
+     * Adds a comment annotation styled like the ones the generator writes, e.g. when importing annotations
+     *
+     * @param modifiedDate the M entry as a PDF date string, or null to leave it out
+     */
+    public PDAnnotationText addAnnotation(AnnotationSpec spec, @Nullable String modifiedDate) throws IOException {
+        PDPage page = getPage(spec.getPageNumber());
+        if (styles == null) {
+            styles = new AnnotationStyles(new AppearancePool(document));
+        }
+        PDAnnotationText textAnnotation = styles.createTextAnnotation(spec);
+        if (modifiedDate != null) {
+            textAnnotation.getCOSObject().setString(COSName.M, modifiedDate);
+        }
+        textAnnotation.setPage(page);
+
+        getAnnotationArray(page).add(textAnnotation.getCOSObject());
+        markChanged(page, textAnnotation);
+        return textAnnotation;
+    }
+
+    /**
+     * Replaces the text of an annotation on a page
+     *
+     * @param pageNumber 1-based page number
+     */
+    public void setContents(int pageNumber, PDAnnotationText annotation, String contents) {
+        PDPage page = getPage(pageNumber);
+        annotation.setContents(contents);
+        annotation.setModifiedDate(Calendar.getInstance());
+        markChanged(page, annotation);
+    }
+
+    /**
+     * Removes an annotation from a page
+     *
+     * @param pageNumber 1-based page number
+     * @return whether the annotation was found on the page
+     */
+    public boolean removeAnnotation(int pageNumber, PDAnnotation annotation) {
+        PDPage page = getPage(pageNumber);
+        COSArray annotationArray = getAnnotationArray(page);
+        for (int i = 0; i < annotationArray.size(); i++) {
+            COSBase item = annotationArray.get(i);
+            COSBase resolved = item instanceof COSObject ? ((COSObject) item).getObject() : item;
+            if (resolved == annotation.getCOSObject()) {
+                annotationArray.remove(i);
+                markChanged(page, null);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends the pending changes to the end of the PDF file in place.
+     * Only the update itself is written; the existing bytes are neither read nor rewritten.
+     * Annotations obtained before this call belong to the previous revision and must be looked up again.
+     *
+     * @return the number of bytes appended
+     */
+    public long appendChanges() throws IOException {
+        if (!modified) {
+            return 0;
+        }
+        long appended = IncrementalUpdate.append(document, pdfFile);
+
+        // Reload so object numbers assigned by this update are known to the next one
+        document.close();
+        document = scratchPolicy.load(pdfFile);
+        // The shared styles were written with the previous revision
+        styles = null;
+        modified = false;
+        return appended;
+    }
+
+    /**
+     * Writes the original PDF followed by the pending changes to another stream, e.g. to share a copy.
+     * The source file is left unchanged.
+     */
+    public void saveIncremental(OutputStream outputStream) throws IOException {
+        document.saveIncremental(outputStream);
+    }
+
+    private PDPage getPage(int pageNumber) {
+        return document.getPage(pageNumber - 1);
+    }
+
+    private static COSArray getAnnotationArray(PDPage page) {
+        COSDictionary pageDictionary = page.getCOSObject();
+        COSBase annotations = pageDictionary.getDictionaryObject(COSName.ANNOTS);
+        if (annotations instanceof COSArray) {
+            return (COSArray) annotations;
+        }
+        COSArray annotationArray = new COSArray();
+        pageDictionary.setItem(COSName.ANNOTS, annotationArray);
+        return annotationArray;
+    }
+
+    /**
+     * Flags the changed objects and every object on the path from the catalog to them,
+     * since an incremental update only follows references through flagged objects
+     */
+    private void markChanged(PDPage page, PDAnnotation annotation) {
+        if (annotation != null) {
+            annotation.getCOSObject().setNeedToBeUpdated(true);
+        }
+        getAnnotationArray(page).setNeedToBeUpdated(true);
+
+        COSDictionary node = page.getCOSObject();
+        while (node != null) {
+            node.setNeedToBeUpdated(true);
+            COSBase parent = node.getDictionaryObject(COSName.PARENT);
+            node = parent instanceof COSDictionary ? (COSDictionary) parent : null;
+        }
+        document.getDocumentCatalog().getCOSObject().setNeedToBeUpdated(true);
+        modified = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        document.close();
+    }
+}
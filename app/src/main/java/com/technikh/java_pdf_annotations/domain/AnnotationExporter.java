@@ -0,0 +1,297 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import com.tom_roush.pdfbox.cos.COSArray;
+import com.tom_roush.pdfbox.cos.COSBase;
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Exports the visible Text/FreeText annotations of whole documents to XFDF or JSON Lines.
+ * Pages are read and written one at a time, so only the annotations of the current page are held
+ * besides the parsed document itself.
+ */
+public class AnnotationExporter {
+    static final String XFDF_NAMESPACE = "http://ns.adobe.com/xfdf/";
+    /**
+     * Icon viewers show for text annotations without a Name entry
+     */
+    private static final String PDF_DEFAULT_ICON = "Note";
+
+    private final ScratchPolicy scratchPolicy;
+
+    public AnnotationExporter(ScratchPolicy scratchPolicy) {
+        this.scratchPolicy = scratchPolicy;
+    }
+
+    /**
+     * Writes the annotations of one PDF as an XFDF file referring to it by name.
+     * Interrupting the calling thread cancels the export with an {@link InterruptedIOException}.
+     *
+     * @return the number of annotations written
+     */
+    public long exportXfdf(File pdfFile, OutputStream outputStream) throws IOException {
+        try (PDDocument document = scratchPolicy.load(pdfFile)) {
+            Writer writer = newWriter(outputStream);
+            long count = writeXfdf(document, pdfFile.getName(), writer);
+            writer.flush();
+            return count;
+        }
+    }
+
+    /**
+     * Writes the annotations of every PDF, in order, as JSON Lines naming their document.
+     * Only one PDF is open at a time.
+     * Interrupting the calling thread cancels the export with an {@link InterruptedIOException}.
+     *
+     * @return the number of annotations written
+     */
+    public long exportJsonLines(List<File> pdfFiles, OutputStream outputStream) throws IOException {
+        Writer writer = newWriter(outputStream);
+        long count = 0;
+        for (File pdfFile : pdfFiles) {
+            try (PDDocument document = scratchPolicy.load(pdfFile)) {
+                count += writeJsonLines(document, pdfFile.getName(), writer);
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    static long writeXfdf(PDDocument document, String documentName, Writer writer) throws IOException {
+        StringBuilder xml = new StringBuilder(256);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<xfdf xmlns=\"").append(XFDF_NAMESPACE)
+                .append("\" xml:space=\"preserve\">\n<f href=\"");
+        appendXml(xml, documentName, true);
+        xml.append("\"/>\n<annots>\n");
+        writer.write(xml.toString());
+
+        long count = 0;
+        List<AnnotationRecord> records = new ArrayList<>();
+        for (int pageIndex = 0; pageIndex < document.getNumberOfPages(); pageIndex++) {
+            throwIfInterrupted();
+            readRecords(document.getPage(pageIndex), pageIndex + 1, documentName, records);
+            for (AnnotationRecord record : records) {
+                xml.setLength(0);
+                appendXfdf(xml, record);
+                writer.write(xml.toString());
+            }
+            count += records.size();
+            records.clear();
+        }
+        writer.write("</annots>\n</xfdf>\n");
+        return count;
+    }
+
+    static long writeJsonLines(PDDocument document, String documentName, Writer writer) throws IOException {
+        long count = 0;
+        StringBuilder json = new StringBuilder(256);
+        List<AnnotationRecord> records = new ArrayList<>();
+        for (int pageIndex = 0; pageIndex < document.getNumberOfPages(); pageIndex++) {
+            throwIfInterrupted();
+            readRecords(document.getPage(pageIndex), pageIndex + 1, documentName, records);
+            for (AnnotationRecord record : records) {
+                json.setLength(0);
+                appendJson(json, record);
+                writer.write(json.append('\n').toString());
+            }
+            count += records.size();
+            records.clear();
+        }
+        return count;
+    }
+
+    /**
+     * Adds the exportable annotations of a page to the list, with the same filter as {@link AnnotationPager}
+     */
+    static void readRecords(PDPage page, int pageNumber, String documentName, List<AnnotationRecord> into) throws IOException {
+        for (PDAnnotation annotation : page.getAnnotations()) {
+            AnnotationRecord record = toRecord(annotation, pageNumber, documentName);
+            if (record != null) {
+                into.add(record);
+            }
+        }
+    }
+
+    @Nullable
+    private static AnnotationRecord toRecord(PDAnnotation annotation, int pageNumber, String documentName) {
+        String subtype = annotation.getSubtype();
+        boolean isText = "Text".equalsIgnoreCase(subtype);
+        if (!isText && !"FreeText".equalsIgnoreCase(subtype)) {
+            return null;
+        }
+        String contents = annotation.getContents();
+        PDRectangle rectangle = annotation.getRectangle();
+        if (contents == null || contents.trim().isEmpty() || rectangle == null) {
+            return null;
+        }
+        COSDictionary dictionary = annotation.getCOSObject();
+        String icon = isText ? dictionary.getNameAsString(COSName.NAME, PDF_DEFAULT_ICON) : AnnotationSpec.DEFAULT_ICON;
+        AnnotationSpec spec = new AnnotationSpec(pageNumber, rectangle.getLowerLeftX(), rectangle.getLowerLeftY(),
+                rectangle.getWidth(), rectangle.getHeight(), contents, dictionary.getString(COSName.T),
+                readColor(dictionary), icon);
+        return new AnnotationRecord(documentName, subtype, spec, dictionary.getString(COSName.M));
+    }
+
+    /**
+     * Returns the C entry as 0xRRGGBB, or the default color if it is missing or not RGB or gray
+     */
+    private static int readColor(COSDictionary dictionary) {
+        COSBase color = dictionary.getDictionaryObject(COSName.C);
+        if (color instanceof COSArray) {
+            float[] components = ((COSArray) color).toFloatArray();
+            if (components.length == 3) {
+                return (toByte(components[0]) << 16) | (toByte(components[1]) << 8) | toByte(components[2]);
+            }
+            if (components.length == 1) {
+                int gray = toByte(components[0]);
+                return (gray << 16) | (gray << 8) | gray;
+            }
+        }
+        return AnnotationSpec.DEFAULT_COLOR;
+    }
+
+    private static int toByte(float component) {
+        return Math.max(0, Math.min(255, Math.round(component * 255)));
+    }
+
+    /**
+     * Writes e.g. {@code <text page="0" rect="10,20,30,40" color="#FFFFCC" icon="Comment" title="Inspector"><contents>Crack</contents></text>}
+     * with the 0-based page index XFDF uses
+     */
+    private static void appendXfdf(StringBuilder xml, AnnotationRecord record) {
+        AnnotationSpec spec = record.getSpec();
+        String element = record.getSubtype().toLowerCase(Locale.ROOT);
+        xml.append('<').append(element)
+                .append(" page=\"").append(spec.getPageNumber() - 1)
+                .append("\" rect=\"").append(formatNumber(spec.getX()))
+                .append(',').append(formatNumber(spec.getY()))
+                .append(',').append(formatNumber(spec.getX() + spec.getWidth()))
+                .append(',').append(formatNumber(spec.getY() + spec.getHeight()))
+                .append("\" color=\"").append(formatColor(spec.getColor())).append('"');
+        if ("text".equals(element)) {
+            xml.append(" icon=\"");
+            appendXml(xml, spec.getIcon(), true);
+            xml.append('"');
+        }
+        if (spec.getAuthor() != null) {
+            xml.append(" title=\"");
+            appendXml(xml, spec.getAuthor(), true);
+            xml.append('"');
+        }
+        if (record.getModifiedDate() != null) {
+            xml.append(" date=\"");
+            appendXml(xml, record.getModifiedDate(), true);
+            xml.append('"');
+        }
+        xml.append("><contents>");
+        appendXml(xml, spec.getText(), false);
+        xml.append("</contents></").append(element).append(">\n");
+    }
+
+    /**
+     * Writes e.g. {@code {"document":"out.pdf","page":1,"subtype":"Text","x":10,"y":20,"width":20,"height":20,"color":"#FFFFCC","icon":"Comment","author":null,"date":null,"text":"Crack"}}
+     */
+    private static void appendJson(StringBuilder json, AnnotationRecord record) {
+        AnnotationSpec spec = record.getSpec();
+        json.append("{\"document\":");
+        appendJsonValue(json, record.getDocument());
+        json.append(",\"page\":").append(spec.getPageNumber())
+                .append(",\"subtype\":");
+        JsonLine.appendString(json, record.getSubtype());
+        json.append(",\"x\":").append(formatNumber(spec.getX()))
+                .append(",\"y\":").append(formatNumber(spec.getY()))
+                .append(",\"width\":").append(formatNumber(spec.getWidth()))
+                .append(",\"height\":").append(formatNumber(spec.getHeight()))
+                .append(",\"color\":\"").append(formatColor(spec.getColor()))
+                .append("\",\"icon\":");
+        JsonLine.appendString(json, spec.getIcon());
+        json.append(",\"author\":");
+        appendJsonValue(json, spec.getAuthor());
+        json.append(",\"date\":");
+        appendJsonValue(json, record.getModifiedDate());
+        json.append(",\"text\":");
+        JsonLine.appendString(json, spec.getText());
+        json.append('}');
+    }
+
+    private static void appendJsonValue(StringBuilder json, @Nullable String value) {
+        if (value == null) {
+            json.append("null");
+        } else {
+            JsonLine.appendString(json, value);
+        }
+    }
+
+    /**
+     * Escapes markup characters. Characters XML can't represent are replaced with U+FFFD,
+     * and line breaks in attributes are written as references so parsers don't normalize them to spaces.
+     */
+    private static void appendXml(StringBuilder xml, String value, boolean attribute) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    xml.append("&amp;");
+                    break;
+                case '<':
+                    xml.append("&lt;");
+                    break;
+                case '>':
+                    xml.append("&gt;");
+                    break;
+                case '"':
+                    xml.append(attribute ? "&quot;" : "\"");
+                    break;
+                case '\r':
+                    xml.append("&#13;");
+                    break;
+                case '\n':
+                case '\t':
+                    if (attribute) {
+                        xml.append("&#").append((int) c).append(';');
+                    } else {
+                        xml.append(c);
+                    }
+                    break;
+                default:
+                    xml.append(c < 0x20 || c == '\uFFFE' || c == '\uFFFF' ? '\uFFFD' : c);
+            }
+        }
+    }
+
+    static String formatNumber(float value) {
+        return value == (int) value ? Integer.toString((int) value) : Float.toString(value);
+    }
+
+    static String formatColor(int rgb) {
+        return String.format(Locale.ROOT, "#%06X", rgb & 0xFFFFFF);
+    }
+
+    private static Writer newWriter(OutputStream outputStream) {
+        return new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    private static void throwIfInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Export cancelled");
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * File formats for exporting and importing annotations in bulk
+ */
+public enum AnnotationFormat {
+    /**
+     * Adobe's XML Forms Data Format, one file per document
+     */
+    XFDF("xfdf"),
+    /**
+     * One JSON object per annotation and line, naming its document, so one file can hold many documents
+     */
+    JSON_LINES("jsonl");
+
+    private final String extension;
+
+    AnnotationFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Returns the format matching the file name's extension, or null if there is none
+     */
+    @Nullable
+    public static AnnotationFormat forFileName(String fileName) {
+        String lowerCase = fileName.toLowerCase(Locale.ROOT);
+        for (AnnotationFormat format : values()) {
+            if (lowerCase.endsWith("." + format.extension)) {
+                return format;
+            }
+        }
+        return lowerCase.endsWith(".ndjson") || lowerCase.endsWith(".json") ? JSON_LINES : null;
+    }
+}
@@ -0,0 +1,365 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Reads annotation files written by {@link AnnotationExporter} and applies them to PDFs.
+ * Files are parsed as a stream, with SAX for XFDF and line by line for JSON Lines, and handed on one page
+ * at a time, so memory doesn't grow with the size of the file.
+ */
+public class AnnotationImporter {
+    private static final String TAG = "AnnotationImporter";
+    /**
+     * Largest number of records handed on at once, for pages with very many annotations
+     */
+    static final int MAX_RECORDS_PER_PAGE_CALL = 1000;
+    /**
+     * Number of imported annotations between incremental updates, which bounds the pending changes
+     */
+    static final int APPEND_EVERY_ANNOTATIONS = 5000;
+
+    /**
+     * Receives the records of an annotation file in file order
+     */
+    public interface PageHandler {
+        /**
+         * Called with consecutive records of the same page of the same document.
+         * A page with more than {@link #MAX_RECORDS_PER_PAGE_CALL} records is handed on in several calls.
+         */
+        void onPage(List<AnnotationRecord> records) throws IOException;
+    }
+
+    private final ScratchPolicy scratchPolicy;
+
+    public AnnotationImporter(ScratchPolicy scratchPolicy) {
+        this.scratchPolicy = scratchPolicy;
+    }
+
+    /**
+     * Adds every annotation of the file to the PDF as comment annotations styled like generated ones,
+     * written as incremental updates. FreeText records are added as comments too.
+     * Records on pages the PDF doesn't have are skipped. If anything fails, the PDF is left as it was.
+     * Interrupting the calling thread cancels the import with an {@link InterruptedIOException}.
+     *
+     * @param document if set, only records of the document with this file name, or of no named document, are added
+     * @return the number of annotations added
+     */
+    public long importInto(File pdfFile, InputStream inputStream, AnnotationFormat format,
+                           @Nullable String document) throws IOException {
+        long originalLength = pdfFile.length();
+        boolean imported = false;
+        try {
+            long count;
+            try (AnnotationEditor editor = new AnnotationEditor(pdfFile, scratchPolicy)) {
+                Applier applier = new Applier(editor, document);
+                read(inputStream, format, applier);
+                editor.appendChanges();
+                count = applier.applied;
+            }
+            imported = true;
+            return count;
+        } finally {
+            if (!imported) {
+                IncrementalUpdate.truncate(pdfFile, originalLength);
+            }
+        }
+    }
+
+    /**
+     * Parses an annotation file and hands its records to the handler page by page
+     *
+     * @return the number of records read
+     */
+    public static long read(InputStream inputStream, AnnotationFormat format, PageHandler handler) throws IOException {
+        switch (format) {
+            case XFDF:
+                return readXfdf(inputStream, handler);
+            case JSON_LINES:
+                return readJsonLines(inputStream, handler);
+            default:
+                throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+
+    static long readJsonLines(InputStream inputStream, PageHandler handler) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        PageGrouper grouper = new PageGrouper(handler);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            AnnotationRecord record;
+            try {
+                record = fromJson(JsonLine.parse(line));
+            } catch (IOException | IllegalArgumentException e) {
+                throw new IOException("Malformed annotation on line " + lineNumber + ": " + e.getMessage(), e);
+            }
+            grouper.add(record);
+        }
+        grouper.flush();
+        return grouper.count;
+    }
+
+    static long readXfdf(InputStream inputStream, PageHandler handler) throws IOException {
+        PageGrouper grouper = new PageGrouper(handler);
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.newSAXParser().parse(new InputSource(inputStream), new XfdfHandler(grouper));
+        } catch (ParserConfigurationException e) {
+            throw new IOException("No XML parser available", e);
+        } catch (SAXParseException e) {
+            if (e.getException() instanceof IOException) {
+                throw (IOException) e.getException();
+            }
+            throw new IOException("Malformed XFDF on line " + e.getLineNumber() + ": " + e.getMessage(), e);
+        } catch (SAXException e) {
+            if (e.getException() instanceof IOException) {
+                throw (IOException) e.getException();
+            }
+            throw new IOException("Malformed XFDF: " + e.getMessage(), e);
+        }
+        grouper.flush();
+        return grouper.count;
+    }
+
+    private static AnnotationRecord fromJson(Map<String, String> values) throws IOException {
+        AnnotationSpec spec = new AnnotationSpec(Integer.parseInt(required(values, "page")),
+                Float.parseFloat(required(values, "x")), Float.parseFloat(required(values, "y")),
+                Float.parseFloat(required(values, "width")), Float.parseFloat(required(values, "height")),
+                required(values, "text"), values.get("author"), parseColor(values.get("color")),
+                optional(values.get("icon"), AnnotationSpec.DEFAULT_ICON));
+        return new AnnotationRecord(values.get("document"), optional(values.get("subtype"), "Text"), spec, values.get("date"));
+    }
+
+    private static String required(Map<String, String> values, String key) throws IOException {
+        String value = values.get(key);
+        if (value == null) {
+            throw new IOException("Missing " + key);
+        }
+        return value;
+    }
+
+    private static String optional(@Nullable String value, String fallback) {
+        return value != null ? value : fallback;
+    }
+
+    /**
+     * Parses #RRGGBB, falling back to the default color if there is none
+     */
+    private static int parseColor(@Nullable String color) {
+        if (color == null || color.isEmpty()) {
+            return AnnotationSpec.DEFAULT_COLOR;
+        }
+        if (color.length() != 7 || color.charAt(0) != '#') {
+            throw new IllegalArgumentException("Invalid color " + color);
+        }
+        return Integer.parseInt(color.substring(1), 16);
+    }
+
+    private static void throwIfInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Import cancelled");
+        }
+    }
+
+    /**
+     * Collects consecutive records of one page and hands them on together
+     */
+    private static class PageGrouper {
+        private final PageHandler handler;
+        private List<AnnotationRecord> page = new ArrayList<>();
+        long count;
+
+        PageGrouper(PageHandler handler) {
+            this.handler = handler;
+        }
+
+        void add(AnnotationRecord record) throws IOException {
+            if (!page.isEmpty() && (!page.get(0).isOnSamePage(record) || page.size() >= MAX_RECORDS_PER_PAGE_CALL)) {
+                flush();
+            }
+            page.add(record);
+            count++;
+        }
+
+        void flush() throws IOException {
+            if (!page.isEmpty()) {
+                List<AnnotationRecord> records = page;
+                page = new ArrayList<>();
+                handler.onPage(records);
+            }
+        }
+    }
+
+    /**
+     * Adds the records to an open editor, appending an update every few thousand annotations
+     */
+    private static class Applier implements PageHandler {
+        private final AnnotationEditor editor;
+        @Nullable
+        private final String document;
+        long applied;
+
+        Applier(AnnotationEditor editor, @Nullable String document) {
+            this.editor = editor;
+            this.document = document;
+        }
+
+        @Override
+        public void onPage(List<AnnotationRecord> records) throws IOException {
+            throwIfInterrupted();
+            AnnotationRecord first = records.get(0);
+            if (document != null && first.getDocument() != null && !document.equals(first.getDocument())) {
+                return;
+            }
+            if (first.getPageNumber() > editor.getPageCount()) {
+                DomainLog.w(TAG, "Skipping " + records.size() + " annotations on missing page " + first.getPageNumber());
+                return;
+            }
+            for (AnnotationRecord record : records) {
+                editor.addAnnotation(record.getSpec(), record.getModifiedDate());
+                if (++applied % APPEND_EVERY_ANNOTATIONS == 0) {
+                    editor.appendChanges();
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns the text and freetext elements of an XFDF file into records, e.g.
+     * {@code <text page="0" rect="10,20,30,40" color="#FFFFCC" icon="Comment"><contents>Crack</contents></text>}.
+     * Other annotation types are ignored.
+     */
+    private static class XfdfHandler extends DefaultHandler {
+        private final PageGrouper grouper;
+        @Nullable
+        private Locator locator;
+        @Nullable
+        private String document;
+        private boolean inAnnots;
+        @Nullable
+        private String element;
+        @Nullable
+        private Attributes attributes;
+        @Nullable
+        private String text;
+        @Nullable
+        private StringBuilder contents;
+
+        XfdfHandler(PageGrouper grouper) {
+            this.grouper = grouper;
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            this.locator = locator;
+        }
+
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId) {
+            // Never fetch external entities or DTDs
+            return new InputSource(new StringReader(""));
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            String name = localName.isEmpty() ? qName : localName;
+            if (element != null) {
+                if (name.equals("contents")) {
+                    contents = new StringBuilder();
+                }
+            } else if (inAnnots && (name.equals("text") || name.equals("freetext"))) {
+                element = name;
+                // The parser reuses its attributes object
+                this.attributes = new AttributesImpl(attributes);
+                text = null;
+            } else if (name.equals("annots")) {
+                inAnnots = true;
+            } else if (name.equals("f")) {
+                document = attributes.getValue("href");
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (contents != null) {
+                contents.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            String name = localName.isEmpty() ? qName : localName;
+            if (contents != null && name.equals("contents")) {
+                text = contents.toString();
+                contents = null;
+            } else if (name.equals(element)) {
+                AnnotationRecord record;
+                try {
+                    record = toRecord();
+                } catch (IllegalArgumentException e) {
+                    throw new SAXParseException("Invalid " + element + " annotation: " + e.getMessage(), locator, e);
+                }
+                element = null;
+                attributes = null;
+                try {
+                    grouper.add(record);
+                } catch (IOException e) {
+                    throw new SAXException(e);
+                }
+            } else if (name.equals("annots")) {
+                inAnnots = false;
+            }
+        }
+
+        private AnnotationRecord toRecord() {
+            String page = attributes.getValue("page");
+            String rect = attributes.getValue("rect");
+            if (page == null || rect == null) {
+                throw new IllegalArgumentException("missing page or rect");
+            }
+            String[] corners = rect.split(",");
+            if (corners.length != 4) {
+                throw new IllegalArgumentException("rect needs four numbers: " + rect);
+            }
+            float x1 = Float.parseFloat(corners[0].trim());
+            float y1 = Float.parseFloat(corners[1].trim());
+            float x2 = Float.parseFloat(corners[2].trim());
+            float y2 = Float.parseFloat(corners[3].trim());
+            String icon = attributes.getValue("icon");
+            AnnotationSpec spec = new AnnotationSpec(Integer.parseInt(page.trim()) + 1,
+                    Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1), Math.abs(y2 - y1),
+                    text != null ? text : "", attributes.getValue("title"), parseColor(attributes.getValue("color")),
+                    icon != null ? icon : AnnotationSpec.DEFAULT_ICON);
+            String subtype = element.equals("text") ? "Text" : "FreeText";
+            return new AnnotationRecord(document, subtype, spec, attributes.getValue("date"));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Text or FreeText annotation read from a PDF page
+ */
+public final class AnnotationInfo {
+    private final int pageNumber;
+    private final String subtype;
+    @Nullable
+    private final String title;
+    private final String contents;
+    @Nullable
+    private final String modifiedDate;
+
+    public AnnotationInfo(int pageNumber, String subtype, @Nullable String title, String contents,
+                          @Nullable String modifiedDate) {
+        this.pageNumber = pageNumber;
+        this.subtype = subtype;
+        this.title = title;
+        this.contents = contents;
+        this.modifiedDate = modifiedDate;
+    }
+
+    /**
+     * Returns the 1-based number of the page the annotation sits on
+     */
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public String getSubtype() {
+        return subtype;
+    }
+
+    /**
+     * Returns the author (the T entry), if any
+     */
+    @Nullable
+    public String getTitle() {
+        return title;
+    }
+
+    public String getContents() {
+        return contents;
+    }
+
+    /**
+     * Returns the raw PDF date string, e.g. D:20240101120000
+     */
+    @Nullable
+    public String getModifiedDate() {
+        return modifiedDate;
+    }
+}
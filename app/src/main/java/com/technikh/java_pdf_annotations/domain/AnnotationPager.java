@@ -0,0 +1,85 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads visible Text/FreeText annotations a few pages at a time.
+ * Pages are only parsed when a batch reaches them, so the first annotations are
+ * available without walking the whole document. Not thread-safe.
+ */
+public class AnnotationPager implements Closeable {
+    public static final int DEFAULT_BATCH_SIZE = 30;
+
+    private final PDDocument document;
+    private final Metrics metrics;
+    private int nextPageIndex;
+
+    /**
+     * Takes ownership of the document, which is closed with the pager
+     */
+    public AnnotationPager(PDDocument document) {
+        this(document, Metrics.DISABLED);
+    }
+
+    /**
+     * Takes ownership of the document and records the time spent reading each page
+     */
+    public AnnotationPager(PDDocument document, Metrics metrics) {
+        this.document = document;
+        this.metrics = metrics;
+    }
+
+    public int getPageCount() {
+        return document.getNumberOfPages();
+    }
+
+    /**
+     * Returns whether some pages have not been scanned yet
+     */
+    public boolean hasMore() {
+        return nextPageIndex < document.getNumberOfPages();
+    }
+
+    /**
+     * Scans pages until at least minAnnotations annotations are found or the document ends
+     */
+    public List<AnnotationInfo> loadNext(int minAnnotations) throws IOException {
+        List<AnnotationInfo> batch = new ArrayList<>();
+        while (batch.size() < minAnnotations && hasMore()) {
+            long start = metrics.start();
+            PDPage page = document.getPage(nextPageIndex);
+            nextPageIndex++;
+            readAnnotations(page, nextPageIndex, batch);
+            metrics.record(Metrics.EXTRACT, nextPageIndex - 1, start, 0, 0);
+        }
+        return batch;
+    }
+
+    /**
+     * Adds the visible Text/FreeText annotations of a page to the list
+     */
+    public static void readAnnotations(PDPage page, int pageNumber, List<AnnotationInfo> into) throws IOException {
+        for (PDAnnotation annotation : page.getAnnotations()) {
+            String subType = annotation.getSubtype();
+            if ("Text".equalsIgnoreCase(subType) || "FreeText".equalsIgnoreCase(subType)) {
+                String content = annotation.getContents();
+                if (content != null && !content.trim().isEmpty()) {
+                    String title = annotation.getCOSObject().getString("T");
+                    into.add(new AnnotationInfo(pageNumber, subType, title, content, annotation.getModifiedDate()));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        document.close();
+    }
+}
@@ -0,0 +1,57 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+/**
+ * One annotation as exported to or imported from an annotation file
+ */
+public final class AnnotationRecord {
+    @Nullable
+    private final String document;
+    private final String subtype;
+    private final AnnotationSpec spec;
+    @Nullable
+    private final String modifiedDate;
+
+    /**
+     * @param document     file name of the PDF the annotation belongs to, if known
+     * @param subtype      annotation subtype, Text or FreeText
+     * @param modifiedDate the M entry as a PDF date string, e.g. D:20240101120000Z
+     */
+    public AnnotationRecord(@Nullable String document, String subtype, AnnotationSpec spec, @Nullable String modifiedDate) {
+        this.document = document;
+        this.subtype = subtype;
+        this.spec = spec;
+        this.modifiedDate = modifiedDate;
+    }
+
+    @Nullable
+    public String getDocument() {
+        return document;
+    }
+
+    public String getSubtype() {
+        return subtype;
+    }
+
+    public AnnotationSpec getSpec() {
+        return spec;
+    }
+
+    public int getPageNumber() {
+        return spec.getPageNumber();
+    }
+
+    @Nullable
+    public String getModifiedDate() {
+        return modifiedDate;
+    }
+
+    /**
+     * Returns whether both records belong to the same page of the same document
+     */
+    boolean isOnSamePage(AnnotationRecord other) {
+        return getPageNumber() == other.getPageNumber()
+                && (document == null ? other.document == null : document.equals(other.document));
+    }
+}
@@ -0,0 +1,96 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Describes one comment annotation to place on a generated page.
+ * Coordinates are PDF points measured from the bottom-left corner of the page.
+ */
+public final class AnnotationSpec {
+    /**
+     * Light yellow, the color of the toggleable annotations
+     */
+    public static final int DEFAULT_COLOR = 0xFFFFCC;
+    public static final String DEFAULT_ICON = "Comment";
+
+    private final int pageNumber;
+    private final float x;
+    private final float y;
+    private final float width;
+    private final float height;
+    private final String text;
+    @Nullable
+    private final String author;
+    private final int color;
+    private final String icon;
+
+    public AnnotationSpec(int pageNumber, float x, float y, float width, float height, String text) {
+        this(pageNumber, x, y, width, height, text, null, DEFAULT_COLOR, DEFAULT_ICON);
+    }
+
+    /**
+     * @param color RGB color as 0xRRGGBB
+     * @param icon  text annotation icon name, e.g. Comment, Note, Key, Help, Insert, Paragraph or NewParagraph
+     */
+    public AnnotationSpec(int pageNumber, float x, float y, float width, float height, String text,
+                          @Nullable String author, int color, String icon) {
+        if (pageNumber < 1) {
+            throw new IllegalArgumentException("Page numbers start at 1: " + pageNumber);
+        }
+        this.pageNumber = pageNumber;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.text = text;
+        this.author = author;
+        this.color = color & 0xFFFFFF;
+        this.icon = icon;
+    }
+
+    /**
+     * Returns the 1-based number of the page the annotation is placed on
+     */
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public float getHeight() {
+        return height;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the author written to the T entry, if any
+     */
+    @Nullable
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * Returns the RGB color as 0xRRGGBB
+     */
+    public int getColor() {
+        return color;
+    }
+
+    public String getIcon() {
+        return icon;
+    }
+}
@@ -0,0 +1,71 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSArray;
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSFloat;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.cos.COSString;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotationText;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds text annotations for one document, sharing the styling objects between them.
+ * Every annotation with the same color, author or icon references one color array, title string
+ * or appearance dictionary, so thousands of annotations hold a handful of style objects in memory rather
+ * than a copy each. In the file, only the icon appearance streams are written once; the color array, title
+ * and appearance dictionary are direct objects, which the writer copies inline into every annotation.
+ * Not thread-safe; used on the writer thread only.
+ */
+final class AnnotationStyles {
+    private final AppearancePool appearances;
+    private final Map<Integer, COSArray> colors = new HashMap<>();
+    private final Map<String, COSString> authors = new HashMap<>();
+
+    AnnotationStyles(AppearancePool appearances) {
+        this.appearances = appearances;
+    }
+
+    PDAnnotationText createTextAnnotation(AnnotationSpec spec) throws IOException {
+        PDAnnotationText textAnnotation = new PDAnnotationText();
+        textAnnotation.setContents(spec.getText());
+        textAnnotation.setRectangle(new PDRectangle(spec.getX(), spec.getY(), spec.getWidth(), spec.getHeight()));
+        textAnnotation.setOpen(false); // Initially closed, shows only icon
+        textAnnotation.setName(spec.getIcon());
+
+        COSDictionary dictionary = textAnnotation.getCOSObject();
+        dictionary.setItem(COSName.C, getColor(spec.getColor()));
+        dictionary.setItem(COSName.AP, appearances.getIconAppearance(spec.getIcon(), spec.getColor()));
+        if (spec.getAuthor() != null) {
+            dictionary.setItem(COSName.T, getAuthor(spec.getAuthor()));
+        }
+        return textAnnotation;
+    }
+
+    /**
+     * Returns the shared DeviceRGB color array for a 0xRRGGBB color
+     */
+    COSArray getColor(int rgb) {
+        COSArray color = colors.get(rgb);
+        if (color == null) {
+            color = new COSArray();
+            color.add(new COSFloat(((rgb >> 16) & 0xFF) / 255f));
+            color.add(new COSFloat(((rgb >> 8) & 0xFF) / 255f));
+            color.add(new COSFloat((rgb & 0xFF) / 255f));
+            colors.put(rgb, color);
+        }
+        return color;
+    }
+
+    private COSString getAuthor(String author) {
+        COSString title = authors.get(author);
+        if (title == null) {
+            title = new COSString(author);
+            authors.put(author, title);
+        }
+        return title;
+    }
+}
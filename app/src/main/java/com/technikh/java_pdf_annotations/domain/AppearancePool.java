@@ -0,0 +1,121 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
+import com.tom_roush.pdfbox.pdmodel.PDResources;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.font.PDFontDescriptor;
+import com.tom_roush.pdfbox.pdmodel.font.PDType1Font;
+import com.tom_roush.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAppearanceDictionary;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the reusable appearance streams of one document.
+ * Each distinct label is laid out once as a Form XObject that carries its own font resources,
+ * and its width doubles as the text metrics, so pages draw the form instead of repeating text operators.
+ * Each icon style gets one appearance dictionary shared by every text annotation using it,
+ * so viewers render the icon as-is instead of synthesizing one per annotation.
+ * Not thread-safe; used on the writer thread only.
+ */
+final class AppearancePool {
+    static final float LABEL_FONT_SIZE = 12;
+    private static final PDType1Font LABEL_FONT = PDType1Font.HELVETICA_BOLD;
+    private static final float ICON_SIZE = 20;
+
+    private final PDDocument document;
+    private final Map<String, PDFormXObject> labels = new HashMap<>();
+    private final Map<String, COSDictionary> iconAppearances = new HashMap<>();
+
+    AppearancePool(PDDocument document) {
+        this.document = document;
+    }
+
+    /**
+     * Returns the form drawing the label with its baseline at the origin.
+     * The form's BBox starts at x = 0, so its width is the width of the text.
+     */
+    PDFormXObject getLabel(String text) throws IOException {
+        PDFormXObject label = labels.get(text);
+        if (label == null) {
+            label = createLabel(text);
+            labels.put(text, label);
+        }
+        return label;
+    }
+
+    /**
+     * Returns the shared appearance dictionary for a text annotation icon in a 0xRRGGBB color
+     */
+    COSDictionary getIconAppearance(String icon, int rgb) throws IOException {
+        String key = icon + '#' + rgb;
+        COSDictionary appearance = iconAppearances.get(key);
+        if (appearance == null) {
+            PDAppearanceDictionary appearanceDictionary = new PDAppearanceDictionary();
+            appearanceDictionary.setNormalAppearance(createIcon(icon, rgb));
+            appearance = appearanceDictionary.getCOSObject();
+            iconAppearances.put(key, appearance);
+        }
+        return appearance;
+    }
+
+    private PDFormXObject createLabel(String text) throws IOException {
+        float width = LABEL_FONT.getStringWidth(text) / 1000 * LABEL_FONT_SIZE;
+        PDFontDescriptor descriptor = LABEL_FONT.getFontDescriptor();
+        float descent = descriptor != null ? descriptor.getDescent() / 1000 * LABEL_FONT_SIZE : -LABEL_FONT_SIZE / 4;
+        float ascent = descriptor != null ? descriptor.getAscent() / 1000 * LABEL_FONT_SIZE : LABEL_FONT_SIZE;
+
+        PDFormXObject label = new PDFormXObject(document);
+        label.setResources(new PDResources());
+        label.setBBox(new PDRectangle(0, descent, width, ascent - descent));
+        try (PDPageContentStream contentStream = new PDPageContentStream(document, label,
+                label.getStream().createOutputStream(COSName.FLATE_DECODE))) {
+            contentStream.beginText();
+            contentStream.setFont(LABEL_FONT, LABEL_FONT_SIZE);
+            contentStream.showText(text);
+            contentStream.endText();
+        }
+        return label;
+    }
+
+    /**
+     * Draws a sticky note, with a speech bubble tail for the Comment icon
+     */
+    private PDAppearanceStream createIcon(String icon, int rgb) throws IOException {
+        PDAppearanceStream appearance = new PDAppearanceStream(document);
+        appearance.setResources(new PDResources());
+        appearance.setBBox(new PDRectangle(ICON_SIZE, ICON_SIZE));
+        try (PDPageContentStream contentStream = new PDPageContentStream(document, appearance)) {
+            contentStream.setLineWidth(1);
+            contentStream.setStrokingColor(0f, 0f, 0f);
+            contentStream.setNonStrokingColor(((rgb >> 16) & 0xFF) / 255f, ((rgb >> 8) & 0xFF) / 255f, (rgb & 0xFF) / 255f);
+
+            boolean comment = AnnotationSpec.DEFAULT_ICON.equals(icon);
+            float bottom = comment ? 4.5f : 0.5f;
+            contentStream.addRect(0.5f, bottom, ICON_SIZE - 1, ICON_SIZE - 0.5f - bottom);
+            contentStream.fillAndStroke();
+            if (comment) {
+                contentStream.moveTo(4, bottom);
+                contentStream.lineTo(4, 0.5f);
+                contentStream.lineTo(9, bottom);
+                contentStream.closePath();
+                contentStream.fillAndStroke();
+            }
+
+            float lineSpacing = (ICON_SIZE - bottom) / 4;
+            for (int i = 1; i <= 3; i++) {
+                float y = bottom + lineSpacing * i;
+                contentStream.moveTo(4, y);
+                contentStream.lineTo(ICON_SIZE - 4, y);
+            }
+            contentStream.stroke();
+        }
+        return appearance;
+    }
+}
@@ -0,0 +1,247 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tags encoded images with a SHA-256 content key over the source bytes and encoder parameters,
+ * so the generator embeds identical images once per document.
+ * With a cache directory, encoded streams are also kept on disk and reused across jobs. That costs a write
+ * per new image, so it only pays off when the same images come back in later jobs.
+ */
+public class CachingImageEncoder implements ImageEncoder {
+    private static final String TAG = "CachingImageEncoder";
+    private static final String CACHE_SUFFIX = ".img";
+    public static final long DEFAULT_MAX_CACHE_BYTES = 64L * 1024 * 1024;
+
+    private final ImageEncoder delegate;
+    @Nullable
+    private final File cacheDir;
+    private final long maxCacheBytes;
+    /**
+     * Entry file names to sizes, least recently used first; read from the directory once, then kept up to date
+     */
+    @Nullable
+    private LinkedHashMap<String, Long> entries;
+    private long cacheBytes;
+
+    /**
+     * One call to the delegate, with or without a draw width
+     */
+    private interface Encoding {
+        EncodedImage encode(ImageSource source) throws IOException;
+    }
+
+    /**
+     * Deduplicates within a document only
+     */
+    public CachingImageEncoder(ImageEncoder delegate) {
+        this(delegate, null, 0);
+    }
+
+    /**
+     * Deduplicates within a document and reuses encoded streams stored in cacheDir,
+     * evicting the least recently used entries beyond maxCacheBytes
+     */
+    public CachingImageEncoder(ImageEncoder delegate, @Nullable File cacheDir, long maxCacheBytes) {
+        this.delegate = delegate;
+        this.cacheDir = cacheDir;
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    @Override
+    public EncodedImage encode(ImageSource source) throws IOException {
+        return encode(source, delegate.getParametersKey(), delegate::encode);
+    }
+
+    /**
+     * Images drawn at different widths may be resampled differently, so the width is part of the key
+     */
+    @Override
+    public EncodedImage encode(ImageSource source, float drawWidthPoints) throws IOException {
+        return encode(source, delegate.getParametersKey() + ";drawWidth=" + drawWidthPoints,
+                bytesSource -> delegate.encode(bytesSource, drawWidthPoints));
+    }
+
+    private EncodedImage encode(ImageSource source, String parametersKey, Encoding encoding) throws IOException {
+        byte[] bytes = source.readAllBytes();
+        String contentKey = contentKey(parametersKey, bytes);
+
+        EncodedImage cached = readCached(contentKey);
+        if (cached != null) {
+            return cached.withContentKey(contentKey);
+        }
+
+        EncodedImage encoded = encoding.encode(new BytesImageSource(source.getName(), bytes));
+        writeCached(contentKey, encoded);
+        return encoded.withContentKey(contentKey);
+    }
+
+    @Override
+    @Nullable
+    public ImageSize readSize(ImageSource source) {
+        return delegate.readSize(source);
+    }
+
+    @Override
+    public String getParametersKey() {
+        return delegate.getParametersKey();
+    }
+
+    private static String contentKey(String parametersKey, byte[] bytes) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        digest.update(parametersKey.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(bytes);
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    @Nullable
+    private EncodedImage readCached(String contentKey) {
+        if (cacheDir == null) {
+            return null;
+        }
+        File entry = new File(cacheDir, contentKey + CACHE_SUFFIX);
+        if (!entry.isFile()) {
+            return null;
+        }
+
+        try {
+            EncodedImage cached = EncodedImageFile.read(entry);
+            touch(entry);
+            return cached;
+        } catch (IOException e) {
+            DomainLog.w(TAG, "Ignoring unreadable cache entry " + entry, e);
+            return null;
+        }
+    }
+
+    private void writeCached(String contentKey, EncodedImage encoded) {
+        if (cacheDir == null || !EncodedImageFile.isSupported(encoded)) {
+            return;
+        }
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            DomainLog.w(TAG, "Failed to create image cache directory");
+            return;
+        }
+
+        // Entries are published atomically, so concurrent readers never see a partial entry
+        File entry = new File(cacheDir, contentKey + CACHE_SUFFIX);
+        try {
+            EncodedImageFile.write(encoded, entry);
+        } catch (IOException e) {
+            DomainLog.w(TAG, "Failed to cache encoded image", e);
+            return;
+        }
+        added(entry);
+    }
+
+    /**
+     * Marks the entry as most recently used, here and on disk for the next process
+     */
+    private void touch(File entry) {
+        synchronized (this) {
+            // Looking an entry up moves it to the end of the access-ordered map
+            if (entries().get(entry.getName()) == null) {
+                long length = entry.length();
+                entries.put(entry.getName(), length);
+                cacheBytes += length;
+            }
+        }
+        entry.setLastModified(System.currentTimeMillis());
+    }
+
+    private synchronized void added(File entry) {
+        Long previous = entries().put(entry.getName(), entry.length());
+        cacheBytes += entry.length() - (previous != null ? previous : 0);
+        trimCache();
+    }
+
+    private LinkedHashMap<String, Long> entries() {
+        if (entries == null) {
+            entries = new LinkedHashMap<>(16, 0.75f, true);
+            File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(CACHE_SUFFIX));
+            if (files != null) {
+                Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+                for (File file : files) {
+                    long length = file.length();
+                    entries.put(file.getName(), length);
+                    cacheBytes += length;
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits its byte budget
+     */
+    private void trimCache() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (cacheBytes > maxCacheBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            File file = new File(cacheDir, entry.getKey());
+            if (!file.delete() && file.exists()) {
+                DomainLog.w(TAG, "Failed to evict cache entry " + file);
+                continue;
+            }
+            cacheBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Source already read into memory, handed to the delegate so the file is read only once
+     */
+    private static final class BytesImageSource implements ImageSource {
+        private final String name;
+        private final byte[] bytes;
+
+        BytesImageSource(String name, byte[] bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public InputStream openStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public long getLength() {
+            return bytes.length;
+        }
+
+        @Override
+        public byte[] readAllBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.RandomAccess;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.technikh.java_pdf_annotations.domain.ChannelScratchFile.PAGE_SIZE;
+
+/**
+ * One stream's data as a list of pages in a {@link ChannelScratchFile}.
+ * Heap pages are accessed in place; a file page is copied into a private page buffer and written back
+ * when the buffer moves to another page, so byte-wise access does not turn into one I/O call per byte.
+ * Not thread-safe.
+ */
+final class ChannelScratchBuffer implements RandomAccess {
+    private final ChannelScratchFile scratchFile;
+    private int[] pages = new int[4];
+    private int pageCount;
+    private long size;
+    private long position;
+
+    private byte[] current;
+    private int currentIndex = -1;
+    private boolean currentIsCopy;
+    private boolean dirty;
+    private byte[] copyBuffer;
+    private boolean closed;
+
+    ChannelScratchBuffer(ChannelScratchFile scratchFile) {
+        this.scratchFile = scratchFile;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        moveToPosition(true);
+        current[(int) (position % PAGE_SIZE)] = (byte) b;
+        markWritten(1);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+        while (length > 0) {
+            moveToPosition(true);
+            int pageOffset = (int) (position % PAGE_SIZE);
+            int count = Math.min(length, PAGE_SIZE - pageOffset);
+            System.arraycopy(b, offset, current, pageOffset, count);
+            markWritten(count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        if (position >= size) {
+            return -1;
+        }
+        moveToPosition(false);
+        int value = current[(int) (position % PAGE_SIZE)] & 0xFF;
+        position++;
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int length) throws IOException {
+        checkClosed();
+        if (position >= size) {
+            return -1;
+        }
+        int remaining = (int) Math.min(length, size - position);
+        int total = 0;
+        while (total < remaining) {
+            moveToPosition(false);
+            int pageOffset = (int) (position % PAGE_SIZE);
+            int count = Math.min(remaining - total, PAGE_SIZE - pageOffset);
+            System.arraycopy(current, pageOffset, b, offset + total, count);
+            position += count;
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public long getPosition() throws IOException {
+        checkClosed();
+        return position;
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        checkClosed();
+        if (position < 0) {
+            throw new IOException("Invalid position " + position);
+        }
+        if (position > size) {
+            throw new EOFException("Position " + position + " is beyond the end of the buffer");
+        }
+        this.position = position;
+    }
+
+    @Override
+    public long length() throws IOException {
+        checkClosed();
+        return size;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int peek() throws IOException {
+        int value = read();
+        if (value != -1) {
+            position--;
+        }
+        return value;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException {
+        seek(position - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int done = 0;
+        while (done < length) {
+            int count = read(bytes, done, length - done);
+            if (count < 0) {
+                throw new EOFException("Premature end of buffer");
+            }
+            done += count;
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException {
+        checkClosed();
+        return position >= size;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkClosed();
+        return (int) Math.min(size - position, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void clear() throws IOException {
+        checkClosed();
+        releasePages();
+        size = 0;
+        position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            releasePages();
+            closed = true;
+        }
+    }
+
+    /**
+     * Makes the page holding the current position current, allocating it first when writing past the last page
+     */
+    private void moveToPosition(boolean forWrite) throws IOException {
+        checkClosed();
+        int index = (int) (position / PAGE_SIZE);
+        if (index == currentIndex) {
+            return;
+        }
+        flush();
+        boolean fresh = false;
+        while (index >= pageCount) {
+            if (pageCount == pages.length) {
+                pages = Arrays.copyOf(pages, pages.length * 2);
+            }
+            pages[pageCount++] = scratchFile.allocatePage();
+            fresh = true;
+        }
+
+        byte[] heapPage = scratchFile.getHeapPage(pages[index]);
+        if (heapPage != null) {
+            current = heapPage;
+            currentIsCopy = false;
+        } else {
+            if (copyBuffer == null) {
+                copyBuffer = new byte[PAGE_SIZE];
+            }
+            // Nothing of a freshly allocated page is read before it is written
+            if (!(fresh && forWrite)) {
+                scratchFile.readPage(pages[index], copyBuffer);
+            }
+            current = copyBuffer;
+            currentIsCopy = true;
+        }
+        currentIndex = index;
+    }
+
+    private void markWritten(int count) {
+        position += count;
+        size = Math.max(size, position);
+        if (currentIsCopy) {
+            dirty = true;
+        }
+    }
+
+    private void flush() throws IOException {
+        if (dirty) {
+            scratchFile.writePage(pages[currentIndex], current);
+            dirty = false;
+        }
+    }
+
+    private void releasePages() {
+        scratchFile.freePages(pages, pageCount);
+        pageCount = 0;
+        current = null;
+        currentIndex = -1;
+        dirty = false;
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("Scratch buffer already closed");
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.io.RandomAccess;
+import com.tom_roush.pdfbox.io.ScratchFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Page store behind the stream buffers of one document.
+ * The first pages live on the heap; the rest go to a temp file, either through positional
+ * FileChannel I/O or through memory-mapped segments of the file.
+ * The temp file is unlinked as soon as it is opened, so it disappears even if the process dies,
+ * and allocations beyond the byte budget fail with an IOException instead of filling the disk.
+ * Pages of closed buffers are reused, heap pages first.
+ */
+final class ChannelScratchFile extends ScratchFile {
+    static final int PAGE_SIZE = 4096;
+    private static final int PAGES_PER_SEGMENT = 256;
+    private static final long SEGMENT_SIZE = (long) PAGES_PER_SEGMENT * PAGE_SIZE;
+
+    private final File tempDir;
+    private final boolean mapped;
+    private final int maxHeapPages;
+    private final long maxPages;
+    private final BitSet freePages = new BitSet();
+    private byte[][] heapPages = new byte[16][];
+    private int pageCount;
+
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private boolean closed;
+
+    /**
+     * @param mapped       whether file pages are accessed through memory mappings instead of channel reads and writes
+     * @param maxHeapBytes bytes kept on the heap before pages go to the file
+     * @param maxBytes     total bytes the document may buffer, or 0 for no limit
+     */
+    ChannelScratchFile(File tempDir, boolean mapped, long maxHeapBytes, long maxBytes) throws IOException {
+        // The base class only backs its own buffers, which are never created
+        super(MemoryUsageSetting.setupMainMemoryOnly(PAGE_SIZE));
+        this.tempDir = tempDir;
+        this.mapped = mapped;
+        this.maxHeapPages = (int) Math.min(Integer.MAX_VALUE, maxHeapBytes / PAGE_SIZE);
+        this.maxPages = maxBytes > 0 ? Math.max(1, maxBytes / PAGE_SIZE) : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public RandomAccess createBuffer() throws IOException {
+        return new ChannelScratchBuffer(this);
+    }
+
+    @Override
+    public RandomAccess createBuffer(InputStream input) throws IOException {
+        ChannelScratchBuffer buffer = new ChannelScratchBuffer(this);
+        byte[] chunk = new byte[PAGE_SIZE * 4];
+        int read;
+        while ((read = input.read(chunk)) != -1) {
+            buffer.write(chunk, 0, read);
+        }
+        buffer.seek(0);
+        return buffer;
+    }
+
+    /**
+     * Returns the number of pages currently allocated, including free ones
+     */
+    synchronized int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Returns whether any page lives in the temp file
+     */
+    synchronized boolean usesFile() {
+        return channel != null;
+    }
+
+    synchronized int allocatePage() throws IOException {
+        checkOpen();
+        int page = freePages.nextSetBit(0);
+        if (page >= 0) {
+            freePages.clear(page);
+            return page;
+        }
+        if (pageCount >= maxPages) {
+            throw new IOException("Scratch budget of " + maxPages * PAGE_SIZE + " bytes exhausted");
+        }
+        page = pageCount++;
+        if (page < maxHeapPages) {
+            if (page >= heapPages.length) {
+                heapPages = Arrays.copyOf(heapPages, Math.min(maxHeapPages, heapPages.length * 2));
+            }
+            heapPages[page] = new byte[PAGE_SIZE];
+        } else if (channel == null) {
+            openFile();
+        }
+        return page;
+    }
+
+    synchronized void freePages(int[] pages, int count) {
+        for (int i = 0; i < count; i++) {
+            freePages.set(pages[i]);
+        }
+    }
+
+    /**
+     * Returns the backing array of a heap page, which buffers may use directly, or null for file pages
+     */
+    synchronized byte[] getHeapPage(int page) throws IOException {
+        checkOpen();
+        return page < maxHeapPages ? heapPages[page] : null;
+    }
+
+    synchronized void readPage(int page, byte[] into) throws IOException {
+        checkOpen();
+        long offset = (long) (page - maxHeapPages) * PAGE_SIZE;
+        if (mapped) {
+            ByteBuffer segment = segment(offset).duplicate();
+            segment.position((int) (offset % SEGMENT_SIZE));
+            segment.get(into, 0, PAGE_SIZE);
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(into);
+        while (buffer.hasRemaining()) {
+            // Pages never written yet read past the end of the file
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    synchronized void writePage(int page, byte[] from) throws IOException {
+        checkOpen();
+        long offset = (long) (page - maxHeapPages) * PAGE_SIZE;
+        if (mapped) {
+            ByteBuffer segment = segment(offset).duplicate();
+            segment.position((int) (offset % SEGMENT_SIZE));
+            segment.put(from, 0, PAGE_SIZE);
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(from);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    /**
+     * Maps the segment holding the file offset on first use, growing the file as needed
+     */
+    private MappedByteBuffer segment(long offset) throws IOException {
+        int index = (int) (offset / SEGMENT_SIZE);
+        while (segments.size() <= index) {
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, segments.size() * SEGMENT_SIZE, SEGMENT_SIZE));
+        }
+        return segments.get(index);
+    }
+
+    private void openFile() throws IOException {
+        if (!tempDir.exists() && !tempDir.mkdirs()) {
+            throw new IOException("Failed to create scratch directory");
+        }
+        file = File.createTempFile("scratch_", ".tmp", tempDir);
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        // Open handles and mappings keep an unlinked file usable, and its space is freed once they are gone
+        if (file.delete()) {
+            file = null;
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Scratch file already closed");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            heapPages = null;
+            // Mappings are released by the garbage collector; dropping them here makes that possible
+            segments.clear();
+            try {
+                if (randomAccessFile != null) {
+                    randomAccessFile.close();
+                }
+            } finally {
+                if (file != null && !file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+        super.close();
+    }
+}
@@ -0,0 +1,13 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import java.io.File;
+
+/**
+ * Receives each chunk of a chunked generation as soon as its file is complete
+ */
+public interface ChunkListener {
+    /**
+     * @param chunkNumber 1-based number of the chunk
+     */
+    void onChunkWritten(int chunkNumber, File chunkFile, GenerationReport report);
+}
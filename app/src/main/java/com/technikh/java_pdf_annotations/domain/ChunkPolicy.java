@@ -0,0 +1,85 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Decides where a large batch is split into separate PDFs.
+ * A chunk is closed once it reaches the page limit, or before an image would push its embedded image bytes
+ * past the byte limit. Image streams dominate the file size, so the byte limit approximates the chunk file size.
+ * A chunk always takes at least one page, even if that image alone exceeds the byte limit.
+ */
+public final class ChunkPolicy {
+    /**
+     * Writes everything into a single chunk
+     */
+    public static final ChunkPolicy NONE = new ChunkPolicy(0, 0);
+
+    private final int maxPages;
+    private final long maxBytes;
+
+    /**
+     * @param maxPages maximum pages per chunk, or 0 for no page limit
+     * @param maxBytes maximum embedded image bytes per chunk, or 0 for no byte limit
+     */
+    public ChunkPolicy(int maxPages, long maxBytes) {
+        if (maxPages < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Chunk limits must not be negative");
+        }
+        this.maxPages = maxPages;
+        this.maxBytes = maxBytes;
+    }
+
+    public static ChunkPolicy everyPages(int maxPages) {
+        return new ChunkPolicy(maxPages, 0);
+    }
+
+    public static ChunkPolicy everyMegabytes(int maxMegabytes) {
+        return new ChunkPolicy(0, maxMegabytes * 1024L * 1024L);
+    }
+
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns whether the policy never splits a batch
+     */
+    public boolean isUnlimited() {
+        return maxPages == 0 && maxBytes == 0;
+    }
+
+    /**
+     * Returns whether a batch of pageCount pages is written as a single file
+     */
+    boolean fitsInOneChunk(int pageCount) {
+        return maxBytes == 0 && (maxPages == 0 || pageCount <= maxPages);
+    }
+
+    /**
+     * Returns whether the next image should go into a new chunk
+     */
+    boolean shouldStartNewChunk(int pagesInChunk, long bytesInChunk, long nextImageBytes) {
+        if (pagesInChunk == 0) {
+            return false;
+        }
+        return (maxPages > 0 && pagesInChunk >= maxPages)
+                || (maxBytes > 0 && bytesInChunk + nextImageBytes > maxBytes);
+    }
+
+    /**
+     * Returns the file of a chunk, e.g. scan.pdf becomes scan_part001.pdf for the first chunk
+     *
+     * @param chunkNumber 1-based number of the chunk
+     */
+    public File getChunkFile(File outputFile, int chunkNumber) {
+        String name = outputFile.getName();
+        int extension = name.toLowerCase(Locale.US).endsWith(".pdf") ? name.length() - 4 : name.length();
+        String chunkName = String.format(Locale.US, "%s_part%03d.pdf", name.substring(0, extension), chunkNumber);
+        return new File(outputFile.getParentFile(), chunkName);
+    }
+}
@@ -0,0 +1,522 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSArray;
+import com.tom_roush.pdfbox.cos.COSBase;
+import com.tom_roush.pdfbox.cos.COSBoolean;
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSDocument;
+import com.tom_roush.pdfbox.cos.COSFloat;
+import com.tom_roush.pdfbox.cos.COSInteger;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.cos.COSNull;
+import com.tom_roush.pdfbox.cos.COSObject;
+import com.tom_roush.pdfbox.cos.COSStream;
+import com.tom_roush.pdfbox.cos.COSString;
+import com.tom_roush.pdfbox.pdfwriter.COSWriter;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a whole document as PDF 1.5 with compressed object streams and a cross-reference stream,
+ * which PDFBox's own writer can't do. Dictionaries referenced once and without a /Type are written
+ * inline instead of as objects of their own; every other dictionary is packed into object streams,
+ * {@link #MAX_OBJECTS_PER_STREAM} at a time. Streams without a filter are re-compressed with Flate
+ * when that makes them smaller. The document itself isn't changed. Not for encrypted documents.
+ */
+final class CompactPdfWriter {
+    /**
+     * Objects per object stream: a viewer inflates the whole stream to read one of them
+     */
+    static final int MAX_OBJECTS_PER_STREAM = 100;
+    private static final float MIN_VERSION = 1.5f;
+    private static final COSName OBJ_STM = COSName.getPDFName("ObjStm");
+    private static final COSName XREF = COSName.getPDFName("XRef");
+    /**
+     * Length of " /Filter /FlateDecode", added to a stream that gets compressed
+     */
+    private static final int FILTER_ENTRY_BYTES = 21;
+
+    /**
+     * Trailer entries that describe the cross-reference section of a loaded file rather than the document
+     */
+    private static final List<COSName> SKIPPED_TRAILER_KEYS = Arrays.asList(COSName.PREV, COSName.XREF_STM,
+            COSName.INDEX, COSName.FILTER, COSName.DECODE_PARMS, COSName.LENGTH);
+
+    private final int flateLevel;
+    private final Deflater deflater;
+    private final Map<COSBase, Integer> numbers = new IdentityHashMap<>();
+    private final List<COSBase> objects = new ArrayList<>();
+
+    private COSDocument scratch;
+    private CountingOutputStream out;
+    // Cross-reference entries by object number: type 1 is an offset, type 2 an object stream and index
+    private long[] entryField2;
+    private int[] entryField3;
+    private byte[] entryType;
+
+    CompactPdfWriter(int flateLevel) {
+        this.flateLevel = flateLevel;
+        // Object streams and the cross-reference stream are compressed even when streams are left alone
+        this.deflater = new Deflater(flateLevel == Deflater.NO_COMPRESSION ? Deflater.BEST_SPEED : flateLevel);
+    }
+
+    void write(PDDocument document, OutputStream outputStream) throws IOException {
+        scratch = document.getDocument();
+        COSDictionary trailer = scratch.getTrailer();
+        numberObjects(trailer);
+        boolean missingId = !(trailer.getDictionaryObject(COSName.ID) instanceof COSArray);
+        out = new CountingOutputStream(outputStream, missingId ? md5() : null);
+        // The object streams and the cross-reference stream come after the numbered objects
+        int maxNumber = objects.size() + (objects.size() + MAX_OBJECTS_PER_STREAM - 1) / MAX_OBJECTS_PER_STREAM + 1;
+        entryType = new byte[maxNumber + 1];
+        entryField2 = new long[maxNumber + 1];
+        entryField3 = new int[maxNumber + 1];
+        try {
+            writeHeader(Math.max(document.getVersion(), MIN_VERSION));
+            int nextNumber = objects.size() + 1;
+            ObjectStreamBuilder pending = new ObjectStreamBuilder();
+            for (int i = 0; i < objects.size(); i++) {
+                COSBase object = objects.get(i);
+                int number = i + 1;
+                if (object instanceof COSStream) {
+                    writeStreamObject(number, (COSStream) object);
+                } else {
+                    pending.add(number, object);
+                    if (pending.size() == MAX_OBJECTS_PER_STREAM) {
+                        pending.writeAs(nextNumber++);
+                        pending = new ObjectStreamBuilder();
+                    }
+                }
+            }
+            if (pending.size() > 0) {
+                pending.writeAs(nextNumber++);
+            }
+            writeXrefStream(nextNumber, trailer);
+            out.flush();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Walks the object graph from the trailer, counting references to every dictionary and array,
+     * then numbers the ones that stay indirect in the order they are reached
+     */
+    private void numberObjects(COSDictionary trailer) {
+        Map<COSBase, Integer> references = new IdentityHashMap<>();
+        Set<COSBase> forced = Collections.newSetFromMap(new IdentityHashMap<COSBase, Boolean>());
+        Deque<COSBase> pending = new ArrayDeque<>();
+        for (COSBase value : trailer.getValues()) {
+            // Root, Info and Encrypt; the ID array stays direct
+            COSBase resolved = resolve(value);
+            if (resolved instanceof COSDictionary) {
+                forced.add(resolved);
+            }
+            count(value, references, forced, pending);
+        }
+        while (!pending.isEmpty()) {
+            for (COSBase child : children(pending.pop())) {
+                count(child, references, forced, pending);
+            }
+        }
+
+        Deque<COSBase> queue = new ArrayDeque<>();
+        for (COSBase value : trailer.getValues()) {
+            number(resolve(value), references, forced, queue);
+        }
+        while (!queue.isEmpty()) {
+            // Children written inline are scanned along with their object
+            Deque<COSBase> inline = new ArrayDeque<>();
+            inline.push(queue.poll());
+            while (!inline.isEmpty()) {
+                for (COSBase child : children(inline.pop())) {
+                    COSBase resolved = resolve(child);
+                    if (!number(resolved, references, forced, queue)
+                            && (resolved instanceof COSDictionary || resolved instanceof COSArray)) {
+                        inline.push(resolved);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void count(COSBase value, Map<COSBase, Integer> references, Set<COSBase> forced,
+                              Deque<COSBase> pending) {
+        if (value instanceof COSObject) {
+            value = resolve(value);
+            if (value instanceof COSDictionary || value instanceof COSArray) {
+                forced.add(value);
+            }
+        }
+        if (value instanceof COSDictionary || value instanceof COSArray) {
+            Integer count = references.get(value);
+            references.put(value, count == null ? 1 : count + 1);
+            if (count == null) {
+                pending.push(value);
+            }
+        }
+    }
+
+    /**
+     * Gives the value a number and queues it if it is written as an object of its own
+     *
+     * @return whether the value is written as a reference
+     */
+    private boolean number(COSBase value, Map<COSBase, Integer> references, Set<COSBase> forced, Deque<COSBase> queue) {
+        if (numbers.containsKey(value)) {
+            return true;
+        }
+        if (!isIndirect(value, references, forced)) {
+            return false;
+        }
+        objects.add(value);
+        numbers.put(value, objects.size());
+        queue.add(value);
+        return true;
+    }
+
+    /**
+     * Streams, objects PDFBox keeps as references, shared dictionaries and dictionaries with a /Type,
+     * which the spec often requires to be indirect (pages, annotations, optional content groups)
+     */
+    private static boolean isIndirect(COSBase value, Map<COSBase, Integer> references, Set<COSBase> forced) {
+        if (value instanceof COSStream || forced.contains(value)) {
+            return true;
+        }
+        if (value instanceof COSDictionary) {
+            Integer count = references.get(value);
+            return ((COSDictionary) value).containsKey(COSName.TYPE) || (count != null && count > 1);
+        }
+        return false;
+    }
+
+    private static Iterable<COSBase> children(COSBase value) {
+        if (value instanceof COSDictionary) {
+            return ((COSDictionary) value).getValues();
+        }
+        if (value instanceof COSArray) {
+            return (COSArray) value;
+        }
+        return Collections.emptyList();
+    }
+
+    private static COSBase resolve(COSBase value) {
+        if (value instanceof COSObject) {
+            value = ((COSObject) value).getObject();
+        }
+        return value != null ? value : COSNull.NULL;
+    }
+
+    private void writeHeader(float version) throws IOException {
+        writeAscii("%PDF-" + version + "\n");
+        // Binary comment so transfer tools treat the file as binary
+        out.write(new byte[]{'%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n'});
+    }
+
+    private void writeStreamObject(int number, COSStream stream) throws IOException {
+        setOffset(number);
+        writeAscii(number + " 0 obj\n");
+        COSDictionary dictionary = new COSDictionary();
+        dictionary.addAll(stream);
+        if (stream.getFilters() == null && flateLevel != Deflater.NO_COMPRESSION) {
+            // Compressed into the document's scratch storage, so a large stream never sits in the heap whole
+            try (COSStream compressed = scratch.createCOSStream()) {
+                deflateInto(stream, compressed);
+                // Small streams such as form XObjects can grow once the filter entry is counted
+                if (compressed.getLength() + FILTER_ENTRY_BYTES < stream.getLength()) {
+                    dictionary.removeItem(COSName.DECODE_PARMS);
+                    dictionary.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+                    writeStreamData(dictionary, compressed);
+                    return;
+                }
+            }
+        }
+        writeStreamData(dictionary, stream);
+    }
+
+    private void deflateInto(COSStream stream, COSStream compressed) throws IOException {
+        deflater.reset();
+        try (InputStream in = stream.createRawInputStream();
+             OutputStream flate = new DeflaterOutputStream(compressed.createRawOutputStream(), deflater, 8192)) {
+            copy(in, flate);
+        }
+    }
+
+    /**
+     * Writes the stream's raw bytes under the dictionary, with /Length set to their count
+     */
+    private void writeStreamData(COSDictionary dictionary, COSStream stream) throws IOException {
+        dictionary.setLong(COSName.LENGTH, stream.getLength());
+        writeDictionary(dictionary, out);
+        writeAscii("\nstream\r\n");
+        try (InputStream in = stream.createRawInputStream()) {
+            copy(in, out);
+        }
+        writeAscii("\nendstream\nendobj\n");
+    }
+
+    private void writeStreamData(byte[] data) throws IOException {
+        writeAscii("\nstream\r\n");
+        out.write(data);
+        writeAscii("\nendstream\nendobj\n");
+    }
+
+    private void writeDictionary(COSDictionary dictionary, OutputStream to) throws IOException {
+        to.write('<');
+        to.write('<');
+        boolean first = true;
+        for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+            if (entry.getValue() != null) {
+                first = writeEntry(entry.getKey(), entry.getValue(), to, first);
+            }
+        }
+        to.write('>');
+        to.write('>');
+    }
+
+    private boolean writeEntry(COSName key, COSBase value, OutputStream to, boolean first) throws IOException {
+        if (!first) {
+            to.write(' ');
+        }
+        key.writePDF(to);
+        to.write(' ');
+        writeValue(value, to);
+        return false;
+    }
+
+    private void writeValue(COSBase value, OutputStream to) throws IOException {
+        value = resolve(value);
+        Integer number = numbers.get(value);
+        if (number != null) {
+            to.write((number + " 0 R").getBytes(StandardCharsets.US_ASCII));
+        } else {
+            writeDirect(value, to);
+        }
+    }
+
+    private void writeDirect(COSBase value, OutputStream to) throws IOException {
+        if (value instanceof COSDictionary) {
+            writeDictionary((COSDictionary) value, to);
+        } else if (value instanceof COSArray) {
+            to.write('[');
+            boolean first = true;
+            for (COSBase item : (COSArray) value) {
+                if (!first) {
+                    to.write(' ');
+                }
+                writeValue(item != null ? item : COSNull.NULL, to);
+                first = false;
+            }
+            to.write(']');
+        } else if (value instanceof COSString) {
+            COSWriter.writeString((COSString) value, to);
+        } else if (value instanceof COSName) {
+            ((COSName) value).writePDF(to);
+        } else if (value instanceof COSInteger) {
+            ((COSInteger) value).writePDF(to);
+        } else if (value instanceof COSFloat) {
+            ((COSFloat) value).writePDF(to);
+        } else if (value instanceof COSBoolean) {
+            ((COSBoolean) value).writePDF(to);
+        } else if (value instanceof COSNull) {
+            ((COSNull) value).writePDF(to);
+        } else {
+            throw new IOException("Can't write " + value.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Cross-reference stream with entries of 1 + offset width + 2 bytes, which also serves as the trailer
+     */
+    private void writeXrefStream(int number, COSDictionary trailer) throws IOException {
+        long xrefOffset = out.getCount();
+        setOffset(number);
+        int size = number + 1;
+        long largest = xrefOffset;
+        for (int i = 1; i < size; i++) {
+            largest = Math.max(largest, entryField2[i]);
+        }
+        int offsetWidth = 1;
+        while (offsetWidth < 8 && largest >= 1L << (8 * offsetWidth)) {
+            offsetWidth++;
+        }
+        int entryWidth = 1 + offsetWidth + 2;
+        byte[] entries = new byte[size * entryWidth];
+        for (int i = 0; i < size; i++) {
+            int position = i * entryWidth;
+            // Object 0 heads the free list with generation 65535
+            entries[position] = i == 0 ? 0 : entryType[i];
+            long field2 = entryField2[i];
+            for (int b = offsetWidth; b > 0; b--) {
+                entries[position + b] = (byte) field2;
+                field2 >>>= 8;
+            }
+            int field3 = i == 0 ? 0xFFFF : entryField3[i];
+            entries[position + offsetWidth + 1] = (byte) (field3 >> 8);
+            entries[position + offsetWidth + 2] = (byte) field3;
+        }
+        byte[] data = deflate(entries, entries.length);
+
+        COSDictionary xref = new COSDictionary();
+        xref.setItem(COSName.TYPE, XREF);
+        xref.setInt(COSName.SIZE, size);
+        COSArray widths = new COSArray();
+        widths.add(COSInteger.ONE);
+        widths.add(COSInteger.get(offsetWidth));
+        widths.add(COSInteger.TWO);
+        xref.setItem(COSName.W, widths);
+        for (Map.Entry<COSName, COSBase> entry : trailer.entrySet()) {
+            COSName key = entry.getKey();
+            if (!xref.containsKey(key) && !SKIPPED_TRAILER_KEYS.contains(key)) {
+                xref.setItem(key, entry.getValue());
+            }
+        }
+        if (out.digest != null) {
+            COSString id = new COSString(out.digest.digest());
+            COSArray idArray = new COSArray();
+            idArray.add(id);
+            idArray.add(id);
+            xref.setItem(COSName.ID, idArray);
+        }
+        xref.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+        xref.setInt(COSName.LENGTH, data.length);
+
+        writeAscii(number + " 0 obj\n");
+        writeDictionary(xref, out);
+        writeStreamData(data);
+        writeAscii("startxref\n" + xrefOffset + "\n%%EOF\n");
+    }
+
+    private void setOffset(int number) {
+        entryType[number] = 1;
+        entryField2[number] = out.getCount();
+    }
+
+    private byte[] deflate(byte[] data, int length) throws IOException {
+        deflater.reset();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, length / 4));
+        try (DeflaterOutputStream flate = new DeflaterOutputStream(compressed, deflater, 8192)) {
+            flate.write(data, 0, length);
+        }
+        return compressed.toByteArray();
+    }
+
+    private void writeAscii(String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void copy(InputStream in, OutputStream to) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            to.write(buffer, 0, read);
+        }
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Collects objects for one object stream: pairs of object number and offset, then the objects
+     */
+    private final class ObjectStreamBuilder {
+        private final StringBuilder header = new StringBuilder();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final List<Integer> members = new ArrayList<>(MAX_OBJECTS_PER_STREAM);
+
+        void add(int number, COSBase object) throws IOException {
+            header.append(number).append(' ').append(body.size()).append(' ');
+            writeDirect(object, body);
+            body.write('\n');
+            members.add(number);
+        }
+
+        int size() {
+            return members.size();
+        }
+
+        void writeAs(int number) throws IOException {
+            byte[] first = header.toString().getBytes(StandardCharsets.US_ASCII);
+            byte[] content = new byte[first.length + body.size()];
+            System.arraycopy(first, 0, content, 0, first.length);
+            System.arraycopy(body.toByteArray(), 0, content, first.length, body.size());
+            byte[] data = deflate(content, content.length);
+            for (int i = 0; i < members.size(); i++) {
+                int member = members.get(i);
+                entryType[member] = 2;
+                entryField2[member] = number;
+                entryField3[member] = i;
+            }
+
+            setOffset(number);
+            COSDictionary dictionary = new COSDictionary();
+            dictionary.setItem(COSName.TYPE, OBJ_STM);
+            dictionary.setInt(COSName.N, members.size());
+            dictionary.setInt(COSName.FIRST, first.length);
+            dictionary.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+            dictionary.setInt(COSName.LENGTH, data.length);
+            writeAscii(number + " 0 obj\n");
+            writeDictionary(dictionary, out);
+            writeStreamData(data);
+        }
+    }
+
+    /**
+     * Tracks the file offset and, when the document has no ID yet, digests the bytes to make one
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        final MessageDigest digest;
+        private long count;
+
+        CountingOutputStream(OutputStream out, MessageDigest digest) {
+            super(out);
+            this.digest = digest;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+            if (digest != null) {
+                digest.update((byte) b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+            if (digest != null) {
+                digest.update(b, off, len);
+            }
+        }
+    }
+}
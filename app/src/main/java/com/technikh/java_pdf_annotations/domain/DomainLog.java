@@ -0,0 +1,58 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Reports problems the domain classes recover from on their own, e.g. an unreadable cache entry.
+ * Writes to stderr until the app installs its own {@link Logger}, so the domain also runs on a plain JVM.
+ */
+public final class DomainLog {
+    /**
+     * Destination of the messages, called from whichever thread hit the problem
+     */
+    public interface Logger {
+        void warn(String tag, String message, @Nullable Throwable error);
+
+        void error(String tag, String message, @Nullable Throwable error);
+    }
+
+    public static final Logger STDERR = new Logger() {
+        @Override
+        public void warn(String tag, String message, @Nullable Throwable error) {
+            print("W", tag, message, error);
+        }
+
+        @Override
+        public void error(String tag, String message, @Nullable Throwable error) {
+            print("E", tag, message, error);
+        }
+
+        private void print(String level, String tag, String message, @Nullable Throwable error) {
+            System.err.println(level + "/" + tag + ": " + message);
+            if (error != null) {
+                error.printStackTrace();
+            }
+        }
+    };
+
+    private static volatile Logger logger = STDERR;
+
+    private DomainLog() {
+    }
+
+    public static void setLogger(Logger logger) {
+        DomainLog.logger = logger;
+    }
+
+    static void w(String tag, String message) {
+        logger.warn(tag, message, null);
+    }
+
+    static void w(String tag, String message, Throwable error) {
+        logger.warn(tag, message, error);
+    }
+
+    static void e(String tag, String message, Throwable error) {
+        logger.error(tag, message, error);
+    }
+}
@@ -0,0 +1,108 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Filtered image stream data that is independent of any document.
+ * Produced by an {@link ImageEncoder} and attached to a page by the generator.
+ */
+public final class EncodedImage {
+    private final byte[] data;
+    private final COSName filter;
+    private final int width;
+    private final int height;
+    private final int bitsPerComponent;
+    private final PDColorSpace colorSpace;
+    private final long sourceBytes;
+    private final String contentKey;
+
+    /**
+     * Creates an image whose data is the unmodified source file
+     */
+    public EncodedImage(byte[] data, COSName filter, int width, int height,
+                        int bitsPerComponent, PDColorSpace colorSpace) {
+        this(data, filter, width, height, bitsPerComponent, colorSpace, data.length);
+    }
+
+    public EncodedImage(byte[] data, COSName filter, int width, int height,
+                        int bitsPerComponent, PDColorSpace colorSpace, long sourceBytes) {
+        this(data, filter, width, height, bitsPerComponent, colorSpace, sourceBytes, null);
+    }
+
+    private EncodedImage(byte[] data, COSName filter, int width, int height,
+                         int bitsPerComponent, PDColorSpace colorSpace, long sourceBytes, String contentKey) {
+        this.data = data;
+        this.filter = filter;
+        this.width = width;
+        this.height = height;
+        this.bitsPerComponent = bitsPerComponent;
+        this.colorSpace = colorSpace;
+        this.sourceBytes = sourceBytes;
+        this.contentKey = contentKey;
+    }
+
+    /**
+     * Returns a copy identified by the hash of its source and encoding parameters
+     */
+    public EncodedImage withContentKey(String contentKey) {
+        return new EncodedImage(data, filter, width, height, bitsPerComponent, colorSpace, sourceBytes, contentKey);
+    }
+
+    /**
+     * Returns the encoded stream bytes, as they will appear in the PDF
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    public COSName getFilter() {
+        return filter;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getBitsPerComponent() {
+        return bitsPerComponent;
+    }
+
+    public PDColorSpace getColorSpace() {
+        return colorSpace;
+    }
+
+    /**
+     * Returns the size of the source file this image was encoded from
+     */
+    public long getSourceBytes() {
+        return sourceBytes;
+    }
+
+    /**
+     * Returns the content key, or null if identical images cannot be recognized
+     */
+    @Nullable
+    public String getContentKey() {
+        return contentKey;
+    }
+
+    /**
+     * Creates an image XObject in the document without re-encoding the data
+     */
+    public PDImageXObject createXObject(PDDocument document) throws IOException {
+        return new PDImageXObject(document, new ByteArrayInputStream(data), filter,
+                width, height, bitsPerComponent, colorSpace);
+    }
+}
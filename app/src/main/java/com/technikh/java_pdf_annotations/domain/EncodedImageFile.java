@@ -0,0 +1,111 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Stores an encoded image with its stream parameters in a file, so it can be embedded later without re-encoding.
+ * Used by the encoded image cache and by generation checkpoints.
+ */
+final class EncodedImageFile {
+    private static final int FORMAT_VERSION = 2;
+
+    private EncodedImageFile() {
+    }
+
+    /**
+     * Returns whether the image's color space can be stored
+     */
+    static boolean isSupported(EncodedImage image) {
+        return colorSpaceNamed(image.getColorSpace().getName()) != null;
+    }
+
+    /**
+     * Reads an image written by {@link #write}, or returns null if it was written in another format
+     */
+    @Nullable
+    static EncodedImage read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            COSName filter = COSName.getPDFName(in.readUTF());
+            int width = in.readInt();
+            int height = in.readInt();
+            int bitsPerComponent = in.readInt();
+            PDColorSpace colorSpace = colorSpaceNamed(in.readUTF());
+            long sourceBytes = in.readLong();
+            String contentKey = in.readBoolean() ? in.readUTF() : null;
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            if (colorSpace == null) {
+                return null;
+            }
+            EncodedImage image = new EncodedImage(data, filter, width, height, bitsPerComponent, colorSpace, sourceBytes);
+            return contentKey != null ? image.withContentKey(contentKey) : image;
+        }
+    }
+
+    /**
+     * Writes the image to a unique temp file next to the target and renames it into place,
+     * so readers never see a partial file, even if the process dies while writing
+     *
+     * @throws IllegalArgumentException if the color space is not {@link #isSupported supported}
+     */
+    static void write(EncodedImage image, File file) throws IOException {
+        if (!isSupported(image)) {
+            throw new IllegalArgumentException("Unsupported color space " + image.getColorSpace().getName());
+        }
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(image.getFilter().getName());
+                out.writeInt(image.getWidth());
+                out.writeInt(image.getHeight());
+                out.writeInt(image.getBitsPerComponent());
+                out.writeUTF(image.getColorSpace().getName());
+                out.writeLong(image.getSourceBytes());
+                out.writeBoolean(image.getContentKey() != null);
+                if (image.getContentKey() != null) {
+                    out.writeUTF(image.getContentKey());
+                }
+                out.writeInt(image.getData().length);
+                out.write(image.getData());
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Failed to publish " + file);
+            }
+            temp = null;
+        } finally {
+            if (temp != null) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+    }
+
+    @Nullable
+    private static PDColorSpace colorSpaceNamed(String name) {
+        if (PDDeviceRGB.INSTANCE.getName().equals(name)) {
+            return PDDeviceRGB.INSTANCE;
+        }
+        if (PDDeviceGray.INSTANCE.getName().equals(name)) {
+            return PDDeviceGray.INSTANCE;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,192 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.io.RandomAccessRead;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Lets PDFBox parse a PDF by seeking in a file channel, e.g. one backed by a content provider's file descriptor.
+ * Only the parts of the file the parser touches are read, through a small window buffer,
+ * so opening a large document neither copies it nor holds it on the heap.
+ * Reads are interruptible: interrupting the parsing thread closes the channel and aborts the load.
+ * Not thread-safe.
+ */
+public class FileChannelSource implements RandomAccessRead {
+    private static final int WINDOW_SIZE = 16 * 1024;
+
+    private final FileChannel channel;
+    private final Closeable owner;
+    private final long length;
+    private final ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+    private long windowStart;
+    private long position;
+    private boolean closed;
+
+    /**
+     * @param owner closed together with the source, e.g. the stream or descriptor the channel came from
+     */
+    public FileChannelSource(FileChannel channel, Closeable owner) throws IOException {
+        this.channel = channel;
+        this.owner = owner;
+        this.length = channel.size();
+        window.limit(0);
+    }
+
+    /**
+     * Parses a document from the channel. The document owns the source and closes it, and the owner, with itself.
+     */
+    public static PDDocument load(FileChannel channel, Closeable owner, MemoryUsageSetting memoryUsageSetting) throws IOException {
+        return load(channel, owner, ScratchPolicy.of(memoryUsageSetting));
+    }
+
+    /**
+     * Parses a document from the channel, buffering stream data as the policy says
+     */
+    public static PDDocument load(FileChannel channel, Closeable owner, ScratchPolicy scratchPolicy) throws IOException {
+        return scratchPolicy.load(new FileChannelSource(channel, owner));
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fillWindow()) {
+            return -1;
+        }
+        int value = window.get((int) (position - windowStart)) & 0xFF;
+        position++;
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fillWindow()) {
+            return -1;
+        }
+        int windowOffset = (int) (position - windowStart);
+        int count = Math.min(length, window.limit() - windowOffset);
+        System.arraycopy(window.array(), windowOffset, b, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long getPosition() throws IOException {
+        checkClosed();
+        return position;
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        checkClosed();
+        if (position < 0) {
+            throw new IOException("Invalid position " + position);
+        }
+        this.position = position;
+    }
+
+    @Override
+    public long length() throws IOException {
+        checkClosed();
+        return length;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int peek() throws IOException {
+        int value = read();
+        if (value != -1) {
+            position--;
+        }
+        return value;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException {
+        seek(position - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int done = 0;
+        while (done < length) {
+            int count = read(bytes, done, length - done);
+            if (count < 0) {
+                throw new EOFException("Premature end of file");
+            }
+            done += count;
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException {
+        checkClosed();
+        return position >= length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkClosed();
+        return (int) Math.min(Math.max(0, length - position), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+        } finally {
+            owner.close();
+        }
+    }
+
+    /**
+     * Makes sure the window holds the byte at the current position; returns false at the end of the file
+     */
+    private boolean fillWindow() throws IOException {
+        checkClosed();
+        if (position >= length) {
+            return false;
+        }
+        if (position >= windowStart && position < windowStart + window.limit()) {
+            return true;
+        }
+        windowStart = position - position % WINDOW_SIZE;
+        window.clear();
+        while (window.hasRemaining()) {
+            int count = channel.read(window, windowStart + window.position());
+            if (count < 0) {
+                break;
+            }
+        }
+        window.flip();
+        return position < windowStart + window.limit();
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("Source is closed");
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Image stored in a local file
+ */
+public class FileImageSource implements ImageSource {
+    private final File file;
+
+    public FileImageSource(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Wraps each path in a file source, keeping the order
+     */
+    public static List<ImageSource> fromPaths(List<String> imagePaths) {
+        List<ImageSource> sources = new ArrayList<>(imagePaths.size());
+        for (String imagePath : imagePaths) {
+            sources.add(new FileImageSource(new File(imagePath)));
+        }
+        return sources;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public String getName() {
+        return file.getPath();
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return new FileInputStream(file);
+    }
+
+    @Override
+    public long getLength() {
+        return file.length();
+    }
+}
@@ -0,0 +1,236 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Durable state of one generation job in its own directory: the job's manifest, the image sizes its
+ * layout was planned with, and the encoded image of every page finished so far. Every file is written
+ * under a temp name and renamed into place, so a job killed at any point leaves only complete pages behind,
+ * and generating again with the same checkpoint encodes only the missing ones. Files are not synced, so they survive process death but not power loss.
+ */
+public final class GenerationCheckpoint {
+    private static final String TAG = "GenerationCheckpoint";
+    private static final String MANIFEST_FILE = "manifest.properties";
+    private static final String SIZES_FILE = "sizes.properties";
+    private static final String KEY_SIZE_PREFIX = "size.";
+    private static final String PAGE_SUFFIX = ".page";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File dir;
+    private final GenerationManifest manifest;
+
+    private GenerationCheckpoint(File dir, GenerationManifest manifest) {
+        this.dir = dir;
+        this.manifest = manifest;
+    }
+
+    /**
+     * Starts a checkpoint for a new job in dir, which must not hold another job
+     */
+    public static GenerationCheckpoint create(File dir, GenerationManifest manifest) throws IOException {
+        if (new File(dir, MANIFEST_FILE).exists()) {
+            throw new IOException("Checkpoint directory already holds a job: " + dir);
+        }
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create checkpoint directory " + dir);
+        }
+        writeProperties(manifest.toProperties(), new File(dir, MANIFEST_FILE));
+        return new GenerationCheckpoint(dir, manifest);
+    }
+
+    /**
+     * Reopens the checkpoint of an unfinished job, dropping any file it was writing when it died
+     */
+    public static GenerationCheckpoint open(File dir) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(new File(dir, MANIFEST_FILE))) {
+            properties.load(in);
+        }
+        GenerationManifest manifest;
+        try {
+            manifest = GenerationManifest.fromProperties(properties);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unreadable manifest in " + dir, e);
+        }
+
+        File[] temps = dir.listFiles((parent, name) -> name.endsWith(TEMP_SUFFIX));
+        if (temps != null) {
+            for (File temp : temps) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+        return new GenerationCheckpoint(dir, manifest);
+    }
+
+    /**
+     * Opens every checkpoint in the subdirectories of parentDir, oldest first.
+     * Directories without a readable manifest never got a job started and are deleted.
+     */
+    public static List<GenerationCheckpoint> openAll(File parentDir) {
+        List<GenerationCheckpoint> checkpoints = new ArrayList<>();
+        File[] dirs = parentDir.listFiles(File::isDirectory);
+        if (dirs == null) {
+            return checkpoints;
+        }
+        Arrays.sort(dirs);
+        for (File dir : dirs) {
+            try {
+                checkpoints.add(open(dir));
+            } catch (IOException e) {
+                DomainLog.w(TAG, "Discarding checkpoint without a usable manifest: " + dir, e);
+                deleteDirectory(dir);
+            }
+        }
+        return checkpoints;
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    public GenerationManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Returns whether the page's encoded image is stored
+     */
+    public boolean hasPage(int pageIndex) {
+        return pageFile(pageIndex).isFile();
+    }
+
+    /**
+     * Returns the number of pages whose encoded image is stored
+     */
+    public int getPagesDone() {
+        String[] pages = dir.list((parent, name) -> name.endsWith(PAGE_SUFFIX));
+        return pages != null ? pages.length : 0;
+    }
+
+    /**
+     * Returns the stored image of the page, or null if it has to be encoded again
+     */
+    @Nullable
+    EncodedImage readPage(int pageIndex) {
+        File pageFile = pageFile(pageIndex);
+        if (!pageFile.isFile()) {
+            return null;
+        }
+        try {
+            return EncodedImageFile.read(pageFile);
+        } catch (IOException e) {
+            DomainLog.w(TAG, "Ignoring unreadable checkpoint page " + pageFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the page's image. Images in color spaces that can't be stored are encoded again on resume.
+     */
+    void writePage(int pageIndex, EncodedImage encodedImage) throws IOException {
+        if (EncodedImageFile.isSupported(encodedImage)) {
+            EncodedImageFile.write(encodedImage, pageFile(pageIndex));
+        }
+    }
+
+    /**
+     * Returns the image sizes the job's layout was planned with, or null if the job hasn't planned one yet
+     */
+    @Nullable
+    List<ImageSize> readImageSizes() throws IOException {
+        File sizesFile = new File(dir, SIZES_FILE);
+        if (!sizesFile.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(sizesFile)) {
+            properties.load(in);
+        }
+        List<ImageSize> sizes = new ArrayList<>(manifest.getPageCount());
+        try {
+            for (int i = 0; i < manifest.getPageCount(); i++) {
+                String size = properties.getProperty(KEY_SIZE_PREFIX + i);
+                if (size == null) {
+                    sizes.add(null);
+                } else {
+                    int separator = size.indexOf('x');
+                    sizes.add(new ImageSize(Integer.parseInt(size.substring(0, separator)),
+                            Integer.parseInt(size.substring(separator + 1))));
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Unreadable image sizes in " + dir, e);
+        }
+        return sizes;
+    }
+
+    /**
+     * Stores the image sizes the layout is planned with, so a resumed job lays out its pages the same way.
+     * Unknown sizes are null.
+     */
+    void writeImageSizes(List<ImageSize> sizes) throws IOException {
+        Properties properties = new Properties();
+        for (int i = 0; i < sizes.size(); i++) {
+            ImageSize size = sizes.get(i);
+            if (size != null) {
+                properties.setProperty(KEY_SIZE_PREFIX + i, size.toString());
+            }
+        }
+        writeProperties(properties, new File(dir, SIZES_FILE));
+    }
+
+    /**
+     * Deletes the checkpoint once its job has finished or been abandoned
+     */
+    public void delete() {
+        deleteDirectory(dir);
+    }
+
+    private File pageFile(int pageIndex) {
+        return new File(dir, String.format(Locale.US, "%06d%s", pageIndex, PAGE_SUFFIX));
+    }
+
+    private static void writeProperties(Properties properties, File file) throws IOException {
+        File temp = File.createTempFile(file.getName(), TEMP_SUFFIX, file.getParentFile());
+        try {
+            try (OutputStream out = new FileOutputStream(temp)) {
+                properties.store(out, null);
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Failed to publish " + file);
+            }
+            temp = null;
+        } finally {
+            if (temp != null) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+    }
+
+    private static void deleteDirectory(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        if (!dir.delete()) {
+            DomainLog.w(TAG, "Failed to delete checkpoint " + dir);
+        }
+    }
+}
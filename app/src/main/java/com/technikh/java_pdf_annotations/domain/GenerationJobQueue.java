@@ -0,0 +1,266 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs PDF generation jobs with a bounded number executing at once.
+ * Every job gets an ID and reports per-page progress; jobs can be cancelled while queued or running,
+ * and the partial output of a cancelled or failed job is deleted.
+ */
+public class GenerationJobQueue {
+    private static final String TAG = "GenerationJobQueue";
+
+    private final ThreadPoolExecutor executor;
+    private final Listener listener;
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong nextJobId = new AtomicLong(1);
+
+    /**
+     * Work performed by a job on a queue thread.
+     * Tasks report progress through the listener and should stop promptly once their thread is interrupted.
+     */
+    public interface Task {
+        void run(ProgressListener progressListener) throws Exception;
+    }
+
+    /**
+     * Receives every state and progress change, on the thread that caused it
+     */
+    public interface Listener {
+        void onJobUpdated(JobProgress progress);
+    }
+
+    public GenerationJobQueue(int maxConcurrentJobs, Listener listener) {
+        int poolSize = Math.max(1, maxConcurrentJobs);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.listener = listener;
+    }
+
+    /**
+     * Changes how many jobs may run at once. Queued jobs start as soon as a slot frees up.
+     */
+    public void setMaxConcurrentJobs(int maxConcurrentJobs) {
+        int poolSize = Math.max(1, maxConcurrentJobs);
+        if (poolSize > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(poolSize);
+            executor.setCorePoolSize(poolSize);
+        } else {
+            executor.setCorePoolSize(poolSize);
+            executor.setMaximumPoolSize(poolSize);
+        }
+    }
+
+    /**
+     * Queues a job writing to outputFile and returns its ID
+     *
+     * @throws IllegalStateException if the queue has been shut down
+     */
+    public long submit(File outputFile, Task task) {
+        return submit(outputFile, true, task);
+    }
+
+    /**
+     * Queues a job that updates an existing file in place and returns its ID.
+     * The file is kept if the job fails or is cancelled, so the task must leave it intact in that case.
+     *
+     * @throws IllegalStateException if the queue has been shut down
+     */
+    public long submitUpdate(File targetFile, Task task) {
+        return submit(targetFile, false, task);
+    }
+
+    private long submit(File outputFile, boolean ownsOutput, Task task) {
+        if (executor.isShutdown()) {
+            throw new IllegalStateException("Job queue has been shut down");
+        }
+        long jobId = nextJobId.getAndIncrement();
+        Job job = new Job(jobId, outputFile, ownsOutput);
+        // Set before the job is visible, so a cancel from another thread or the listener always finds it
+        job.future = new FutureTask<>(() -> run(job, task), null);
+        jobs.put(jobId, job);
+        publish(job, null);
+        try {
+            executor.execute(job.future);
+        } catch (RejectedExecutionException e) {
+            // Shut down by another thread since the check above
+            if (job.state.compareAndSet(JobProgress.State.QUEUED, JobProgress.State.CANCELLED)) {
+                finish(job, null);
+            }
+            throw new IllegalStateException("Job queue has been shut down", e);
+        }
+        return jobId;
+    }
+
+    /**
+     * Cancels a queued or running job. Returns false if the job is unknown, already being cancelled or finished.
+     * A running job keeps its state as {@link JobProgress.State#CANCELLING} until its task stops.
+     */
+    public boolean cancel(long jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return false;
+        }
+        if (job.state.compareAndSet(JobProgress.State.QUEUED, JobProgress.State.CANCELLED)) {
+            // Never started, nothing to clean up
+            job.future.cancel(false);
+            finish(job, null);
+            return true;
+        }
+        if (job.state.compareAndSet(JobProgress.State.RUNNING, JobProgress.State.CANCELLING)) {
+            job.future.cancel(true);
+            publish(job, null);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Cancels every queued and running job
+     */
+    public void cancelAll() {
+        for (Long jobId : jobs.keySet()) {
+            cancel(jobId);
+        }
+    }
+
+    /**
+     * Returns the latest snapshot of a job, or null if it is unknown
+     */
+    @Nullable
+    public JobProgress getProgress(long jobId) {
+        Job job = jobs.get(jobId);
+        return job != null ? job.snapshot(null) : null;
+    }
+
+    /**
+     * Stops accepting jobs. With drain, queued and running jobs finish first; otherwise they are cancelled.
+     */
+    public void shutdown(boolean drain) {
+        if (!drain) {
+            cancelAll();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for all jobs to finish after {@link #shutdown(boolean)}
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    private void run(Job job, Task task) {
+        if (!job.state.compareAndSet(JobProgress.State.QUEUED, JobProgress.State.RUNNING)) {
+            return;
+        }
+        publish(job, null);
+
+        try {
+            task.run(new ProgressListener() {
+                @Override
+                public void onPageAdded(int pagesDone, int pageCount) {
+                    job.pagesDone = pagesDone;
+                    job.pageCount = pageCount;
+                    publish(job, null);
+                }
+
+                @Override
+                public void onFileWritten(File file) {
+                    job.writtenFiles.add(file);
+                    publish(job, null);
+                }
+            });
+            if (Thread.currentThread().isInterrupted()) {
+                complete(job, JobProgress.State.CANCELLED, null);
+            } else {
+                complete(job, JobProgress.State.COMPLETED, null);
+            }
+        } catch (InterruptedException | InterruptedIOException | ClosedByInterruptException e) {
+            complete(job, JobProgress.State.CANCELLED, null);
+        } catch (Exception e) {
+            if (job.state.get() == JobProgress.State.CANCELLING) {
+                complete(job, JobProgress.State.CANCELLED, null);
+            } else {
+                DomainLog.e(TAG, "Job " + job.id + " failed", e);
+                complete(job, JobProgress.State.FAILED, e.getMessage() != null ? e.getMessage() : e.toString());
+            }
+        } finally {
+            // Clear a cancellation interrupt so it does not leak into the next job on this thread
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Moves a running job to its final state. A cancel accepted before the task's outcome is recorded wins,
+     * while a job that already completed can no longer be cancelled, so its output is never deleted.
+     */
+    private void complete(Job job, JobProgress.State state, @Nullable String errorMessage) {
+        if (state == JobProgress.State.COMPLETED && job.state.compareAndSet(JobProgress.State.RUNNING, state)) {
+            finish(job, null);
+            return;
+        }
+        if (job.ownsOutput) {
+            deletePartialOutput(job.outputFile);
+        }
+        if (!job.state.compareAndSet(JobProgress.State.RUNNING, state)) {
+            job.state.set(JobProgress.State.CANCELLED);
+            errorMessage = null;
+        }
+        finish(job, errorMessage);
+    }
+
+    private void finish(Job job, @Nullable String errorMessage) {
+        jobs.remove(job.id);
+        publish(job, errorMessage);
+    }
+
+    private void publish(Job job, @Nullable String errorMessage) {
+        listener.onJobUpdated(job.snapshot(errorMessage));
+    }
+
+    private static void deletePartialOutput(File outputFile) {
+        if (outputFile.exists() && !outputFile.delete()) {
+            DomainLog.w(TAG, "Failed to delete partial output " + outputFile);
+        }
+    }
+
+    private static final class Job {
+        final long id;
+        final File outputFile;
+        final boolean ownsOutput;
+        final AtomicReference<JobProgress.State> state = new AtomicReference<>(JobProgress.State.QUEUED);
+        volatile FutureTask<Void> future;
+        volatile int pagesDone;
+        volatile int pageCount;
+        final List<File> writtenFiles = new CopyOnWriteArrayList<>();
+
+        Job(long id, File outputFile, boolean ownsOutput) {
+            this.id = id;
+            this.outputFile = outputFile;
+            this.ownsOutput = ownsOutput;
+        }
+
+        JobProgress snapshot(@Nullable String errorMessage) {
+            return new JobProgress(id, state.get(), pagesDone, pageCount, outputFile,
+                    Collections.unmodifiableList(new ArrayList<>(writtenFiles)), errorMessage);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Everything needed to restart a generation job after the process died: where the output goes,
+ * how pages are laid out, annotated and split, and an identifier for each page's image, e.g. its content URI.
+ * Immutable.
+ */
+public final class GenerationManifest {
+    private static final String KEY_OUTPUT_FILE = "outputFile";
+    private static final String KEY_ANNOTATION_TEXT = "annotationText";
+    private static final String KEY_TOGGLEABLE = "toggleable";
+    private static final String KEY_CHUNK_MAX_PAGES = "chunkMaxPages";
+    private static final String KEY_CHUNK_MAX_BYTES = "chunkMaxBytes";
+    private static final String KEY_PAGE_COUNT = "pageCount";
+    private static final String KEY_SOURCE_PREFIX = "source.";
+
+    private final File outputFile;
+    private final String annotationText;
+    private final boolean toggleable;
+    private final ChunkPolicy chunkPolicy;
+    private final ImageLayout layout;
+    private final List<String> sources;
+
+    /**
+     * @param toggleable whether to add toggleable annotations instead of drawing the text on the page
+     * @param sources    one identifier per page, in page order
+     */
+    public GenerationManifest(File outputFile, String annotationText, boolean toggleable, ChunkPolicy chunkPolicy,
+                              List<String> sources) {
+        this(outputFile, annotationText, toggleable, chunkPolicy, ImageLayout.FIT_WIDTH, sources);
+    }
+
+    /**
+     * @param toggleable whether to add toggleable annotations instead of drawing the text on the page
+     * @param sources    one identifier per image, in order
+     */
+    public GenerationManifest(File outputFile, String annotationText, boolean toggleable, ChunkPolicy chunkPolicy,
+                              ImageLayout layout, List<String> sources) {
+        this.outputFile = outputFile;
+        this.annotationText = annotationText;
+        this.toggleable = toggleable;
+        this.chunkPolicy = chunkPolicy;
+        this.layout = layout;
+        this.sources = Collections.unmodifiableList(new ArrayList<>(sources));
+    }
+
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    public String getAnnotationText() {
+        return annotationText;
+    }
+
+    public boolean isToggleable() {
+        return toggleable;
+    }
+
+    public ChunkPolicy getChunkPolicy() {
+        return chunkPolicy;
+    }
+
+    public ImageLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Returns the identifier of every page's image, in page order
+     */
+    public List<String> getSources() {
+        return sources;
+    }
+
+    /**
+     * Returns the number of images, which is also the number of pages unless the layout puts several on a page
+     */
+    public int getPageCount() {
+        return sources.size();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GenerationManifest)) {
+            return false;
+        }
+        GenerationManifest other = (GenerationManifest) o;
+        return outputFile.equals(other.outputFile) && annotationText.equals(other.annotationText)
+                && toggleable == other.toggleable && chunkPolicy.getMaxPages() == other.chunkPolicy.getMaxPages()
+                && chunkPolicy.getMaxBytes() == other.chunkPolicy.getMaxBytes() && layout.equals(other.layout)
+                && sources.equals(other.sources);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = outputFile.hashCode();
+        result = 31 * result + annotationText.hashCode();
+        result = 31 * result + (toggleable ? 1 : 0);
+        result = 31 * result + chunkPolicy.getMaxPages();
+        result = 31 * result + Long.hashCode(chunkPolicy.getMaxBytes());
+        result = 31 * result + layout.hashCode();
+        return 31 * result + sources.hashCode();
+    }
+
+    Properties toProperties() {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_OUTPUT_FILE, outputFile.getPath());
+        properties.setProperty(KEY_ANNOTATION_TEXT, annotationText);
+        properties.setProperty(KEY_TOGGLEABLE, String.valueOf(toggleable));
+        properties.setProperty(KEY_CHUNK_MAX_PAGES, String.valueOf(chunkPolicy.getMaxPages()));
+        properties.setProperty(KEY_CHUNK_MAX_BYTES, String.valueOf(chunkPolicy.getMaxBytes()));
+        layout.writeTo(properties);
+        properties.setProperty(KEY_PAGE_COUNT, String.valueOf(sources.size()));
+        for (int i = 0; i < sources.size(); i++) {
+            properties.setProperty(KEY_SOURCE_PREFIX + i, sources.get(i));
+        }
+        return properties;
+    }
+
+    /**
+     * Reads a manifest from a UTF-8 properties file in the format checkpoints store, e.g. one written by hand
+     * for a batch run: outputFile, annotationText, toggleable, pageCount and source.0 to source.(pageCount - 1).
+     * Without chunk or layout keys the job is written as one PDF with the legacy layout.
+     *
+     * @throws IOException if the manifest can't be read or a property is missing or malformed
+     */
+    public static GenerationManifest read(InputStream inputStream) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        try {
+            return fromProperties(properties);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid manifest: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if a property is missing or malformed
+     */
+    static GenerationManifest fromProperties(Properties properties) {
+        int pageCount = Integer.parseInt(require(properties, KEY_PAGE_COUNT));
+        List<String> sources = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            sources.add(require(properties, KEY_SOURCE_PREFIX + i));
+        }
+        ChunkPolicy chunkPolicy = new ChunkPolicy(Integer.parseInt(properties.getProperty(KEY_CHUNK_MAX_PAGES, "0")),
+                Long.parseLong(properties.getProperty(KEY_CHUNK_MAX_BYTES, "0")));
+        return new GenerationManifest(new File(require(properties, KEY_OUTPUT_FILE)),
+                require(properties, KEY_ANNOTATION_TEXT), Boolean.parseBoolean(require(properties, KEY_TOGGLEABLE)),
+                chunkPolicy, ImageLayout.readFrom(properties), sources);
+    }
+
+    private static String require(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Manifest has no " + key);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,45 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-page size statistics of a generated PDF.
+ * Compares each source image file with the stream actually embedded for it.
+ */
+public final class GenerationReport {
+    private final List<Long> sourceBytes = new ArrayList<>();
+    private final List<Long> embeddedBytes = new ArrayList<>();
+
+    void addPage(long source, long embedded) {
+        sourceBytes.add(source);
+        embeddedBytes.add(embedded);
+    }
+
+    public int getPageCount() {
+        return sourceBytes.size();
+    }
+
+    public long getSourceBytes(int pageIndex) {
+        return sourceBytes.get(pageIndex);
+    }
+
+    public long getEmbeddedBytes(int pageIndex) {
+        return embeddedBytes.get(pageIndex);
+    }
+
+    /**
+     * Bytes saved on a page by resampling and recompression, negative if the image grew
+     */
+    public long getBytesSaved(int pageIndex) {
+        return sourceBytes.get(pageIndex) - embeddedBytes.get(pageIndex);
+    }
+
+    public long getTotalBytesSaved() {
+        long total = 0;
+        for (int i = 0; i < sourceBytes.size(); i++) {
+            total += getBytesSaved(i);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,83 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSArray;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.cos.COSString;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Attaches encoded images to one document on the writer thread.
+ * Images with the same content key are embedded once and shared by every page that uses them.
+ */
+final class ImageEmbedder {
+    private final PDDocument document;
+    private final MessageDigest contentDigest;
+    private final GenerationReport report = new GenerationReport();
+    private final Map<String, PDImageXObject> embeddedByKey = new HashMap<>();
+
+    ImageEmbedder(PDDocument document) {
+        this.document = document;
+        try {
+            contentDigest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    /**
+     * Returns the XObject for the image, reusing an earlier one with the same content
+     */
+    PDImageXObject embed(EncodedImage encodedImage) throws IOException {
+        String contentKey = encodedImage.getContentKey();
+        PDImageXObject existing = contentKey != null ? embeddedByKey.get(contentKey) : null;
+        if (existing != null) {
+            contentDigest.update(contentKey.getBytes(StandardCharsets.UTF_8));
+            report.addPage(encodedImage.getSourceBytes(), 0);
+            return existing;
+        }
+
+        contentDigest.update(encodedImage.getData());
+        report.addPage(encodedImage.getSourceBytes(), encodedImage.getData().length);
+        PDImageXObject pdImage = encodedImage.createXObject(document);
+        if (contentKey != null) {
+            embeddedByKey.put(contentKey, pdImage);
+        }
+        return pdImage;
+    }
+
+    GenerationReport getReport() {
+        return report;
+    }
+
+    /**
+     * Derives the trailer ID from the embedded content instead of the save time,
+     * so the same input always produces the same bytes regardless of worker count
+     */
+    void setDocumentId(String annotationText) {
+        COSString id = new COSString(digest(annotationText));
+        COSArray idArray = new COSArray();
+        idArray.add(id);
+        idArray.add(id);
+        document.getDocument().getTrailer().setItem(COSName.ID, idArray);
+    }
+
+    /**
+     * Like {@link #setDocumentId}, but only for the revision: the original document keeps its ID
+     */
+    void setRevisionId(String annotationText) {
+        IncrementalUpdate.setRevisionId(document, digest(annotationText));
+    }
+
+    private byte[] digest(String annotationText) {
+        contentDigest.update(annotationText.getBytes(StandardCharsets.UTF_8));
+        return contentDigest.digest();
+    }
+}
@@ -0,0 +1,41 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Decodes and encodes a source image into stream data ready for embedding.
+ * Implementations must not depend on a PDDocument so they can run on worker threads.
+ */
+public interface ImageEncoder {
+
+    /**
+     * Encodes the image read from the given source
+     */
+    EncodedImage encode(ImageSource source) throws IOException;
+
+    /**
+     * Encodes the image for a rectangle drawWidthPoints wide, e.g. a grid cell or a landscape page.
+     * Encoders that never resample ignore the width.
+     */
+    default EncodedImage encode(ImageSource source, float drawWidthPoints) throws IOException {
+        return encode(source);
+    }
+
+    /**
+     * Reads the pixel dimensions of the image to plan the layout, without encoding it.
+     * Returns null if the size can't be determined. Only header formats known to {@link ImageSize} by default.
+     */
+    @Nullable
+    default ImageSize readSize(ImageSource source) {
+        return ImageSize.read(source);
+    }
+
+    /**
+     * Identifies the encoding parameters, so cached results are only reused for identical settings
+     */
+    default String getParametersKey() {
+        return getClass().getName();
+    }
+}
@@ -0,0 +1,326 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Decides the size of every page and where each image goes on it. Apart from the legacy
+ * {@link #FIT_WIDTH} placement, images keep their aspect ratio inside the page margins.
+ * The top margin is at least {@link #HEADER_HEIGHT} so the annotation label or icon never covers an image.
+ * Layouts are planned from image dimensions alone, see {@link ImageSize#read}. Immutable.
+ */
+public final class ImageLayout {
+    /**
+     * Room above the images for the annotation label or comment icon
+     */
+    public static final float HEADER_HEIGHT = 40;
+    /**
+     * Half an inch
+     */
+    public static final float DEFAULT_MARGIN = 36;
+
+    public enum Mode {
+        /**
+         * A4 portrait, images scaled to the full page width below the header; tall images run off the page
+         */
+        FIT_WIDTH,
+        /**
+         * One image per page, scaled to fit within the margins
+         */
+        FIT_PAGE,
+        /**
+         * One image per page, on a page cut to the image's aspect ratio that fits within the page size
+         */
+        MATCH_IMAGE,
+        /**
+         * Several images per page in a grid of equal cells, filled row by row
+         */
+        GRID
+    }
+
+    /**
+     * Layout of earlier versions, kept as the default so existing output doesn't change
+     */
+    public static final ImageLayout FIT_WIDTH = new ImageLayout(Mode.FIT_WIDTH, PDRectangle.A4, 0, false, 1, 1);
+
+    private static final String KEY_MODE = "layout.mode";
+    private static final String KEY_PAGE_WIDTH = "layout.pageWidth";
+    private static final String KEY_PAGE_HEIGHT = "layout.pageHeight";
+    private static final String KEY_MARGIN = "layout.margin";
+    private static final String KEY_AUTO_ORIENTATION = "layout.autoOrientation";
+    private static final String KEY_COLUMNS = "layout.columns";
+    private static final String KEY_ROWS = "layout.rows";
+
+    private final Mode mode;
+    private final float pageWidth;
+    private final float pageHeight;
+    private final float margin;
+    private final boolean autoOrientation;
+    private final int columns;
+    private final int rows;
+
+    private ImageLayout(Mode mode, PDRectangle pageSize, float margin, boolean autoOrientation, int columns, int rows) {
+        this(mode, pageSize.getWidth(), pageSize.getHeight(), margin, autoOrientation, columns, rows);
+    }
+
+    private ImageLayout(Mode mode, float pageWidth, float pageHeight, float margin, boolean autoOrientation,
+                        int columns, int rows) {
+        if (margin < 0 || pageWidth <= 2 * margin || pageHeight <= margin + Math.max(margin, HEADER_HEIGHT)) {
+            throw new IllegalArgumentException("Margin " + margin + " leaves no room on a "
+                    + pageWidth + "x" + pageHeight + " page");
+        }
+        if (columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("Invalid grid " + columns + "x" + rows);
+        }
+        this.mode = mode;
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+        this.margin = margin;
+        this.autoOrientation = autoOrientation;
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * One image per page, as large as fits within the margins and centered
+     *
+     * @param autoOrientation whether to turn the page to landscape for wide images, or to portrait for tall ones
+     */
+    public static ImageLayout fitPage(PDRectangle pageSize, float margin, boolean autoOrientation) {
+        return new ImageLayout(Mode.FIT_PAGE, pageSize, margin, autoOrientation, 1, 1);
+    }
+
+    /**
+     * One image per page, with the page sized to the image plus margins.
+     * Images are scaled to fit maxPageSize in whichever orientation suits them, so pages stay printable.
+     * Images of unknown size get a full page of maxPageSize.
+     */
+    public static ImageLayout matchImage(PDRectangle maxPageSize, float margin) {
+        return new ImageLayout(Mode.MATCH_IMAGE, maxPageSize, margin, true, 1, 1);
+    }
+
+    /**
+     * Several images per page in columns x rows cells, each image fitted to its cell.
+     * Cells are separated by half a margin.
+     *
+     * @param autoOrientation whether to turn each page, swapping columns and rows, when its images fit better that way
+     */
+    public static ImageLayout grid(PDRectangle pageSize, float margin, int columns, int rows, boolean autoOrientation) {
+        return new ImageLayout(Mode.GRID, pageSize, margin, autoOrientation, columns, rows);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public PDRectangle getPageSize() {
+        return new PDRectangle(pageWidth, pageHeight);
+    }
+
+    public float getMargin() {
+        return margin;
+    }
+
+    public boolean isAutoOrientation() {
+        return autoOrientation;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getImagesPerPage() {
+        return columns * rows;
+    }
+
+    /**
+     * Lays out the images in order. Planning only does arithmetic on the sizes, so it is cheap even for
+     * thousands of images.
+     *
+     * @param sizes one entry per image; null for images of unknown size, which are fitted to their slot when drawn
+     */
+    public LayoutPlan plan(List<ImageSize> sizes) {
+        int imageCount = sizes.size();
+        int perPage = getImagesPerPage();
+        int pageCount = (imageCount + perPage - 1) / perPage;
+        LayoutPlan.Builder plan = new LayoutPlan.Builder(imageCount, pageCount);
+        for (int first = 0; first < imageCount; first += perPage) {
+            int last = Math.min(imageCount, first + perPage);
+            switch (mode) {
+                case FIT_WIDTH:
+                    planFitWidth(plan, first, sizes.get(first));
+                    break;
+                case FIT_PAGE:
+                    planFitPage(plan, first, sizes.get(first));
+                    break;
+                case MATCH_IMAGE:
+                    planMatchImage(plan, first, sizes.get(first));
+                    break;
+                default:
+                    planGrid(plan, sizes.subList(first, last), first);
+                    break;
+            }
+        }
+        return plan.build(sizes);
+    }
+
+    private void planFitWidth(LayoutPlan.Builder plan, int imageIndex, @Nullable ImageSize size) {
+        plan.addPage(pageWidth, pageHeight);
+        float imageHeight = size != null ? pageWidth * size.getHeight() / size.getWidth() : pageHeight - HEADER_HEIGHT;
+        plan.addSlot(imageIndex, 0, pageHeight - imageHeight - HEADER_HEIGHT, pageWidth, imageHeight);
+    }
+
+    private void planFitPage(LayoutPlan.Builder plan, int imageIndex, @Nullable ImageSize size) {
+        boolean turned = size != null && autoOrientation
+                && fitScale(size, contentWidth(pageHeight), contentHeight(pageWidth))
+                > fitScale(size, contentWidth(pageWidth), contentHeight(pageHeight));
+        float width = turned ? pageHeight : pageWidth;
+        float height = turned ? pageWidth : pageHeight;
+        plan.addPage(width, height);
+        plan.addSlot(imageIndex, margin, margin, contentWidth(width), contentHeight(height));
+    }
+
+    private void planMatchImage(LayoutPlan.Builder plan, int imageIndex, @Nullable ImageSize size) {
+        if (size == null) {
+            plan.addPage(pageWidth, pageHeight);
+            plan.addSlot(imageIndex, margin, margin, contentWidth(pageWidth), contentHeight(pageHeight));
+            return;
+        }
+        float scale = Math.max(fitScale(size, contentWidth(pageWidth), contentHeight(pageHeight)),
+                fitScale(size, contentWidth(pageHeight), contentHeight(pageWidth)));
+        float imageWidth = size.getWidth() * scale;
+        float imageHeight = size.getHeight() * scale;
+        plan.addPage(imageWidth + 2 * margin, imageHeight + margin + topMargin());
+        plan.addSlot(imageIndex, margin, margin, imageWidth, imageHeight);
+    }
+
+    private void planGrid(LayoutPlan.Builder plan, List<ImageSize> pageImages, int firstImage) {
+        boolean turned = autoOrientation
+                && gridArea(pageImages, pageHeight, pageWidth, rows, columns) > gridArea(pageImages, pageWidth, pageHeight, columns, rows);
+        float width = turned ? pageHeight : pageWidth;
+        float height = turned ? pageWidth : pageHeight;
+        int gridColumns = turned ? rows : columns;
+        int gridRows = turned ? columns : rows;
+        float gap = margin / 2;
+        float cellWidth = cellSize(contentWidth(width), gridColumns, gap);
+        float cellHeight = cellSize(contentHeight(height), gridRows, gap);
+
+        plan.addPage(width, height);
+        float top = margin + contentHeight(height);
+        for (int i = 0; i < pageImages.size(); i++) {
+            int column = i % gridColumns;
+            int row = i / gridColumns;
+            plan.addSlot(firstImage + i, margin + column * (cellWidth + gap),
+                    top - (row + 1) * cellHeight - row * gap, cellWidth, cellHeight);
+        }
+    }
+
+    /**
+     * Returns the total drawn area of the page's images on a page of the given orientation
+     */
+    private float gridArea(List<ImageSize> pageImages, float width, float height, int gridColumns, int gridRows) {
+        float gap = margin / 2;
+        float cellWidth = cellSize(contentWidth(width), gridColumns, gap);
+        float cellHeight = cellSize(contentHeight(height), gridRows, gap);
+        float area = 0;
+        for (ImageSize size : pageImages) {
+            if (size != null) {
+                float scale = fitScale(size, cellWidth, cellHeight);
+                area += size.getWidth() * scale * size.getHeight() * scale;
+            }
+        }
+        return area;
+    }
+
+    private static float cellSize(float length, int count, float gap) {
+        return (length - gap * (count - 1)) / count;
+    }
+
+    private static float fitScale(ImageSize size, float width, float height) {
+        return Math.min(width / size.getWidth(), height / size.getHeight());
+    }
+
+    private float topMargin() {
+        return Math.max(margin, HEADER_HEIGHT);
+    }
+
+    private float contentWidth(float width) {
+        return width - 2 * margin;
+    }
+
+    private float contentHeight(float height) {
+        return height - margin - topMargin();
+    }
+
+    void writeTo(Properties properties) {
+        properties.setProperty(KEY_MODE, mode.name());
+        properties.setProperty(KEY_PAGE_WIDTH, String.valueOf(pageWidth));
+        properties.setProperty(KEY_PAGE_HEIGHT, String.valueOf(pageHeight));
+        properties.setProperty(KEY_MARGIN, String.valueOf(margin));
+        properties.setProperty(KEY_AUTO_ORIENTATION, String.valueOf(autoOrientation));
+        properties.setProperty(KEY_COLUMNS, String.valueOf(columns));
+        properties.setProperty(KEY_ROWS, String.valueOf(rows));
+    }
+
+    /**
+     * Restores a layout written by {@link #writeTo}, or returns {@link #FIT_WIDTH} if none was written
+     *
+     * @throws IllegalArgumentException if a property is missing or malformed
+     */
+    static ImageLayout readFrom(Properties properties) {
+        String mode = properties.getProperty(KEY_MODE);
+        if (mode == null) {
+            return FIT_WIDTH;
+        }
+        return new ImageLayout(Mode.valueOf(mode), Float.parseFloat(require(properties, KEY_PAGE_WIDTH)),
+                Float.parseFloat(require(properties, KEY_PAGE_HEIGHT)), Float.parseFloat(require(properties, KEY_MARGIN)),
+                Boolean.parseBoolean(require(properties, KEY_AUTO_ORIENTATION)),
+                Integer.parseInt(require(properties, KEY_COLUMNS)), Integer.parseInt(require(properties, KEY_ROWS)));
+    }
+
+    private static String require(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Layout has no " + key);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ImageLayout)) {
+            return false;
+        }
+        ImageLayout other = (ImageLayout) o;
+        return mode == other.mode && pageWidth == other.pageWidth && pageHeight == other.pageHeight
+                && margin == other.margin && autoOrientation == other.autoOrientation
+                && columns == other.columns && rows == other.rows;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mode.hashCode();
+        result = 31 * result + Float.floatToIntBits(pageWidth);
+        result = 31 * result + Float.floatToIntBits(pageHeight);
+        result = 31 * result + Float.floatToIntBits(margin);
+        result = 31 * result + (autoOrientation ? 1 : 0);
+        result = 31 * result + columns;
+        return 31 * result + rows;
+    }
+
+    @Override
+    public String toString() {
+        return mode == Mode.GRID ? mode + " " + columns + "x" + rows : mode.toString();
+    }
+}
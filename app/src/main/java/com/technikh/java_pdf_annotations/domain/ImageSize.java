@@ -0,0 +1,160 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pixel dimensions of an image, read from its header without decoding any pixels
+ */
+public final class ImageSize {
+    private static final String TAG = "ImageSize";
+    /**
+     * Enough for the fixed headers of PNG, GIF, BMP and WebP
+     */
+    private static final int HEADER_BYTES = 32;
+
+    private final int width;
+    private final int height;
+
+    /**
+     * @throws IllegalArgumentException if a dimension is not positive
+     */
+    public ImageSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Reads the dimensions from the first bytes of the image. JPEG, PNG, GIF, BMP and WebP headers are
+     * parsed directly. Returns null for any other format or if the size can't be determined;
+     * see {@link ImageEncoder#readSize} for encoders that can decode other formats.
+     */
+    @Nullable
+    public static ImageSize read(ImageSource source) {
+        try (InputStream in = new BufferedInputStream(source.openStream(), 512)) {
+            return readHeader(in);
+        } catch (IOException | RuntimeException e) {
+            DomainLog.w(TAG, "Failed to read the size of " + source.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Parses a known header format from the start of the stream, or returns null for any other format.
+     * The stream must support mark and reset.
+     */
+    @Nullable
+    static ImageSize readHeader(InputStream in) throws IOException {
+        in.mark(HEADER_BYTES);
+        byte[] header = new byte[HEADER_BYTES];
+        int length = 0;
+        int read;
+        while (length < HEADER_BYTES && (read = in.read(header, length, HEADER_BYTES - length)) > 0) {
+            length += read;
+        }
+        in.reset();
+
+        if (length >= 2 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8) {
+            JpegHeader jpeg = JpegHeader.read(in);
+            return jpeg != null ? sizeOrNull(jpeg.getWidth(), jpeg.getHeight()) : null;
+        }
+        if (length >= 24 && startsWith(header, 0, "\u0089PNG") && startsWith(header, 12, "IHDR")) {
+            return sizeOrNull(bigEndianInt(header, 16), bigEndianInt(header, 20));
+        }
+        if (length >= 10 && startsWith(header, 0, "GIF8")) {
+            return sizeOrNull(littleEndianShort(header, 6), littleEndianShort(header, 8));
+        }
+        if (length >= 26 && startsWith(header, 0, "BM")) {
+            // Negative heights mark top-down bitmaps
+            return sizeOrNull(littleEndianInt(header, 18), Math.abs(littleEndianInt(header, 22)));
+        }
+        if (length >= 30 && startsWith(header, 0, "RIFF") && startsWith(header, 8, "WEBP")) {
+            return readWebp(header);
+        }
+        return null;
+    }
+
+    @Nullable
+    private static ImageSize readWebp(byte[] header) {
+        if (startsWith(header, 12, "VP8 ")) {
+            // Lossy: 14-bit dimensions after the frame tag and start code
+            return sizeOrNull(littleEndianShort(header, 26) & 0x3FFF, littleEndianShort(header, 28) & 0x3FFF);
+        }
+        if (startsWith(header, 12, "VP8L")) {
+            // Lossless: 14-bit width and height minus one, packed after the signature byte
+            int bits = littleEndianInt(header, 21);
+            return sizeOrNull((bits & 0x3FFF) + 1, ((bits >>> 14) & 0x3FFF) + 1);
+        }
+        if (startsWith(header, 12, "VP8X")) {
+            // Extended: 24-bit canvas width and height minus one
+            int width = (header[24] & 0xFF) | (header[25] & 0xFF) << 8 | (header[26] & 0xFF) << 16;
+            int height = (header[27] & 0xFF) | (header[28] & 0xFF) << 8 | (header[29] & 0xFF) << 16;
+            return sizeOrNull(width + 1, height + 1);
+        }
+        return null;
+    }
+
+    @Nullable
+    private static ImageSize sizeOrNull(int width, int height) {
+        return width > 0 && height > 0 ? new ImageSize(width, height) : null;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, String signature) {
+        for (int i = 0; i < signature.length(); i++) {
+            if ((data[offset + i] & 0xFF) != signature.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int bigEndianInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+                | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+
+    private static int littleEndianInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24;
+    }
+
+    private static int littleEndianShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ImageSize)) {
+            return false;
+        }
+        ImageSize other = (ImageSize) o;
+        return width == other.width && height == other.height;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * width + height;
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height;
+    }
+}
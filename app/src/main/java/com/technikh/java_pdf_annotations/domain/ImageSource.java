@@ -0,0 +1,65 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Source of the encoded bytes of one image, e.g. a file or a content URI.
+ * Sources may be opened more than once.
+ */
+public interface ImageSource {
+
+    /**
+     * Name used in logs and error messages
+     */
+    String getName();
+
+    /**
+     * Opens a new stream positioned at the first byte of the image
+     */
+    InputStream openStream() throws IOException;
+
+    /**
+     * Returns the size of the image in bytes, or -1 if unknown
+     */
+    long getLength();
+
+    /**
+     * Reads the whole image into memory.
+     * File-backed streams of known length are read with a single channel transfer into the result.
+     */
+    default byte[] readAllBytes() throws IOException {
+        long length = getLength();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Image too large: " + getName());
+        }
+
+        try (InputStream in = openStream()) {
+            if (length >= 0 && in instanceof FileInputStream) {
+                byte[] bytes = new byte[(int) length];
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                FileChannel channel = ((FileInputStream) in).getChannel();
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Keep reading until the buffer is full or the channel ends
+                }
+                if (buffer.hasRemaining()) {
+                    throw new EOFException("Image truncated: " + getName());
+                }
+                return bytes;
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length > 0 ? (int) length : 64 * 1024);
+            byte[] chunk = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSArray;
+import com.tom_roush.pdfbox.cos.COSBase;
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.cos.COSString;
+import com.tom_roush.pdfbox.io.RandomAccessRead;
+import com.tom_roush.pdfbox.pdfwriter.COSWriter;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * Writes the changes to a document loaded from a file as an incremental update appended to that file.
+ * Only new objects and objects flagged with {@code setNeedToBeUpdated} are written; the existing bytes
+ * are kept as they are. A failed write is cut off again, so the file is never left with a broken update.
+ */
+final class IncrementalUpdate {
+
+    private IncrementalUpdate() {
+    }
+
+    /**
+     * Appends the document's pending changes to the file it was loaded from
+     *
+     * @return the number of bytes appended
+     */
+    static long append(PDDocument document, File pdfFile) throws IOException {
+        long originalLength = pdfFile.length();
+        boolean written = false;
+        COSWriter writer = null;
+        try {
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(pdfFile, true));
+            writer = new COSWriter(outputStream, new OriginalRevision(originalLength));
+            writer.write(document);
+            writer.close();
+            writer = null;
+            written = true;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                    // The update is cut off below anyway
+                }
+            }
+            if (!written) {
+                truncate(pdfFile, originalLength);
+            }
+        }
+        return pdfFile.length() - originalLength;
+    }
+
+    /**
+     * Flags the catalog and the root of the page tree, so pages added with {@link PDDocument#addPage} are
+     * reachable from the update. New pages themselves are always written.
+     */
+    static void markPagesAdded(PDDocument document) {
+        document.getDocumentCatalog().getCOSObject().setNeedToBeUpdated(true);
+        COSDictionary pageTree = document.getPages().getCOSObject();
+        pageTree.setNeedToBeUpdated(true);
+        COSBase kids = pageTree.getDictionaryObject(COSName.KIDS);
+        if (kids instanceof COSArray) {
+            ((COSArray) kids).setNeedToBeUpdated(true);
+        }
+    }
+
+    /**
+     * Keeps the first trailer ID, which identifies the original document, and replaces the second one,
+     * which identifies this revision
+     */
+    static void setRevisionId(PDDocument document, byte[] revisionId) {
+        COSDictionary trailer = document.getDocument().getTrailer();
+        COSString revision = new COSString(revisionId);
+        COSBase existing = trailer.getDictionaryObject(COSName.ID);
+        COSBase original = existing instanceof COSArray && ((COSArray) existing).size() > 0
+                ? ((COSArray) existing).getObject(0) : revision;
+        COSArray idArray = new COSArray();
+        idArray.add(original);
+        idArray.add(revision);
+        trailer.setItem(COSName.ID, idArray);
+    }
+
+    /**
+     * Cuts the file back to an earlier length, dropping the updates appended since
+     */
+    static void truncate(File pdfFile, long length) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(pdfFile, "rw")) {
+            file.setLength(length);
+        }
+    }
+
+    /**
+     * Stands in for the existing file when writing an update in place.
+     * The writer needs its length to compute offsets and would otherwise copy its bytes ahead of the update.
+     */
+    private static class OriginalRevision implements RandomAccessRead {
+        private final long length;
+        private long position;
+
+        OriginalRevision(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] b) {
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] b, int offset, int length) {
+            return -1;
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public void seek(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        @Override
+        public int peek() {
+            return -1;
+        }
+
+        @Override
+        public void rewind(int bytes) {
+            position -= bytes;
+        }
+
+        @Override
+        public byte[] readFully(int length) throws IOException {
+            throw new IOException("Original revision is not readable");
+        }
+
+        @Override
+        public boolean isEOF() {
+            return true;
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
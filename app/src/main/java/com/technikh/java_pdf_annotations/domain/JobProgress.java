@@ -0,0 +1,87 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Immutable snapshot of a generation job's state
+ */
+public final class JobProgress {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        /**
+         * Cancel accepted while running; the job stops at the next page and then becomes {@link #CANCELLED}
+         */
+        CANCELLING,
+        COMPLETED,
+        FAILED,
+        CANCELLED
+    }
+
+    private final long jobId;
+    private final State state;
+    private final int pagesDone;
+    private final int pageCount;
+    private final File outputFile;
+    private final List<File> writtenFiles;
+    @Nullable
+    private final String errorMessage;
+
+    JobProgress(long jobId, State state, int pagesDone, int pageCount, File outputFile, List<File> writtenFiles,
+                @Nullable String errorMessage) {
+        this.jobId = jobId;
+        this.state = state;
+        this.pagesDone = pagesDone;
+        this.pageCount = pageCount;
+        this.outputFile = outputFile;
+        this.writtenFiles = writtenFiles;
+        this.errorMessage = errorMessage;
+    }
+
+    public long getJobId() {
+        return jobId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getPagesDone() {
+        return pagesDone;
+    }
+
+    /**
+     * Returns the number of pages in the job, or 0 before the job has started
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * Returns the files the job has completed so far in the order they were written, e.g. the chunks of a
+     * large batch, which are usable before the job ends. Empty for jobs that don't report their files.
+     */
+    public List<File> getWrittenFiles() {
+        return writtenFiles;
+    }
+
+    @Nullable
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * Returns whether the job has reached a final state
+     */
+    public boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED || state == State.CANCELLED;
+    }
+}
@@ -0,0 +1,150 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Frame header of a baseline or progressive JPEG, read without decoding any pixels
+ */
+public final class JpegHeader {
+    private final int width;
+    private final int height;
+    private final int components;
+
+    private JpegHeader(int width, int height, int components) {
+        this.width = width;
+        this.height = height;
+        this.components = components;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Color components per pixel: 1 for gray, 3 for YCbCr or RGB, 4 for CMYK
+     */
+    public int getComponents() {
+        return components;
+    }
+
+    /**
+     * Parses the start-of-frame marker, or returns null if the data is not a JPEG
+     */
+    @Nullable
+    public static JpegHeader parse(byte[] data, int length) {
+        if (length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+            return null;
+        }
+
+        int offset = 2;
+        while (offset + 3 < length) {
+            if ((data[offset] & 0xFF) != 0xFF) {
+                return null;
+            }
+            int marker = data[offset + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // Fill byte before the actual marker
+                offset++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                // Standalone markers carry no length
+                offset += 2;
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // End of image or start of scan before any frame header
+                return null;
+            }
+
+            int segmentLength = ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+            if (isStartOfFrame(marker)) {
+                if (offset + 9 >= length) {
+                    return null;
+                }
+                int height = ((data[offset + 5] & 0xFF) << 8) | (data[offset + 6] & 0xFF);
+                int width = ((data[offset + 7] & 0xFF) << 8) | (data[offset + 8] & 0xFF);
+                int components = data[offset + 9] & 0xFF;
+                return new JpegHeader(width, height, components);
+            }
+            offset += 2 + segmentLength;
+        }
+        return null;
+    }
+
+    /**
+     * Reads up to the start-of-frame marker, skipping the bodies of earlier segments such as EXIF data,
+     * or returns null if the stream is not a JPEG
+     */
+    @Nullable
+    static JpegHeader read(InputStream in) throws IOException {
+        if (in.read() != 0xFF || in.read() != 0xD8) {
+            return null;
+        }
+
+        while (true) {
+            int marker = in.read();
+            if (marker != 0xFF) {
+                return null;
+            }
+            do {
+                // Fill bytes before the actual marker
+                marker = in.read();
+            } while (marker == 0xFF);
+            if (marker < 0 || marker == 0xD9 || marker == 0xDA) {
+                return null;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                continue;
+            }
+
+            int segmentLength = readUnsignedShort(in);
+            if (isStartOfFrame(marker)) {
+                // Sample precision, then the frame dimensions
+                if (in.read() < 0) {
+                    return null;
+                }
+                int height = readUnsignedShort(in);
+                int width = readUnsignedShort(in);
+                int components = in.read();
+                return components >= 0 ? new JpegHeader(width, height, components) : null;
+            }
+            skipFully(in, segmentLength - 2);
+        }
+    }
+
+    private static int readUnsignedShort(InputStream in) throws IOException {
+        int high = in.read();
+        int low = in.read();
+        if ((high | low) < 0) {
+            throw new EOFException("JPEG header truncated");
+        }
+        return (high << 8) | low;
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("JPEG header truncated");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        // SOF0-SOF15, excluding DHT (C4), JPG (C8) and DAC (CC)
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+}
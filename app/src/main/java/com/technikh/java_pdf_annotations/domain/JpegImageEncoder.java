@@ -0,0 +1,34 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+
+import java.io.IOException;
+
+/**
+ * Embeds JPEG files as they are, reading only their frame header.
+ * It needs no Android graphics APIs, so it also works where images can't be decoded, e.g. in a headless batch run.
+ * Other formats and CMYK JPEGs are rejected.
+ */
+public class JpegImageEncoder implements ImageEncoder {
+
+    @Override
+    public EncodedImage encode(ImageSource source) throws IOException {
+        byte[] bytes = source.readAllBytes();
+        JpegHeader header = JpegHeader.parse(bytes, bytes.length);
+        if (header == null) {
+            throw new IOException("Not a JPEG image: " + source.getName());
+        }
+        if (header.getComponents() != 1 && header.getComponents() != 3) {
+            throw new IOException("Unsupported JPEG with " + header.getComponents() + " components: " + source.getName());
+        }
+        return new EncodedImage(bytes, COSName.DCT_DECODE, header.getWidth(), header.getHeight(), 8,
+                header.getComponents() == 1 ? PDDeviceGray.INSTANCE : PDDeviceRGB.INSTANCE);
+    }
+
+    @Override
+    public String getParametersKey() {
+        return "jpeg";
+    }
+}
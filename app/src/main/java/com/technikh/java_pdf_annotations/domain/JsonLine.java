@@ -0,0 +1,174 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes and reads the flat JSON objects of JSON Lines files, one object per line.
+ * Only what those files need is supported: objects of strings, numbers, booleans and null, without nesting.
+ */
+final class JsonLine {
+
+    private JsonLine() {
+    }
+
+    /**
+     * Appends a quoted JSON string, escaping quotes, backslashes and control characters
+     */
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Parses one flat object. Strings are unescaped, numbers and booleans are returned as written,
+     * and null values map to null.
+     *
+     * @throws IOException if the line is not a flat JSON object
+     */
+    static Map<String, String> parse(String line) throws IOException {
+        Parser parser = new Parser(line);
+        Map<String, String> values = new HashMap<>();
+        parser.expect('{');
+        if (!parser.consume('}')) {
+            do {
+                String key = parser.readString();
+                parser.expect(':');
+                values.put(key, parser.readValue());
+            } while (parser.consume(','));
+            parser.expect('}');
+        }
+        parser.expectEnd();
+        return values;
+    }
+
+    private static class Parser {
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        void expect(char c) throws IOException {
+            if (!consume(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        boolean consume(char c) {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void expectEnd() throws IOException {
+            skipWhitespace();
+            if (position < text.length()) {
+                throw error("Unexpected text after the object");
+            }
+        }
+
+        String readValue() throws IOException {
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw error("Missing value");
+            }
+            char c = text.charAt(position);
+            if (c == '"') {
+                return readString();
+            }
+            if (c == '{' || c == '[') {
+                throw error("Nested values are not supported");
+            }
+            int start = position;
+            while (position < text.length() && ",}".indexOf(text.charAt(position)) < 0
+                    && !Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            String literal = text.substring(start, position);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.isEmpty()) {
+                throw error("Missing value");
+            }
+            return literal;
+        }
+
+        String readString() throws IOException {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("Truncated unicode escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        // \" \\ and \/
+                        value.append(escaped);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at column " + (position + 1));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Appends each span to a file as one JSON object per line, e.g.
+ * {@code {"name":"encode","document":"out.pdf","page":3,"ts":1700000000000,"durationNs":5100000,"bytesIn":2048,"bytesOut":1024,"heapBytes":9000000}}.
+ * Lines are flushed in batches and on close. A failed write disables the sink instead of failing the job.
+ */
+public class JsonLinesMetricsSink implements MetricsSink, Closeable {
+    private static final int FLUSH_EVERY_SPANS = 64;
+
+    private final Writer writer;
+    private int unflushedSpans;
+    private boolean failed;
+
+    public JsonLinesMetricsSink(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create metrics directory");
+        }
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public synchronized void onSpan(MetricSpan span) {
+        if (failed) {
+            return;
+        }
+        try {
+            writer.write(toJson(span));
+            writer.write('\n');
+            if (++unflushedSpans >= FLUSH_EVERY_SPANS) {
+                writer.flush();
+                unflushedSpans = 0;
+            }
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+
+    static String toJson(MetricSpan span) {
+        StringBuilder json = new StringBuilder(160);
+        json.append("{\"name\":");
+        JsonLine.appendString(json, span.getName());
+        json.append(",\"document\":");
+        JsonLine.appendString(json, span.getDocument());
+        json.append(",\"page\":").append(span.getPageIndex())
+                .append(",\"ts\":").append(span.getTimestampMillis())
+                .append(",\"durationNs\":").append(span.getDurationNanos())
+                .append(",\"bytesIn\":").append(span.getBytesIn())
+                .append(",\"bytesOut\":").append(span.getBytesOut())
+                .append(",\"heapBytes\":").append(span.getHeapUsedBytes())
+                .append('}');
+        return json.toString();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,124 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+
+import java.util.List;
+
+/**
+ * Result of {@link ImageLayout#plan}: the size of every page and the slot each image is drawn into.
+ * Images fill pages in order, so the images of a page are consecutive. Immutable.
+ */
+public final class LayoutPlan {
+    private final float[] pageSizes;
+    private final int[] pageOfImage;
+    private final float[] slots;
+    private final float[] drawWidths;
+
+    private LayoutPlan(float[] pageSizes, int[] pageOfImage, float[] slots, float[] drawWidths) {
+        this.pageSizes = pageSizes;
+        this.pageOfImage = pageOfImage;
+        this.slots = slots;
+        this.drawWidths = drawWidths;
+    }
+
+    public int getPageCount() {
+        return pageSizes.length / 2;
+    }
+
+    public int getImageCount() {
+        return pageOfImage.length;
+    }
+
+    public PDRectangle getPageSize(int pageIndex) {
+        return new PDRectangle(pageSizes[2 * pageIndex], pageSizes[2 * pageIndex + 1]);
+    }
+
+    public int getPageOf(int imageIndex) {
+        return pageOfImage[imageIndex];
+    }
+
+    public boolean isFirstOnPage(int imageIndex) {
+        return imageIndex == 0 || pageOfImage[imageIndex - 1] != pageOfImage[imageIndex];
+    }
+
+    public boolean isLastOnPage(int imageIndex) {
+        return imageIndex == pageOfImage.length - 1 || pageOfImage[imageIndex + 1] != pageOfImage[imageIndex];
+    }
+
+    /**
+     * Returns the rectangle reserved for the image on its page
+     */
+    public PDRectangle getSlot(int imageIndex) {
+        int offset = 4 * imageIndex;
+        return new PDRectangle(slots[offset], slots[offset + 1], slots[offset + 2], slots[offset + 3]);
+    }
+
+    /**
+     * Returns where an image of the given size is drawn: as large as fits its slot, keeping its aspect ratio,
+     * and centered in the slot. The actual image may differ from the planned size, e.g. after resampling.
+     */
+    public PDRectangle getPlacement(int imageIndex, float imageWidth, float imageHeight) {
+        int offset = 4 * imageIndex;
+        float slotWidth = slots[offset + 2];
+        float slotHeight = slots[offset + 3];
+        float scale = Math.min(slotWidth / imageWidth, slotHeight / imageHeight);
+        float width = imageWidth * scale;
+        float height = imageHeight * scale;
+        return new PDRectangle(slots[offset] + (slotWidth - width) / 2, slots[offset + 1] + (slotHeight - height) / 2,
+                width, height);
+    }
+
+    /**
+     * Returns the width the image is drawn at, in PDF points, so it can be resampled for its slot
+     * rather than for the page. The full slot width for images of unknown size.
+     */
+    public float getDrawWidth(int imageIndex) {
+        return drawWidths[imageIndex];
+    }
+
+    static final class Builder {
+        private final float[] pageSizes;
+        private final int[] pageOfImage;
+        private final float[] slots;
+        private int pageCount;
+
+        Builder(int imageCount, int pageCount) {
+            this.pageSizes = new float[2 * pageCount];
+            this.pageOfImage = new int[imageCount];
+            this.slots = new float[4 * imageCount];
+        }
+
+        /**
+         * Starts a page; the following slots go on it
+         */
+        void addPage(float width, float height) {
+            pageSizes[2 * pageCount] = width;
+            pageSizes[2 * pageCount + 1] = height;
+            pageCount++;
+        }
+
+        void addSlot(int imageIndex, float x, float y, float width, float height) {
+            pageOfImage[imageIndex] = pageCount - 1;
+            int offset = 4 * imageIndex;
+            slots[offset] = x;
+            slots[offset + 1] = y;
+            slots[offset + 2] = width;
+            slots[offset + 3] = height;
+        }
+
+        /**
+         * @param sizes the sizes the slots were planned for, null for images of unknown size
+         */
+        LayoutPlan build(List<ImageSize> sizes) {
+            float[] drawWidths = new float[pageOfImage.length];
+            LayoutPlan plan = new LayoutPlan(pageSizes, pageOfImage, slots, drawWidths);
+            for (int i = 0; i < drawWidths.length; i++) {
+                ImageSize size = sizes.get(i);
+                drawWidths[i] = size != null
+                        ? plan.getPlacement(i, size.getWidth(), size.getHeight()).getWidth()
+                        : slots[4 * i + 2];
+            }
+            return plan;
+        }
+    }
+}
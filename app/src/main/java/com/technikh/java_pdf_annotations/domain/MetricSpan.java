@@ -0,0 +1,80 @@
+package com.technikh.java_pdf_annotations.domain;
+
+/**
+ * One timed step of generation or extraction, e.g. encoding the image of page 3 of a document
+ */
+public final class MetricSpan {
+    private final String name;
+    private final String document;
+    private final int pageIndex;
+    private final long timestampMillis;
+    private final long durationNanos;
+    private final long bytesIn;
+    private final long bytesOut;
+    private final long heapUsedBytes;
+
+    public MetricSpan(String name, String document, int pageIndex, long timestampMillis, long durationNanos,
+                      long bytesIn, long bytesOut, long heapUsedBytes) {
+        this.name = name;
+        this.document = document;
+        this.pageIndex = pageIndex;
+        this.timestampMillis = timestampMillis;
+        this.durationNanos = durationNanos;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.heapUsedBytes = heapUsedBytes;
+    }
+
+    /**
+     * Returns the step, one of the span names declared in {@link Metrics}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the name of the document or job the step belongs to
+     */
+    public String getDocument() {
+        return document;
+    }
+
+    /**
+     * Returns the 0-based page index, or -1 for steps covering the whole document
+     */
+    public int getPageIndex() {
+        return pageIndex;
+    }
+
+    /**
+     * Returns the wall-clock time the step ended at
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Returns the bytes consumed by the step, or 0 if not applicable
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * Returns the bytes produced by the step, or 0 if not applicable
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * Returns the heap in use when the step ended
+     */
+    public long getHeapUsedBytes() {
+        return heapUsedBytes;
+    }
+}
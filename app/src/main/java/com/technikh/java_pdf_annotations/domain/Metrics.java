@@ -0,0 +1,93 @@
+package com.technikh.java_pdf_annotations.domain;
+
+/**
+ * Records timed spans of the generation and extraction hot paths into a {@link MetricsSink}.
+ * Usage is {@code long start = metrics.start(); ...; metrics.record(Metrics.ENCODE, page, start, in, out);}.
+ * {@link #DISABLED} skips the clock and allocates nothing, so instrumented code costs a field read and a branch.
+ * Instances are immutable and thread-safe.
+ */
+public final class Metrics {
+    /**
+     * Copying a stream-backed URI into a spool file
+     */
+    public static final String COPY = "copy";
+    /**
+     * Reading, decoding, resampling and compressing a source image
+     */
+    public static final String ENCODE = "encode";
+    /**
+     * Attaching encoded image data to a document as an image XObject
+     */
+    public static final String EMBED = "embed";
+    /**
+     * Adding a page and writing its content stream
+     */
+    public static final String CONTENT = "content";
+    /**
+     * Creating the annotations of a page
+     */
+    public static final String ANNOTATE = "annotate";
+    /**
+     * Writing a document to its file
+     */
+    public static final String SAVE = "save";
+    /**
+     * Reading the annotations of a page
+     */
+    public static final String EXTRACT = "extract";
+    /**
+     * A whole generation job, from ingestion to the last saved file
+     */
+    public static final String JOB = "job";
+
+    public static final Metrics DISABLED = new Metrics(null, "");
+
+    private final MetricsSink sink;
+    private final String document;
+
+    private Metrics(MetricsSink sink, String document) {
+        this.sink = sink;
+        this.document = document;
+    }
+
+    /**
+     * Returns metrics recording into the sink
+     */
+    public static Metrics to(MetricsSink sink) {
+        return new Metrics(sink, "");
+    }
+
+    /**
+     * Returns metrics recording into the same sink with spans labelled with the document, e.g. its file name
+     */
+    public Metrics forDocument(String document) {
+        return sink == null ? this : new Metrics(sink, document);
+    }
+
+    public boolean isEnabled() {
+        return sink != null;
+    }
+
+    /**
+     * Returns the start time to pass to {@link #record}
+     */
+    public long start() {
+        return sink == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records a step that began at startNanos and ends now
+     *
+     * @param pageIndex 0-based page index, or -1 for steps covering the whole document
+     */
+    public void record(String name, int pageIndex, long startNanos, long bytesIn, long bytesOut) {
+        if (sink == null) {
+            return;
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+        Runtime runtime = Runtime.getRuntime();
+        long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+        sink.onSpan(new MetricSpan(name, document, pageIndex, System.currentTimeMillis(), durationNanos,
+                bytesIn, bytesOut, heapUsed));
+    }
+}
@@ -0,0 +1,64 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps running totals per step for an in-app snapshot, and passes every span on to an optional sink,
+ * e.g. a {@link JsonLinesMetricsSink} for export
+ */
+public class MetricsAggregator implements MetricsSink {
+    @Nullable
+    private final MetricsSink downstream;
+    private final Map<String, long[]> totalsByName = new LinkedHashMap<>();
+    private long peakHeapBytes;
+
+    public MetricsAggregator() {
+        this(null);
+    }
+
+    public MetricsAggregator(@Nullable MetricsSink downstream) {
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void onSpan(MetricSpan span) {
+        synchronized (this) {
+            // count, total, max, bytes in, bytes out
+            long[] totals = totalsByName.get(span.getName());
+            if (totals == null) {
+                totals = new long[5];
+                totalsByName.put(span.getName(), totals);
+            }
+            totals[0]++;
+            totals[1] += span.getDurationNanos();
+            totals[2] = Math.max(totals[2], span.getDurationNanos());
+            totals[3] += span.getBytesIn();
+            totals[4] += span.getBytesOut();
+            peakHeapBytes = Math.max(peakHeapBytes, span.getHeapUsedBytes());
+        }
+        if (downstream != null) {
+            downstream.onSpan(span);
+        }
+    }
+
+    public synchronized MetricsSnapshot snapshot() {
+        Map<String, MetricsSnapshot.Stats> stats = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : totalsByName.entrySet()) {
+            long[] totals = entry.getValue();
+            stats.put(entry.getKey(), new MetricsSnapshot.Stats(totals[0], totals[1], totals[2], totals[3], totals[4]));
+        }
+        return new MetricsSnapshot(stats, peakHeapBytes);
+    }
+
+    /**
+     * Forgets everything recorded so far
+     */
+    public synchronized void reset() {
+        totalsByName.clear();
+        peakHeapBytes = 0;
+    }
+}
@@ -0,0 +1,10 @@
+package com.technikh.java_pdf_annotations.domain;
+
+/**
+ * Receives every span recorded through {@link Metrics}.
+ * Called on whichever thread finished the work, so implementations must be thread-safe.
+ */
+public interface MetricsSink {
+
+    void onSpan(MetricSpan span);
+}
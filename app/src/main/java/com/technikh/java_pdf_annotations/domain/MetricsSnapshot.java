@@ -0,0 +1,85 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Totals of the spans recorded by a {@link MetricsAggregator} up to one point in time
+ */
+public final class MetricsSnapshot {
+    private final Map<String, Stats> statsByName;
+    private final long peakHeapBytes;
+
+    MetricsSnapshot(Map<String, Stats> statsByName, long peakHeapBytes) {
+        this.statsByName = Collections.unmodifiableMap(statsByName);
+        this.peakHeapBytes = peakHeapBytes;
+    }
+
+    /**
+     * Returns the names of every step recorded at least once
+     */
+    public Set<String> getSpanNames() {
+        return statsByName.keySet();
+    }
+
+    /**
+     * Returns the totals of a step, or null if it was never recorded
+     */
+    @Nullable
+    public Stats getStats(String name) {
+        return statsByName.get(name);
+    }
+
+    /**
+     * Returns the highest heap usage seen at the end of any span
+     */
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    /**
+     * Totals of one step across all documents and pages
+     */
+    public static final class Stats {
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long bytesIn;
+        private final long bytesOut;
+
+        Stats(long count, long totalNanos, long maxNanos, long bytesIn, long bytesOut) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getAverageNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        public long getBytesOut() {
+            return bytesOut;
+        }
+    }
+}
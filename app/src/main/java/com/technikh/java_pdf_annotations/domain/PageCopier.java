@@ -0,0 +1,111 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSArray;
+import com.tom_roush.pdfbox.cos.COSBase;
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.cos.COSNull;
+import com.tom_roush.pdfbox.cos.COSObject;
+import com.tom_roush.pdfbox.cos.COSStream;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Copies pages from other documents into a target document object by object.
+ * Streams are copied in their stored, still compressed form, so images are never decoded or re-encoded.
+ * Objects shared between copied pages, such as an image used on several pages, are copied once.
+ * Indirect objects stay indirect, and annotations point to the copied page.
+ */
+final class PageCopier {
+    private final PDDocument target;
+    private final Map<COSBase, COSBase> copies = new IdentityHashMap<>();
+
+    PageCopier(PDDocument target) {
+        this.target = target;
+    }
+
+    /**
+     * Appends a copy of the page to the target. The source document must stay open until the target is saved.
+     */
+    PDPage copyPage(PDPage page) throws IOException {
+        COSDictionary source = page.getCOSObject();
+        COSDictionary copy = new COSDictionary();
+        // Registered first, so annotations referring back to their page get the copy
+        copies.put(source, copy);
+        for (Map.Entry<COSName, COSBase> entry : source.entrySet()) {
+            // The copy joins the target's page tree instead
+            if (!COSName.PARENT.equals(entry.getKey())) {
+                copy.setItem(entry.getKey(), copy(entry.getValue()));
+            }
+        }
+
+        PDPage copiedPage = new PDPage(copy);
+        // Attributes the source page inherited from its page tree
+        copiedPage.setMediaBox(page.getMediaBox());
+        copiedPage.setCropBox(page.getCropBox());
+        copiedPage.setRotation(page.getRotation());
+        if (!copy.containsKey(COSName.RESOURCES) && page.getResources() != null) {
+            copy.setItem(COSName.RESOURCES, copy(page.getResources().getCOSObject()));
+        }
+        target.addPage(copiedPage);
+        return copiedPage;
+    }
+
+    private COSBase copy(COSBase base) throws IOException {
+        COSBase object = base instanceof COSObject ? ((COSObject) base).getObject() : base;
+        if (object == null) {
+            return COSNull.NULL;
+        }
+        COSBase copy = copies.get(object);
+        if (copy == null) {
+            copy = copyObject(object);
+        }
+        return base instanceof COSObject ? new COSObject(copy) : copy;
+    }
+
+    private COSBase copyObject(COSBase object) throws IOException {
+        if (object instanceof COSStream) {
+            COSStream source = (COSStream) object;
+            COSStream copy = target.getDocument().createCOSStream();
+            copies.put(source, copy);
+            copyEntries(source, copy);
+            try (InputStream in = source.createRawInputStream(); OutputStream out = copy.createRawOutputStream()) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            return copy;
+        }
+        if (object instanceof COSDictionary) {
+            COSDictionary copy = new COSDictionary();
+            copies.put(object, copy);
+            copyEntries((COSDictionary) object, copy);
+            return copy;
+        }
+        if (object instanceof COSArray) {
+            COSArray source = (COSArray) object;
+            COSArray copy = new COSArray();
+            copies.put(object, copy);
+            for (int i = 0; i < source.size(); i++) {
+                copy.add(copy(source.get(i)));
+            }
+            return copy;
+        }
+        // Names, numbers, strings and booleans are never modified, so they can be shared
+        return object;
+    }
+
+    private void copyEntries(COSDictionary source, COSDictionary copy) throws IOException {
+        for (Map.Entry<COSName, COSBase> entry : source.entrySet()) {
+            copy.setItem(entry.getKey(), copy(entry.getValue()));
+        }
+    }
+}
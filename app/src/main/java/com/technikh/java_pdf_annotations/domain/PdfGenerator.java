@@ -1,24 +1,30 @@
 package com.technikh.java_pdf_annotations.domain;
 
-import android.content.Context;
+import androidx.annotation.Nullable;
 
-import androidx.annotation.NonNull;
-
-import com.tom_roush.pdfbox.android.PDFBoxResourceLoader;
+import com.tom_roush.pdfbox.cos.COSArray;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
 import com.tom_roush.pdfbox.pdmodel.PDDocument;
 import com.tom_roush.pdfbox.pdmodel.PDPage;
 import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
 import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
-import com.tom_roush.pdfbox.pdmodel.font.PDType1Font;
-import com.tom_roush.pdfbox.pdmodel.graphics.color.PDColor;
-import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import com.tom_roush.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
-import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotationText;
+import com.tom_roush.pdfbox.util.Matrix;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Generates PDF documents with images and annotations.
@@ -28,116 +34,635 @@ import java.util.List;
  */
 public class PdfGenerator {
 
+    private final ScratchPolicy scratchPolicy;
+    private final ImageEncoder imageEncoder;
+    private final int workerCount;
+    private volatile Metrics metrics = Metrics.DISABLED;
+    private volatile ImageLayout layout = ImageLayout.FIT_WIDTH;
+    private volatile SaveOptions saveOptions = SaveOptions.STANDARD;
+
     /**
-     * Initializes PDFBox resources
+     * Receives each encoded image in input order on the generating thread
      */
-    public PdfGenerator(Context context) {
-        PDFBoxResourceLoader.init(context);
+    private interface ImageConsumer {
+        void accept(int pageIndex, EncodedImage encodedImage) throws IOException;
     }
 
     /**
-     * Creates a text annotation with proper positioning and styling
+     * Lays out the pages of one document.
+     * Created per document, so resources shared between pages never cross documents.
      */
-    @NonNull
-    private static PDAnnotationText createAnnotation(String annotationText, float pageWidth, float pageHeight) {
-        PDAnnotationText textAnnotation = new PDAnnotationText();
-        textAnnotation.setContents(annotationText);
+    private interface PageWriter {
+        void addImage(int imageIndex, PDImageXObject pdImage) throws IOException;
+
+        /**
+         * Returns whether the image goes onto a new page rather than next to the previous image
+         */
+        default boolean startsPage(int imageIndex) {
+            return true;
+        }
+
+        /**
+         * Completes the last page before the document is saved
+         */
+        default void finish() throws IOException {
+        }
+    }
+
+    private interface PageWriterFactory {
+        PageWriter create(PDDocument document, Metrics metrics);
+    }
+
+    PdfGenerator(MemoryUsageSetting memoryUsageSetting, ImageEncoder imageEncoder, int workerCount) {
+        this(ScratchPolicy.of(memoryUsageSetting), imageEncoder, workerCount);
+    }
 
-        // Position at the top of the page
-        PDRectangle position = new PDRectangle();
-        position.setLowerLeftX(pageWidth / 2 - 20);
-        position.setLowerLeftY(pageHeight - 30);
-        position.setUpperRightX(pageWidth / 2 + 20);
-        position.setUpperRightY(pageHeight - 10);
-        textAnnotation.setRectangle(position);
+    /**
+     * Encodes images on up to workerCount threads; a worker count of 1 encodes every image on the calling thread.
+     * PDFBox finds its resources on the classpath, e.g. in a headless batch run on the JVM.
+     * On Android, create generators through PdfGeneratorFactory, which loads them from the app's assets.
+     */
+    public PdfGenerator(ScratchPolicy scratchPolicy, ImageEncoder imageEncoder, int workerCount) {
+        this.scratchPolicy = scratchPolicy;
+        this.imageEncoder = imageEncoder;
+        this.workerCount = Math.max(1, workerCount);
+    }
 
-        // Set properties
-        textAnnotation.setOpen(false); // Initially closed, shows only icon
-        textAnnotation.setName("Comment"); // Appears as comment icon
+    /**
+     * Records timings and sizes of every following generation, labelled with the output file name.
+     * {@link Metrics#DISABLED} by default.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
 
-        // Background color
-        float[] yellowColor = new float[]{1f, 1f, 0.8f};
-        PDColor color = new PDColor(yellowColor, PDDeviceRGB.INSTANCE);
-        textAnnotation.setColor(color);
+    /**
+     * Lays out the images of every following generation, except documents created from annotation specs,
+     * whose coordinates refer to the {@link ImageLayout#FIT_WIDTH} pages. Every layout first reads
+     * the header of every image to plan the pages. {@link ImageLayout#FIT_WIDTH} by default.
+     * Checkpointed jobs use the layout of their manifest instead.
+     */
+    public void setLayout(ImageLayout layout) {
+        this.layout = layout;
+    }
 
-        return textAnnotation;
+    /**
+     * Writes every following document, and every chunk, with these options. {@link SaveOptions#STANDARD} by default.
+     */
+    public void setSaveOptions(SaveOptions saveOptions) {
+        this.saveOptions = saveOptions;
     }
 
     /**
      * Creates a PDF with standard text annotations directly drawn on the page
+     *
+     * @return per-page sizes of the embedded images
+     */
+    public GenerationReport createPdfWithAnnotations(List<? extends ImageSource> images, File outputFile, String annotationText) throws IOException {
+        return createPdfWithAnnotations(images, outputFile, annotationText, null);
+    }
+
+    /**
+     * Creates a PDF with standard text annotations, reporting progress after each page.
+     * Interrupting the calling thread cancels generation with an {@link InterruptedIOException}.
+     *
+     * @return per-page sizes of the embedded images
+     */
+    public GenerationReport createPdfWithAnnotations(List<? extends ImageSource> images, File outputFile, String annotationText,
+                                                     @Nullable ProgressListener progressListener) throws IOException {
+        LayoutPlan plan = plan(images, layout, null);
+        return generate(images, outputFile, annotationText, plan, pageWriters(annotationText, false, plan),
+                progressListener, null);
+    }
+
+    /**
+     * Creates a PDF with toggleable Microsoft Office style annotations
+     * Annotations appear as comment icons that can be clicked to show/hide text
+     *
+     * @return per-page sizes of the embedded images
+     */
+    public GenerationReport createPdfWithToggleableAnnotations(List<? extends ImageSource> images, File outputFile, String annotationText) throws IOException {
+        return createPdfWithToggleableAnnotations(images, outputFile, annotationText, null);
+    }
+
+    /**
+     * Creates a PDF with toggleable annotations, reporting progress after each page.
+     * Interrupting the calling thread cancels generation with an {@link InterruptedIOException}.
+     *
+     * @return per-page sizes of the embedded images
+     */
+    public GenerationReport createPdfWithToggleableAnnotations(List<? extends ImageSource> images, File outputFile, String annotationText,
+                                                               @Nullable ProgressListener progressListener) throws IOException {
+        LayoutPlan plan = plan(images, layout, null);
+        return generate(images, outputFile, annotationText, plan, pageWriters(annotationText, true, plan),
+                progressListener, null);
+    }
+
+    /**
+     * Creates a PDF with one image per page and any number of comment annotations per page
+     *
+     * @return per-page sizes of the embedded images
      */
-    public void createPdfWithAnnotations(List<String> imagePaths, File outputFile, String annotationText) throws IOException {
-        try (PDDocument document = new PDDocument()) {
-            for (String imagePath : imagePaths) {
-                PDPage page = new PDPage(PDRectangle.A4);
-                document.addPage(page);
-
-                float pageHeight = page.getMediaBox().getHeight();
-                float pageWidth = page.getMediaBox().getWidth();
-
-                // Load and scale image
-                PDImageXObject pdImage = PDImageXObject.createFromFile(imagePath, document);
-                float originalWidth = pdImage.getWidth();
-                float originalHeight = pdImage.getHeight();
-                float scaleFactor = pageWidth / originalWidth;
-                float imageHeight = originalHeight * scaleFactor;
-
-                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
-                    // Draw image
-                    contentStream.drawImage(pdImage, 0, pageHeight - imageHeight - 40, pageWidth, imageHeight);
-
-                    // Draw text annotation
-                    contentStream.beginText();
-                    contentStream.setFont(PDType1Font.HELVETICA_BOLD, 12);
-
-                    // Center the text
-                    float textWidth = PDType1Font.HELVETICA_BOLD.getStringWidth(annotationText) / 1000 * 12;
-                    float textX = (pageWidth - textWidth) / 2;
-                    float textY = pageHeight - 30;
-
-                    contentStream.newLineAtOffset(textX, textY);
-                    contentStream.showText(annotationText);
-                    contentStream.endText();
+    public GenerationReport createPdfWithAnnotationSpecs(List<? extends ImageSource> images, File outputFile,
+                                                         List<AnnotationSpec> annotationSpecs) throws IOException {
+        return createPdfWithAnnotationSpecs(images, outputFile, annotationSpecs, null);
+    }
+
+    /**
+     * Creates a PDF with one image per page and places every annotation spec in the same pass.
+     * Specs are bucketed by page up front, so the cost grows linearly with the number of annotations.
+     * Interrupting the calling thread cancels generation with an {@link InterruptedIOException}.
+     *
+     * @return per-page sizes of the embedded images
+     * @throws IllegalArgumentException if a spec refers to a page beyond the last image
+     */
+    public GenerationReport createPdfWithAnnotationSpecs(List<? extends ImageSource> images, File outputFile,
+                                                         List<AnnotationSpec> annotationSpecs,
+                                                         @Nullable ProgressListener progressListener) throws IOException {
+        List<List<AnnotationSpec>> specsByPage = new ArrayList<>(images.size());
+        for (int i = 0; i < images.size(); i++) {
+            specsByPage.add(new ArrayList<>());
+        }
+        StringBuilder documentText = new StringBuilder();
+        for (AnnotationSpec spec : annotationSpecs) {
+            if (spec.getPageNumber() > images.size()) {
+                throw new IllegalArgumentException("Annotation on page " + spec.getPageNumber()
+                        + " but there are only " + images.size() + " images");
+            }
+            specsByPage.get(spec.getPageNumber() - 1).add(spec);
+            documentText.append(spec.getPageNumber()).append(':').append(spec.getText()).append('\n');
+        }
+
+        LayoutPlan plan = plan(images, ImageLayout.FIT_WIDTH, null);
+        return generate(images, outputFile, documentText.toString(), plan,
+                (document, pageMetrics) -> specPages(document, plan, specsByPage, pageMetrics), progressListener, null);
+    }
+
+    /**
+     * Adds a page per image to the end of an existing PDF, e.g. one generated earlier, annotated like
+     * {@link #createPdfWithAnnotations} or {@link #createPdfWithToggleableAnnotations}.
+     * The new pages are written as an incremental update in place, so existing pages and images are neither
+     * decoded nor rewritten and the bytes written grow with the added images only. If generation fails or is
+     * cancelled, the file is left as it was.
+     * Interrupting the calling thread cancels generation with an {@link InterruptedIOException}.
+     *
+     * @param toggleable whether to add toggleable annotations instead of drawing the text on the page
+     * @return per-page sizes of the added images
+     */
+    public GenerationReport appendToPdf(List<? extends ImageSource> images, File pdfFile, String annotationText,
+                                        boolean toggleable, @Nullable ProgressListener progressListener) throws IOException {
+        LayoutPlan plan = plan(images, layout, null);
+        PageWriterFactory pages = pageWriters(annotationText, toggleable, plan);
+        Metrics documentMetrics = metrics.forDocument(pdfFile.getName());
+        try (PDDocument document = scratchPolicy.load(pdfFile)) {
+            ImageEmbedder embedder = new ImageEmbedder(document);
+            PageWriter pageWriter = pages.create(document, documentMetrics);
+            forEachImage(images, plan, progressListener, documentMetrics, null,
+                    (pageIndex, encodedImage) -> pageWriter.addImage(pageIndex, embed(embedder, pageIndex, encodedImage, documentMetrics)));
+            pageWriter.finish();
+
+            IncrementalUpdate.markPagesAdded(document);
+            embedder.setRevisionId(annotationText);
+            throwIfInterrupted();
+            long start = documentMetrics.start();
+            long appended = IncrementalUpdate.append(document, pdfFile);
+            documentMetrics.record(Metrics.SAVE, -1, start, 0, appended);
+            return embedder.getReport();
+        }
+    }
+
+    /**
+     * Splits a large batch into several PDFs according to the chunk policy.
+     * Each chunk is saved and closed as soon as its last page is added, so only one chunk is held open
+     * and the first file is usable long before the batch ends. Chunk files are named after outputFile,
+     * see {@link ChunkPolicy#getChunkFile}. If generation fails or is cancelled, finished chunks are kept
+     * and only the chunk in progress is discarded. Pages holding several images are never split across chunks.
+     * Interrupting the calling thread cancels generation with an {@link InterruptedIOException}.
+     *
+     * @param toggleable whether to add toggleable annotations instead of drawing the text on the page
+     * @return the chunk files in page order
+     */
+    public List<File> createChunkedPdfs(List<? extends ImageSource> images, File outputFile, String annotationText,
+                                        boolean toggleable, ChunkPolicy chunkPolicy, @Nullable ChunkListener chunkListener,
+                                        @Nullable ProgressListener progressListener) throws IOException {
+        LayoutPlan plan = plan(images, layout, null);
+        return createChunkedPdfs(images, outputFile, annotationText, plan, pageWriters(annotationText, toggleable, plan),
+                chunkPolicy, chunkListener, progressListener, null);
+    }
+
+    /**
+     * Runs the job described by the checkpoint's manifest, writing one PDF or, if the chunk policy splits it,
+     * several chunk files. Every newly encoded page image is stored in the checkpoint before the page is added,
+     * and stored images are used instead of encoding again, so a job killed at any page is finished by calling
+     * this again with the reopened checkpoint. The output is the same as that of an uninterrupted run.
+     * The checkpoint is left in place; delete it once the job is done.
+     * Interrupting the calling thread cancels generation with an {@link InterruptedIOException}.
+     *
+     * @param images one source per page of the manifest; sources of stored pages are never read and may be null
+     * @return the written files in page order
+     * @throws IllegalArgumentException if the number of sources differs from the manifest's page count
+     */
+    public List<File> createCheckpointedPdfs(List<? extends ImageSource> images, GenerationCheckpoint checkpoint,
+                                             @Nullable ChunkListener chunkListener,
+                                             @Nullable ProgressListener progressListener) throws IOException {
+        GenerationManifest manifest = checkpoint.getManifest();
+        if (images.size() != manifest.getPageCount()) {
+            throw new IllegalArgumentException(images.size() + " sources for a job of " + manifest.getPageCount() + " pages");
+        }
+        File outputFile = manifest.getOutputFile();
+        String annotationText = manifest.getAnnotationText();
+        LayoutPlan plan = plan(images, manifest.getLayout(), checkpoint);
+        PageWriterFactory pages = pageWriters(annotationText, manifest.isToggleable(), plan);
+        ChunkPolicy chunkPolicy = manifest.getChunkPolicy();
+        if (!chunkPolicy.fitsInOneChunk(plan.getPageCount())) {
+            return createChunkedPdfs(images, outputFile, annotationText, plan, pages, chunkPolicy, chunkListener,
+                    progressListener, checkpoint);
+        }
+
+        GenerationReport report = generate(images, outputFile, annotationText, plan, pages, progressListener, checkpoint);
+        if (chunkListener != null) {
+            chunkListener.onChunkWritten(1, outputFile, report);
+        }
+        return Collections.singletonList(outputFile);
+    }
+
+    /**
+     * Plans the pages from the image headers.
+     * With a checkpoint, the sizes are stored on the first run and reused on resume, when stored pages
+     * have no source to read.
+     */
+    private LayoutPlan plan(List<? extends ImageSource> images, ImageLayout layout,
+                            @Nullable GenerationCheckpoint checkpoint) throws IOException {
+        List<ImageSize> sizes = checkpoint != null ? checkpoint.readImageSizes() : null;
+        if (sizes == null) {
+            sizes = new ArrayList<>(images.size());
+            for (ImageSource image : images) {
+                throwIfInterrupted();
+                if (image == null) {
+                    throw new IOException("No source to plan the layout with, and no sizes in the checkpoint");
                 }
+                sizes.add(imageEncoder.readSize(image));
             }
+            if (checkpoint != null) {
+                checkpoint.writeImageSizes(sizes);
+            }
+        }
+        return layout.plan(sizes);
+    }
+
+    private static PageWriterFactory pageWriters(String annotationText, boolean toggleable, LayoutPlan plan) {
+        return (document, pageMetrics) -> plannedPages(document, plan, annotationText, toggleable, pageMetrics);
+    }
 
-            document.save(outputFile);
+    private List<File> createChunkedPdfs(List<? extends ImageSource> images, File outputFile, String annotationText,
+                                         LayoutPlan plan, PageWriterFactory pages, ChunkPolicy chunkPolicy,
+                                         @Nullable ChunkListener chunkListener, @Nullable ProgressListener progressListener,
+                                         @Nullable GenerationCheckpoint checkpoint) throws IOException {
+        Metrics jobMetrics = metrics.forDocument(outputFile.getName());
+        ChunkedOutput output = new ChunkedOutput(outputFile, annotationText, pages, chunkPolicy, chunkListener, jobMetrics);
+        try {
+            forEachImage(images, plan, progressListener, jobMetrics, checkpoint, output::add);
+            output.finishChunk();
+        } finally {
+            output.abandon();
         }
+        return output.chunkFiles;
+    }
+
+    private GenerationReport generate(List<? extends ImageSource> images, File outputFile, String documentText,
+                                      LayoutPlan plan, PageWriterFactory pages, @Nullable ProgressListener progressListener,
+                                      @Nullable GenerationCheckpoint checkpoint) throws IOException {
+        Metrics documentMetrics = metrics.forDocument(outputFile.getName());
+        try (PDDocument document = scratchPolicy.createDocument()) {
+            ImageEmbedder embedder = new ImageEmbedder(document);
+            PageWriter pageWriter = pages.create(document, documentMetrics);
+            forEachImage(images, plan, progressListener, documentMetrics, checkpoint,
+                    (pageIndex, encodedImage) -> pageWriter.addImage(pageIndex, embed(embedder, pageIndex, encodedImage, documentMetrics)));
+            pageWriter.finish();
+
+            embedder.setDocumentId(documentText);
+            throwIfInterrupted();
+            save(document, outputFile, documentMetrics);
+            return embedder.getReport();
+        }
+    }
+
+    private static PDImageXObject embed(ImageEmbedder embedder, int pageIndex, EncodedImage encodedImage,
+                                        Metrics metrics) throws IOException {
+        long start = metrics.start();
+        PDImageXObject pdImage = embedder.embed(encodedImage);
+        metrics.record(Metrics.EMBED, pageIndex, start, encodedImage.getData().length, 0);
+        return pdImage;
+    }
+
+    private void save(PDDocument document, File outputFile, Metrics metrics) throws IOException {
+        long start = metrics.start();
+        saveOptions.save(document, outputFile);
+        metrics.record(Metrics.SAVE, -1, start, 0, metrics.isEnabled() ? outputFile.length() : 0);
     }
 
     /**
-     * Creates a PDF with toggleable Microsoft Office style annotations
-     * Annotations appear as comment icons that can be clicked to show/hide text
+     * Draws the shared text label centered at the top of the page
+     */
+    private static void drawLabel(PDPageContentStream contentStream, PDFormXObject label, PDRectangle mediaBox)
+            throws IOException {
+        float textX = (mediaBox.getWidth() - label.getBBox().getWidth()) / 2;
+        float textY = mediaBox.getHeight() - 30;
+
+        contentStream.saveGraphicsState();
+        contentStream.transform(Matrix.getTranslateInstance(textX, textY));
+        contentStream.drawForm(label);
+        contentStream.restoreGraphicsState();
+    }
+
+    /**
+     * Adds the clickable annotation, positioned at the top of the page
+     */
+    private static void addCommentIcon(PDPage page, int pageNumber, AnnotationStyles styles, String annotationText)
+            throws IOException {
+        float pageHeight = page.getMediaBox().getHeight();
+        float pageWidth = page.getMediaBox().getWidth();
+
+        AnnotationSpec spec = new AnnotationSpec(pageNumber, pageWidth / 2 - 20, pageHeight - 30, 40, 20, annotationText);
+        List<PDAnnotation> annotations = page.getAnnotations();
+        annotations.add(styles.createTextAnnotation(spec));
+        page.setAnnotations(annotations);
+    }
+
+    /**
+     * Pages sized and filled as planned, with the label or comment icon at the top of each page
+     */
+    private static PageWriter plannedPages(PDDocument document, LayoutPlan plan, String annotationText,
+                                           boolean toggleable, Metrics metrics) {
+        AppearancePool appearances = new AppearancePool(document);
+        AnnotationStyles styles = toggleable ? new AnnotationStyles(appearances) : null;
+        return new PageWriter() {
+            @Nullable
+            private PDPage page;
+            private PDPageContentStream contentStream;
+            private int lastImageIndex;
+
+            @Override
+            public void addImage(int imageIndex, PDImageXObject pdImage) throws IOException {
+                long start = metrics.start();
+                if (page == null || plan.isFirstOnPage(imageIndex)) {
+                    finish();
+                    page = new PDPage(plan.getPageSize(plan.getPageOf(imageIndex)));
+                    document.addPage(page);
+                    contentStream = new PDPageContentStream(document, page);
+                }
+                drawImage(contentStream, plan, imageIndex, pdImage);
+                lastImageIndex = imageIndex;
+                metrics.record(Metrics.CONTENT, imageIndex, start, 0, 0);
+                if (plan.isLastOnPage(imageIndex)) {
+                    finish();
+                }
+            }
+
+            @Override
+            public boolean startsPage(int imageIndex) {
+                return plan.isFirstOnPage(imageIndex);
+            }
+
+            @Override
+            public void finish() throws IOException {
+                if (page == null) {
+                    return;
+                }
+                long start = metrics.start();
+                try {
+                    if (styles == null) {
+                        drawLabel(contentStream, appearances.getLabel(annotationText), page.getMediaBox());
+                    }
+                } finally {
+                    contentStream.close();
+                }
+                if (styles != null) {
+                    addCommentIcon(page, plan.getPageOf(lastImageIndex) + 1, styles, annotationText);
+                }
+                page = null;
+                metrics.record(Metrics.ANNOTATE, lastImageIndex, start, 0, 0);
+            }
+        };
+    }
+
+    /**
+     * Pages with the image and the annotation specs bucketed for that page
+     */
+    private static PageWriter specPages(PDDocument document, LayoutPlan plan, List<List<AnnotationSpec>> specsByPage,
+                                        Metrics metrics) {
+        AnnotationStyles styles = new AnnotationStyles(new AppearancePool(document));
+        return (pageIndex, pdImage) -> {
+            long start = metrics.start();
+            PDPage page = new PDPage(plan.getPageSize(plan.getPageOf(pageIndex)));
+            document.addPage(page);
+            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                drawImage(contentStream, plan, pageIndex, pdImage);
+            }
+            metrics.record(Metrics.CONTENT, pageIndex, start, 0, 0);
+
+            start = metrics.start();
+            List<AnnotationSpec> pageSpecs = specsByPage.get(pageIndex);
+            if (!pageSpecs.isEmpty()) {
+                COSArray annotations = new COSArray();
+                for (AnnotationSpec spec : pageSpecs) {
+                    annotations.add(styles.createTextAnnotation(spec));
+                }
+                page.getCOSObject().setItem(COSName.ANNOTS, annotations);
+            }
+            // Release the specs of finished pages
+            specsByPage.set(pageIndex, Collections.emptyList());
+            metrics.record(Metrics.ANNOTATE, pageIndex, start, 0, 0);
+        };
+    }
+
+    /**
+     * Draws the image where the plan puts it
+     */
+    private static void drawImage(PDPageContentStream contentStream, LayoutPlan plan, int imageIndex,
+                                  PDImageXObject pdImage) throws IOException {
+        PDRectangle placement = plan.getPlacement(imageIndex, pdImage.getWidth(), pdImage.getHeight());
+        contentStream.drawImage(pdImage, placement.getLowerLeftX(), placement.getLowerLeftY(),
+                placement.getWidth(), placement.getHeight());
+    }
+
+    /**
+     * Encodes images on the worker pool and hands them to the consumer strictly in input order.
+     * Only a small window of images is in flight at once so encoded data never piles up ahead of the writer.
+     * Stops between pages once the calling thread is interrupted, interrupting the workers as well.
+     * Each image is encoded for the width the plan draws it at.
+     * With a checkpoint, stored pages are read from it and new ones are stored as soon as they are encoded.
      */
-    public void createPdfWithToggleableAnnotations(List<String> imagePaths, File outputFile, String annotationText) throws IOException {
-        try (PDDocument document = new PDDocument()) {
-            for (String imagePath : imagePaths) {
-                PDPage page = new PDPage(PDRectangle.A4);
-                document.addPage(page);
-
-                float pageHeight = page.getMediaBox().getHeight();
-                float pageWidth = page.getMediaBox().getWidth();
-
-                // Load and scale image
-                PDImageXObject pdImage = PDImageXObject.createFromFile(imagePath, document);
-                float originalWidth = pdImage.getWidth();
-                float originalHeight = pdImage.getHeight();
-                float scaleFactor = pageWidth / originalWidth;
-                float imageHeight = originalHeight * scaleFactor;
-
-                // Draw only the image
-                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
-                    contentStream.drawImage(pdImage, 0, pageHeight - imageHeight - 40, pageWidth, imageHeight);
+    private void forEachImage(List<? extends ImageSource> images, LayoutPlan plan, @Nullable ProgressListener progressListener,
+                              Metrics metrics, @Nullable GenerationCheckpoint checkpoint,
+                              ImageConsumer consumer) throws IOException {
+        int pageCount = images.size();
+        if (workerCount == 1) {
+            for (int i = 0; i < pageCount; i++) {
+                throwIfInterrupted();
+                consumer.accept(i, encode(images.get(i), i, plan, metrics, checkpoint));
+                notifyPageAdded(progressListener, i + 1, pageCount);
+            }
+            return;
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+        try {
+            int window = workerCount * 2;
+            ArrayDeque<Future<EncodedImage>> pending = new ArrayDeque<>(window);
+            int next = 0;
+            int pagesDone = 0;
+            while (next < pageCount || !pending.isEmpty()) {
+                throwIfInterrupted();
+                while (next < pageCount && pending.size() < window) {
+                    ImageSource image = images.get(next);
+                    int pageIndex = next++;
+                    pending.add(workers.submit(() -> encode(image, pageIndex, plan, metrics, checkpoint)));
                 }
+                consumer.accept(pagesDone, await(pending.poll()));
+                notifyPageAdded(progressListener, ++pagesDone, pageCount);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private EncodedImage encode(@Nullable ImageSource image, int pageIndex, LayoutPlan plan, Metrics metrics,
+                                @Nullable GenerationCheckpoint checkpoint) throws IOException {
+        if (checkpoint != null) {
+            EncodedImage stored = checkpoint.readPage(pageIndex);
+            if (stored != null) {
+                return stored;
+            }
+        }
+        if (image == null) {
+            throw new IOException("No source for page " + (pageIndex + 1) + ", which is not in the checkpoint");
+        }
+        long start = metrics.start();
+        EncodedImage encodedImage = imageEncoder.encode(image, plan.getDrawWidth(pageIndex));
+        metrics.record(Metrics.ENCODE, pageIndex, start, encodedImage.getSourceBytes(), encodedImage.getData().length);
+        if (checkpoint != null) {
+            checkpoint.writePage(pageIndex, encodedImage);
+        }
+        return encodedImage;
+    }
+
+    private static void notifyPageAdded(@Nullable ProgressListener progressListener, int pagesDone, int pageCount) {
+        if (progressListener != null) {
+            progressListener.onPageAdded(pagesDone, pageCount);
+        }
+    }
+
+    private static void throwIfInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("PDF generation cancelled");
+        }
+    }
 
-                // Add clickable annotation
-                PDAnnotationText textAnnotation = createAnnotation(annotationText, pageWidth, pageHeight);
-                List<PDAnnotation> annotations = page.getAnnotations();
-                annotations.add(textAnnotation);
-                page.setAnnotations(annotations);
+    private static EncodedImage await(Future<EncodedImage> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding images");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
             }
+            throw new IOException("Failed to encode image", cause);
+        }
+    }
+
+    /**
+     * Writes pages into one chunk document at a time, saving each chunk as soon as the policy closes it
+     */
+    private final class ChunkedOutput {
+        final List<File> chunkFiles = new ArrayList<>();
+        private final File outputFile;
+        private final String annotationText;
+        private final PageWriterFactory pages;
+        private final ChunkPolicy chunkPolicy;
+        @Nullable
+        private final ChunkListener chunkListener;
+        private final Metrics metrics;
+
+        @Nullable
+        private PDDocument document;
+        private ImageEmbedder embedder;
+        private PageWriter pageWriter;
+        private int pagesInChunk;
+        private long bytesInChunk;
+
+        ChunkedOutput(File outputFile, String annotationText, PageWriterFactory pages, ChunkPolicy chunkPolicy,
+                      @Nullable ChunkListener chunkListener, Metrics metrics) {
+            this.outputFile = outputFile;
+            this.annotationText = annotationText;
+            this.pages = pages;
+            this.chunkPolicy = chunkPolicy;
+            this.chunkListener = chunkListener;
+            this.metrics = metrics;
+        }
+
+        void add(int pageIndex, EncodedImage encodedImage) throws IOException {
+            long imageBytes = encodedImage.getData().length;
+            boolean startsPage = document == null || pageWriter.startsPage(pageIndex);
+            if (document != null && startsPage && chunkPolicy.shouldStartNewChunk(pagesInChunk, bytesInChunk, imageBytes)) {
+                finishChunk();
+            }
+            if (document == null) {
+                document = scratchPolicy.createDocument();
+                embedder = new ImageEmbedder(document);
+                pageWriter = pages.create(document, metrics);
+                pagesInChunk = 0;
+                bytesInChunk = 0;
+            }
+            pageWriter.addImage(pageIndex, embed(embedder, pageIndex, encodedImage, metrics));
+            if (startsPage) {
+                pagesInChunk++;
+            }
+            bytesInChunk += imageBytes;
+        }
+
+        /**
+         * Saves and closes the open chunk, if any, and reports it to the listener
+         */
+        void finishChunk() throws IOException {
+            if (document == null) {
+                return;
+            }
+            File chunkFile = chunkPolicy.getChunkFile(outputFile, chunkFiles.size() + 1);
+            try {
+                pageWriter.finish();
+                embedder.setDocumentId(annotationText);
+                throwIfInterrupted();
+                save(document, chunkFile, metrics);
+            } catch (IOException | RuntimeException e) {
+                // A half-written chunk is not a usable PDF
+                //noinspection ResultOfMethodCallIgnored
+                chunkFile.delete();
+                throw e;
+            } finally {
+                abandon();
+            }
+            chunkFiles.add(chunkFile);
+            if (chunkListener != null) {
+                chunkListener.onChunkWritten(chunkFiles.size(), chunkFile, embedder.getReport());
+            }
+        }
 
-            document.save(outputFile);
+        /**
+         * Closes the open chunk without saving it
+         */
+        void abandon() {
+            if (document != null) {
+                try {
+                    document.close();
+                } catch (IOException ignored) {
+                    // Only scratch buffers are released here
+                }
+                document = null;
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,117 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSArray;
+import com.tom_roush.pdfbox.cos.COSBase;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.cos.COSString;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Combines generated reports by appending the pages of other PDFs to one of them as an incremental update.
+ * Pages, their annotations and their image streams are copied as stored, without decoding anything,
+ * and the existing pages of the target are not rewritten, so the bytes written grow with the added pages only.
+ * PDFBox still parses every source once, which reads but does not decode their streams.
+ */
+public class PdfMerger {
+    private final ScratchPolicy scratchPolicy;
+
+    public PdfMerger(ScratchPolicy scratchPolicy) {
+        this.scratchPolicy = scratchPolicy;
+    }
+
+    /**
+     * Appends every page of the sources, in order, to the end of the target in place.
+     * If anything fails, the target is left as it was.
+     * Interrupting the calling thread cancels the merge with an {@link InterruptedIOException}.
+     *
+     * @return the number of bytes appended to the target
+     */
+    public long append(File targetFile, List<File> sourceFiles) throws IOException {
+        List<PDDocument> sources = new ArrayList<>(sourceFiles.size());
+        try (PDDocument target = scratchPolicy.load(targetFile)) {
+            PageCopier copier = new PageCopier(target);
+            MessageDigest revisionDigest = newDigest();
+            for (File sourceFile : sourceFiles) {
+                throwIfInterrupted();
+                // Copied streams are read from the source when the target is written
+                PDDocument source = scratchPolicy.load(sourceFile);
+                sources.add(source);
+                for (PDPage page : source.getPages()) {
+                    copier.copyPage(page);
+                }
+                revisionDigest.update(documentId(source, sourceFile));
+            }
+
+            IncrementalUpdate.markPagesAdded(target);
+            IncrementalUpdate.setRevisionId(target, revisionDigest.digest());
+            throwIfInterrupted();
+            return IncrementalUpdate.append(target, targetFile);
+        } finally {
+            for (PDDocument source : sources) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * Writes a PDF with the pages of all inputs in order to outputFile. The first input is copied
+     * byte for byte and the pages of the others are appended to the copy. outputFile only appears once complete.
+     *
+     * @throws IllegalArgumentException if there are no inputs
+     */
+    public void merge(List<File> inputFiles, File outputFile) throws IOException {
+        if (inputFiles.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to merge");
+        }
+        File parent = outputFile.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(outputFile.getName(), ".tmp", parent);
+        try {
+            Files.copy(inputFiles.get(0).toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            append(temp, inputFiles.subList(1, inputFiles.size()));
+            Files.move(temp.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            temp = null;
+        } finally {
+            if (temp != null) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the first trailer ID of the document, or its file name if it has none
+     */
+    private static byte[] documentId(PDDocument document, File file) {
+        COSBase id = document.getDocument().getTrailer().getDictionaryObject(COSName.ID);
+        if (id instanceof COSArray && ((COSArray) id).size() > 0 && ((COSArray) id).getObject(0) instanceof COSString) {
+            return ((COSString) ((COSArray) id).getObject(0)).getBytes();
+        }
+        return file.getName().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    private static void throwIfInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Merge cancelled");
+        }
+    }
+}
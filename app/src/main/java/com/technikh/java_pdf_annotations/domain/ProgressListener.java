@@ -0,0 +1,20 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import java.io.File;
+
+/**
+ * Receives per-page progress while a PDF is being generated
+ */
+public interface ProgressListener {
+
+    /**
+     * Called on the generating thread after each page has been added
+     */
+    void onPageAdded(int pagesDone, int pageCount);
+
+    /**
+     * Called on the generating thread once an output file is complete, e.g. one chunk of a large batch
+     */
+    default void onFileWritten(File file) {
+    }
+}
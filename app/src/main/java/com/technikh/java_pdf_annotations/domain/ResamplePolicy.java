@@ -0,0 +1,80 @@
+package com.technikh.java_pdf_annotations.domain;
+
+/**
+ * Decides how an image is encoded for the rectangle it is drawn into.
+ * Only works with sizes, so the choice can be made before any pixels are decoded.
+ */
+public final class ResamplePolicy {
+    /**
+     * Target DPI that keeps every image at its original resolution
+     */
+    public static final int ORIGINAL_DPI = 0;
+
+    public enum Action {
+        /**
+         * More pixels than the target DPI needs: scale down and recompress as JPEG
+         */
+        RESAMPLE,
+        /**
+         * A gray or RGB JPEG at or below the target resolution: embed the file untouched
+         */
+        PASS_THROUGH,
+        /**
+         * Any other image at or below the target resolution: decode and Flate-compress as RGB
+         */
+        LOSSLESS
+    }
+
+    private final int targetDpi;
+
+    /**
+     * @param targetDpi resolution of the drawn image, or {@link #ORIGINAL_DPI} to never resample
+     */
+    public ResamplePolicy(int targetDpi) {
+        this.targetDpi = targetDpi;
+    }
+
+    /**
+     * @param sourceWidth     width of the image file in pixels
+     * @param jpegComponents  color components of a JPEG file, or 0 if the file is not a JPEG
+     * @param drawWidthPoints width of the rectangle the image is drawn into, in PDF points
+     */
+    public Action decide(int sourceWidth, int jpegComponents, float drawWidthPoints) {
+        int targetWidth = targetPixelWidth(drawWidthPoints);
+        if (targetWidth > 0 && sourceWidth > targetWidth) {
+            return Action.RESAMPLE;
+        }
+        if (jpegComponents == 1 || jpegComponents == 3) {
+            return Action.PASS_THROUGH;
+        }
+        return Action.LOSSLESS;
+    }
+
+    /**
+     * Pixels needed across the draw rectangle at the target DPI, or 0 to keep the original size
+     */
+    public int targetPixelWidth(float drawWidthPoints) {
+        if (targetDpi <= ORIGINAL_DPI) {
+            return 0;
+        }
+        return (int) Math.ceil(drawWidthPoints / 72f * targetDpi);
+    }
+
+    /**
+     * Coarsest power-of-two subsample whose decoded width still covers the target width
+     */
+    public static int sampleSize(int sourceWidth, int targetWidth) {
+        int sampleSize = 1;
+        while (sourceWidth / (sampleSize * 2) >= targetWidth) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Height that keeps the aspect ratio when a width x height image is scaled to targetWidth
+     */
+    public static int scaledHeight(int width, int height, int targetWidth) {
+        return Math.max(1, Math.round(height * (float) targetWidth / width));
+    }
+}
@@ -0,0 +1,73 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Decides how a finished document is written to its file.
+ * {@link #STANDARD} is PDFBox's writer: a classic cross-reference table and one object per dictionary.
+ * {@link #compact} packs annotations, pages and other small objects into compressed object streams,
+ * writes a cross-reference stream and re-compresses streams that have no filter, which makes files with
+ * many annotations much smaller and faster to open. Compact files need a PDF 1.5 reader. Immutable.
+ */
+public final class SaveOptions {
+    /**
+     * PDFBox's own output, kept as the default so existing output doesn't change
+     */
+    public static final SaveOptions STANDARD = new SaveOptions(false, Deflater.DEFAULT_COMPRESSION);
+    /**
+     * Compact output at zlib's default level
+     */
+    public static final SaveOptions COMPACT = new SaveOptions(true, Deflater.DEFAULT_COMPRESSION);
+
+    private final boolean compact;
+    private final int flateLevel;
+
+    private SaveOptions(boolean compact, int flateLevel) {
+        this.compact = compact;
+        this.flateLevel = flateLevel;
+    }
+
+    /**
+     * @param flateLevel {@link Deflater#BEST_SPEED} (1) to {@link Deflater#BEST_COMPRESSION} (9), or 0 to
+     *                   keep unfiltered streams as they are; object streams are always compressed, at level 1 then
+     */
+    public static SaveOptions compact(int flateLevel) {
+        if (flateLevel < Deflater.NO_COMPRESSION || flateLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Flate level must be between 0 and 9: " + flateLevel);
+        }
+        return new SaveOptions(true, flateLevel);
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public int getFlateLevel() {
+        return flateLevel;
+    }
+
+    /**
+     * Writes the whole document to the file. Encrypted documents are always written by PDFBox.
+     */
+    void save(PDDocument document, File file) throws IOException {
+        if (!compact || document.isEncrypted()) {
+            document.save(file);
+            return;
+        }
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024)) {
+            new CompactPdfWriter(flateLevel).write(document, outputStream);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return compact ? "compact(" + flateLevel + ")" : "standard";
+    }
+}
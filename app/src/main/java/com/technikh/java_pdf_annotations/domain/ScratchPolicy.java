@@ -0,0 +1,177 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSArray;
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSDocument;
+import com.tom_roush.pdfbox.cos.COSInteger;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.io.RandomAccessBufferedFileInputStream;
+import com.tom_roush.pdfbox.io.RandomAccessRead;
+import com.tom_roush.pdfbox.io.ScratchFile;
+import com.tom_roush.pdfbox.pdfparser.PDFParser;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decides where PDFBox buffers stream data while a document is generated or parsed.
+ * {@link #nio} and {@link #mapped} keep a small heap budget per document and put the rest in an unlinked
+ * temp file, so large jobs trade RAM for sequential disk I/O. Each document gets its own store,
+ * limited to a byte budget and deleted when the document is closed. {@link #of} keeps PDFBox's own buffering.
+ * Immutable and thread-safe.
+ */
+public final class ScratchPolicy {
+    /**
+     * Where pages beyond the heap budget are stored
+     */
+    public enum Store {
+        /**
+         * PDFBox's own scratch file, configured by a {@link MemoryUsageSetting}
+         */
+        PDFBOX,
+        /**
+         * A temp file accessed with positional FileChannel reads and writes
+         */
+        NIO,
+        /**
+         * A temp file accessed through memory-mapped segments
+         */
+        MAPPED
+    }
+
+    private final Store store;
+    private final MemoryUsageSetting memoryUsageSetting;
+    private final File tempDir;
+    private final long maxHeapBytes;
+    private final long maxBytes;
+
+    private ScratchPolicy(Store store, MemoryUsageSetting memoryUsageSetting, File tempDir, long maxHeapBytes, long maxBytes) {
+        this.store = store;
+        this.memoryUsageSetting = memoryUsageSetting;
+        this.tempDir = tempDir;
+        this.maxHeapBytes = maxHeapBytes;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Buffers as PDFBox does for the setting
+     */
+    public static ScratchPolicy of(MemoryUsageSetting memoryUsageSetting) {
+        return new ScratchPolicy(Store.PDFBOX, memoryUsageSetting, memoryUsageSetting.getTempDir(),
+                memoryUsageSetting.getMaxMainMemoryBytes(), memoryUsageSetting.getMaxStorageBytes());
+    }
+
+    /**
+     * Keeps up to maxHeapBytes per document on the heap and writes the rest to a temp file in tempDir
+     *
+     * @param maxBytes total bytes one document may buffer, or 0 for no limit
+     */
+    public static ScratchPolicy nio(File tempDir, long maxHeapBytes, long maxBytes) {
+        return new ScratchPolicy(Store.NIO, null, tempDir, maxHeapBytes, maxBytes);
+    }
+
+    /**
+     * Like {@link #nio}, but accesses the temp file through memory mappings.
+     * Mapped address space is only returned after garbage collection, so prefer NIO on 32-bit devices.
+     */
+    public static ScratchPolicy mapped(File tempDir, long maxHeapBytes, long maxBytes) {
+        return new ScratchPolicy(Store.MAPPED, null, tempDir, maxHeapBytes, maxBytes);
+    }
+
+    public Store getStore() {
+        return store;
+    }
+
+    /**
+     * Returns the total bytes one document may buffer, or a non-positive value for no limit
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Creates the store for one document, which closes it with itself
+     */
+    public ScratchFile createScratchFile() throws IOException {
+        if (store == Store.PDFBOX) {
+            return new ScratchFile(memoryUsageSetting);
+        }
+        return new ChannelScratchFile(tempDir, store == Store.MAPPED, maxHeapBytes, maxBytes);
+    }
+
+    /**
+     * Creates an empty document, equivalent to {@code new PDDocument(memoryUsageSetting)}
+     */
+    public PDDocument createDocument() throws IOException {
+        if (store == Store.PDFBOX) {
+            return new PDDocument(memoryUsageSetting);
+        }
+        COSDocument cosDocument = new COSDocument(createScratchFile());
+        COSDictionary trailer = new COSDictionary();
+        cosDocument.setTrailer(trailer);
+
+        COSDictionary catalog = new COSDictionary();
+        trailer.setItem(COSName.ROOT, catalog);
+        catalog.setItem(COSName.TYPE, COSName.CATALOG);
+        catalog.setItem(COSName.VERSION, COSName.getPDFName("1.4"));
+
+        COSDictionary pages = new COSDictionary();
+        catalog.setItem(COSName.PAGES, pages);
+        pages.setItem(COSName.TYPE, COSName.PAGES);
+        pages.setItem(COSName.KIDS, new COSArray());
+        pages.setItem(COSName.COUNT, COSInteger.ZERO);
+        return new PDDocument(cosDocument);
+    }
+
+    /**
+     * Parses a PDF file
+     */
+    public PDDocument load(File pdfFile) throws IOException {
+        RandomAccessRead source = new RandomAccessBufferedFileInputStream(pdfFile);
+        return load(source);
+    }
+
+    /**
+     * Parses a PDF from the source. The document owns the source and closes it with itself.
+     */
+    public PDDocument load(RandomAccessRead source) throws IOException {
+        ScratchFile scratchFile;
+        try {
+            scratchFile = createScratchFile();
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+        return parse(source, scratchFile);
+    }
+
+    /**
+     * Copies a PDF from a stream that can't seek into the document's scratch store and parses it there
+     */
+    public PDDocument load(InputStream input) throws IOException {
+        ScratchFile scratchFile = createScratchFile();
+        RandomAccessRead copy;
+        try {
+            copy = scratchFile.createBuffer(input);
+        } catch (IOException | RuntimeException e) {
+            scratchFile.close();
+            throw e;
+        }
+        return parse(copy, scratchFile);
+    }
+
+    private static PDDocument parse(RandomAccessRead source, ScratchFile scratchFile) throws IOException {
+        try {
+            PDFParser parser = new PDFParser(source, "", scratchFile);
+            parser.parse();
+            return parser.getPDDocument();
+        } catch (IOException | RuntimeException e) {
+            scratchFile.close();
+            source.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.technikh.java_pdf_annotations.presentation;
+
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.technikh.java_pdf_annotations.R;
+import com.technikh.java_pdf_annotations.data.ThumbnailKey;
+import com.technikh.java_pdf_annotations.data.ThumbnailLoader;
+import com.technikh.java_pdf_annotations.domain.AnnotationInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows annotation cards with a page thumbnail and Copy and Share actions, binding only the visible rows
+ */
+public class AnnotationAdapter extends RecyclerView.Adapter<AnnotationAdapter.ViewHolder> {
+    /**
+     * Thumbnails of this many cards on either side of a bound card are prefetched
+     */
+    private static final int PREFETCH_CARDS = 3;
+
+    private final List<AnnotationInfo> annotations = new ArrayList<>();
+    @Nullable
+    private ThumbnailLoader thumbnailLoader;
+
+    public void setThumbnailLoader(@Nullable ThumbnailLoader thumbnailLoader) {
+        this.thumbnailLoader = thumbnailLoader;
+    }
+
+    /**
+     * Replaces the shown annotations, animating only the appended rows when the list grew
+     */
+    public void setAnnotations(List<AnnotationInfo> newAnnotations) {
+        int oldSize = annotations.size();
+        boolean appended = newAnnotations.size() >= oldSize
+                && (oldSize == 0 || newAnnotations.get(oldSize - 1) == annotations.get(oldSize - 1));
+
+        if (appended) {
+            annotations.addAll(newAnnotations.subList(oldSize, newAnnotations.size()));
+            notifyItemRangeInserted(oldSize, newAnnotations.size() - oldSize);
+        } else {
+            annotations.clear();
+            annotations.addAll(newAnnotations);
+            notifyDataSetChanged();
+        }
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_annotation, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        holder.bind(annotations.get(position), thumbnailLoader);
+        if (thumbnailLoader != null && thumbnailLoader.hasDocument()) {
+            for (int distance = 1; distance <= PREFETCH_CARDS; distance++) {
+                prefetch(position + distance);
+                prefetch(position - distance);
+            }
+        }
+    }
+
+    private void prefetch(int position) {
+        if (position >= 0 && position < annotations.size()) {
+            thumbnailLoader.prefetch(annotations.get(position).getPageNumber() - 1);
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return annotations.size();
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder implements ThumbnailLoader.Callback {
+        private final ImageView ivThumbnail;
+        private final TextView tvAnnotation;
+        private final Button btnCopy;
+        private final Button btnShare;
+        private int thumbnailPage = -1;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            ivThumbnail = itemView.findViewById(R.id.iv_thumbnail);
+            tvAnnotation = itemView.findViewById(R.id.tv_annotation);
+            btnCopy = itemView.findViewById(R.id.btn_copy);
+            btnShare = itemView.findViewById(R.id.btn_share);
+        }
+
+        @Override
+        public void onThumbnailLoaded(ThumbnailKey key, Bitmap thumbnail) {
+            if (key.getPageIndex() == thumbnailPage) {
+                ivThumbnail.setImageBitmap(thumbnail);
+            }
+        }
+
+        void bind(AnnotationInfo annotation, @Nullable ThumbnailLoader thumbnailLoader) {
+            if (thumbnailLoader != null && thumbnailLoader.hasDocument()) {
+                thumbnailPage = annotation.getPageNumber() - 1;
+                ivThumbnail.setVisibility(View.VISIBLE);
+                // Cleared until the thumbnail arrives, so a recycled card never shows another page
+                ivThumbnail.setImageBitmap(thumbnailLoader.load(thumbnailPage, this));
+            } else {
+                thumbnailPage = -1;
+                ivThumbnail.setVisibility(View.GONE);
+            }
+
+            String content = annotation.getContents();
+            StringBuilder display = new StringBuilder();
+            display.append("Page ").append(annotation.getPageNumber()).append("\n");
+            if (annotation.getTitle() != null) display.append("📝 ").append(annotation.getTitle()).append("\n");
+            display.append(content).append("\n");
+            if (annotation.getModifiedDate() != null)
+                display.append("📅 ").append(annotation.getModifiedDate().replace("D:", "")).append("\n");
+            tvAnnotation.setText(display.toString());
+
+            Context context = itemView.getContext();
+            btnCopy.setOnClickListener(view -> {
+                ClipboardManager clipboard = (ClipboardManager) context.getSystemService(Context.CLIPBOARD_SERVICE);
+                ClipData clip = ClipData.newPlainText("annotation", content);
+                clipboard.setPrimaryClip(clip);
+                Toast.makeText(context, "Copied to clipboard!", Toast.LENGTH_SHORT).show();
+            });
+
+            btnShare.setOnClickListener(view -> {
+                Intent shareIntent = new Intent(Intent.ACTION_SEND);
+                shareIntent.setType("text/plain");
+                shareIntent.putExtra(Intent.EXTRA_TEXT, content);
+                context.startActivity(Intent.createChooser(shareIntent, "Share annotation via"));
+            });
+        }
+    }
+}
@@ -1,64 +1,117 @@
 package com.technikh.java_pdf_annotations.presentation;
 
 import android.annotation.SuppressLint;
-import android.content.ClipData;
-import android.content.ClipboardManager;
-import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
-import android.widget.Button;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
 import android.widget.EditText;
-import android.widget.LinearLayout;
-import android.widget.ScrollView;
+import android.widget.ProgressBar;
 import android.widget.Switch;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.PopupMenu;
 import androidx.core.content.FileProvider;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.technikh.java_pdf_annotations.R;
+import com.technikh.java_pdf_annotations.data.LibrarySearchHit;
+import com.technikh.java_pdf_annotations.domain.AnnotationFormat;
+import com.technikh.java_pdf_annotations.domain.AnnotationInfo;
+import com.technikh.java_pdf_annotations.domain.ImageLayout;
+import com.technikh.java_pdf_annotations.domain.JobProgress;
+import com.technikh.java_pdf_annotations.domain.MetricsSnapshot;
+import com.technikh.java_pdf_annotations.domain.SaveOptions;
 import com.tom_roush.pdfbox.android.PDFBoxResourceLoader;
-import com.tom_roush.pdfbox.pdmodel.PDDocument;
-import com.tom_roush.pdfbox.pdmodel.PDPage;
-import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
 
 import java.io.File;
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
 
 public class MainActivity extends AppCompatActivity {
+    private static final int LOAD_MORE_THRESHOLD = 5;
+    // Items of the More Actions menu
+    private static final int ACTION_RECORD_METRICS = 1;
+    private static final int ACTION_SHOW_METRICS = 2;
+    private static final int ACTION_PAGE_LAYOUT = 3;
+    private static final int ACTION_MERGE_PDFS = 4;
+    private static final int ACTION_EXPORT_ANNOTATIONS = 5;
+    private static final int ACTION_IMPORT_ANNOTATIONS = 6;
+    private static final int ACTION_COMPACT_PDFS = 7;
+    private static final String[] FORMAT_NAMES = {"JSON Lines, one file", "XFDF, one file per PDF"};
+    private static final AnnotationFormat[] FORMATS = {AnnotationFormat.JSON_LINES, AnnotationFormat.XFDF};
+    private static final String[] LAYOUT_NAMES = {"Fit Width", "Fit Page", "Match Image", "2 x 2 Grid"};
+    private static final ImageLayout[] LAYOUTS = {
+            ImageLayout.FIT_WIDTH,
+            ImageLayout.fitPage(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN, true),
+            ImageLayout.matchImage(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN),
+            ImageLayout.grid(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN, 2, 2, true)
+    };
+
     private MainViewModel viewModel;
 
-    private final ActivityResultLauncher<String> getContent = registerForActivityResult(
-            new ActivityResultContracts.GetMultipleContents(),
+    // Documents rather than content so the selection can stay readable if the job is resumed after process death
+    private final ActivityResultLauncher<String[]> getContent = registerForActivityResult(
+            new ActivityResultContracts.OpenMultipleDocuments(),
             uris -> {
-                if (uris != null) {
-                    if (uris.size() != 5) {
-                        Toast.makeText(this, "Please select exactly 5 images", Toast.LENGTH_SHORT).show();
-                        return;
-                    }
+                if (uris != null && !uris.isEmpty()) {
                     viewModel.processImagesAndGeneratePdf(uris);
                 }
             }
     );
 
+    private final ActivityResultLauncher<String[]> getImagesToAppend = registerForActivityResult(
+            new ActivityResultContracts.OpenMultipleDocuments(),
+            uris -> {
+                if (uris != null && !uris.isEmpty()) {
+                    viewModel.appendImagesToLastPdf(uris);
+                }
+            }
+    );
+
+    private final ActivityResultLauncher<String> getAnnotationFile = registerForActivityResult(
+            new ActivityResultContracts.GetContent(),
+            uri -> {
+                if (uri != null) {
+                    viewModel.importAnnotationsIntoLastPdf(uri);
+                }
+            }
+    );
+
     private final ActivityResultLauncher<String> getPdfFile = registerForActivityResult(
             new ActivityResultContracts.GetContent(),
             uri -> {
                 if (uri != null) {
-                    extractAnnotationsFromPdf(uri);
+                    viewModel.openAnnotations(uri);
                 }
             }
     );
 
     private EditText etAnnotationText;
+    private EditText etSearch;
     @SuppressLint("UseSwitchCompatOrMaterialCode")
     private Switch switchToggleableAnnotations;
+    private View layoutJobProgress;
+    private ProgressBar progressJob;
+    private TextView tvJobProgress;
+    private View btnCancelJob;
+    // The job whose progress is shown, which the cancel button stops
+    private long shownJobId = -1;
+    private final AnnotationAdapter annotationAdapter = new AnnotationAdapter();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -69,17 +122,28 @@ public class MainActivity extends AppCompatActivity {
 
         viewModel = new ViewModelProvider(this).get(MainViewModel.class);
         etAnnotationText = findViewById(R.id.et_annotation_text);
+        etSearch = findViewById(R.id.et_search);
         switchToggleableAnnotations = findViewById(R.id.switch_toggleable_annotations);
+        layoutJobProgress = findViewById(R.id.layout_job_progress);
+        progressJob = findViewById(R.id.progress_job);
+        tvJobProgress = findViewById(R.id.tv_job_progress);
+        btnCancelJob = findViewById(R.id.btn_cancel_job);
 
+        setupAnnotationList();
         setupObservers();
         setupClickListeners();
 
-        handleIncomingPdfIntent(getIntent());
+        // After a configuration change the ViewModel still holds the opened document
+        if (savedInstanceState == null) {
+            handleIncomingPdfIntent(getIntent());
+        }
     }
 
     @Override
     protected void onNewIntent(Intent intent) {
         super.onNewIntent(intent);
+        setIntent(intent);
+        // Supersedes a document that is still loading
         handleIncomingPdfIntent(intent);
     }
 
@@ -94,7 +158,7 @@ public class MainActivity extends AppCompatActivity {
         }
 
         if (data != null && "application/pdf".equals(intent.getType())) {
-            extractAnnotationsFromPdf(data);
+            viewModel.openAnnotations(data);
         }
     }
 
@@ -113,21 +177,211 @@ public class MainActivity extends AppCompatActivity {
                 return;
             }
             viewModel.setAnnotationText(annotationText);
-            getContent.launch("image/*");
+            getContent.launch(new String[]{"image/*"});
+        });
+
+        findViewById(R.id.btn_append_images).setOnClickListener(v -> {
+            String annotationText = etAnnotationText.getText().toString().trim();
+            if (annotationText.isEmpty()) {
+                Toast.makeText(this, "Please enter annotation text", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            viewModel.setAnnotationText(annotationText);
+            getImagesToAppend.launch(new String[]{"image/*"});
         });
 
         findViewById(R.id.btn_select_pdf).setOnClickListener(v -> {
             getPdfFile.launch("application/pdf");
         });
+
+        findViewById(R.id.btn_more_actions).setOnClickListener(this::showMoreActions);
+
+        findViewById(R.id.btn_search).setOnClickListener(v -> searchAnnotations());
+        etSearch.setOnEditorActionListener((v, actionId, event) -> {
+            searchAnnotations();
+            return true;
+        });
+
+        btnCancelJob.setOnClickListener(v -> {
+            if (shownJobId != -1) {
+                viewModel.cancelJob(shownJobId);
+            }
+        });
+    }
+
+    private void showMoreActions(View anchor) {
+        PopupMenu popup = new PopupMenu(this, anchor);
+        Menu menu = popup.getMenu();
+        menu.add(Menu.NONE, ACTION_PAGE_LAYOUT, Menu.NONE, "Page Layout");
+        menu.add(Menu.NONE, ACTION_COMPACT_PDFS, Menu.NONE, "Compact PDFs")
+                .setCheckable(true)
+                .setChecked(viewModel.getSaveOptions().isCompact());
+        menu.add(Menu.NONE, ACTION_MERGE_PDFS, Menu.NONE, "Merge PDFs");
+        menu.add(Menu.NONE, ACTION_EXPORT_ANNOTATIONS, Menu.NONE, "Export Annotations");
+        menu.add(Menu.NONE, ACTION_IMPORT_ANNOTATIONS, Menu.NONE, "Import Annotations into Last PDF");
+        menu.add(Menu.NONE, ACTION_RECORD_METRICS, Menu.NONE, "Record Metrics")
+                .setCheckable(true)
+                .setChecked(viewModel.isMetricsEnabled());
+        menu.add(Menu.NONE, ACTION_SHOW_METRICS, Menu.NONE, "Show Metrics");
+        popup.setOnMenuItemClickListener(this::onMoreAction);
+        popup.show();
+    }
+
+    private boolean onMoreAction(MenuItem item) {
+        switch (item.getItemId()) {
+            case ACTION_RECORD_METRICS:
+                viewModel.setMetricsEnabled(!item.isChecked());
+                Toast.makeText(this,
+                        item.isChecked() ? "Metrics off" : "Recording metrics to " + viewModel.getMetricsFile().getName(),
+                        Toast.LENGTH_SHORT).show();
+                return true;
+            case ACTION_SHOW_METRICS:
+                showMetrics();
+                return true;
+            case ACTION_PAGE_LAYOUT:
+                choosePageLayout();
+                return true;
+            case ACTION_COMPACT_PDFS:
+                viewModel.setSaveOptions(item.isChecked() ? SaveOptions.STANDARD : SaveOptions.COMPACT);
+                Toast.makeText(this,
+                        item.isChecked() ? "Saving standard PDFs" : "Saving compact PDFs with object streams",
+                        Toast.LENGTH_SHORT).show();
+                return true;
+            case ACTION_MERGE_PDFS:
+                choosePdfs("Merge PDFs", "Merge", viewModel::mergePdfs);
+                return true;
+            case ACTION_EXPORT_ANNOTATIONS:
+                exportAnnotations();
+                return true;
+            case ACTION_IMPORT_ANNOTATIONS:
+                // XFDF and JSON Lines have no MIME type that document providers agree on
+                getAnnotationFile.launch("*/*");
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Lets the user choose how images of new PDFs and appended pages are placed
+     */
+    private void choosePageLayout() {
+        int checked = Arrays.asList(LAYOUTS).indexOf(viewModel.getImageLayout());
+        new AlertDialog.Builder(this)
+                .setTitle("Page Layout")
+                .setSingleChoiceItems(LAYOUT_NAMES, checked, (dialog, which) -> {
+                    viewModel.setImageLayout(LAYOUTS[which]);
+                    dialog.dismiss();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void exportAnnotations() {
+        new AlertDialog.Builder(this)
+                .setTitle("Export Format")
+                .setItems(FORMAT_NAMES, (dialog, which) -> choosePdfs("Export Annotations", "Export",
+                        pdfs -> viewModel.exportAnnotations(pdfs, FORMATS[which])))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Lets the user pick some of the generated PDFs and hands them to the action in the listed order
+     */
+    private void choosePdfs(String title, String actionName, Consumer<List<File>> action) {
+        List<File> pdfs = viewModel.getGeneratedPdfs();
+        if (pdfs.isEmpty()) {
+            Toast.makeText(this, "Generate a PDF first", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String[] names = new String[pdfs.size()];
+        for (int i = 0; i < pdfs.size(); i++) {
+            names[i] = pdfs.get(i).getName();
+        }
+        boolean[] checked = new boolean[pdfs.size()];
+        new AlertDialog.Builder(this)
+                .setTitle(title)
+                .setMultiChoiceItems(names, checked, (dialog, which, isChecked) -> checked[which] = isChecked)
+                .setPositiveButton(actionName, (dialog, which) -> {
+                    List<File> selected = new ArrayList<>();
+                    for (int i = 0; i < pdfs.size(); i++) {
+                        if (checked[i]) {
+                            selected.add(pdfs.get(i));
+                        }
+                    }
+                    action.accept(selected);
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Shows the count, average and slowest time of every recorded step, and the peak heap
+     */
+    private void showMetrics() {
+        MetricsSnapshot snapshot = viewModel.getMetricsSnapshot();
+        if (snapshot == null) {
+            Toast.makeText(this, "Turn on Record Metrics first", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (String name : snapshot.getSpanNames()) {
+            MetricsSnapshot.Stats stats = snapshot.getStats(name);
+            text.append(String.format(Locale.ROOT, "%s: %d x, avg %.1f ms, max %.1f ms\n", name, stats.getCount(),
+                    stats.getAverageNanos() / 1e6, stats.getMaxNanos() / 1e6));
+        }
+        text.append(String.format(Locale.ROOT, "Peak heap: %.1f MB", snapshot.getPeakHeapBytes() / (1024.0 * 1024.0)));
+        new AlertDialog.Builder(this)
+                .setTitle("Metrics")
+                .setMessage(text)
+                .setPositiveButton("OK", null)
+                .show();
+    }
+
+    private void searchAnnotations() {
+        String query = etSearch.getText().toString().trim();
+        if (query.isEmpty()) {
+            Toast.makeText(this, "Please enter a search term", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        viewModel.searchAnnotations(query);
+    }
+
+    private void setupAnnotationList() {
+        RecyclerView recyclerView = findViewById(R.id.rv_annotations);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+        annotationAdapter.setThumbnailLoader(viewModel.getThumbnailLoader());
+        recyclerView.setAdapter(annotationAdapter);
+
+        // Load further pages of annotations as the end of the list comes into view
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= annotationAdapter.getItemCount() - LOAD_MORE_THRESHOLD) {
+                    viewModel.loadMoreAnnotations();
+                }
+            }
+        });
     }
 
     private void setupObservers() {
+        viewModel.getAnnotations().observe(this, annotationAdapter::setAnnotations);
+
         viewModel.getIsPdfGenerated().observe(this, isGenerated -> {
             if (isGenerated) {
                 openPdfFile(new File(viewModel.getLastGeneratedPdfPath()));
             }
         });
 
+        viewModel.getJobProgress().observe(this, this::showJobProgress);
+
+        viewModel.getSearchResults().observe(this, this::showSearchResults);
+
+        viewModel.getExportedFile().observe(this, this::shareExport);
+
         viewModel.getErrorMessage().observe(this, error -> {
             if (error != null && !error.isEmpty()) {
                 Toast.makeText(this, error, Toast.LENGTH_SHORT).show();
@@ -135,6 +389,63 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    private void showJobProgress(JobProgress progress) {
+        if (progress.isFinished()) {
+            if (progress.getJobId() == shownJobId) {
+                shownJobId = -1;
+                layoutJobProgress.setVisibility(View.GONE);
+            }
+            return;
+        }
+        shownJobId = progress.getJobId();
+        layoutJobProgress.setVisibility(View.VISIBLE);
+        // Queued jobs, and jobs that don't work page by page, have no page count
+        progressJob.setIndeterminate(progress.getPageCount() == 0);
+        progressJob.setMax(Math.max(1, progress.getPageCount()));
+        progressJob.setProgress(progress.getPagesDone());
+        tvJobProgress.setText(progress.getState() == JobProgress.State.CANCELLING ? "Cancelling"
+                : progress.getPagesDone() + "/" + progress.getPageCount());
+        btnCancelJob.setEnabled(progress.getState() != JobProgress.State.CANCELLING);
+    }
+
+    /**
+     * Lists the hits of a library search; choosing one opens the annotations of its PDF
+     */
+    private void showSearchResults(List<LibrarySearchHit> hits) {
+        if (hits.isEmpty()) {
+            Toast.makeText(this, "No annotations found", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String[] items = new String[hits.size()];
+        for (int i = 0; i < hits.size(); i++) {
+            AnnotationInfo annotation = hits.get(i).getAnnotation();
+            items[i] = hits.get(i).getPdfFile().getName() + ", page " + annotation.getPageNumber()
+                    + ": " + annotation.getContents();
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(hits.size() + " annotations found")
+                .setItems(items, (dialog, which) -> viewModel.openAnnotations(Uri.fromFile(hits.get(which).getPdfFile())))
+                .setNegativeButton("Close", null)
+                .show();
+    }
+
+    private void shareExport(File exportFile) {
+        try {
+            Uri exportUri = FileProvider.getUriForFile(this,
+                    getApplicationContext().getPackageName() + ".provider",
+                    exportFile);
+
+            Intent intent = new Intent(Intent.ACTION_SEND);
+            intent.setType(exportFile.getName().endsWith(".xfdf") ? "application/vnd.adobe.xfdf" : "application/x-ndjson");
+            intent.putExtra(Intent.EXTRA_STREAM, exportUri);
+            intent.setFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+            startActivity(Intent.createChooser(intent, "Share annotations with..."));
+        } catch (Exception e) {
+            Toast.makeText(this, "Error sharing annotations: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    }
+
     private void openPdfFile(File pdfFile) {
         try {
             Uri pdfUri = FileProvider.getUriForFile(this,
@@ -150,87 +461,4 @@ public class MainActivity extends AppCompatActivity {
             Toast.makeText(this, "Error opening PDF: " + e.getMessage(), Toast.LENGTH_SHORT).show();
         }
     }
-
-    private void extractAnnotationsFromPdf(Uri uri) {
-        try (InputStream inputStream = getContentResolver().openInputStream(uri);
-             PDDocument document = PDDocument.load(inputStream)) {
-
-            LinearLayout layout = findViewById(R.id.layout_annotations);
-            layout.removeAllViews();
-
-            int pageIndex = 1;
-            for (PDPage page : document.getPages()) {
-                List<PDAnnotation> annotations = page.getAnnotations();
-                for (PDAnnotation annotation : annotations) {
-                    String subType = annotation.getSubtype();
-                    if ("Text".equalsIgnoreCase(subType) || "FreeText".equalsIgnoreCase(subType)) {
-                        String content = annotation.getContents();
-                        String title = annotation.getCOSObject().getString("T");
-                        String modifiedDate = annotation.getModifiedDate();
-
-                        if (content != null && !content.trim().isEmpty()) {
-                            LinearLayout cardLayout = new LinearLayout(this);
-                            cardLayout.setOrientation(LinearLayout.VERTICAL);
-                            cardLayout.setPadding(24, 16, 24, 16);
-                            cardLayout.setBackgroundColor(0xFFF1F1F1);
-
-                            TextView tv = new TextView(this);
-                            StringBuilder display = new StringBuilder();
-                            display.append("Page ").append(pageIndex).append("\n");
-                            if (title != null) display.append("📝 ").append(title).append("\n");
-                            display.append(content).append("\n");
-                            if (modifiedDate != null)
-                                display.append("📅 ").append(modifiedDate.replace("D:", "")).append("\n");
-                            tv.setText(display.toString());
-                            tv.setTextSize(15f);
-                            tv.setPadding(0, 0, 0, 8);
-
-                            // Buttons layout
-                            LinearLayout buttonLayout = new LinearLayout(this);
-                            buttonLayout.setOrientation(LinearLayout.HORIZONTAL);
-
-                            // Copy button
-                            Button btnCopy = new Button(this);
-                            btnCopy.setText("Copy");
-                            btnCopy.setTextSize(14f);
-                            btnCopy.setOnClickListener(view -> {
-                                ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
-                                ClipData clip = ClipData.newPlainText("annotation", content);
-                                clipboard.setPrimaryClip(clip);
-                                Toast.makeText(this, "Copied to clipboard!", Toast.LENGTH_SHORT).show();
-                            });
-
-                            // Share button
-                            Button btnShare = new Button(this);
-                            btnShare.setText("Share");
-                            btnShare.setTextSize(14f);
-                            btnShare.setOnClickListener(view -> {
-                                Intent shareIntent = new Intent(Intent.ACTION_SEND);
-                                shareIntent.setType("text/plain");
-                                shareIntent.putExtra(Intent.EXTRA_TEXT, content);
-                                startActivity(Intent.createChooser(shareIntent, "Share annotation via"));
-                            });
-
-                            // Add buttons to button layout
-                            buttonLayout.addView(btnCopy);
-                            buttonLayout.addView(btnShare);
-
-                            // Add views to card
-                            cardLayout.addView(tv);
-                            cardLayout.addView(buttonLayout);
-                            layout.addView(cardLayout);
-                        }
-                    }
-                }
-                pageIndex++;
-            }
-
-            if (layout.getChildCount() == 0) {
-                Toast.makeText(this, "No visible annotations found.", Toast.LENGTH_SHORT).show();
-            }
-
-        } catch (Exception e) {
-            Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
-        }
-    }
 }
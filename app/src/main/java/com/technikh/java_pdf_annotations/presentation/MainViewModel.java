@@ -1,42 +1,151 @@
 package com.technikh.java_pdf_annotations.presentation;
 
 import android.app.Application;
+import android.content.Intent;
+import android.database.Cursor;
 import android.net.Uri;
+import android.provider.OpenableColumns;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.technikh.java_pdf_annotations.data.AnnotationIndexRepository;
+import com.technikh.java_pdf_annotations.data.AnnotationLibrary;
+import com.technikh.java_pdf_annotations.data.ImageIngestor;
+import com.technikh.java_pdf_annotations.data.LibrarySearchHit;
+import com.technikh.java_pdf_annotations.data.LogcatLogger;
+import com.technikh.java_pdf_annotations.data.PdfDocumentLoader;
+import com.technikh.java_pdf_annotations.data.PdfFingerprint;
+import com.technikh.java_pdf_annotations.data.PdfGeneratorFactory;
+import com.technikh.java_pdf_annotations.data.ThumbnailDiskCache;
+import com.technikh.java_pdf_annotations.data.ThumbnailLoader;
+import com.technikh.java_pdf_annotations.data.db.AnnotationDatabase;
+import com.technikh.java_pdf_annotations.domain.AnnotationExporter;
+import com.technikh.java_pdf_annotations.domain.AnnotationFormat;
+import com.technikh.java_pdf_annotations.domain.AnnotationImporter;
+import com.technikh.java_pdf_annotations.domain.AnnotationInfo;
+import com.technikh.java_pdf_annotations.domain.AnnotationPager;
+import com.technikh.java_pdf_annotations.domain.ChunkPolicy;
+import com.technikh.java_pdf_annotations.domain.DomainLog;
+import com.technikh.java_pdf_annotations.domain.GenerationCheckpoint;
+import com.technikh.java_pdf_annotations.domain.GenerationJobQueue;
+import com.technikh.java_pdf_annotations.domain.GenerationManifest;
+import com.technikh.java_pdf_annotations.domain.GenerationReport;
+import com.technikh.java_pdf_annotations.domain.ImageLayout;
+import com.technikh.java_pdf_annotations.domain.ImageSource;
+import com.technikh.java_pdf_annotations.domain.JobProgress;
+import com.technikh.java_pdf_annotations.domain.JsonLinesMetricsSink;
+import com.technikh.java_pdf_annotations.domain.Metrics;
+import com.technikh.java_pdf_annotations.domain.MetricsAggregator;
+import com.technikh.java_pdf_annotations.domain.MetricsSnapshot;
 import com.technikh.java_pdf_annotations.domain.PdfGenerator;
+import com.technikh.java_pdf_annotations.domain.PdfMerger;
+import com.technikh.java_pdf_annotations.domain.ProgressListener;
+import com.technikh.java_pdf_annotations.domain.SaveOptions;
+import com.technikh.java_pdf_annotations.domain.ScratchPolicy;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * ViewModel for PDF annotation operations
  */
 public class MainViewModel extends AndroidViewModel {
     private static final String TAG = "MainViewModel";
+    private static final int DEFAULT_CONCURRENT_JOBS = 2;
+    /**
+     * Large selections are split so the first PDF is ready after at most this many pages
+     */
+    private static final int DEFAULT_CHUNK_PAGES = 100;
+    private static final long PARSE_HEAP_BYTES = 1024 * 1024;
+    /**
+     * Share of the heap that holds thumbnails in memory
+     */
+    private static final int THUMBNAIL_MEMORY_FRACTION = 16;
+    /**
+     * Checkpoint directories of jobs running in this process, which must not be resumed a second time
+     */
+    private static final Set<File> ACTIVE_CHECKPOINTS = Collections.newSetFromMap(new ConcurrentHashMap<>());
     private final PdfGenerator pdfGenerator;
-    private final ExecutorService executorService;
+    private final PdfMerger pdfMerger;
+    private final AnnotationExporter annotationExporter;
+    private final AnnotationImporter annotationImporter;
+    private final GenerationJobQueue jobQueue;
     private final MutableLiveData<Boolean> isPdfGenerated = new MutableLiveData<>(false);
+    private final MutableLiveData<File> exportedFile = new MutableLiveData<>();
+    // Outputs of export jobs, which are not PDFs and must never be opened or appended to as one
+    private final Set<File> exportFiles = Collections.newSetFromMap(new ConcurrentHashMap<>());
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
+    private final MutableLiveData<JobProgress> jobProgress = new MutableLiveData<>();
+    private final ExecutorService annotationExecutor = Executors.newSingleThreadExecutor();
+    private final MutableLiveData<List<AnnotationInfo>> annotations = new MutableLiveData<>(Collections.emptyList());
+    private final AtomicBoolean isLoadingAnnotations = new AtomicBoolean(false);
+    private final AnnotationIndexRepository annotationIndex;
+    private final PdfDocumentLoader documentLoader;
+    private final AnnotationLibrary annotationLibrary;
+    private final ThumbnailLoader thumbnailLoader;
+    // Indexing can take a while, so searches run on their own thread and are never queued behind it
+    private final ExecutorService libraryIndexExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService librarySearchExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean isLibraryIndexQueued = new AtomicBoolean(false);
+    private final MutableLiveData<List<LibrarySearchHit>> searchResults = new MutableLiveData<>();
+    // Only touched on the main thread
+    private Future<?> openTask;
+    // Only touched on annotationExecutor
+    private AnnotationPager annotationPager;
+    private String annotationFingerprint;
+    private final List<AnnotationInfo> loadedAnnotations = new ArrayList<>();
     private String annotationText = "made in India";
-    private File lastGeneratedPdf;
+    private volatile File lastGeneratedPdf;
     private boolean useToggleableAnnotations = true;
+    private final ChunkPolicy chunkPolicy = ChunkPolicy.everyPages(DEFAULT_CHUNK_PAGES);
+    private ImageLayout imageLayout = ImageLayout.FIT_WIDTH;
+    private SaveOptions saveOptions = SaveOptions.STANDARD;
+    private volatile Metrics metrics = Metrics.DISABLED;
+    private volatile boolean isCleared;
+    @Nullable
+    private MetricsAggregator metricsAggregator;
+    @Nullable
+    private JsonLinesMetricsSink metricsExport;
 
     public MainViewModel(Application application) {
         super(application);
-        pdfGenerator = new PdfGenerator(application);
-        executorService = Executors.newSingleThreadExecutor();
+        DomainLog.setLogger(new LogcatLogger());
+        pdfGenerator = PdfGeneratorFactory.create(application);
+        jobQueue = new GenerationJobQueue(DEFAULT_CONCURRENT_JOBS, this::onJobUpdated);
+        AnnotationDatabase database = AnnotationDatabase.getInstance(application);
+        annotationIndex = new AnnotationIndexRepository(database.annotationDao());
+        // Parsing only buffers the streams it decodes, so a small heap share is enough
+        ScratchPolicy parsePolicy = ScratchPolicy.nio(new File(application.getCacheDir(), "scratch"), PARSE_HEAP_BYTES, 0);
+        documentLoader = new PdfDocumentLoader(application.getContentResolver(), parsePolicy);
+        pdfMerger = new PdfMerger(parsePolicy);
+        annotationExporter = new AnnotationExporter(parsePolicy);
+        annotationImporter = new AnnotationImporter(parsePolicy);
+        annotationLibrary = new AnnotationLibrary(database.libraryDao(), parsePolicy);
+        thumbnailLoader = new ThumbnailLoader(documentLoader,
+                new ThumbnailDiskCache(new File(application.getCacheDir(), "thumbnails"), ThumbnailDiskCache.DEFAULT_MAX_BYTES),
+                Runtime.getRuntime().maxMemory() / THUMBNAIL_MEMORY_FRACTION, ThumbnailLoader.DEFAULT_DPI);
+        // Runs before the first library scan on the same background thread
+        libraryIndexExecutor.execute(this::resumeCheckpointedJobs);
+        indexLibrary();
     }
 
     /**
@@ -60,6 +169,93 @@ public class MainViewModel extends AndroidViewModel {
         return useToggleableAnnotations;
     }
 
+    /**
+     * Controls how images are placed on pages, e.g. fitted within margins or several per page
+     */
+    public void setImageLayout(ImageLayout imageLayout) {
+        this.imageLayout = imageLayout;
+        // New jobs take it from their manifest; appended pages use the generator's
+        pdfGenerator.setLayout(imageLayout);
+    }
+
+    /**
+     * Returns how new jobs place images on pages
+     */
+    public ImageLayout getImageLayout() {
+        return imageLayout;
+    }
+
+    /**
+     * Returns how generated PDFs are written
+     */
+    public SaveOptions getSaveOptions() {
+        return saveOptions;
+    }
+
+    /**
+     * Controls how generated PDFs are written, e.g. compact with object streams for reports with many comments
+     */
+    public void setSaveOptions(SaveOptions saveOptions) {
+        this.saveOptions = saveOptions;
+        pdfGenerator.setSaveOptions(saveOptions);
+    }
+
+    /**
+     * Turns recording of per-page timings, sizes and peak heap on or off.
+     * While on, every span is also appended to {@link #getMetricsFile()} as JSON lines.
+     */
+    public synchronized void setMetricsEnabled(boolean enabled) {
+        if (enabled == metrics.isEnabled()) {
+            return;
+        }
+        if (enabled) {
+            try {
+                metricsExport = new JsonLinesMetricsSink(getMetricsFile());
+            } catch (IOException e) {
+                Log.e(TAG, "Metrics export unavailable", e);
+            }
+            metricsAggregator = new MetricsAggregator(metricsExport);
+            metrics = Metrics.to(metricsAggregator);
+        } else {
+            metrics = Metrics.DISABLED;
+            closeMetricsExport();
+        }
+        pdfGenerator.setMetrics(metrics);
+    }
+
+    /**
+     * Returns whether metrics are being recorded
+     */
+    public synchronized boolean isMetricsEnabled() {
+        return metrics.isEnabled();
+    }
+
+    /**
+     * Returns the totals recorded since metrics were enabled, or null while they are off
+     */
+    @Nullable
+    public synchronized MetricsSnapshot getMetricsSnapshot() {
+        return metricsAggregator != null && metrics.isEnabled() ? metricsAggregator.snapshot() : null;
+    }
+
+    /**
+     * Returns the JSON lines export, which can be pulled from the app's external files directory
+     */
+    public File getMetricsFile() {
+        return new File(new File(getApplication().getExternalFilesDir(null), "metrics"), "metrics.jsonl");
+    }
+
+    private synchronized void closeMetricsExport() {
+        if (metricsExport != null) {
+            try {
+                metricsExport.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing metrics export", e);
+            }
+            metricsExport = null;
+        }
+    }
+
     /**
      * Returns the path to the last generated PDF
      */
@@ -74,6 +270,13 @@ public class MainViewModel extends AndroidViewModel {
         return isPdfGenerated;
     }
 
+    /**
+     * LiveData with the file of the latest annotation export that completed
+     */
+    public LiveData<File> getExportedFile() {
+        return exportedFile;
+    }
+
     /**
      * LiveData for error messages
      */
@@ -82,102 +285,563 @@ public class MainViewModel extends AndroidViewModel {
     }
 
     /**
-     * Processes selected images and generates a PDF with annotations
+     * LiveData with the annotations loaded so far from the opened PDF
      */
-    public void processImagesAndGeneratePdf(List<Uri> imageUris) {
-        if (imageUris == null || imageUris.isEmpty()) {
-            errorMessage.postValue("No images provided");
-            return;
+    public LiveData<List<AnnotationInfo>> getAnnotations() {
+        return annotations;
+    }
+
+    /**
+     * Opens a PDF in the background and loads its first batch of annotations.
+     * Documents indexed before are served from the annotation index without parsing the PDF.
+     * Opening another PDF cancels a load that is still in progress. Call on the main thread.
+     */
+    public void openAnnotations(Uri pdfUri) {
+        if (openTask != null) {
+            openTask.cancel(true);
         }
+        openTask = annotationExecutor.submit(() -> {
+            closeAnnotationPager();
+            annotations.postValue(Collections.emptyList());
 
-        executorService.execute(() -> {
             try {
-                List<String> processedImagePaths = new ArrayList<>();
-
-                for (Uri imageUri : imageUris) {
-                    if (imageUri != null) {
-                        String imagePath = processImage(imageUri);
-                        if (imagePath != null) {
-                            processedImagePaths.add(imagePath);
-                        }
+                annotationFingerprint = PdfFingerprint.compute(getApplication().getContentResolver(), pdfUri);
+                // Documents without a fingerprint can't be reopened cheaply, so they get no thumbnails
+                thumbnailLoader.setDocument(pdfUri, annotationFingerprint);
+                List<AnnotationInfo> indexed = annotationFingerprint != null ? annotationIndex.find(annotationFingerprint) : null;
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                if (indexed != null) {
+                    loadedAnnotations.addAll(indexed);
+                    annotations.postValue(new ArrayList<>(loadedAnnotations));
+                    if (indexed.isEmpty()) {
+                        errorMessage.postValue("No visible annotations found.");
                     }
+                    return;
+                }
+
+                annotationPager = new AnnotationPager(documentLoader.load(pdfUri),
+                        metrics.forDocument(String.valueOf(pdfUri.getLastPathSegment())));
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
                 }
+                loadNextAnnotations();
 
-                if (processedImagePaths.size() == 5) {
-                    generatePdf(processedImagePaths);
-                } else {
-                    errorMessage.postValue("Error: Expected 5 images but processed " + processedImagePaths.size());
+                if (loadedAnnotations.isEmpty()) {
+                    errorMessage.postValue("No visible annotations found.");
                 }
+            } catch (InterruptedIOException | ClosedByInterruptException e) {
+                Log.d(TAG, "Opening " + pdfUri + " was cancelled");
             } catch (Exception e) {
-                Log.e(TAG, "Error processing images", e);
+                if (Thread.currentThread().isInterrupted()) {
+                    Log.d(TAG, "Opening " + pdfUri + " was cancelled", e);
+                    return;
+                }
+                Log.e(TAG, "Error reading annotations", e);
+                errorMessage.postValue("Error: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Returns the loader of page thumbnails for the opened document's annotation cards
+     */
+    public ThumbnailLoader getThumbnailLoader() {
+        return thumbnailLoader;
+    }
+
+    /**
+     * Loads the next batch of annotations, e.g. when the list is scrolled near its end
+     */
+    public void loadMoreAnnotations() {
+        if (isLoadingAnnotations.compareAndSet(false, true)) {
+            annotationExecutor.execute(() -> {
+                try {
+                    loadNextAnnotations();
+                } catch (IOException | RuntimeException e) {
+                    Log.e(TAG, "Error reading annotations", e);
+                    errorMessage.postValue("Error: " + e.getMessage());
+                } finally {
+                    isLoadingAnnotations.set(false);
+                }
+            });
+        }
+    }
+
+    private void loadNextAnnotations() throws IOException {
+        if (annotationPager == null || !annotationPager.hasMore()) {
+            return;
+        }
+        loadedAnnotations.addAll(annotationPager.loadNext(AnnotationPager.DEFAULT_BATCH_SIZE));
+        annotations.postValue(new ArrayList<>(loadedAnnotations));
+
+        // Only complete scans are indexed, so a cached document never misses annotations
+        if (!annotationPager.hasMore() && annotationFingerprint != null) {
+            annotationIndex.store(annotationFingerprint, annotationPager.getPageCount(), loadedAnnotations);
+        }
+    }
+
+    private void closeAnnotationPager() {
+        if (annotationPager != null) {
+            try {
+                annotationPager.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing PDF", e);
+            }
+            annotationPager = null;
+        }
+        annotationFingerprint = null;
+        loadedAnnotations.clear();
+    }
+
+    /**
+     * LiveData with the hits of the latest library search
+     */
+    public LiveData<List<LibrarySearchHit>> getSearchResults() {
+        return searchResults;
+    }
+
+    /**
+     * Searches the annotations of every generated PDF for the words of the query, e.g. a defect code
+     */
+    public void searchAnnotations(String query) {
+        librarySearchExecutor.execute(() -> {
+            try {
+                searchResults.postValue(annotationLibrary.search(query, AnnotationLibrary.DEFAULT_SEARCH_LIMIT));
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error searching annotations", e);
                 errorMessage.postValue("Error: " + e.getMessage());
             }
         });
     }
 
     /**
-     * Processes an image URI and saves it to a temporary file
+     * Scans new and changed PDFs in the background so they show up in searches
+     */
+    public void indexLibrary() {
+        // One pending scan picks up every change made before it starts
+        if (isLibraryIndexQueued.compareAndSet(false, true)) {
+            libraryIndexExecutor.execute(() -> {
+                isLibraryIndexQueued.set(false);
+                try {
+                    int scanned = annotationLibrary.index(getPdfDir());
+                    Log.d(TAG, "Indexed annotations of " + scanned + " PDFs");
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Error indexing annotations", e);
+                }
+            });
+        }
+    }
+
+    private File getPdfDir() {
+        return new File(getApplication().getExternalFilesDir(null), "pdfs");
+    }
+
+    private File getExportDir() {
+        return new File(getApplication().getExternalFilesDir(null), "exports");
+    }
+
+    /**
+     * LiveData with the latest progress update of any job
+     */
+    public LiveData<JobProgress> getJobProgress() {
+        return jobProgress;
+    }
+
+    /**
+     * Cancels a queued or running job and deletes its partial output
      */
-    private String processImage(Uri imageUri) {
-        InputStream in = null;
-        OutputStream out = null;
-        File imageFile;
+    public void cancelJob(long jobId) {
+        jobQueue.cancel(jobId);
+    }
 
+    /**
+     * Processes selected images and generates a PDF with annotations in a new job.
+     * Selections larger than the chunk policy allows are written as several PDFs, each usable as soon as it is done.
+     * Encoded pages are checkpointed, so a job interrupted by process death is finished on the next launch.
+     *
+     * @return the job ID, or -1 if there was nothing to process
+     */
+    public long processImagesAndGeneratePdf(List<Uri> imageUris) {
+        if (imageUris == null || imageUris.isEmpty()) {
+            errorMessage.postValue("No images provided");
+            return -1;
+        }
+
+        File outputFile;
         try {
-            String fileName = "image_" + System.currentTimeMillis() + ".jpg";
-            imageFile = new File(getApplication().getExternalFilesDir(android.os.Environment.DIRECTORY_PICTURES), fileName);
+            outputFile = createOutputFile(getPdfDir(), "annotated_images_", ".pdf");
+        } catch (IOException e) {
+            Log.e(TAG, "Error creating output file", e);
+            errorMessage.postValue("Error: " + e.getMessage());
+            return -1;
+        }
+        // Named after the output, which is unique, so jobs submitted at the same moment never share a checkpoint
+        File checkpointDir = new File(getCheckpointsDir(), "job_" + outputFile.getName().replaceFirst("\\.pdf$", ""));
+        // Snapshot the settings so later UI changes don't affect a queued job
+        String text = annotationText;
+        boolean toggleable = useToggleableAnnotations;
+        ImageLayout layout = imageLayout;
 
-            in = getApplication().getContentResolver().openInputStream(imageUri);
-            if (in == null) {
-                Log.e(TAG, "Failed to open input stream for URI: " + imageUri);
-                return null;
+        return jobQueue.submit(outputFile, progressListener -> {
+            Metrics jobMetrics = metrics.forDocument(outputFile.getName());
+            long start = jobMetrics.start();
+            try (ImageIngestor ingestor = newIngestor(jobMetrics)) {
+                List<ImageSource> images = new ArrayList<>(imageUris.size());
+                List<String> sources = new ArrayList<>(imageUris.size());
+                for (Uri imageUri : imageUris) {
+                    if (imageUri == null) {
+                        continue;
+                    }
+                    try {
+                        images.add(ingestor.ingest(imageUri));
+                        sources.add(imageUri.toString());
+                        keepReadable(imageUri);
+                    } catch (IOException e) {
+                        Log.e(TAG, "Error ingesting image: " + imageUri, e);
+                    }
+                }
+                if (images.isEmpty()) {
+                    throw new IOException("None of the selected images could be read");
+                }
+                GenerationCheckpoint checkpoint = GenerationCheckpoint.create(checkpointDir,
+                        new GenerationManifest(outputFile, text, toggleable, chunkPolicy, layout, sources));
+                generatePdf(images, checkpoint, progressListener);
             }
+            jobMetrics.record(Metrics.JOB, -1, start, 0, 0);
+        });
+    }
+
+    /**
+     * Adds the selected images as annotated pages to the end of the last generated PDF in a new job.
+     * Only the new pages are written, as an incremental update, so the existing report is not regenerated.
+     * If the job fails or is cancelled, the PDF is left as it was.
+     *
+     * @return the job ID, or -1 if there was nothing to append to or nothing to append
+     */
+    public long appendImagesToLastPdf(List<Uri> imageUris) {
+        File target = lastGeneratedPdf;
+        if (target == null || !target.isFile()) {
+            errorMessage.postValue("Generate a PDF first");
+            return -1;
+        }
+        if (imageUris == null || imageUris.isEmpty()) {
+            errorMessage.postValue("No images provided");
+            return -1;
+        }
+        String text = annotationText;
+        boolean toggleable = useToggleableAnnotations;
 
-            out = new FileOutputStream(imageFile);
-            byte[] buf = new byte[1024];
-            int len;
-            while ((len = in.read(buf)) > 0) {
-                out.write(buf, 0, len);
+        return jobQueue.submitUpdate(target, progressListener -> {
+            Metrics jobMetrics = metrics.forDocument(target.getName());
+            long start = jobMetrics.start();
+            try (ImageIngestor ingestor = newIngestor(jobMetrics)) {
+                List<ImageSource> images = ingestor.ingest(imageUris);
+                if (images.isEmpty()) {
+                    throw new IOException("None of the selected images could be read");
+                }
+                logReport(pdfGenerator.appendToPdf(images, target, text, toggleable, progressListener));
             }
-            return imageFile.getAbsolutePath();
+            jobMetrics.record(Metrics.JOB, -1, start, 0, 0);
+        });
+    }
 
+    /**
+     * Returns the generated, appended and merged PDFs in the order they were last written, e.g. chunks in page order
+     */
+    public List<File> getGeneratedPdfs() {
+        File[] files = getPdfDir().listFiles((dir, name) -> name.endsWith(".pdf"));
+        List<File> pdfs = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                // Reserved outputs of jobs that haven't written anything yet are empty
+                if (file.length() > 0) {
+                    pdfs.add(file);
+                }
+            }
+        }
+        Collections.sort(pdfs, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        return pdfs;
+    }
+
+    /**
+     * Combines generated PDFs, e.g. the chunks of one batch, into a new PDF in a new job.
+     * Pages and images are copied as stored, without decoding them.
+     *
+     * @return the job ID, or -1 if there was nothing to merge
+     */
+    public long mergePdfs(List<File> pdfFiles) {
+        if (pdfFiles == null || pdfFiles.size() < 2) {
+            errorMessage.postValue("Select at least two PDFs to merge");
+            return -1;
+        }
+        List<File> inputs = new ArrayList<>(pdfFiles);
+        File outputFile;
+        try {
+            outputFile = createOutputFile(getPdfDir(), "merged_", ".pdf");
         } catch (IOException e) {
-            Log.e(TAG, "Error processing image: " + imageUri, e);
-            return null;
-        } finally {
+            Log.e(TAG, "Error creating output file", e);
+            errorMessage.postValue("Error: " + e.getMessage());
+            return -1;
+        }
+        return jobQueue.submit(outputFile, progressListener -> pdfMerger.merge(inputs, outputFile));
+    }
+
+    /**
+     * Exports every annotation of the PDFs in new jobs. JSON Lines puts all of them in one file;
+     * XFDF describes a single document, so each PDF gets its own job and file.
+     *
+     * @return the ID of the last job, or -1 if there was nothing to export
+     */
+    public long exportAnnotations(List<File> pdfFiles, AnnotationFormat format) {
+        if (pdfFiles == null || pdfFiles.isEmpty()) {
+            errorMessage.postValue("Select at least one PDF to export");
+            return -1;
+        }
+        String suffix = "." + format.getExtension();
+        try {
+            if (format == AnnotationFormat.JSON_LINES) {
+                List<File> inputs = new ArrayList<>(pdfFiles);
+                File outputFile = createOutputFile(getExportDir(), "annotations_", suffix);
+                exportFiles.add(outputFile);
+                return jobQueue.submit(outputFile, progressListener -> {
+                    try (OutputStream out = openExport(outputFile)) {
+                        Log.i(TAG, "Exported " + annotationExporter.exportJsonLines(inputs, out) + " annotations to " + outputFile.getName());
+                    }
+                });
+            }
+            long jobId = -1;
+            for (File pdfFile : pdfFiles) {
+                String baseName = pdfFile.getName().replaceFirst("\\.pdf$", "");
+                File outputFile = createOutputFile(getExportDir(), baseName + "_annotations_", suffix);
+                exportFiles.add(outputFile);
+                jobId = jobQueue.submit(outputFile, progressListener -> {
+                    try (OutputStream out = openExport(outputFile)) {
+                        Log.i(TAG, "Exported " + annotationExporter.exportXfdf(pdfFile, out) + " annotations to " + outputFile.getName());
+                    }
+                });
+            }
+            return jobId;
+        } catch (IOException e) {
+            Log.e(TAG, "Error creating export file", e);
+            errorMessage.postValue("Error: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Adds the annotations of an XFDF or JSON Lines file to the last generated PDF in a new job,
+     * styled like generated ones. The file is read as a stream and applied as incremental updates;
+     * if the job fails or is cancelled, the PDF is left as it was.
+     * Records of a JSON Lines file naming another document are skipped.
+     *
+     * @return the job ID, or -1 if there is no PDF yet or the file type is not supported
+     */
+    public long importAnnotationsIntoLastPdf(Uri annotationFile) {
+        File pdfFile = lastGeneratedPdf;
+        if (pdfFile == null || !pdfFile.isFile()) {
+            errorMessage.postValue("Generate a PDF first");
+            return -1;
+        }
+        String fileName = displayName(annotationFile);
+        AnnotationFormat format = AnnotationFormat.forFileName(fileName);
+        if (format == null) {
+            errorMessage.postValue("Choose an .xfdf or .jsonl file");
+            return -1;
+        }
+        String document = format == AnnotationFormat.JSON_LINES ? pdfFile.getName() : null;
+        return jobQueue.submitUpdate(pdfFile, progressListener -> {
+            try (InputStream in = getApplication().getContentResolver().openInputStream(annotationFile)) {
+                if (in == null) {
+                    throw new IOException("Cannot open " + fileName);
+                }
+                Log.i(TAG, "Imported " + annotationImporter.importInto(pdfFile, in, format, document)
+                        + " annotations into " + pdfFile.getName());
+            }
+        });
+    }
+
+    /**
+     * Returns the name the provider shows for a picked document, which unlike the last path segment
+     * of a content URI ends with the file's extension
+     */
+    private String displayName(Uri uri) {
+        try (Cursor cursor = getApplication().getContentResolver().query(uri,
+                new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                String name = cursor.getString(cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME));
+                if (name != null) {
+                    return name;
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "No display name for " + uri, e);
+        }
+        return String.valueOf(uri.getLastPathSegment());
+    }
+
+    private static OutputStream openExport(File outputFile) throws IOException {
+        return new BufferedOutputStream(new FileOutputStream(outputFile));
+    }
+
+    /**
+     * Reserves an empty file with a unique name in dir. Unlike a timestamp, the name never collides with
+     * another job submitted at the same moment.
+     */
+    private static File createOutputFile(File dir, String prefix, String suffix) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir.getName() + " directory");
+        }
+        return File.createTempFile(prefix, suffix, dir);
+    }
+
+    /**
+     * Queues every job that was checkpointed but not finished, e.g. because the process was killed in the background.
+     * Only pages missing from a checkpoint are read and encoded again.
+     */
+    private void resumeCheckpointedJobs() {
+        for (GenerationCheckpoint checkpoint : GenerationCheckpoint.openAll(getCheckpointsDir())) {
+            // A job of a previous ViewModel in this process may still be winding down
+            if (ACTIVE_CHECKPOINTS.contains(checkpoint.getDir())) {
+                continue;
+            }
+            GenerationManifest manifest = checkpoint.getManifest();
+            Log.i(TAG, "Resuming " + manifest.getOutputFile().getName() + " with " + checkpoint.getPagesDone()
+                    + " of " + manifest.getPageCount() + " pages done");
+            jobQueue.submit(manifest.getOutputFile(), progressListener -> {
+                Metrics jobMetrics = metrics.forDocument(manifest.getOutputFile().getName());
+                long start = jobMetrics.start();
+                try (ImageIngestor ingestor = newIngestor(jobMetrics)) {
+                    List<ImageSource> images = new ArrayList<>(manifest.getPageCount());
+                    for (int i = 0; i < manifest.getPageCount(); i++) {
+                        images.add(checkpoint.hasPage(i) ? null : ingestor.ingest(Uri.parse(manifest.getSources().get(i))));
+                    }
+                    generatePdf(images, checkpoint, progressListener);
+                }
+                jobMetrics.record(Metrics.JOB, -1, start, 0, 0);
+            });
+        }
+    }
+
+    private ImageIngestor newIngestor(Metrics jobMetrics) {
+        File spoolDir = new File(getApplication().getCacheDir(), "spool");
+        return new ImageIngestor(getApplication().getContentResolver(), spoolDir, jobMetrics);
+    }
+
+    /**
+     * Keeps access to a picked document across process death, so a resumed job can still read it
+     */
+    private void keepReadable(Uri imageUri) {
+        try {
+            getApplication().getContentResolver().takePersistableUriPermission(imageUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        } catch (SecurityException e) {
+            Log.d(TAG, "No persistable permission for " + imageUri);
+        }
+    }
+
+    private void releaseReadable(GenerationManifest manifest) {
+        for (String source : manifest.getSources()) {
             try {
-                if (in != null) in.close();
-                if (out != null) out.close();
-            } catch (IOException e) {
-                Log.e(TAG, "Error closing streams", e);
+                getApplication().getContentResolver().releasePersistableUriPermission(Uri.parse(source),
+                        Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            } catch (SecurityException ignored) {
+                // Never taken
             }
         }
     }
 
     /**
-     * Generates a PDF with the processed images and annotations
+     * Generates the checkpointed job's PDF, or several if the selection needs chunking.
+     * The checkpoint is deleted once the job completes, fails or is cancelled by the user,
+     * and kept if the job was only stopped because the ViewModel was cleared.
      */
-    private void generatePdf(List<String> imagePaths) throws IOException {
-        File pdfDir = new File(getApplication().getExternalFilesDir(null), "pdfs");
-        if (!pdfDir.exists() && !pdfDir.mkdirs()) {
-            throw new IOException("Failed to create PDF directory");
+    private void generatePdf(List<ImageSource> images, GenerationCheckpoint checkpoint,
+                             ProgressListener progressListener) throws IOException {
+        ACTIVE_CHECKPOINTS.add(checkpoint.getDir());
+        boolean finished = false;
+        try {
+            File outputFile = checkpoint.getManifest().getOutputFile();
+            File pdfDir = outputFile.getParentFile();
+            if (pdfDir != null && !pdfDir.exists() && !pdfDir.mkdirs()) {
+                throw new IOException("Failed to create PDF directory");
+            }
+            List<File> written = pdfGenerator.createCheckpointedPdfs(images, checkpoint, (chunkNumber, chunkFile, report) -> {
+                logReport(report);
+                // Reported through the job's progress, so finished chunks are listed while the batch goes on
+                progressListener.onFileWritten(chunkFile);
+            }, progressListener);
+            // Chunked jobs only write part files, so the reserved output file is still empty
+            if (!written.contains(outputFile) && outputFile.exists() && !outputFile.delete()) {
+                Log.w(TAG, "Failed to delete " + outputFile);
+            }
+            finished = true;
+        } finally {
+            ACTIVE_CHECKPOINTS.remove(checkpoint.getDir());
+            if (finished || !isCleared) {
+                releaseReadable(checkpoint.getManifest());
+                checkpoint.delete();
+            }
         }
+    }
 
-        lastGeneratedPdf = new File(pdfDir, "annotated_images_" + System.currentTimeMillis() + ".pdf");
+    private File getCheckpointsDir() {
+        // Not in the cache directory, which the system may clear while a job waits to be resumed
+        return new File(getApplication().getFilesDir(), "checkpoints");
+    }
 
-        // appropriate method based on the toggle setting
-        if (useToggleableAnnotations) {
-            pdfGenerator.createPdfWithToggleableAnnotations(imagePaths, lastGeneratedPdf, annotationText);
-        } else {
-            pdfGenerator.createPdfWithAnnotations(imagePaths, lastGeneratedPdf, annotationText);
+    private void onJobUpdated(JobProgress progress) {
+        jobProgress.postValue(progress);
+
+        boolean isExport = exportFiles.contains(progress.getOutputFile());
+        if (progress.getState() == JobProgress.State.COMPLETED && isExport) {
+            exportedFile.postValue(progress.getOutputFile());
+        } else if (progress.getState() == JobProgress.State.COMPLETED) {
+            File result = progress.getOutputFile();
+            List<File> writtenFiles = progress.getWrittenFiles();
+            if (!result.exists() && !writtenFiles.isEmpty()) {
+                // Chunked jobs write part files instead; the last one is where appended images belong
+                result = writtenFiles.get(writtenFiles.size() - 1);
+            }
+            // Opened once per job, not once per chunk
+            if (result.exists()) {
+                lastGeneratedPdf = result;
+                isPdfGenerated.postValue(true);
+            }
+            indexLibrary();
+        } else if (progress.getState() == JobProgress.State.FAILED) {
+            errorMessage.postValue("Error: " + progress.getErrorMessage());
+        }
+        if (progress.isFinished()) {
+            exportFiles.remove(progress.getOutputFile());
         }
+    }
 
-        isPdfGenerated.postValue(true);
+    /**
+     * Logs how many bytes image resampling saved on each page
+     */
+    private void logReport(GenerationReport report) {
+        for (int i = 0; i < report.getPageCount(); i++) {
+            Log.d(TAG, "Page " + (i + 1) + ": " + report.getSourceBytes(i) + " -> "
+                    + report.getEmbeddedBytes(i) + " bytes (saved " + report.getBytesSaved(i) + ")");
+        }
+        Log.i(TAG, "Saved " + report.getTotalBytesSaved() + " image bytes across " + report.getPageCount() + " pages");
     }
 
     @Override
     protected void onCleared() {
         super.onCleared();
-        executorService.shutdown();
+        isCleared = true;
+        // Nobody observes the results anymore, so stop in-flight work and remove partial files
+        jobQueue.shutdown(false);
+        if (openTask != null) {
+            openTask.cancel(true);
+        }
+        annotationExecutor.execute(this::closeAnnotationPager);
+        thumbnailLoader.close();
+        annotationExecutor.shutdown();
+        closeMetricsExport();
+        libraryIndexExecutor.shutdownNow();
+        librarySearchExecutor.shutdown();
     }
 }
\ No newline at end of file
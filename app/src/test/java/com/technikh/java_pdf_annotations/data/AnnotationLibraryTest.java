@@ -0,0 +1,180 @@
+package com.technikh.java_pdf_annotations.data;
+
+import com.technikh.java_pdf_annotations.data.db.LibraryAnnotationEntity;
+import com.technikh.java_pdf_annotations.data.db.LibraryDao;
+import com.technikh.java_pdf_annotations.data.db.LibraryFileEntity;
+import com.technikh.java_pdf_annotations.domain.ScratchPolicy;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotationText;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that only new or changed PDFs are scanned and that hits point at the right file and page.
+ */
+public class AnnotationLibraryTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final InMemoryLibraryDao dao = new InMemoryLibraryDao();
+    private File pdfDir;
+    private AnnotationLibrary library;
+
+    @Before
+    public void setUp() throws IOException {
+        pdfDir = tempFolder.newFolder("pdfs");
+        library = new AnnotationLibrary(dao, ScratchPolicy.nio(tempFolder.newFolder("scratch"), 0, 0));
+    }
+
+    @Test
+    public void index_scansOnlyNewAndChangedFiles() throws IOException {
+        File first = writePdf("first.pdf", "ok", "crack D-104 near weld");
+        writePdf("second.pdf", "ok");
+
+        assertEquals(2, library.index(pdfDir));
+        assertEquals(0, library.index(pdfDir));
+
+        writePdf("first.pdf", "ok", "ok", "repaired");
+        assertTrue(first.setLastModified(first.lastModified() + 2000));
+        assertEquals(1, library.index(pdfDir));
+        assertEquals(1, library.search("repaired", 10).size());
+        assertTrue(library.search("D-104", 10).isEmpty());
+    }
+
+    @Test
+    public void index_dropsDeletedFiles() throws IOException {
+        File first = writePdf("first.pdf", "defect D-104");
+        writePdf("second.pdf", "defect D-200");
+        library.index(pdfDir);
+
+        assertTrue(first.delete());
+        library.index(pdfDir);
+
+        List<LibrarySearchHit> hits = library.search("defect", 10);
+        assertEquals(1, hits.size());
+        assertEquals("second.pdf", hits.get(0).getPdfFile().getName());
+    }
+
+    @Test
+    public void index_recordsFilesPdfBoxFailsOnAndKeepsGoing() throws IOException {
+        File broken = writePdf("broken.pdf", "lost");
+        // The page tree claims a page that isn't there, so PDFBox throws a runtime exception fetching it
+        try (PDDocument document = PDDocument.load(broken)) {
+            document.getPages().getCOSObject().setInt(COSName.COUNT, 2);
+            document.save(broken);
+        }
+        writePdf("good.pdf", "crack D-104");
+
+        assertEquals(2, library.index(pdfDir));
+        assertEquals(0, library.index(pdfDir));
+
+        assertEquals(1, library.search("D-104", 10).size());
+        for (LibraryFileEntity file : dao.getFiles()) {
+            assertEquals(file.path, file.path.endsWith("broken.pdf") ? -1 : 1, file.annotationCount);
+        }
+    }
+
+    @Test
+    public void search_returnsPageLevelHits() throws IOException {
+        writePdf("inspection.pdf", "ok", "ok", "crack D-104 near weld");
+        library.index(pdfDir);
+
+        List<LibrarySearchHit> hits = library.search("  d-104 ", 10);
+
+        assertEquals(1, hits.size());
+        assertEquals(3, hits.get(0).getAnnotation().getPageNumber());
+        assertEquals("crack D-104 near weld", hits.get(0).getAnnotation().getContents());
+        assertEquals("inspection.pdf", hits.get(0).getPdfFile().getName());
+    }
+
+    @Test
+    public void toMatchExpression_quotesEveryWord() {
+        assertEquals("\"D-104\" \"weld\"", AnnotationLibrary.toMatchExpression(" D-104  weld "));
+        assertEquals("\"OR\" \"x\"", AnnotationLibrary.toMatchExpression("OR \"x\""));
+        assertEquals("", AnnotationLibrary.toMatchExpression("  \"\" "));
+    }
+
+    /**
+     * Writes a PDF with one page per comment
+     */
+    private File writePdf(String name, String... comments) throws IOException {
+        File file = new File(pdfDir, name);
+        try (PDDocument document = new PDDocument()) {
+            for (String comment : comments) {
+                PDPage page = new PDPage();
+                PDAnnotationText annotation = new PDAnnotationText();
+                annotation.setContents(comment);
+                annotation.setRectangle(new PDRectangle(10, 10, 20, 20));
+                page.setAnnotations(Collections.<PDAnnotation>singletonList(annotation));
+                document.addPage(page);
+            }
+            document.save(file);
+        }
+        return file;
+    }
+
+    /**
+     * Stands in for Room; a match requires every quoted phrase to occur in the contents or title
+     */
+    private static class InMemoryLibraryDao extends LibraryDao {
+        private final Map<String, LibraryFileEntity> files = new LinkedHashMap<>();
+        private final List<LibraryAnnotationEntity> annotations = new ArrayList<>();
+
+        @Override
+        public List<LibraryFileEntity> getFiles() {
+            return new ArrayList<>(files.values());
+        }
+
+        @Override
+        public List<LibraryAnnotationEntity> search(String match, int limit) {
+            List<LibraryAnnotationEntity> hits = new ArrayList<>();
+            for (LibraryAnnotationEntity annotation : annotations) {
+                String text = (annotation.contents + " " + annotation.title).toLowerCase(Locale.ROOT);
+                boolean matches = true;
+                for (String phrase : match.split("\"")) {
+                    if (!phrase.trim().isEmpty() && !text.contains(phrase.toLowerCase(Locale.ROOT))) {
+                        matches = false;
+                    }
+                }
+                if (matches && hits.size() < limit) {
+                    hits.add(annotation);
+                }
+            }
+            return hits;
+        }
+
+        @Override
+        protected void insertFile(LibraryFileEntity file) {
+            files.put(file.path, file);
+        }
+
+        @Override
+        protected void insertAnnotations(List<LibraryAnnotationEntity> annotations) {
+            this.annotations.addAll(annotations);
+        }
+
+        @Override
+        public void deleteFile(String path) {
+            files.remove(path);
+            annotations.removeIf(annotation -> annotation.path.equals(path));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.technikh.java_pdf_annotations.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PdfFingerprintTest {
+    private static final String TRAILER = "trailer\n<< /Size 4 /ID [<0ECD0A53> <0ECD0A53>] >>\nstartxref\n214\n%%EOF\n";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void identicalFiles_haveTheSameFingerprint() throws IOException {
+        File first = writePdf("first.pdf", 'a', TRAILER);
+        File second = writePdf("second.pdf", 'a', TRAILER);
+
+        assertEquals(fingerprint(first), fingerprint(second));
+    }
+
+    @Test
+    public void changedTail_changesTheFingerprint() throws IOException {
+        File original = writePdf("original.pdf", 'a', TRAILER);
+        File updated = writePdf("updated.pdf", 'a', TRAILER.replace("0ECD0A53", "1ECD0A53"));
+
+        assertNotEquals(fingerprint(original), fingerprint(updated));
+    }
+
+    @Test
+    public void changedMiddle_isIgnoredButChangedSizeIsNot() throws IOException {
+        File original = writePdf("original.pdf", 'a', TRAILER);
+        File middleEdited = writePdf("middle.pdf", 'a', TRAILER);
+        try (RandomAccessFile file = new RandomAccessFile(middleEdited, "rw")) {
+            file.seek(file.length() / 2);
+            file.write('b');
+        }
+        File appended = writePdf("appended.pdf", 'a', TRAILER + "\n");
+
+        assertEquals(fingerprint(original), fingerprint(middleEdited));
+        assertNotEquals(fingerprint(original), fingerprint(appended));
+    }
+
+    @Test
+    public void trailerId_isTheLastIdArray() {
+        byte[] tail = ("/ID [<01>]\n" + TRAILER).getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals("/ID [<0ECD0A53> <0ECD0A53>", new String(PdfFingerprint.trailerId(tail), StandardCharsets.US_ASCII));
+        assertEquals(0, PdfFingerprint.trailerId("no id here".getBytes(StandardCharsets.US_ASCII)).length);
+    }
+
+    private File writePdf(String name, char filler, String trailer) throws IOException {
+        File file = tempFolder.newFile(name);
+        byte[] body = new byte[PdfFingerprint.EDGE_BYTES * 3];
+        Arrays.fill(body, (byte) filler);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("%PDF-1.4\n".getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.write(trailer.getBytes(StandardCharsets.US_ASCII));
+        }
+        return file;
+    }
+
+    private static String fingerprint(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            return PdfFingerprint.compute(in.getChannel(), file.length());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.technikh.java_pdf_annotations.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that thumbnails are keyed by document version, page and DPI and that the least recently read are evicted first.
+ */
+public class ThumbnailDiskCacheTest {
+    private static final int ENTRY_BYTES = 1000;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void read_returnsWrittenEntryForExactKeyOnly() throws IOException {
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(tempFolder.newFolder("thumbnails"), 10 * ENTRY_BYTES);
+        cache.write(new ThumbnailKey("abc", 3, 24), entry(7));
+
+        assertArrayEquals(entry(7), cache.read(new ThumbnailKey("abc", 3, 24)));
+        assertNull(cache.read(new ThumbnailKey("abc", 3, 48)));
+        assertNull(cache.read(new ThumbnailKey("abc", 4, 24)));
+        assertNull(cache.read(new ThumbnailKey("abd", 3, 24)));
+    }
+
+    @Test
+    public void write_evictsLeastRecentlyReadBeyondBudget() throws IOException {
+        File dir = tempFolder.newFolder("thumbnails");
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(dir, 4 * ENTRY_BYTES);
+        long now = System.currentTimeMillis();
+        for (int page = 0; page < 4; page++) {
+            cache.write(key(page), entry(page));
+            // Distinct times, oldest first, regardless of the file system's timestamp resolution
+            assertTrue(new File(dir, key(page).getFileName()).setLastModified(now - (10 - page) * 1000L));
+        }
+        assertNotNull(cache.read(key(0)));
+
+        cache.write(key(4), entry(4));
+
+        assertNotNull(cache.read(key(0)));
+        assertNull(cache.read(key(1)));
+        assertNotNull(cache.read(key(4)));
+        long total = 0;
+        for (File file : dir.listFiles()) {
+            total += file.length();
+        }
+        assertTrue(total <= 4 * ENTRY_BYTES);
+    }
+
+    private static ThumbnailKey key(int page) {
+        return new ThumbnailKey("fingerprint", page, 24);
+    }
+
+    private static byte[] entry(int seed) {
+        byte[] data = new byte[ENTRY_BYTES];
+        data[0] = (byte) seed;
+        return data;
+    }
+}
@@ -0,0 +1,46 @@
+package com.technikh.java_pdf_annotations.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that pages nearest to the shown one are rendered first and that the farthest are dropped when the queue is full.
+ */
+public class ThumbnailQueueTest {
+
+    @Test
+    public void poll_prefersPagesNearestToLatestRequest() {
+        ThumbnailQueue queue = new ThumbnailQueue(10);
+        queue.request(10);
+        queue.prefetch(11);
+        queue.prefetch(9);
+        queue.request(500);
+        queue.prefetch(501);
+
+        assertEquals(500, queue.poll());
+        assertEquals(501, queue.poll());
+        assertEquals(11, queue.poll());
+        assertEquals(10, queue.poll());
+        assertEquals(9, queue.poll());
+        assertEquals(-1, queue.poll());
+    }
+
+    @Test
+    public void add_ignoresDuplicatesAndDropsFarthestWhenFull() {
+        ThumbnailQueue queue = new ThumbnailQueue(3);
+        queue.request(0);
+        queue.request(1);
+        queue.request(1);
+        assertEquals(2, queue.size());
+
+        queue.request(50);
+        queue.prefetch(51);
+
+        assertEquals(3, queue.size());
+        assertEquals(50, queue.poll());
+        assertEquals(51, queue.poll());
+        assertEquals(1, queue.poll());
+        assertEquals(-1, queue.poll());
+    }
+}
@@ -0,0 +1,78 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation time against the number of annotation specs on a fixed set of pages.
+ * Time per operation should grow linearly from 100 to 10,000 annotations.
+ * Run with ./gradlew :app:jmh -Pjmh.include=AnnotationBatchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class AnnotationBatchBenchmark {
+    private static final int PAGE_COUNT = 100;
+    private static final int[] COLORS = {0xFFFFCC, 0xFF0000, 0x00AA00, 0x0000FF};
+    private static final String[] ICONS = {"Comment", "Note", "Key", "Help"};
+
+    @Param({"100", "1000", "10000"})
+    public int annotationCount;
+
+    private File workDir;
+    private File outputFile;
+    private List<ImageSource> sources;
+    private List<AnnotationSpec> specs;
+    private PdfGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("pdf_benchmark").toFile();
+        outputFile = new File(workDir, "output.pdf");
+        MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(8L * 1024 * 1024).setTempDir(workDir);
+        generator = new PdfGenerator(setting, BenchmarkImages.encoder(BenchmarkImages.jpegs(256)), 1);
+        sources = BenchmarkImages.sources(PAGE_COUNT);
+
+        specs = new ArrayList<>(annotationCount);
+        for (int i = 0; i < annotationCount; i++) {
+            float x = 20 + (i * 37) % 500;
+            float y = 20 + (i * 53) % 780;
+            specs.add(new AnnotationSpec(i % PAGE_COUNT + 1, x, y, 20, 20, "Finding " + i,
+                    "Inspector " + (i % 3), COLORS[i % COLORS.length], ICONS[i % ICONS.length]));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        outputFile.delete();
+        workDir.delete();
+    }
+
+    @Benchmark
+    public GenerationReport generateWithSpecs() throws IOException {
+        return generator.createPdfWithAnnotationSpecs(sources, outputFile, specs);
+    }
+}
@@ -0,0 +1,107 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotationText;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that annotation edits are appended as incremental updates and leave the original bytes untouched.
+ */
+public class AnnotationEditorTest {
+    private static final int PAGE_COUNT = 20;
+    private static final int IMAGE_SIZE = 128;
+    private static final ScratchPolicy IN_MEMORY = ScratchPolicy.of(MemoryUsageSetting.setupMainMemoryOnly());
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void setContents_appendsSmallUpdate_andKeepsOriginalPrefix() throws IOException {
+        File pdf = TestFixtures.annotatedPdf(tempFolder.newFile("annotated.pdf"), PAGE_COUNT, IMAGE_SIZE);
+        byte[] original = Files.readAllBytes(pdf.toPath());
+
+        long appended;
+        try (AnnotationEditor editor = new AnnotationEditor(pdf, IN_MEMORY)) {
+            PDAnnotationText annotation = editor.getTextAnnotations(2).get(0);
+            editor.setContents(2, annotation, "revised");
+            appended = editor.appendChanges();
+        }
+
+        byte[] updated = Files.readAllBytes(pdf.toPath());
+        assertOriginalPrefix(original, updated);
+        assertEquals(updated.length - original.length, appended);
+        assertTrue("Appended " + appended + " bytes", appended < 4096);
+
+        try (AnnotationEditor editor = new AnnotationEditor(pdf, IN_MEMORY)) {
+            assertEquals("revised", editor.getTextAnnotations(2).get(0).getContents());
+            assertEquals("inspection", editor.getTextAnnotations(1).get(0).getContents());
+        }
+    }
+
+    @Test
+    public void addAndRemove_acrossSeveralUpdates_reloadCorrectly() throws IOException {
+        File pdf = TestFixtures.annotatedPdf(tempFolder.newFile("annotated.pdf"), PAGE_COUNT, IMAGE_SIZE);
+        byte[] original = Files.readAllBytes(pdf.toPath());
+
+        try (AnnotationEditor editor = new AnnotationEditor(pdf, IN_MEMORY)) {
+            editor.addTextAnnotation(1, "added", new PDRectangle(10, 10, 40, 20));
+            editor.appendChanges();
+
+            PDAnnotationText last = editor.getTextAnnotations(PAGE_COUNT).get(0);
+            assertTrue(editor.removeAnnotation(PAGE_COUNT, last));
+            editor.appendChanges();
+            assertFalse(editor.isModified());
+        }
+
+        assertOriginalPrefix(original, Files.readAllBytes(pdf.toPath()));
+        try (PDDocument document = PDDocument.load(pdf)) {
+            assertEquals(PAGE_COUNT, document.getNumberOfPages());
+            List<AnnotationInfo> annotations = new ArrayList<>();
+            for (int i = 0; i < PAGE_COUNT; i++) {
+                AnnotationPager.readAnnotations(document.getPage(i), i + 1, annotations);
+            }
+            assertEquals(PAGE_COUNT, annotations.size());
+            assertEquals("inspection", annotations.get(0).getContents());
+            assertEquals("added", annotations.get(1).getContents());
+            assertEquals(PAGE_COUNT - 1, annotations.get(annotations.size() - 1).getPageNumber());
+        }
+    }
+
+    @Test
+    public void saveIncremental_toStream_leavesSourceUnchanged() throws IOException {
+        File pdf = TestFixtures.annotatedPdf(tempFolder.newFile("annotated.pdf"), PAGE_COUNT, IMAGE_SIZE);
+        byte[] original = Files.readAllBytes(pdf.toPath());
+
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        try (AnnotationEditor editor = new AnnotationEditor(pdf, IN_MEMORY)) {
+            editor.addTextAnnotation(3, "shared", new PDRectangle(10, 10, 40, 20));
+            editor.saveIncremental(copy);
+        }
+
+        assertArrayEquals(original, Files.readAllBytes(pdf.toPath()));
+        assertOriginalPrefix(original, copy.toByteArray());
+        try (PDDocument document = PDDocument.load(copy.toByteArray())) {
+            assertEquals(2, document.getPage(2).getAnnotations().size());
+        }
+    }
+
+    private static void assertOriginalPrefix(byte[] original, byte[] updated) {
+        assertTrue(updated.length > original.length);
+        assertArrayEquals(original, Arrays.copyOf(updated, original.length));
+    }
+}
@@ -0,0 +1,76 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening a generated PDF and reading its annotations, both the first batch shown on screen and the whole document.
+ * Run with ./gradlew :app:jmh -Pjmh.include=AnnotationExtractionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class AnnotationExtractionBenchmark {
+    @Param({"5", "100", "1000"})
+    public int pageCount;
+
+    private File workDir;
+    private File pdfFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("pdf_benchmark").toFile();
+        pdfFile = new File(workDir, "annotated.pdf");
+        MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(8L * 1024 * 1024).setTempDir(workDir);
+        new PdfGenerator(setting, BenchmarkImages.encoder(BenchmarkImages.jpegs(256)), 1)
+                .createPdfWithToggleableAnnotations(BenchmarkImages.sources(pageCount), pdfFile, "Inspection photo");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pdfFile.delete();
+        workDir.delete();
+    }
+
+    @Benchmark
+    public List<AnnotationInfo> firstBatch() throws IOException {
+        try (AnnotationPager pager = new AnnotationPager(PDDocument.load(pdfFile, MemoryUsageSetting.setupTempFileOnly()))) {
+            return pager.loadNext(AnnotationPager.DEFAULT_BATCH_SIZE);
+        }
+    }
+
+    @Benchmark
+    public List<AnnotationInfo> wholeDocument() throws IOException {
+        List<AnnotationInfo> annotations = new ArrayList<>();
+        try (AnnotationPager pager = new AnnotationPager(PDDocument.load(pdfFile, MemoryUsageSetting.setupTempFileOnly()))) {
+            while (pager.hasMore()) {
+                annotations.addAll(pager.loadNext(AnnotationPager.DEFAULT_BATCH_SIZE));
+            }
+        }
+        return annotations;
+    }
+}
@@ -0,0 +1,56 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that annotations are read in batches without scanning the whole document up front.
+ */
+public class AnnotationPagerTest {
+    private static final int PAGE_COUNT = 100;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void loadNext_scansOnlyAsManyPagesAsNeeded() throws IOException {
+        File pdf = TestFixtures.annotatedPdf(tempFolder.newFile("annotated.pdf"), PAGE_COUNT, 8);
+
+        try (AnnotationPager pager = new AnnotationPager(PDDocument.load(pdf))) {
+            List<AnnotationInfo> first = pager.loadNext(AnnotationPager.DEFAULT_BATCH_SIZE);
+
+            assertEquals(AnnotationPager.DEFAULT_BATCH_SIZE, first.size());
+            assertTrue(pager.hasMore());
+            assertEquals(1, first.get(0).getPageNumber());
+            assertEquals("Text", first.get(0).getSubtype());
+            assertEquals("inspection", first.get(0).getContents());
+        }
+    }
+
+    @Test
+    public void loadNext_untilExhausted_returnsEveryAnnotationInPageOrder() throws IOException {
+        File pdf = TestFixtures.annotatedPdf(tempFolder.newFile("annotated.pdf"), PAGE_COUNT, 8);
+
+        List<AnnotationInfo> all = new ArrayList<>();
+        try (AnnotationPager pager = new AnnotationPager(PDDocument.load(pdf))) {
+            while (pager.hasMore()) {
+                all.addAll(pager.loadNext(AnnotationPager.DEFAULT_BATCH_SIZE));
+            }
+        }
+
+        assertEquals(PAGE_COUNT, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(i + 1, all.get(i).getPageNumber());
+        }
+    }
+}
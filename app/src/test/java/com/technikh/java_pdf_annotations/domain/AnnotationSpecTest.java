@@ -0,0 +1,85 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSArray;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotationText;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that batches of annotation specs land on the right pages with their styling.
+ */
+public class AnnotationSpecTest {
+    private static final int PAGE_COUNT = 4;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void createPdfWithAnnotationSpecs_placesEverySpecOnItsPage() throws IOException {
+        List<AnnotationSpec> specs = Arrays.asList(
+                new AnnotationSpec(1, 10, 20, 30, 40, "crack", "Inspector", 0xFF0000, "Note"),
+                new AnnotationSpec(3, 50, 60, 20, 20, "rust"),
+                new AnnotationSpec(1, 100, 200, 20, 20, "paint", "Inspector", 0xFF0000, "Note"));
+        File output = tempFolder.newFile("specs.pdf");
+
+        TestFixtures.generator(8).createPdfWithAnnotationSpecs(TestFixtures.sources(PAGE_COUNT), output, specs);
+
+        try (PDDocument document = PDDocument.load(output)) {
+            assertEquals(PAGE_COUNT, document.getNumberOfPages());
+            List<PDAnnotation> first = document.getPage(0).getAnnotations();
+            assertEquals(2, first.size());
+            assertEquals(0, document.getPage(1).getAnnotations().size());
+            assertEquals(1, document.getPage(2).getAnnotations().size());
+
+            PDAnnotationText crack = (PDAnnotationText) first.get(0);
+            assertEquals("crack", crack.getContents());
+            assertEquals("Inspector", crack.getCOSObject().getString(COSName.T));
+            assertEquals("Note", crack.getName());
+            assertEquals(10, crack.getRectangle().getLowerLeftX(), 0.001);
+            assertEquals(60, crack.getRectangle().getUpperRightY(), 0.001);
+            assertArrayEquals(new float[]{1f, 0f, 0f}, crack.getColor().getComponents(), 0.001f);
+            assertEquals("paint", first.get(1).getContents());
+
+            PDAnnotationText rust = (PDAnnotationText) document.getPage(2).getAnnotations().get(0);
+            assertNull(rust.getCOSObject().getString(COSName.T));
+            assertEquals(AnnotationSpec.DEFAULT_ICON, rust.getName());
+            assertArrayEquals(new float[]{1f, 1f, 0.8f}, rust.getColor().getComponents(), 0.001f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createPdfWithAnnotationSpecs_rejectsSpecBeyondLastPage() throws IOException {
+        List<AnnotationSpec> specs = Collections.singletonList(new AnnotationSpec(PAGE_COUNT + 1, 0, 0, 20, 20, "missing"));
+
+        TestFixtures.generator(8).createPdfWithAnnotationSpecs(TestFixtures.sources(PAGE_COUNT),
+                tempFolder.newFile("invalid.pdf"), specs);
+    }
+
+    @Test
+    public void createTextAnnotation_sharesStyleObjectsBetweenAnnotations() throws IOException {
+        AnnotationStyles styles = new AnnotationStyles(new AppearancePool(new PDDocument()));
+        PDAnnotationText first = styles.createTextAnnotation(new AnnotationSpec(1, 0, 0, 20, 20, "a", "Inspector", 0x00FF00, "Key"));
+        PDAnnotationText second = styles.createTextAnnotation(new AnnotationSpec(2, 0, 0, 20, 20, "b", "Inspector", 0x00FF00, "Key"));
+        PDAnnotationText other = styles.createTextAnnotation(new AnnotationSpec(2, 0, 0, 20, 20, "c"));
+
+        COSArray firstColor = (COSArray) first.getCOSObject().getDictionaryObject(COSName.C);
+        assertSame(firstColor, second.getCOSObject().getDictionaryObject(COSName.C));
+        assertNotSame(firstColor, other.getCOSObject().getDictionaryObject(COSName.C));
+        assertSame(first.getCOSObject().getDictionaryObject(COSName.T), second.getCOSObject().getDictionaryObject(COSName.T));
+        assertSame(first.getCOSObject().getDictionaryObject(COSName.AP), second.getCOSObject().getDictionaryObject(COSName.AP));
+        assertNotSame(first.getCOSObject().getDictionaryObject(COSName.AP), other.getCOSObject().getDictionaryObject(COSName.AP));
+    }
+}
@@ -0,0 +1,175 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that exported annotations come back unchanged when imported, and that files are read one page at a time.
+ */
+public class AnnotationTransferTest {
+    private static final int IMAGE_SIZE = 16;
+    private static final String TRICKY_TEXT = "Crack <3 & \"wide\" 'open'\nsecond line\r\n\tindented ✓ 日本 😀 ]]> \\ \u0001";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip_xfdfKeepsEveryField() throws IOException {
+        File source = annotatedPdf("source", "report.pdf");
+        String exported = export(source, AnnotationFormat.XFDF);
+        File target = blankPdf("target", "report.pdf");
+
+        long imported = importer().importInto(target, stream(exported), AnnotationFormat.XFDF, null);
+
+        assertEquals(7, imported);
+        assertEquals(exported, export(target, AnnotationFormat.XFDF));
+        assertTrue(exported.contains("&lt;3 &amp; \"wide\""));
+        assertTrue(exported.contains(" date=\"D:"));
+    }
+
+    @Test
+    public void roundTrip_jsonLinesKeepsEveryFieldAndSkipsOtherDocuments() throws IOException {
+        File source = annotatedPdf("source", "report.pdf");
+        File other = annotatedPdf("other", "other.pdf");
+        ByteArrayOutputStream both = new ByteArrayOutputStream();
+        new AnnotationExporter(scratch()).exportJsonLines(Arrays.asList(other, source), both);
+        File target = blankPdf("target", "report.pdf");
+
+        long imported = importer().importInto(target, stream(both.toString("UTF-8")), AnnotationFormat.JSON_LINES, "report.pdf");
+
+        assertEquals(7, imported);
+        String exported = export(source, AnnotationFormat.JSON_LINES);
+        assertEquals(exported, export(target, AnnotationFormat.JSON_LINES));
+        assertEquals(14, both.toString("UTF-8").split("\n").length);
+    }
+
+    @Test
+    public void importInto_malformedFileLeavesPdfUnchanged() throws IOException {
+        File target = blankPdf("target", "report.pdf");
+        byte[] original = Files.readAllBytes(target.toPath());
+        String lines = "{\"page\":1,\"x\":1,\"y\":2,\"width\":3,\"height\":4,\"text\":\"fine\"}\n{\"page\":2,\"x\":1,";
+
+        try {
+            importer().importInto(target, stream(lines), AnnotationFormat.JSON_LINES, null);
+            fail("Expected the import to fail");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("line 2"));
+        }
+
+        assertArrayEquals(original, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void read_handsOnLargeFilesOnePageAtATime() throws IOException {
+        int pages = 2000;
+        int perPage = 25;
+        File jsonLines = tempFolder.newFile("many.jsonl");
+        File xfdf = tempFolder.newFile("many.xfdf");
+        try (Writer json = newWriter(jsonLines); Writer xml = newWriter(xfdf)) {
+            xml.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<xfdf xmlns=\"http://ns.adobe.com/xfdf/\"><annots>\n");
+            for (int page = 1; page <= pages; page++) {
+                for (int i = 0; i < perPage; i++) {
+                    json.write("{\"page\":" + page + ",\"x\":" + i + ",\"y\":10,\"width\":20,\"height\":20,\"text\":\"note " + i + "\"}\n");
+                    xml.write("<text page=\"" + (page - 1) + "\" rect=\"" + i + ",10," + (i + 20) + ",30\"><contents>note "
+                            + i + "</contents></text>\n");
+                }
+            }
+            xml.write("</annots></xfdf>\n");
+        }
+
+        for (File file : Arrays.asList(jsonLines, xfdf)) {
+            List<Integer> pageCalls = new ArrayList<>();
+            try (InputStream in = new FileInputStream(file)) {
+                long count = AnnotationImporter.read(in, AnnotationFormat.forFileName(file.getName()), records -> {
+                    assertEquals(perPage, records.size());
+                    for (AnnotationRecord record : records) {
+                        assertEquals(records.get(0).getPageNumber(), record.getPageNumber());
+                    }
+                    pageCalls.add(records.get(0).getPageNumber());
+                });
+                assertEquals((long) pages * perPage, count);
+            }
+            assertEquals(pages, pageCalls.size());
+            assertEquals(pages, (int) pageCalls.get(pages - 1));
+        }
+    }
+
+    /**
+     * Writes a three page PDF with varied annotations, two of them added later with a modification date
+     */
+    private File annotatedPdf(String dir, String name) throws IOException {
+        File pdf = new File(tempFolder.newFolder(dir), name);
+        List<AnnotationSpec> specs = Arrays.asList(
+                new AnnotationSpec(1, 10, 20, 30, 40, TRICKY_TEXT, "Inspector <A&B>", 0x336699, "Key"),
+                new AnnotationSpec(1, 50.5f, 60.25f, 24, 24, "plain", null, 0xFF0000, "Note"),
+                new AnnotationSpec(1, 100, 100, 20, 20, "same style", "Inspector <A&B>", 0x336699, "Key"),
+                new AnnotationSpec(3, 0, 0, 10, 10, "last page\n\"quoted\"", "Zoë", AnnotationSpec.DEFAULT_COLOR,
+                        AnnotationSpec.DEFAULT_ICON),
+                new AnnotationSpec(3, 200, 300, 15, 15, "help", null, 0x00FF00, "Help"),
+                new AnnotationSpec(3, 5, 5, 8, 8, "  ", null, 0x00FF00, "Help"));
+        TestFixtures.generator(IMAGE_SIZE).createPdfWithAnnotationSpecs(TestFixtures.sources(3), pdf, specs);
+        try (AnnotationEditor editor = new AnnotationEditor(pdf, scratch())) {
+            editor.addTextAnnotation(2, "edited later", new PDRectangle(40, 40, 20, 20));
+            editor.addTextAnnotation(3, "edited too", new PDRectangle(80, 40, 20, 20));
+            editor.appendChanges();
+        }
+        return pdf;
+    }
+
+    private File blankPdf(String dir, String name) throws IOException {
+        File pdf = new File(tempFolder.newFolder(dir), name);
+        TestFixtures.generator(IMAGE_SIZE).createPdfWithAnnotationSpecs(TestFixtures.sources(3), pdf,
+                Collections.<AnnotationSpec>emptyList());
+        return pdf;
+    }
+
+    private String export(File pdf, AnnotationFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AnnotationExporter exporter = new AnnotationExporter(scratch());
+        if (format == AnnotationFormat.XFDF) {
+            exporter.exportXfdf(pdf, out);
+        } else {
+            exporter.exportJsonLines(Collections.singletonList(pdf), out);
+        }
+        return out.toString("UTF-8");
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Writer newWriter(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    private static AnnotationImporter importer() {
+        return new AnnotationImporter(scratch());
+    }
+
+    private static ScratchPolicy scratch() {
+        return ScratchPolicy.of(MemoryUsageSetting.setupMainMemoryOnly());
+    }
+}
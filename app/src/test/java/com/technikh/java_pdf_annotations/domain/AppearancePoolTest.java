@@ -0,0 +1,107 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSBase;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+import com.tom_roush.pdfbox.pdmodel.font.PDType1Font;
+import com.tom_roush.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that labels and annotation icons are built once per document and shared by every page.
+ */
+public class AppearancePoolTest {
+    private static final int PAGE_COUNT = 5;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void getLabel_buildsEachLabelOnceWithTextWidthAsBBox() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            AppearancePool pool = new AppearancePool(document);
+
+            PDFormXObject label = pool.getLabel("inspection");
+
+            assertSame(label, pool.getLabel("inspection"));
+            assertNotSame(label, pool.getLabel("other"));
+            float expectedWidth = PDType1Font.HELVETICA_BOLD.getStringWidth("inspection") / 1000 * AppearancePool.LABEL_FONT_SIZE;
+            assertEquals(expectedWidth, label.getBBox().getWidth(), 0.001);
+            assertEquals(0, label.getBBox().getLowerLeftX(), 0.001);
+        }
+    }
+
+    @Test
+    public void standardPdf_drawsOneSharedLabelFormOnEveryPage() throws IOException {
+        File output = tempFolder.newFile("standard.pdf");
+        TestFixtures.generator(8).createPdfWithAnnotations(TestFixtures.sources(PAGE_COUNT), output, "inspection");
+
+        try (PDDocument document = PDDocument.load(output)) {
+            PDFormXObject sharedLabel = null;
+            for (PDPage page : document.getPages()) {
+                List<PDFormXObject> forms = new ArrayList<>();
+                for (COSName name : page.getResources().getXObjectNames()) {
+                    if (page.getResources().getXObject(name) instanceof PDFormXObject) {
+                        forms.add((PDFormXObject) page.getResources().getXObject(name));
+                    }
+                }
+                assertEquals(1, forms.size());
+                if (sharedLabel == null) {
+                    sharedLabel = forms.get(0);
+                }
+                assertSame(sharedLabel.getCOSObject(), forms.get(0).getCOSObject());
+                assertNull("Fonts should live in the label form only", page.getResources().getCOSObject().getDictionaryObject(COSName.FONT));
+                assertFalse(readContents(page.getContents()).contains("BT"));
+            }
+            assertTrue(readContents(sharedLabel.getContents()).contains("(inspection) Tj"));
+        }
+    }
+
+    @Test
+    public void toggleablePdf_sharesOneIconAppearanceAcrossAnnotations() throws IOException {
+        File output = tempFolder.newFile("toggleable.pdf");
+        TestFixtures.generator(8)
+                .createPdfWithToggleableAnnotations(TestFixtures.sources(PAGE_COUNT), output, "inspection");
+
+        try (PDDocument document = PDDocument.load(output)) {
+            COSBase sharedAppearance = null;
+            for (PDPage page : document.getPages()) {
+                PDAnnotation annotation = page.getAnnotations().get(0);
+                PDAppearanceStream appearance = annotation.getNormalAppearanceStream();
+                assertNotNull(appearance);
+                if (sharedAppearance == null) {
+                    sharedAppearance = appearance.getCOSObject();
+                }
+                assertSame(sharedAppearance, appearance.getCOSObject());
+            }
+        }
+    }
+
+    private static String readContents(InputStream contents) throws IOException {
+        try (InputStream in = contents) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Synthetic photo-like JPEGs for benchmarks. A few distinct images are encoded once per resolution
+ * and passed through as DCT streams, the way BitmapImageEncoder passes camera JPEGs through,
+ * so benchmarks measure PDF work rather than image decoding.
+ */
+final class BenchmarkImages {
+    static final int DISTINCT_IMAGES = 8;
+
+    private BenchmarkImages() {
+    }
+
+    static EncodedImage[] jpegs(int size) throws IOException {
+        EncodedImage[] images = new EncodedImage[DISTINCT_IMAGES];
+        for (int i = 0; i < DISTINCT_IMAGES; i++) {
+            images[i] = jpeg(size, i);
+        }
+        return images;
+    }
+
+    /**
+     * Sources named page_0..page_(n-1); the files behind them do not exist and are never read
+     */
+    static List<ImageSource> sources(int pageCount) {
+        return TestFixtures.sources(pageCount);
+    }
+
+    /**
+     * Hands out the pre-encoded images round-robin by page index
+     */
+    static ImageEncoder encoder(EncodedImage[] images) {
+        return source -> {
+            String name = source.getName();
+            int page = Integer.parseInt(name.substring(name.indexOf('_') + 1));
+            return images[page % images.length];
+        };
+    }
+
+    /**
+     * Decodes the image of each page and compresses it again, the CPU work BitmapImageEncoder does
+     * for an image it can't pass through. Safe to call from several worker threads.
+     */
+    static ImageEncoder transcodingEncoder(EncodedImage[] images) {
+        ImageEncoder passThrough = encoder(images);
+        return source -> {
+            EncodedImage original = passThrough.encode(source);
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(original.getData()));
+            return new EncodedImage(toJpeg(decoded), COSName.DCT_DECODE, decoded.getWidth(), decoded.getHeight(), 8,
+                    PDDeviceRGB.INSTANCE);
+        };
+    }
+
+    private static EncodedImage jpeg(int size, int seed) throws IOException {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        int baseRed = random.nextInt(128);
+        int baseGreen = random.nextInt(128);
+        int baseBlue = random.nextInt(128);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                // Smooth gradient with mild sensor-like noise, roughly the entropy of a real photo
+                int noise = random.nextInt(24);
+                int red = Math.min(255, baseRed + x * 127 / size + noise);
+                int green = Math.min(255, baseGreen + y * 127 / size + noise);
+                int blue = Math.min(255, baseBlue + (x + y) * 63 / size + noise);
+                image.setRGB(x, y, (red << 16) | (green << 8) | blue);
+            }
+        }
+        return new EncodedImage(toJpeg(image), COSName.DCT_DECODE, size, size, 8, PDDeviceRGB.INSTANCE);
+    }
+
+    private static byte[] toJpeg(BufferedImage image) throws IOException {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", jpeg);
+        return jpeg.toByteArray();
+    }
+}
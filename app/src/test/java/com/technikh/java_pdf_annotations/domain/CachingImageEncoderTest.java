@@ -0,0 +1,143 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSBase;
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.cos.COSObject;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that identical images are embedded once and reused from the disk cache across jobs.
+ */
+public class CachingImageEncoderTest {
+    private static final int PAGE_COUNT = 10;
+    private static final int IMAGE_SIZE = 64;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void duplicateImages_areEmbeddedOnce() throws IOException {
+        AtomicInteger encodeCalls = new AtomicInteger();
+        CachingImageEncoder encoder = new CachingImageEncoder(countingEncoder(encodeCalls));
+
+        File output = tempFolder.newFile("dedup.pdf");
+        GenerationReport report = TestFixtures.spillingGenerator(encoder, 1, tempFolder.getRoot())
+                .createPdfWithToggleableAnnotations(alternatingImages(), output, "dedup");
+
+        assertEquals(PAGE_COUNT, report.getPageCount());
+        assertEquals(0, report.getEmbeddedBytes(2));
+        assertEquals(2, countDistinctImages(output));
+    }
+
+    @Test
+    public void diskCache_skipsEncodingOnLaterJobs() throws IOException {
+        File cacheDir = tempFolder.newFolder("cache");
+        List<ImageSource> images = alternatingImages();
+
+        AtomicInteger firstCalls = new AtomicInteger();
+        File first = tempFolder.newFile("first.pdf");
+        CachingImageEncoder firstEncoder = new CachingImageEncoder(countingEncoder(firstCalls), cacheDir, Long.MAX_VALUE);
+        TestFixtures.spillingGenerator(firstEncoder, 1, tempFolder.getRoot())
+                .createPdfWithToggleableAnnotations(images, first, "cache");
+
+        AtomicInteger secondCalls = new AtomicInteger();
+        File second = tempFolder.newFile("second.pdf");
+        CachingImageEncoder secondEncoder = new CachingImageEncoder(countingEncoder(secondCalls), cacheDir, Long.MAX_VALUE);
+        TestFixtures.spillingGenerator(secondEncoder, 1, tempFolder.getRoot())
+                .createPdfWithToggleableAnnotations(images, second, "cache");
+
+        assertTrue(firstCalls.get() >= 2);
+        assertEquals(0, secondCalls.get());
+        assertEquals(first.length(), second.length());
+    }
+
+    @Test
+    public void diskCache_evictsLeastRecentlyUsedEntries() throws IOException {
+        List<ImageSource> images = distinctImages(3);
+        AtomicInteger calls = new AtomicInteger();
+        File sizingDir = tempFolder.newFolder("sizing");
+        new CachingImageEncoder(countingEncoder(calls), sizingDir, Long.MAX_VALUE).encode(images.get(0));
+        long entryBytes = sizingDir.listFiles()[0].length();
+
+        // Room for two entries
+        File cacheDir = tempFolder.newFolder("cache");
+        CachingImageEncoder encoder = new CachingImageEncoder(countingEncoder(calls), cacheDir, entryBytes * 5 / 2);
+        encoder.encode(images.get(0));
+        encoder.encode(images.get(1));
+        encoder.encode(images.get(0));
+        encoder.encode(images.get(2));
+        calls.set(0);
+
+        encoder.encode(images.get(0));
+        assertEquals("recently used entry was evicted", 0, calls.get());
+        encoder.encode(images.get(1));
+        assertEquals("least recently used entry was kept", 1, calls.get());
+    }
+
+
+    private static ImageEncoder countingEncoder(AtomicInteger calls) {
+        SyntheticImageEncoder synthetic = new SyntheticImageEncoder(IMAGE_SIZE);
+        return source -> {
+            calls.incrementAndGet();
+            return synthetic.encode(source);
+        };
+    }
+
+    /**
+     * Ten files alternating between two distinct contents
+     */
+    private List<ImageSource> alternatingImages() throws IOException {
+        List<ImageSource> images = new ArrayList<>();
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            File file = tempFolder.newFile("image_" + i + ".bin");
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(new byte[]{(byte) (i % 2), 1, 2, 3});
+            }
+            images.add(new FileImageSource(file));
+        }
+        return images;
+    }
+
+    private List<ImageSource> distinctImages(int count) throws IOException {
+        List<ImageSource> images = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            File file = tempFolder.newFile("distinct_" + i + ".bin");
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(new byte[]{(byte) i, 4, 5, 6});
+            }
+            images.add(new FileImageSource(file));
+        }
+        return images;
+    }
+
+    private static int countDistinctImages(File pdf) throws IOException {
+        Set<Long> objectNumbers = new HashSet<>();
+        try (PDDocument document = PDDocument.load(pdf)) {
+            for (PDPage page : document.getPages()) {
+                COSDictionary xObjects = page.getResources().getCOSObject().getCOSDictionary(COSName.XOBJECT);
+                for (COSName name : xObjects.keySet()) {
+                    COSBase item = xObjects.getItem(name);
+                    objectNumbers.add(((COSObject) item).getObjectNumber());
+                }
+            }
+        }
+        return objectNumbers.size();
+    }
+}
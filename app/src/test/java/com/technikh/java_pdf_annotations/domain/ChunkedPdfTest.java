@@ -0,0 +1,95 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that large batches are split into chunk files that are complete as soon as they are reported.
+ */
+public class ChunkedPdfTest {
+    private static final int PAGE_COUNT = 25;
+    private static final int IMAGE_SIZE = 16;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void everyPages_writesFullChunksAndARemainder() throws IOException {
+        File output = new File(tempFolder.getRoot(), "batch.pdf");
+        List<File> reported = new ArrayList<>();
+
+        List<File> chunks = TestFixtures.generator(IMAGE_SIZE).createChunkedPdfs(TestFixtures.sources(PAGE_COUNT),
+                output, "inspection", true, ChunkPolicy.everyPages(10), (chunkNumber, chunkFile, report) -> {
+                    assertEquals(reported.size() + 1, chunkNumber);
+                    assertTrue("Chunk should be complete when reported", chunkFile.exists());
+                    reported.add(chunkFile);
+                }, null);
+
+        assertEquals(reported, chunks);
+        assertEquals(3, chunks.size());
+        assertEquals("batch_part001.pdf", chunks.get(0).getName());
+        assertEquals("batch_part003.pdf", chunks.get(2).getName());
+        assertFalse(output.exists());
+        int[] expectedPages = {10, 10, 5};
+        for (int i = 0; i < chunks.size(); i++) {
+            try (PDDocument document = PDDocument.load(chunks.get(i))) {
+                assertEquals(expectedPages[i], document.getNumberOfPages());
+            }
+        }
+    }
+
+    @Test
+    public void byteLimit_closesChunkBeforeItWouldBeExceeded() throws IOException {
+        long imageBytes = new SyntheticImageEncoder(IMAGE_SIZE).encode(TestFixtures.sources(1).get(0)).getData().length;
+        ChunkPolicy policy = new ChunkPolicy(0, imageBytes * 4 + imageBytes / 2);
+
+        List<File> chunks = TestFixtures.generator(IMAGE_SIZE).createChunkedPdfs(TestFixtures.sources(PAGE_COUNT),
+                new File(tempFolder.getRoot(), "batch.pdf"), "inspection", false, policy, null, null);
+
+        assertEquals(7, chunks.size());
+        try (PDDocument document = PDDocument.load(chunks.get(0))) {
+            assertEquals(4, document.getNumberOfPages());
+        }
+    }
+
+    @Test
+    public void cancellation_keepsFinishedChunksOnly() throws IOException {
+        File output = new File(tempFolder.getRoot(), "batch.pdf");
+        try {
+            TestFixtures.generator(IMAGE_SIZE).createChunkedPdfs(TestFixtures.sources(PAGE_COUNT), output, "inspection",
+                    true, ChunkPolicy.everyPages(10), null,
+                    (pagesDone, pageCount) -> {
+                        if (pagesDone == 15) {
+                            Thread.currentThread().interrupt();
+                        }
+                    });
+            fail("Expected cancellation");
+        } catch (InterruptedIOException expected) {
+            assertTrue(Thread.interrupted());
+        }
+
+        File[] files = tempFolder.getRoot().listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        assertEquals("batch_part001.pdf", files[0].getName());
+    }
+
+    @Test
+    public void getChunkFile_keepsDirectoryAndStripsPdfExtension() {
+        File output = new File("/data/pdfs/scan.PDF");
+
+        assertEquals(new File("/data/pdfs/scan_part012.pdf"), ChunkPolicy.NONE.getChunkFile(output, 12));
+        assertEquals("notes_part001.pdf", ChunkPolicy.NONE.getChunkFile(new File("notes"), 1).getName());
+    }
+}
@@ -0,0 +1,131 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import com.tom_roush.pdfbox.util.Matrix;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits generation into its two PDF-side phases: writing page content streams and document.save.
+ * Images are embedded during setup so neither phase pays for them.
+ * Run with ./gradlew :app:jmh -Pjmh.include=DocumentWriteBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class DocumentWriteBenchmark {
+    private static final String ANNOTATION_TEXT = "Inspection photo";
+
+    @Param({"512", "2048"})
+    public int imageSize;
+
+    @Param({"5", "100", "1000"})
+    public int pageCount;
+
+    private File workDir;
+    private File outputFile;
+    private MemoryUsageSetting memoryUsageSetting;
+    private EncodedImage[] images;
+
+    private PDDocument document;
+    private PDImageXObject[] xObjects;
+    private AppearancePool appearances;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        workDir = Files.createTempDirectory("pdf_benchmark").toFile();
+        outputFile = new File(workDir, "output.pdf");
+        memoryUsageSetting = MemoryUsageSetting.setupMixed(8L * 1024 * 1024).setTempDir(workDir);
+        images = BenchmarkImages.jpegs(imageSize);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpDocument() throws IOException {
+        document = new PDDocument(memoryUsageSetting);
+        ImageEmbedder embedder = new ImageEmbedder(document);
+        appearances = new AppearancePool(document);
+        xObjects = new PDImageXObject[images.length];
+        for (int i = 0; i < images.length; i++) {
+            xObjects[i] = embedder.embed(images[i]);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeDocument() throws IOException {
+        document.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        File[] files = workDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        workDir.delete();
+    }
+
+    /**
+     * Mirrors the page layout of PdfGenerator's standard mode
+     */
+    @Benchmark
+    public PDDocument writeContentStreams() throws IOException {
+        addPages();
+        return document;
+    }
+
+    @Benchmark
+    public long writeContentStreamsAndSave() throws IOException {
+        addPages();
+        document.save(outputFile);
+        return outputFile.length();
+    }
+
+    private void addPages() throws IOException {
+        for (int i = 0; i < pageCount; i++) {
+            PDImageXObject pdImage = xObjects[i % xObjects.length];
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+
+            float pageHeight = page.getMediaBox().getHeight();
+            float pageWidth = page.getMediaBox().getWidth();
+            float imageHeight = pdImage.getHeight() * (pageWidth / pdImage.getWidth());
+
+            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                contentStream.drawImage(pdImage, 0, pageHeight - imageHeight - 40, pageWidth, imageHeight);
+                PDFormXObject label = appearances.getLabel(ANNOTATION_TEXT);
+                contentStream.saveGraphicsState();
+                contentStream.transform(Matrix.getTranslateInstance((pageWidth - label.getBBox().getWidth()) / 2, pageHeight - 30));
+                contentStream.drawForm(label);
+                contentStream.restoreGraphicsState();
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that PDFs are parsed by seeking through a file channel and that interrupting the load aborts it.
+ */
+public class FileChannelSourceTest {
+    private static final int PAGE_COUNT = 20;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void load_readsDocumentThroughChannel() throws IOException {
+        File pdf = TestFixtures.annotatedPdf(tempFolder.newFile(), PAGE_COUNT, 64);
+
+        RandomAccessFile file = new RandomAccessFile(pdf, "r");
+        try (AnnotationPager pager = new AnnotationPager(
+                FileChannelSource.load(file.getChannel(), file, MemoryUsageSetting.setupMainMemoryOnly()))) {
+            List<AnnotationInfo> annotations = new ArrayList<>();
+            while (pager.hasMore()) {
+                annotations.addAll(pager.loadNext(AnnotationPager.DEFAULT_BATCH_SIZE));
+            }
+
+            assertEquals(PAGE_COUNT, pager.getPageCount());
+            assertEquals(PAGE_COUNT, annotations.size());
+            assertEquals("inspection", annotations.get(PAGE_COUNT - 1).getContents());
+        }
+        assertFalse(file.getChannel().isOpen());
+    }
+
+    @Test
+    public void read_acrossWindowBoundaries_matchesFileContent() throws IOException {
+        File pdf = TestFixtures.annotatedPdf(tempFolder.newFile(), PAGE_COUNT, 64);
+        byte[] expected = Files.readAllBytes(pdf.toPath());
+
+        RandomAccessFile file = new RandomAccessFile(pdf, "r");
+        try (FileChannelSource source = new FileChannelSource(file.getChannel(), file)) {
+            assertTrue(expected.length > 3 * 16 * 1024);
+            assertEquals(expected.length, source.length());
+
+            source.seek(expected.length - 100);
+            assertArrayEquals(Arrays.copyOfRange(expected, expected.length - 100, expected.length),
+                    source.readFully(100));
+            assertTrue(source.isEOF());
+            assertEquals(-1, source.read());
+
+            source.seek(0);
+            assertArrayEquals(expected, source.readFully(expected.length));
+
+            source.seek(5);
+            assertEquals(expected[5] & 0xFF, source.peek());
+            assertEquals(expected[5] & 0xFF, source.read());
+            source.rewind(1);
+            assertEquals(5, source.getPosition());
+        }
+    }
+
+    @Test
+    public void load_onInterruptedThread_abortsAndClosesChannel() throws Exception {
+        File pdf = TestFixtures.annotatedPdf(tempFolder.newFile(), PAGE_COUNT, 64);
+        RandomAccessFile file = new RandomAccessFile(pdf, "r");
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread loader = new Thread(() -> {
+            Thread.currentThread().interrupt();
+            try (PDDocument ignored = FileChannelSource.load(file.getChannel(), file, MemoryUsageSetting.setupMainMemoryOnly())) {
+                fail("Load should have been aborted");
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        loader.start();
+        loader.join();
+
+        assertTrue(failure.get() instanceof ClosedByInterruptException);
+        assertFalse(file.getChannel().isOpen());
+    }
+}
@@ -0,0 +1,227 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a job killed at any page resumes from its checkpoint and writes the same bytes as an uninterrupted run.
+ */
+public class GenerationCheckpointTest {
+    private static final int PAGE_COUNT = 12;
+    private static final int IMAGE_SIZE = 16;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File imageDir;
+
+    @Before
+    public void setUp() throws IOException {
+        imageDir = tempFolder.newFolder("images");
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            try (FileOutputStream out = new FileOutputStream(new File(imageDir, "page_" + i))) {
+                out.write(new byte[]{(byte) i, 1, 2, 3});
+            }
+        }
+    }
+
+    @Test
+    public void resumeAfterKill_matchesUninterruptedRun() throws IOException {
+        byte[] expected = uninterrupted(ChunkPolicy.NONE).get(0);
+
+        for (int killedAt : new int[]{0, 1, 7, PAGE_COUNT - 1}) {
+            File jobDir = tempFolder.newFolder("killed_" + killedAt);
+            File checkpointDir = new File(jobDir, "checkpoint");
+            GenerationManifest manifest = manifest(new File(jobDir, "batch.pdf"), ChunkPolicy.NONE);
+            killAt(killedAt, GenerationCheckpoint.create(checkpointDir, manifest));
+
+            // A new process sees only what is on disk
+            GenerationCheckpoint reopened = GenerationCheckpoint.open(checkpointDir);
+            assertEquals(killedAt, reopened.getPagesDone());
+            CountingEncoder encoder = new CountingEncoder();
+            List<File> output = generator(encoder, 1).createCheckpointedPdfs(sourcesFor(reopened), reopened, null, null);
+
+            assertEquals(PAGE_COUNT - killedAt, encoder.count.get());
+            assertArrayEquals("Killed at page " + killedAt, expected, Files.readAllBytes(output.get(0).toPath()));
+        }
+    }
+
+    @Test
+    public void resumeAfterKill_rewritesIdenticalChunks() throws IOException {
+        List<byte[]> expected = uninterrupted(ChunkPolicy.everyPages(5));
+
+        File jobDir = tempFolder.newFolder("killed");
+        File checkpointDir = new File(jobDir, "checkpoint");
+        killAt(8, GenerationCheckpoint.create(checkpointDir, manifest(new File(jobDir, "batch.pdf"), ChunkPolicy.everyPages(5))));
+
+        GenerationCheckpoint reopened = GenerationCheckpoint.open(checkpointDir);
+        List<File> chunks = generator(new CountingEncoder(), 4).createCheckpointedPdfs(sourcesFor(reopened), reopened, null, null);
+
+        assertEquals(expected.size(), chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            assertArrayEquals(expected.get(i), Files.readAllBytes(chunks.get(i).toPath()));
+        }
+    }
+
+    @Test
+    public void resumeAfterKill_keepsPlannedLayout() throws IOException {
+        ImageLayout layout = ImageLayout.grid(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN, 2, 2, true);
+        List<byte[]> expected = uninterrupted(manifest(new File(tempFolder.newFolder(), "batch.pdf"), ChunkPolicy.everyPages(2), layout));
+
+        File jobDir = tempFolder.newFolder("killed");
+        File checkpointDir = new File(jobDir, "checkpoint");
+        killAt(6, GenerationCheckpoint.create(checkpointDir, manifest(new File(jobDir, "batch.pdf"), ChunkPolicy.everyPages(2), layout)));
+
+        GenerationCheckpoint reopened = GenerationCheckpoint.open(checkpointDir);
+        assertEquals(layout, reopened.getManifest().getLayout());
+        List<File> chunks = generator(new CountingEncoder(), 1).createCheckpointedPdfs(sourcesFor(reopened), reopened, null, null);
+
+        // Two pages of four images per chunk
+        assertEquals(2, chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            assertArrayEquals(expected.get(i), Files.readAllBytes(chunks.get(i).toPath()));
+        }
+    }
+
+    @Test
+    public void open_restoresManifestAndDropsPartialFiles() throws IOException {
+        File checkpointDir = new File(tempFolder.getRoot(), "checkpoint");
+        File output = new File(tempFolder.getRoot(), "batch.pdf");
+        GenerationCheckpoint.create(checkpointDir, new GenerationManifest(output, "line 1\nÜber = ok", false,
+                new ChunkPolicy(10, 2048), sourceNames()));
+        File partial = new File(checkpointDir, "000003.page123.tmp");
+        assertTrue(partial.createNewFile());
+
+        GenerationManifest manifest = GenerationCheckpoint.open(checkpointDir).getManifest();
+
+        assertFalse(partial.exists());
+        assertEquals(output, manifest.getOutputFile());
+        assertEquals("line 1\nÜber = ok", manifest.getAnnotationText());
+        assertFalse(manifest.isToggleable());
+        assertEquals(10, manifest.getChunkPolicy().getMaxPages());
+        assertEquals(2048, manifest.getChunkPolicy().getMaxBytes());
+        assertEquals(sourceNames(), manifest.getSources());
+    }
+
+    @Test
+    public void openAll_discardsDirectoriesWithoutManifest() throws IOException {
+        File parent = tempFolder.newFolder("checkpoints");
+        GenerationCheckpoint.create(new File(parent, "job_2"), manifest(new File(parent, "b.pdf"), ChunkPolicy.NONE));
+        GenerationCheckpoint.create(new File(parent, "job_1"), manifest(new File(parent, "a.pdf"), ChunkPolicy.NONE));
+        File abandoned = new File(parent, "job_3");
+        assertTrue(abandoned.mkdir());
+
+        List<GenerationCheckpoint> checkpoints = GenerationCheckpoint.openAll(parent);
+
+        assertEquals(2, checkpoints.size());
+        assertEquals("a.pdf", checkpoints.get(0).getManifest().getOutputFile().getName());
+        assertFalse(abandoned.exists());
+    }
+
+    /**
+     * Generates the job without interruption and returns the bytes of every output file
+     */
+    private List<byte[]> uninterrupted(ChunkPolicy chunkPolicy) throws IOException {
+        return uninterrupted(manifest(new File(tempFolder.newFolder(), "batch.pdf"), chunkPolicy));
+    }
+
+    private List<byte[]> uninterrupted(GenerationManifest manifest) throws IOException {
+        File jobDir = tempFolder.newFolder();
+        GenerationCheckpoint checkpoint = GenerationCheckpoint.create(new File(jobDir, "checkpoint"), manifest);
+        List<byte[]> outputs = new ArrayList<>();
+        for (File file : generator(new CountingEncoder(), 1).createCheckpointedPdfs(sources(), checkpoint, null, null)) {
+            outputs.add(Files.readAllBytes(file.toPath()));
+        }
+        return outputs;
+    }
+
+    /**
+     * Runs the job until the encoder is asked for the given page, then stops as abruptly as a killed process
+     */
+    private void killAt(int pageIndex, GenerationCheckpoint checkpoint) throws IOException {
+        CountingEncoder dying = new CountingEncoder();
+        dying.killedAt = new File(imageDir, "page_" + pageIndex).getPath();
+        try {
+            generator(dying, 1).createCheckpointedPdfs(sources(), checkpoint, null, null);
+            fail("Expected the job to be killed");
+        } catch (ProcessKilled expected) {
+            // Nothing after the kill point runs, just like in a dead process
+        }
+    }
+
+    /**
+     * Sources as a resumed job gets them: pages already in the checkpoint have none
+     */
+    private List<ImageSource> sourcesFor(GenerationCheckpoint checkpoint) {
+        List<ImageSource> sources = sources();
+        for (int i = 0; i < sources.size(); i++) {
+            if (checkpoint.hasPage(i)) {
+                sources.set(i, null);
+            }
+        }
+        return sources;
+    }
+
+    private GenerationManifest manifest(File outputFile, ChunkPolicy chunkPolicy) {
+        return manifest(outputFile, chunkPolicy, ImageLayout.FIT_WIDTH);
+    }
+
+    private GenerationManifest manifest(File outputFile, ChunkPolicy chunkPolicy, ImageLayout layout) {
+        return new GenerationManifest(outputFile, "inspection", true, chunkPolicy, layout, sourceNames());
+    }
+
+    private static PdfGenerator generator(ImageEncoder encoder, int workerCount) {
+        return TestFixtures.generator(new CachingImageEncoder(encoder), workerCount);
+    }
+
+    private List<String> sourceNames() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            // Two identical images, which the generator embeds once
+            names.add(new File(imageDir, i == 5 ? "page_4" : "page_" + i).getPath());
+        }
+        return names;
+    }
+
+    private List<ImageSource> sources() {
+        return FileImageSource.fromPaths(sourceNames());
+    }
+
+    /**
+     * Counts encoded images; the same class before and after a kill, so content keys match
+     */
+    private static class CountingEncoder extends SyntheticImageEncoder {
+        final AtomicInteger count = new AtomicInteger();
+        String killedAt;
+
+        CountingEncoder() {
+            super(IMAGE_SIZE);
+        }
+
+        @Override
+        public EncodedImage encode(ImageSource source) throws IOException {
+            if (source.getName().equals(killedAt)) {
+                throw new ProcessKilled();
+            }
+            count.incrementAndGet();
+            return super.encode(source);
+        }
+    }
+
+    private static class ProcessKilled extends RuntimeException {
+    }
+}
@@ -0,0 +1,297 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the job queue with a fake generator that writes one byte per page.
+ */
+public class GenerationJobQueueTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final List<JobProgress> updates = new CopyOnWriteArrayList<>();
+    private final Map<Long, CountDownLatch> finished = new ConcurrentHashMap<>();
+    private GenerationJobQueue queue;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (queue != null) {
+            queue.shutdown(false);
+            queue.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void completedJob_reportsEveryPage() throws Exception {
+        queue = newQueue(1);
+        File output = tempFolder.newFile("complete.pdf");
+
+        long jobId = queue.submit(output, fakeGenerator(output, 5, null));
+        awaitFinished(jobId);
+
+        assertEquals(JobProgress.State.COMPLETED, lastUpdate(jobId).getState());
+        assertEquals(5, lastUpdate(jobId).getPagesDone());
+        assertEquals(5, output.length());
+        for (int page = 1; page <= 5; page++) {
+            assertTrue("Missing progress for page " + page, hasProgress(jobId, page));
+        }
+    }
+
+    @Test
+    public void writtenFiles_areReportedInOrder() throws Exception {
+        queue = newQueue(1);
+        File output = new File(tempFolder.getRoot(), "batch.pdf");
+        File first = tempFolder.newFile("batch_part001.pdf");
+        File second = tempFolder.newFile("batch_part002.pdf");
+
+        long jobId = queue.submit(output, progressListener -> {
+            progressListener.onFileWritten(first);
+            progressListener.onPageAdded(1, 2);
+            progressListener.onFileWritten(second);
+            progressListener.onPageAdded(2, 2);
+        });
+        awaitFinished(jobId);
+
+        assertEquals(JobProgress.State.COMPLETED, lastUpdate(jobId).getState());
+        assertEquals(Arrays.asList(first, second), lastUpdate(jobId).getWrittenFiles());
+    }
+
+    @Test
+    public void cancellingRunningJob_stopsItAndDeletesPartialOutput() throws Exception {
+        queue = newQueue(1);
+        File output = tempFolder.newFile("cancelled.pdf");
+        CountDownLatch secondPage = new CountDownLatch(1);
+        AtomicInteger pagesWritten = new AtomicInteger();
+
+        long jobId = queue.submit(output, progressListener -> {
+            try (FileOutputStream out = new FileOutputStream(output)) {
+                for (int page = 1; page <= 1000; page++) {
+                    Thread.sleep(5);
+                    out.write(page);
+                    pagesWritten.incrementAndGet();
+                    progressListener.onPageAdded(page, 1000);
+                    if (page == 2) {
+                        secondPage.countDown();
+                    }
+                }
+            }
+        });
+
+        assertTrue(secondPage.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(queue.cancel(jobId));
+        awaitFinished(jobId);
+
+        assertEquals(JobProgress.State.CANCELLED, lastUpdate(jobId).getState());
+        assertFalse(output.exists());
+        assertTrue(pagesWritten.get() < 1000);
+    }
+
+    @Test
+    public void jobsBeyondConcurrencyLimit_waitAndCanBeCancelledBeforeStarting() throws Exception {
+        queue = newQueue(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger started = new AtomicInteger();
+
+        File first = tempFolder.newFile("first.pdf");
+        File second = tempFolder.newFile("second.pdf");
+        long firstId = queue.submit(first, progressListener -> {
+            started.incrementAndGet();
+            release.await();
+        });
+        long secondId = queue.submit(second, progressListener -> started.incrementAndGet());
+
+        assertEquals(JobProgress.State.QUEUED, queue.getProgress(secondId).getState());
+        assertTrue(queue.cancel(secondId));
+        release.countDown();
+        awaitFinished(firstId);
+        awaitFinished(secondId);
+
+        assertEquals(1, started.get());
+        assertEquals(JobProgress.State.COMPLETED, lastUpdate(firstId).getState());
+        assertEquals(JobProgress.State.CANCELLED, lastUpdate(secondId).getState());
+    }
+
+    @Test
+    public void raisingConcurrencyLimit_runsJobsInParallel() throws Exception {
+        queue = newQueue(1);
+        queue.setMaxConcurrentJobs(3);
+        CountDownLatch allRunning = new CountDownLatch(3);
+
+        long[] jobIds = new long[3];
+        for (int i = 0; i < jobIds.length; i++) {
+            jobIds[i] = queue.submit(tempFolder.newFile("parallel_" + i + ".pdf"), progressListener -> {
+                allRunning.countDown();
+                if (!allRunning.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new IOException("Jobs did not run concurrently");
+                }
+            });
+        }
+
+        for (long jobId : jobIds) {
+            awaitFinished(jobId);
+            assertEquals(JobProgress.State.COMPLETED, lastUpdate(jobId).getState());
+        }
+    }
+
+    @Test
+    public void failingJob_reportsErrorAndDeletesOutput() throws Exception {
+        queue = newQueue(1);
+        File output = tempFolder.newFile("failed.pdf");
+
+        long jobId = queue.submit(output, fakeGenerator(output, 3, "Corrupt image"));
+        awaitFinished(jobId);
+
+        assertEquals(JobProgress.State.FAILED, lastUpdate(jobId).getState());
+        assertEquals("Corrupt image", lastUpdate(jobId).getErrorMessage());
+        assertFalse(output.exists());
+    }
+
+    @Test
+    public void cancel_isAcceptedOnceAndWinsOverTheTaskOutcome() throws Exception {
+        queue = newQueue(1);
+        File output = tempFolder.newFile("late.pdf");
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Finishes its work normally even when interrupted
+        long jobId = queue.submit(output, progressListener -> {
+            running.countDown();
+            while (true) {
+                try {
+                    release.await();
+                    break;
+                } catch (InterruptedException ignored) {
+                }
+            }
+            Thread.interrupted();
+            try (FileOutputStream out = new FileOutputStream(output)) {
+                out.write(1);
+            }
+        });
+
+        assertTrue(running.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(queue.cancel(jobId));
+        assertEquals(JobProgress.State.CANCELLING, queue.getProgress(jobId).getState());
+        assertFalse(queue.cancel(jobId));
+        release.countDown();
+        awaitFinished(jobId);
+
+        assertEquals(JobProgress.State.CANCELLED, lastUpdate(jobId).getState());
+        assertFalse(output.exists());
+        assertFalse(queue.cancel(jobId));
+    }
+
+    @Test
+    public void cancel_fromTheFirstUpdateStopsTheJobBeforeItStarts() throws Exception {
+        File output = tempFolder.newFile("immediate.pdf");
+        AtomicInteger runs = new AtomicInteger();
+        GenerationJobQueue[] holder = new GenerationJobQueue[1];
+        queue = holder[0] = new GenerationJobQueue(1, progress -> {
+            updates.add(progress);
+            if (progress.getState() == JobProgress.State.QUEUED) {
+                assertTrue(holder[0].cancel(progress.getJobId()));
+            }
+            if (progress.isFinished()) {
+                latchFor(progress.getJobId()).countDown();
+            }
+        });
+
+        long jobId = queue.submit(output, progressListener -> runs.incrementAndGet());
+        awaitFinished(jobId);
+
+        assertEquals(JobProgress.State.CANCELLED, lastUpdate(jobId).getState());
+        assertEquals(0, runs.get());
+        assertNull(queue.getProgress(jobId));
+    }
+
+    @Test
+    public void shutdownWithoutDrain_cancelsInFlightJobs() throws Exception {
+        queue = newQueue(1);
+        File output = tempFolder.newFile("shutdown.pdf");
+        CountDownLatch running = new CountDownLatch(1);
+
+        long jobId = queue.submit(output, progressListener -> {
+            running.countDown();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        });
+
+        assertTrue(running.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        queue.shutdown(false);
+        awaitFinished(jobId);
+
+        assertEquals(JobProgress.State.CANCELLED, lastUpdate(jobId).getState());
+        assertFalse(output.exists());
+    }
+
+    private GenerationJobQueue newQueue(int maxConcurrentJobs) {
+        return new GenerationJobQueue(maxConcurrentJobs, progress -> {
+            updates.add(progress);
+            if (progress.isFinished()) {
+                latchFor(progress.getJobId()).countDown();
+            }
+        });
+    }
+
+    /**
+     * Writes one byte per page and optionally fails after the last page
+     */
+    private static GenerationJobQueue.Task fakeGenerator(File output, int pageCount, String failure) {
+        return progressListener -> {
+            try (FileOutputStream out = new FileOutputStream(output)) {
+                for (int page = 1; page <= pageCount; page++) {
+                    out.write(page);
+                    progressListener.onPageAdded(page, pageCount);
+                }
+            }
+            if (failure != null) {
+                throw new IOException(failure);
+            }
+        };
+    }
+
+    private CountDownLatch latchFor(long jobId) {
+        return finished.computeIfAbsent(jobId, id -> new CountDownLatch(1));
+    }
+
+    private void awaitFinished(long jobId) throws InterruptedException {
+        assertTrue("Job " + jobId + " did not finish", latchFor(jobId).await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private JobProgress lastUpdate(long jobId) {
+        JobProgress last = null;
+        for (JobProgress progress : updates) {
+            if (progress.getJobId() == jobId) {
+                last = progress;
+            }
+        }
+        return last;
+    }
+
+    private boolean hasProgress(long jobId, int pagesDone) {
+        for (JobProgress progress : updates) {
+            if (progress.getJobId() == jobId && progress.getPagesDone() == pagesDone) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
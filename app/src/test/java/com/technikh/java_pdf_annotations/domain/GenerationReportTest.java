@@ -0,0 +1,51 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the report compares each page's source file with the bytes embedded for it.
+ */
+public class GenerationReportTest {
+    private static final long LARGE_SOURCE = 100_000;
+    private static final long SMALL_SOURCE = 10;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void bytesSaved_isReportedPerPage() throws IOException {
+        SyntheticImageEncoder synthetic = new SyntheticImageEncoder(16);
+        ImageEncoder encoder = source -> {
+            EncodedImage image = synthetic.encode(source);
+            int page = Integer.parseInt(source.getName().substring("page_".length()));
+            long sourceBytes = page == 1 ? SMALL_SOURCE : LARGE_SOURCE;
+            EncodedImage sized = new EncodedImage(image.getData(), image.getFilter(), image.getWidth(), image.getHeight(),
+                    image.getBitsPerComponent(), image.getColorSpace(), sourceBytes);
+            // The last two pages show the same picture
+            return page >= 2 ? sized.withContentKey("shared") : sized;
+        };
+
+        GenerationReport report = TestFixtures.generator(encoder)
+                .createPdfWithAnnotations(TestFixtures.sources(4), tempFolder.newFile("report.pdf"), "inspection");
+
+        assertEquals(4, report.getPageCount());
+        long embedded = report.getEmbeddedBytes(0);
+        assertTrue(embedded > SMALL_SOURCE);
+        assertEquals(LARGE_SOURCE - embedded, report.getBytesSaved(0));
+        // An image that grew while encoding reports a negative saving
+        assertEquals(SMALL_SOURCE - report.getEmbeddedBytes(1), report.getBytesSaved(1));
+        assertTrue(report.getBytesSaved(1) < 0);
+        assertTrue(report.getEmbeddedBytes(2) > 0);
+        // A repeated image is embedded once, so its page saves its whole source
+        assertEquals(0, report.getEmbeddedBytes(3));
+        assertEquals(LARGE_SOURCE, report.getBytesSaved(3));
+        assertEquals(report.getBytesSaved(0) + report.getBytesSaved(1) + report.getBytesSaved(2) + report.getBytesSaved(3),
+                report.getTotalBytesSaved());
+    }
+}
@@ -0,0 +1,255 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that layouts keep images within the margins, turn and size pages to suit the images, and are planned from headers alone.
+ */
+public class ImageLayoutTest {
+    private static final float DELTA = 0.01f;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void fitPage_turnsPagesForWideImagesAndKeepsAspectRatio() {
+        ImageLayout layout = ImageLayout.fitPage(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN, true);
+
+        LayoutPlan plan = layout.plan(Arrays.asList(new ImageSize(4000, 1000), new ImageSize(1000, 4000), null));
+
+        assertEquals(3, plan.getPageCount());
+        assertEquals(PDRectangle.A4.getHeight(), plan.getPageSize(0).getWidth(), DELTA);
+        assertEquals(PDRectangle.A4.getWidth(), plan.getPageSize(1).getWidth(), DELTA);
+        assertEquals(PDRectangle.A4.getWidth(), plan.getPageSize(2).getWidth(), DELTA);
+
+        PDRectangle panorama = plan.getPlacement(0, 4000, 1000);
+        assertEquals(4, panorama.getWidth() / panorama.getHeight(), DELTA);
+        assertEquals(PDRectangle.A4.getHeight() - 2 * ImageLayout.DEFAULT_MARGIN, panorama.getWidth(), DELTA);
+        assertWithin(plan.getSlot(0), panorama);
+
+        PDRectangle tall = plan.getPlacement(1, 1000, 4000);
+        assertEquals(PDRectangle.A4.getHeight() - ImageLayout.DEFAULT_MARGIN - ImageLayout.HEADER_HEIGHT,
+                tall.getHeight(), DELTA);
+        assertWithin(new PDRectangle(0, 0, PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight() - ImageLayout.HEADER_HEIGHT), tall);
+    }
+
+    @Test
+    public void matchImage_cutsPageToImage() {
+        float margin = 20;
+        ImageLayout layout = ImageLayout.matchImage(PDRectangle.A4, margin);
+
+        LayoutPlan plan = layout.plan(Arrays.asList(new ImageSize(3000, 2000), new ImageSize(500, 500)));
+
+        PDRectangle page = plan.getPageSize(0);
+        PDRectangle slot = plan.getSlot(0);
+        assertEquals(1.5f, slot.getWidth() / slot.getHeight(), DELTA);
+        assertEquals(slot.getWidth() + 2 * margin, page.getWidth(), DELTA);
+        assertEquals(slot.getHeight() + margin + ImageLayout.HEADER_HEIGHT, page.getHeight(), DELTA);
+        assertTrue(page.getWidth() <= PDRectangle.A4.getHeight() + DELTA);
+        assertEquals(plan.getSlot(1).getWidth() + 2 * margin, plan.getPageSize(1).getWidth(), DELTA);
+    }
+
+    @Test
+    public void grid_fillsPagesRowByRowWithoutOverlap() {
+        ImageLayout layout = ImageLayout.grid(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN, 2, 3, false);
+        List<ImageSize> sizes = new ArrayList<>();
+        for (int i = 0; i < 14; i++) {
+            sizes.add(new ImageSize(800, 600));
+        }
+
+        LayoutPlan plan = layout.plan(sizes);
+
+        assertEquals(3, plan.getPageCount());
+        assertEquals(1, plan.getPageOf(6));
+        assertTrue(plan.isFirstOnPage(6));
+        assertTrue(plan.isLastOnPage(5));
+        assertTrue(plan.isLastOnPage(13));
+        assertFalse(plan.isFirstOnPage(13));
+        // Row by row from the top left
+        assertTrue(plan.getSlot(1).getLowerLeftX() > plan.getSlot(0).getLowerLeftX());
+        assertTrue(plan.getSlot(2).getLowerLeftY() < plan.getSlot(0).getLowerLeftY());
+        for (int i = 0; i < 6; i++) {
+            assertWithin(new PDRectangle(0, 0, PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight() - ImageLayout.HEADER_HEIGHT),
+                    plan.getSlot(i));
+            for (int j = i + 1; j < 6; j++) {
+                assertFalse("Slots " + i + " and " + j + " overlap", overlap(plan.getSlot(i), plan.getSlot(j)));
+            }
+        }
+    }
+
+    @Test
+    public void grid_turnsPageWhenImagesFitBetter() {
+        ImageLayout layout = ImageLayout.grid(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN, 2, 2, true);
+
+        LayoutPlan plan = layout.plan(Arrays.asList(new ImageSize(1000, 700), new ImageSize(1000, 700),
+                new ImageSize(1000, 700), new ImageSize(1000, 700), new ImageSize(300, 1000)));
+
+        assertTrue(plan.getPageSize(0).getWidth() > plan.getPageSize(0).getHeight());
+        assertTrue(plan.getPageSize(1).getWidth() < plan.getPageSize(1).getHeight());
+    }
+
+    @Test
+    public void readHeader_readsOnlyTheFirstBytes() throws IOException {
+        assertSize(300, 200, image("jpg", 300, 200));
+        assertSize(64, 48, image("png", 64, 48));
+        assertSize(33, 17, image("gif", 33, 17));
+        assertSize(20, 40, image("bmp", 20, 40));
+        assertNull(ImageSize.readHeader(new BufferedInputStream(new ByteArrayInputStream(new byte[]{1, 2, 3, 4}))));
+    }
+
+    @Test
+    public void generate_writesOnePagePerGridCell() throws IOException {
+        List<String> paths = new ArrayList<>();
+        byte[] png = image("png", 40, 30);
+        for (int i = 0; i < 7; i++) {
+            File file = tempFolder.newFile("page_" + i + ".png");
+            Files.write(file.toPath(), png);
+            paths.add(file.getPath());
+        }
+        PdfGenerator generator = TestFixtures.generator(new SyntheticImageEncoder(16), 2);
+        generator.setLayout(ImageLayout.grid(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN, 2, 2, true));
+        File output = new File(tempFolder.getRoot(), "grid.pdf");
+
+        GenerationReport report = generator.createPdfWithAnnotations(FileImageSource.fromPaths(paths), output, "inspection");
+
+        assertEquals(7, report.getPageCount());
+        try (PDDocument document = PDDocument.load(output)) {
+            assertEquals(2, document.getNumberOfPages());
+            // Four landscape images fit better on a landscape page
+            PDRectangle mediaBox = document.getPage(0).getMediaBox();
+            assertTrue(mediaBox.getWidth() > mediaBox.getHeight());
+        }
+    }
+
+    @Test
+    public void drawWidth_followsSlotsRatherThanPageWidth() {
+        LayoutPlan grid = ImageLayout.grid(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN, 2, 2, false)
+                .plan(Arrays.asList(new ImageSize(800, 600), null));
+        float cellWidth = grid.getSlot(0).getWidth();
+        assertTrue(cellWidth < PDRectangle.A4.getWidth() / 2);
+        assertEquals(cellWidth, grid.getDrawWidth(0), DELTA);
+        assertEquals(cellWidth, grid.getDrawWidth(1), DELTA);
+
+        LayoutPlan fitPage = ImageLayout.fitPage(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN, true)
+                .plan(Arrays.asList(new ImageSize(4000, 1000), new ImageSize(1000, 4000)));
+        assertEquals(PDRectangle.A4.getHeight() - 2 * ImageLayout.DEFAULT_MARGIN, fitPage.getDrawWidth(0), DELTA);
+        assertEquals(fitPage.getPlacement(1, 1000, 4000).getWidth(), fitPage.getDrawWidth(1), DELTA);
+    }
+
+    @Test
+    public void generate_encodesEachImageForItsCell() throws IOException {
+        List<String> paths = new ArrayList<>();
+        byte[] png = image("png", 40, 30);
+        for (int i = 0; i < 4; i++) {
+            File file = tempFolder.newFile("page_" + i + ".png");
+            Files.write(file.toPath(), png);
+            paths.add(file.getPath());
+        }
+        List<Float> drawWidths = new ArrayList<>();
+        ImageEncoder encoder = new SyntheticImageEncoder(16) {
+            @Override
+            public EncodedImage encode(ImageSource source, float drawWidthPoints) throws IOException {
+                drawWidths.add(drawWidthPoints);
+                return super.encode(source, drawWidthPoints);
+            }
+        };
+        PdfGenerator generator = TestFixtures.generator(encoder);
+        ImageLayout layout = ImageLayout.grid(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN, 2, 2, false);
+        generator.setLayout(layout);
+
+        generator.createPdfWithAnnotations(FileImageSource.fromPaths(paths), new File(tempFolder.getRoot(), "grid.pdf"), "inspection");
+
+        float cellWidth = layout.plan(Arrays.asList(new ImageSize(40, 30))).getDrawWidth(0);
+        assertEquals(4, drawWidths.size());
+        for (float drawWidth : drawWidths) {
+            assertEquals(cellWidth, drawWidth, DELTA);
+        }
+    }
+
+    private static void assertSize(int width, int height, byte[] image) throws IOException {
+        CountingInputStream counting = new CountingInputStream(new ByteArrayInputStream(image));
+        ImageSize size = ImageSize.readHeader(new BufferedInputStream(counting, 64));
+
+        assertEquals(new ImageSize(width, height), size);
+        assertTrue("Read " + counting.count + " bytes", counting.count < 1024);
+    }
+
+    private static byte[] image(String format, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, x * 7 + y * 1031);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, out));
+        return out.toByteArray();
+    }
+
+    private static void assertWithin(PDRectangle outer, PDRectangle inner) {
+        assertTrue(inner + " outside " + outer, inner.getLowerLeftX() >= outer.getLowerLeftX() - DELTA
+                && inner.getLowerLeftY() >= outer.getLowerLeftY() - DELTA
+                && inner.getUpperRightX() <= outer.getUpperRightX() + DELTA
+                && inner.getUpperRightY() <= outer.getUpperRightY() + DELTA);
+    }
+
+    private static boolean overlap(PDRectangle a, PDRectangle b) {
+        return a.getLowerLeftX() < b.getUpperRightX() && b.getLowerLeftX() < a.getUpperRightX()
+                && a.getLowerLeftY() < b.getUpperRightY() && b.getLowerLeftY() < a.getUpperRightY();
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.cos.COSStream;
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that pages are appended to existing PDFs without rewriting them, and that merged pages keep their streams as stored.
+ */
+public class IncrementalAppendTest {
+    private static final int IMAGE_SIZE = 16;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void appendToPdf_keepsExistingBytesAndAddsAnnotatedPages() throws IOException {
+        File pdf = new File(tempFolder.getRoot(), "report.pdf");
+        TestFixtures.generator(IMAGE_SIZE)
+                .createPdfWithToggleableAnnotations(TestFixtures.sources("a", 3), pdf, "inspection");
+        byte[] original = Files.readAllBytes(pdf.toPath());
+
+        GenerationReport report = TestFixtures.generator(IMAGE_SIZE)
+                .appendToPdf(TestFixtures.sources("b", 2), pdf, "follow-up", true, null);
+
+        assertEquals(2, report.getPageCount());
+        byte[] updated = Files.readAllBytes(pdf.toPath());
+        assertArrayEquals(original, Arrays.copyOf(updated, original.length));
+        // Only the two new images and their pages are written
+        assertTrue(updated.length - original.length < original.length);
+        try (PDDocument document = PDDocument.load(pdf)) {
+            assertEquals(5, document.getNumberOfPages());
+            assertEquals("inspection", document.getPage(0).getAnnotations().get(0).getContents());
+            assertEquals("follow-up", document.getPage(4).getAnnotations().get(0).getContents());
+        }
+    }
+
+    @Test
+    public void appendToPdf_failureLeavesFileUnchanged() throws IOException {
+        File pdf = new File(tempFolder.getRoot(), "report.pdf");
+        TestFixtures.generator(IMAGE_SIZE).createPdfWithAnnotations(TestFixtures.sources("a", 2), pdf, "inspection");
+        byte[] original = Files.readAllBytes(pdf.toPath());
+        ImageEncoder failing = source -> {
+            if (source.getName().endsWith("_1")) {
+                throw new IOException("Unreadable image");
+            }
+            return new SyntheticImageEncoder(IMAGE_SIZE).encode(source);
+        };
+
+        try {
+            TestFixtures.generator(failing).appendToPdf(TestFixtures.sources("b", 3), pdf, "follow-up", false, null);
+            fail("Expected the append to fail");
+        } catch (IOException expected) {
+            // The second image can't be encoded
+        }
+
+        assertArrayEquals(original, Files.readAllBytes(pdf.toPath()));
+    }
+
+    @Test
+    public void merge_copiesPagesAndImageStreamsAsStored() throws IOException {
+        File first = new File(tempFolder.getRoot(), "first.pdf");
+        File second = new File(tempFolder.getRoot(), "second.pdf");
+        TestFixtures.generator(IMAGE_SIZE)
+                .createPdfWithToggleableAnnotations(TestFixtures.sources("a", 3), first, "first");
+        TestFixtures.generator(IMAGE_SIZE)
+                .createPdfWithToggleableAnnotations(TestFixtures.sources("b", 2), second, "second");
+        // An edited report, whose new comment refers back to its page
+        try (AnnotationEditor editor = new AnnotationEditor(second, ScratchPolicy.of(MemoryUsageSetting.setupMainMemoryOnly()))) {
+            editor.addTextAnnotation(1, "note", new PDRectangle(10, 10, 20, 20));
+            editor.appendChanges();
+        }
+        File merged = new File(tempFolder.getRoot(), "merged.pdf");
+
+        new PdfMerger(ScratchPolicy.of(MemoryUsageSetting.setupMainMemoryOnly())).merge(Arrays.asList(first, second), merged);
+
+        byte[] firstBytes = Files.readAllBytes(first.toPath());
+        assertArrayEquals(firstBytes, Arrays.copyOf(Files.readAllBytes(merged.toPath()), firstBytes.length));
+        try (PDDocument source = PDDocument.load(second); PDDocument document = PDDocument.load(merged)) {
+            assertEquals(5, document.getNumberOfPages());
+            for (int i = 0; i < 2; i++) {
+                PDPage copied = document.getPage(3 + i);
+                assertArrayEquals(rawImage(source.getPage(i)), rawImage(copied));
+                assertEquals("second", copied.getAnnotations().get(0).getContents());
+            }
+            PDAnnotation note = document.getPage(3).getAnnotations().get(1);
+            assertEquals("note", note.getContents());
+            assertSame(document.getPage(3).getCOSObject(), note.getCOSObject().getDictionaryObject(COSName.P));
+        }
+    }
+
+    /**
+     * Returns the stored, still encoded bytes of the page's only image
+     */
+    private static byte[] rawImage(PDPage page) throws IOException {
+        COSName name = page.getResources().getXObjectNames().iterator().next();
+        COSStream stream = ((PDImageXObject) page.getResources().getXObject(name)).getCOSObject();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = stream.createRawInputStream()) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+}
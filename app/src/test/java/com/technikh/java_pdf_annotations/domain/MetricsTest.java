@@ -0,0 +1,128 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that generation and extraction record one span per step and page, and nothing when disabled.
+ */
+public class MetricsTest {
+    private static final int PAGE_COUNT = 4;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void generation_recordsEveryStepOfEveryPage() throws IOException {
+        RecordingSink sink = new RecordingSink();
+        PdfGenerator generator = TestFixtures.generator(new SyntheticImageEncoder(8), 2);
+        generator.setMetrics(Metrics.to(sink));
+        File output = tempFolder.newFile("metrics.pdf");
+
+        generator.createPdfWithToggleableAnnotations(TestFixtures.sources(PAGE_COUNT), output, "inspection");
+
+        for (String step : new String[]{Metrics.ENCODE, Metrics.EMBED, Metrics.CONTENT, Metrics.ANNOTATE}) {
+            List<MetricSpan> spans = sink.named(step);
+            assertEquals(step, PAGE_COUNT, spans.size());
+            List<Integer> pages = new ArrayList<>();
+            for (MetricSpan span : spans) {
+                assertEquals("metrics.pdf", span.getDocument());
+                assertTrue(span.getDurationNanos() >= 0);
+                pages.add(span.getPageIndex());
+            }
+            Collections.sort(pages);
+            assertEquals(Arrays.asList(0, 1, 2, 3), pages);
+        }
+        List<MetricSpan> saves = sink.named(Metrics.SAVE);
+        assertEquals(1, saves.size());
+        assertEquals(-1, saves.get(0).getPageIndex());
+        assertEquals(output.length(), saves.get(0).getBytesOut());
+        assertTrue(sink.named(Metrics.ENCODE).get(0).getBytesOut() > 0);
+    }
+
+    @Test
+    public void extraction_recordsEveryPage() throws IOException {
+        File output = TestFixtures.annotatedPdf(tempFolder.newFile("extract.pdf"), PAGE_COUNT, 8);
+        RecordingSink sink = new RecordingSink();
+
+        try (AnnotationPager pager = new AnnotationPager(PDDocument.load(output), Metrics.to(sink).forDocument("extract"))) {
+            pager.loadNext(Integer.MAX_VALUE);
+        }
+
+        assertEquals(PAGE_COUNT, sink.named(Metrics.EXTRACT).size());
+        assertEquals(PAGE_COUNT, sink.spans.size());
+    }
+
+    @Test
+    public void disabled_recordsNothing() throws IOException {
+        assertFalse(Metrics.DISABLED.isEnabled());
+        assertSame(Metrics.DISABLED, Metrics.DISABLED.forDocument("any"));
+        assertEquals(0, Metrics.DISABLED.start());
+
+        PdfGenerator generator = TestFixtures.generator(8);
+        generator.setMetrics(Metrics.DISABLED);
+        generator.createPdfWithAnnotations(TestFixtures.sources(PAGE_COUNT), tempFolder.newFile(), "inspection");
+    }
+
+    @Test
+    public void aggregator_totalsStepsAndExportsJsonLines() throws IOException {
+        File export = new File(tempFolder.getRoot(), "metrics/metrics.jsonl");
+        MetricsAggregator aggregator;
+        try (JsonLinesMetricsSink jsonLines = new JsonLinesMetricsSink(export)) {
+            aggregator = new MetricsAggregator(jsonLines);
+            aggregator.onSpan(new MetricSpan(Metrics.ENCODE, "a \"b\".pdf", 0, 1L, 300, 10, 5, 1000));
+            aggregator.onSpan(new MetricSpan(Metrics.ENCODE, "a \"b\".pdf", 1, 2L, 100, 20, 7, 3000));
+            aggregator.onSpan(new MetricSpan(Metrics.SAVE, "a \"b\".pdf", -1, 3L, 50, 0, 99, 2000));
+        }
+
+        MetricsSnapshot snapshot = aggregator.snapshot();
+        MetricsSnapshot.Stats encode = snapshot.getStats(Metrics.ENCODE);
+        assertNotNull(encode);
+        assertEquals(2, encode.getCount());
+        assertEquals(400, encode.getTotalNanos());
+        assertEquals(300, encode.getMaxNanos());
+        assertEquals(200, encode.getAverageNanos());
+        assertEquals(30, encode.getBytesIn());
+        assertEquals(12, encode.getBytesOut());
+        assertEquals(3000, snapshot.getPeakHeapBytes());
+        assertNull(snapshot.getStats(Metrics.EXTRACT));
+
+        List<String> lines = Files.readAllLines(export.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals("{\"name\":\"encode\",\"document\":\"a \\\"b\\\".pdf\",\"page\":0,\"ts\":1,\"durationNs\":300,"
+                + "\"bytesIn\":10,\"bytesOut\":5,\"heapBytes\":1000}", lines.get(0));
+    }
+
+    private static class RecordingSink implements MetricsSink {
+        final List<MetricSpan> spans = new ArrayList<>();
+
+        @Override
+        public synchronized void onSpan(MetricSpan span) {
+            spans.add(span);
+        }
+
+        synchronized List<MetricSpan> named(String name) {
+            List<MetricSpan> named = new ArrayList<>();
+            for (MetricSpan span : spans) {
+                if (span.getName().equals(name)) {
+                    named.add(span);
+                }
+            }
+            return named;
+        }
+    }
+}
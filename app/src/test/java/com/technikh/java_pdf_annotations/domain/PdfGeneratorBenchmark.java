@@ -0,0 +1,98 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end generation in both annotation modes, plus image embedding alone.
+ * Generation transcodes every image, so the worker count shows how encoding scales across cores.
+ * Run with ./gradlew :app:jmh -Pjmh.include=PdfGeneratorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class PdfGeneratorBenchmark {
+    @Param({"512", "1024", "2048"})
+    public int imageSize;
+
+    @Param({"5", "100", "1000"})
+    public int pageCount;
+
+    @Param({"1", "2", "4"})
+    public int workerCount;
+
+    private File workDir;
+    private File outputFile;
+    private MemoryUsageSetting memoryUsageSetting;
+    private EncodedImage[] images;
+    private List<ImageSource> sources;
+    private PdfGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("pdf_benchmark").toFile();
+        outputFile = new File(workDir, "output.pdf");
+        memoryUsageSetting = MemoryUsageSetting.setupMixed(8L * 1024 * 1024).setTempDir(workDir);
+        images = BenchmarkImages.jpegs(imageSize);
+        sources = BenchmarkImages.sources(pageCount);
+        generator = new PdfGenerator(memoryUsageSetting, BenchmarkImages.transcodingEncoder(images), workerCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = workDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        workDir.delete();
+    }
+
+    @Benchmark
+    public GenerationReport generateStandard() throws IOException {
+        return generator.createPdfWithAnnotations(sources, outputFile, "Inspection photo");
+    }
+
+    @Benchmark
+    public GenerationReport generateToggleable() throws IOException {
+        return generator.createPdfWithToggleableAnnotations(sources, outputFile, "Inspection photo");
+    }
+
+    /**
+     * Creates the image XObjects without pages or saving, isolating the cost of embedding streams
+     */
+    @Benchmark
+    public GenerationReport embedImages() throws IOException {
+        try (PDDocument document = new PDDocument(memoryUsageSetting)) {
+            ImageEmbedder embedder = new ImageEmbedder(document);
+            for (int i = 0; i < pageCount; i++) {
+                embedder.embed(images[i % images.length]);
+            }
+            return embedder.getReport();
+        }
+    }
+}
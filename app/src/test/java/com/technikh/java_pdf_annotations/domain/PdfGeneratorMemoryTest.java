@@ -0,0 +1,69 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that generating large documents does not keep every image stream on the heap.
+ */
+public class PdfGeneratorMemoryTest {
+    private static final int PAGE_COUNT = 500;
+    private static final int IMAGE_SIZE = 256;
+    private static final int WARMUP_PAGES = 50;
+    private static final long MAX_HEAP_GROWTH_BYTES = 24L * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void peakHeap_staysFlat_forFiveHundredPages() throws IOException {
+        List<ImageSource> images = TestFixtures.sources("synthetic", PAGE_COUNT);
+
+        long[] heapAtWarmup = new long[1];
+        long[] peakHeap = new long[1];
+        int[] encoded = new int[1];
+
+        SyntheticImageEncoder synthetic = new SyntheticImageEncoder(IMAGE_SIZE);
+        ImageEncoder encoder = source -> {
+            encoded[0]++;
+            if (encoded[0] == WARMUP_PAGES) {
+                heapAtWarmup[0] = usedHeapAfterGc();
+            } else if (encoded[0] > WARMUP_PAGES && encoded[0] % WARMUP_PAGES == 0) {
+                peakHeap[0] = Math.max(peakHeap[0], usedHeapAfterGc());
+            }
+            return synthetic.encode(source);
+        };
+
+        MemoryUsageSetting setting = MemoryUsageSetting.setupTempFileOnly().setTempDir(tempFolder.getRoot());
+        File output = tempFolder.newFile("large.pdf");
+        new PdfGenerator(setting, encoder, 1).createPdfWithToggleableAnnotations(images, output, "synthetic");
+
+        assertEquals(PAGE_COUNT, encoded[0]);
+        long imageBytes = (long) PAGE_COUNT * IMAGE_SIZE * IMAGE_SIZE * 3;
+        assertTrue("Output should contain every image stream", output.length() > imageBytes);
+        long growth = peakHeap[0] - heapAtWarmup[0];
+        assertTrue("Heap grew by " + growth + " bytes", growth < MAX_HEAP_GROWTH_BYTES);
+
+        try (PDDocument document = PDDocument.load(output)) {
+            assertEquals(PAGE_COUNT, document.getNumberOfPages());
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,91 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the parallel encode pipeline writes exactly what the sequential path writes.
+ */
+public class PdfGeneratorPipelineTest {
+    private static final int IMAGE_COUNT = 50;
+    private static final int IMAGE_SIZE = 64;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void parallelOutput_isByteIdenticalToSequential() throws IOException {
+        List<ImageSource> images = TestFixtures.sources("synthetic", IMAGE_COUNT);
+        ImageEncoder encoder = new SyntheticImageEncoder(IMAGE_SIZE);
+
+        File sequential = tempFolder.newFile("sequential.pdf");
+        File parallel = tempFolder.newFile("parallel.pdf");
+        TestFixtures.spillingGenerator(encoder, 1, tempFolder.getRoot())
+                .createPdfWithToggleableAnnotations(images, sequential, "pipeline");
+        GenerationReport report = TestFixtures.spillingGenerator(encoder, 4, tempFolder.getRoot())
+                .createPdfWithToggleableAnnotations(images, parallel, "pipeline");
+
+        assertEquals(IMAGE_COUNT, report.getPageCount());
+        assertArrayEquals(Files.readAllBytes(sequential.toPath()), Files.readAllBytes(parallel.toPath()));
+    }
+
+    @Test
+    public void parallelOutput_keepsInputOrder_whenWorkersFinishOutOfOrder() throws IOException {
+        List<ImageSource> images = TestFixtures.sources("synthetic", IMAGE_COUNT);
+        SyntheticImageEncoder synthetic = new SyntheticImageEncoder(IMAGE_SIZE);
+        ImageEncoder jittered = source -> {
+            try {
+                // Workers finish in an order unrelated to the input order
+                Thread.sleep(Math.abs(source.getName().hashCode()) % 5);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return synthetic.encode(source);
+        };
+
+        File sequential = tempFolder.newFile("sequential.pdf");
+        File parallel = tempFolder.newFile("parallel.pdf");
+        TestFixtures.spillingGenerator(synthetic, 1, tempFolder.getRoot())
+                .createPdfWithToggleableAnnotations(images, sequential, "pipeline");
+        TestFixtures.spillingGenerator(jittered, 8, tempFolder.getRoot())
+                .createPdfWithToggleableAnnotations(images, parallel, "pipeline");
+
+        assertArrayEquals(Files.readAllBytes(sequential.toPath()), Files.readAllBytes(parallel.toPath()));
+    }
+
+    @Test(expected = IOException.class)
+    public void encoderFailure_isRethrownToCaller() throws IOException {
+        ImageEncoder failing = source -> {
+            throw new IOException("Corrupt image: " + source.getName());
+        };
+        TestFixtures.spillingGenerator(failing, 4, tempFolder.getRoot()).createPdfWithToggleableAnnotations(
+                TestFixtures.sources("synthetic", IMAGE_COUNT), tempFolder.newFile("failed.pdf"), "pipeline");
+    }
+
+    @Test
+    public void interruptedThread_cancelsGenerationWithoutOutput() throws IOException {
+        File output = new File(tempFolder.getRoot(), "cancelled.pdf");
+        int[] progress = new int[1];
+        Thread.currentThread().interrupt();
+        try {
+            TestFixtures.spillingGenerator(new SyntheticImageEncoder(IMAGE_SIZE), 4, tempFolder.getRoot())
+                    .createPdfWithToggleableAnnotations(TestFixtures.sources("synthetic", IMAGE_COUNT), output, "pipeline",
+                            (pagesDone, pageCount) -> progress[0] = pagesDone);
+            fail("Expected generation to be cancelled");
+        } catch (InterruptedIOException expected) {
+            assertEquals(0, progress[0]);
+            assertFalse(output.exists());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that images are resampled only when wider than the target DPI needs, and passed through or recompressed otherwise.
+ */
+public class ResamplePolicyTest {
+    private static final int DPI = 200;
+
+    @Test
+    public void targetPixelWidth_coversTheDrawWidthAtTheTargetDpi() {
+        ResamplePolicy policy = new ResamplePolicy(DPI);
+
+        assertEquals(1654, policy.targetPixelWidth(PDRectangle.A4.getWidth()));
+        assertEquals(200, policy.targetPixelWidth(72));
+        assertEquals(101, policy.targetPixelWidth(36.1f));
+        assertEquals(0, new ResamplePolicy(ResamplePolicy.ORIGINAL_DPI).targetPixelWidth(PDRectangle.A4.getWidth()));
+    }
+
+    @Test
+    public void decide_resamplesOnlyImagesWiderThanTheTarget() {
+        ResamplePolicy policy = new ResamplePolicy(DPI);
+
+        assertEquals(ResamplePolicy.Action.RESAMPLE, policy.decide(4000, 3, 72));
+        assertEquals(ResamplePolicy.Action.RESAMPLE, policy.decide(201, 0, 72));
+        assertEquals(ResamplePolicy.Action.PASS_THROUGH, policy.decide(200, 3, 72));
+        // A smaller cell needs fewer pixels than the full page
+        assertEquals(ResamplePolicy.Action.PASS_THROUGH, policy.decide(1600, 3, PDRectangle.A4.getWidth()));
+        assertEquals(ResamplePolicy.Action.RESAMPLE, policy.decide(1600, 3, PDRectangle.A4.getWidth() / 2));
+    }
+
+    @Test
+    public void decide_passesThroughOnlyGrayAndRgbJpegs() {
+        ResamplePolicy policy = new ResamplePolicy(DPI);
+
+        assertEquals(ResamplePolicy.Action.PASS_THROUGH, policy.decide(100, 1, 72));
+        assertEquals(ResamplePolicy.Action.PASS_THROUGH, policy.decide(100, 3, 72));
+        assertEquals(ResamplePolicy.Action.LOSSLESS, policy.decide(100, 4, 72));
+        assertEquals(ResamplePolicy.Action.LOSSLESS, policy.decide(100, 0, 72));
+    }
+
+    @Test
+    public void originalDpi_neverResamples() {
+        ResamplePolicy policy = new ResamplePolicy(ResamplePolicy.ORIGINAL_DPI);
+
+        assertEquals(ResamplePolicy.Action.PASS_THROUGH, policy.decide(8000, 3, 72));
+        assertEquals(ResamplePolicy.Action.LOSSLESS, policy.decide(8000, 0, 72));
+    }
+
+    @Test
+    public void sampleSize_isTheCoarsestPowerOfTwoCoveringTheTarget() {
+        assertEquals(1, ResamplePolicy.sampleSize(1000, 1000));
+        assertEquals(1, ResamplePolicy.sampleSize(1999, 1000));
+        assertEquals(2, ResamplePolicy.sampleSize(2000, 1000));
+        assertEquals(4, ResamplePolicy.sampleSize(4000, 1000));
+        assertEquals(2, ResamplePolicy.sampleSize(4000, 1001));
+    }
+
+    @Test
+    public void scaledHeight_keepsAspectRatio() {
+        assertEquals(750, ResamplePolicy.scaledHeight(4000, 3000, 1000));
+        assertEquals(1, ResamplePolicy.scaledHeight(4000, 1, 1000));
+    }
+}
@@ -0,0 +1,136 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Output size, generation time and reopening time of PDFBox's output against compact output at three Flate levels.
+ * The outputKilobytes counter is the size of the generated file.
+ * Run with ./gradlew :app:jmh -Pjmh.include=SaveOptionsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class SaveOptionsBenchmark {
+    private static final int PAGE_COUNT = 100;
+    private static final int[] COLORS = {0xFFFFCC, 0xFF0000, 0x00AA00, 0x0000FF};
+    private static final String[] ICONS = {"Comment", "Note", "Key", "Help"};
+
+    @Param({"standard", "compact-1", "compact-6", "compact-9"})
+    public String saveOptions;
+
+    @Param({"1000", "10000"})
+    public int annotationCount;
+
+    private File workDir;
+    private File outputFile;
+    private File savedFile;
+    private List<ImageSource> sources;
+    private List<AnnotationSpec> specs;
+    private PdfGenerator generator;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SizeCounters {
+        public long outputKilobytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("save_benchmark").toFile();
+        outputFile = new File(workDir, "output.pdf");
+        savedFile = new File(workDir, "saved.pdf");
+        MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(8L * 1024 * 1024).setTempDir(workDir);
+        generator = new PdfGenerator(setting, BenchmarkImages.encoder(BenchmarkImages.jpegs(256)), 1);
+        generator.setSaveOptions(createSaveOptions());
+        sources = BenchmarkImages.sources(PAGE_COUNT);
+
+        specs = new ArrayList<>(annotationCount);
+        for (int i = 0; i < annotationCount; i++) {
+            float x = 20 + (i * 37) % 500;
+            float y = 20 + (i * 53) % 780;
+            specs.add(new AnnotationSpec(i % PAGE_COUNT + 1, x, y, 20, 20, "Finding " + i,
+                    "Inspector " + (i % 3), COLORS[i % COLORS.length], ICONS[i % ICONS.length]));
+        }
+        generator.createPdfWithAnnotationSpecs(sources, savedFile, specs);
+    }
+
+    private SaveOptions createSaveOptions() {
+        switch (saveOptions) {
+            case "standard":
+                return SaveOptions.STANDARD;
+            case "compact-1":
+                return SaveOptions.compact(Deflater.BEST_SPEED);
+            case "compact-6":
+                return SaveOptions.compact(6);
+            case "compact-9":
+                return SaveOptions.compact(Deflater.BEST_COMPRESSION);
+            default:
+                throw new IllegalArgumentException("Unknown save options " + saveOptions);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = workDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        workDir.delete();
+    }
+
+    @Benchmark
+    public GenerationReport generateWithSpecs(SizeCounters counters) throws IOException {
+        GenerationReport report = generator.createPdfWithAnnotationSpecs(sources, outputFile, specs);
+        counters.outputKilobytes = outputFile.length() / 1024;
+        return report;
+    }
+
+    /**
+     * What a viewer does to list the comments: parse the file and visit every annotation
+     */
+    @Benchmark
+    public int openAndReadAnnotations() throws IOException {
+        int annotations = 0;
+        try (PDDocument document = PDDocument.load(savedFile, MemoryUsageSetting.setupMainMemoryOnly())) {
+            for (PDPage page : document.getPages()) {
+                for (PDAnnotation annotation : page.getAnnotations()) {
+                    if (annotation.getContents() != null) {
+                        annotations++;
+                    }
+                }
+            }
+        }
+        return annotations;
+    }
+}
@@ -0,0 +1,211 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.cos.COSStream;
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that compact output is smaller and reads back with the same pages, annotations and content.
+ */
+public class SaveOptionsTest {
+    private static final int IMAGE_SIZE = 16;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void compact_isSmallerAndKeepsPagesAndAnnotations() throws IOException {
+        List<AnnotationSpec> specs = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            specs.add(new AnnotationSpec(i % 20 + 1, i % 50, i % 30, 20, 20, "note " + i, "Inspector",
+                    i % 2 == 0 ? 0x336699 : AnnotationSpec.DEFAULT_COLOR, i % 3 == 0 ? "Key" : AnnotationSpec.DEFAULT_ICON));
+        }
+        File standard = tempFolder.newFile("standard.pdf");
+        File compact = tempFolder.newFile("compact.pdf");
+        generator(SaveOptions.STANDARD).createPdfWithAnnotationSpecs(TestFixtures.sources(20), standard, specs);
+        generator(SaveOptions.COMPACT).createPdfWithAnnotationSpecs(TestFixtures.sources(20), compact, specs);
+
+        assertTrue(compact.length() + " vs " + standard.length(), compact.length() < standard.length() / 2);
+        String raw = new String(Files.readAllBytes(compact.toPath()), StandardCharsets.ISO_8859_1);
+        assertTrue(raw.startsWith("%PDF-1.5"));
+        assertTrue(raw.contains("/Type /ObjStm"));
+        assertTrue(raw.contains("/Type /XRef"));
+        assertFalse(raw.contains("\nxref\n"));
+        try (PDDocument expected = PDDocument.load(standard); PDDocument actual = PDDocument.load(compact)) {
+            assertEquals(expected.getNumberOfPages(), actual.getNumberOfPages());
+            assertEquals(expected.getDocument().getTrailer().getCOSArray(COSName.ID).toString(),
+                    actual.getDocument().getTrailer().getCOSArray(COSName.ID).toString());
+            for (int i = 0; i < expected.getNumberOfPages(); i++) {
+                PDPage expectedPage = expected.getPage(i);
+                PDPage actualPage = actual.getPage(i);
+                assertArrayEquals(contents(expectedPage), contents(actualPage));
+                List<PDAnnotation> expectedAnnotations = expectedPage.getAnnotations();
+                List<PDAnnotation> actualAnnotations = actualPage.getAnnotations();
+                assertEquals(expectedAnnotations.size(), actualAnnotations.size());
+                for (int a = 0; a < expectedAnnotations.size(); a++) {
+                    assertEquals(expectedAnnotations.get(a).getContents(), actualAnnotations.get(a).getContents());
+                    assertEquals(expectedAnnotations.get(a).getRectangle().toString(),
+                            actualAnnotations.get(a).getRectangle().toString());
+                    assertNotNull(actualAnnotations.get(a).getNormalAppearanceStream());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void compact_refiltersUnfilteredStreamsOnlyWithALevel() throws IOException {
+        File compressed = tempFolder.newFile("compressed.pdf");
+        File unchanged = tempFolder.newFile("unchanged.pdf");
+        byte[] expected;
+        try (PDDocument document = new PDDocument(MemoryUsageSetting.setupMainMemoryOnly())) {
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+            try (PDPageContentStream contentStream = new PDPageContentStream(document, page,
+                    PDPageContentStream.AppendMode.OVERWRITE, false)) {
+                for (int i = 0; i < 200; i++) {
+                    contentStream.addRect(i, i, 10, 10);
+                    contentStream.fill();
+                }
+            }
+            expected = contents(page);
+            SaveOptions.compact(Deflater.BEST_COMPRESSION).save(document, compressed);
+            SaveOptions.compact(Deflater.NO_COMPRESSION).save(document, unchanged);
+        }
+
+        try (PDDocument document = PDDocument.load(compressed)) {
+            COSStream stream = (COSStream) document.getPage(0).getCOSObject().getDictionaryObject(COSName.CONTENTS);
+            assertEquals(COSName.FLATE_DECODE, stream.getFilters());
+            assertTrue(stream.getLength() < expected.length / 4);
+            assertArrayEquals(expected, contents(document.getPage(0)));
+        }
+        try (PDDocument document = PDDocument.load(unchanged)) {
+            COSStream stream = (COSStream) document.getPage(0).getCOSObject().getDictionaryObject(COSName.CONTENTS);
+            assertNull(stream.getFilters());
+            assertArrayEquals(expected, contents(document.getPage(0)));
+        }
+    }
+
+    @Test
+    public void compact_acceptsIncrementalUpdates() throws IOException {
+        File pdf = tempFolder.newFile("report.pdf");
+        generator(SaveOptions.compact(Deflater.BEST_SPEED))
+                .createPdfWithToggleableAnnotations(TestFixtures.sources(3), pdf, "inspected");
+
+        try (AnnotationEditor editor = new AnnotationEditor(pdf, ScratchPolicy.of(MemoryUsageSetting.setupMainMemoryOnly()))) {
+            editor.addTextAnnotation(2, "added later", new PDRectangle(40, 40, 20, 20));
+            editor.appendChanges();
+        }
+
+        try (PDDocument document = PDDocument.load(pdf)) {
+            assertEquals(3, document.getNumberOfPages());
+            List<PDAnnotation> annotations = document.getPage(1).getAnnotations();
+            assertEquals("added later", annotations.get(annotations.size() - 1).getContents());
+        }
+    }
+
+    @Test
+    public void compact_acceptsAppendedPages() throws IOException {
+        File pdf = tempFolder.newFile("appended.pdf");
+        generator(SaveOptions.COMPACT).createPdfWithToggleableAnnotations(TestFixtures.sources("a", 3), pdf, "inspected");
+        byte[] original = Files.readAllBytes(pdf.toPath());
+
+        generator(SaveOptions.COMPACT).appendToPdf(TestFixtures.sources("b", 2), pdf, "follow-up", true, null);
+
+        assertArrayEquals(original, Arrays.copyOf(Files.readAllBytes(pdf.toPath()), original.length));
+        try (PDDocument document = PDDocument.load(pdf)) {
+            assertEquals(5, document.getNumberOfPages());
+            assertEquals("inspected", document.getPage(0).getAnnotations().get(0).getContents());
+            assertEquals("follow-up", document.getPage(4).getAnnotations().get(0).getContents());
+        }
+    }
+
+    @Test
+    public void compact_acceptsImportedAnnotations() throws IOException {
+        File pdf = tempFolder.newFile("imported.pdf");
+        generator(SaveOptions.COMPACT).createPdfWithToggleableAnnotations(TestFixtures.sources(2), pdf, "inspected");
+        String lines = "{\"page\":2,\"x\":10,\"y\":20,\"width\":30,\"height\":40,\"text\":\"imported\"}\n";
+
+        long imported = new AnnotationImporter(ScratchPolicy.of(MemoryUsageSetting.setupMainMemoryOnly())).importInto(pdf,
+                new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)), AnnotationFormat.JSON_LINES, null);
+
+        assertEquals(1, imported);
+        try (PDDocument document = PDDocument.load(pdf)) {
+            assertEquals(2, document.getNumberOfPages());
+            List<PDAnnotation> annotations = document.getPage(1).getAnnotations();
+            assertEquals("imported", annotations.get(annotations.size() - 1).getContents());
+        }
+    }
+
+    @Test
+    public void compact_streamsLargeUnfilteredStreamsThroughScratchStorage() throws IOException {
+        File pdf = tempFolder.newFile("large.pdf");
+        byte[] expected;
+        // The content stream is larger than the heap budget, so it is buffered in the scratch file
+        MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(64 * 1024).setTempDir(tempFolder.getRoot());
+        try (PDDocument document = new PDDocument(setting)) {
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+            try (PDPageContentStream contentStream = new PDPageContentStream(document, page,
+                    PDPageContentStream.AppendMode.OVERWRITE, false)) {
+                for (int i = 0; i < 8000; i++) {
+                    contentStream.addRect(i % 500, i % 800, i % 17, i % 13);
+                    contentStream.fill();
+                }
+            }
+            expected = contents(page);
+            SaveOptions.COMPACT.save(document, pdf);
+        }
+
+        try (PDDocument document = PDDocument.load(pdf)) {
+            COSStream stream = (COSStream) document.getPage(0).getCOSObject().getDictionaryObject(COSName.CONTENTS);
+            assertEquals(COSName.FLATE_DECODE, stream.getFilters());
+            assertArrayEquals(expected, contents(document.getPage(0)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compact_rejectsUnknownLevel() {
+        SaveOptions.compact(10);
+    }
+
+    private static byte[] contents(PDPage page) throws IOException {
+        try (InputStream in = page.getContents()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    private static PdfGenerator generator(SaveOptions saveOptions) {
+        PdfGenerator generator = TestFixtures.generator(IMAGE_SIZE);
+        generator.setSaveOptions(saveOptions);
+        return generator;
+    }
+}
@@ -0,0 +1,121 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation time against peak heap for each scratch storage policy.
+ * The peakHeapMegabytes counter is the sum of the heap pools' peaks during the iteration.
+ * Run with ./gradlew :app:jmh -Pjmh.include=ScratchPolicyBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class ScratchPolicyBenchmark {
+    private static final long HEAP_BUDGET_BYTES = 8L * 1024 * 1024;
+
+    @Param({"heap", "pdfbox", "nio", "mapped"})
+    public String policy;
+
+    @Param({"100", "1000"})
+    public int pageCount;
+
+    private File workDir;
+    private File outputFile;
+    private List<ImageSource> sources;
+    private PdfGenerator generator;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class HeapCounters {
+        public long peakHeapMegabytes;
+
+        @Setup(Level.Iteration)
+        public void resetPeaks() {
+            peakHeapMegabytes = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+        }
+
+        void recordPeaks() {
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peak += pool.getPeakUsage().getUsed();
+                }
+            }
+            peakHeapMegabytes = peak / (1024 * 1024);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("scratch_benchmark").toFile();
+        outputFile = new File(workDir, "output.pdf");
+        sources = BenchmarkImages.sources(pageCount);
+        generator = new PdfGenerator(createPolicy(), BenchmarkImages.encoder(BenchmarkImages.jpegs(1024)), 1);
+    }
+
+    private ScratchPolicy createPolicy() {
+        File scratchDir = new File(workDir, "scratch");
+        switch (policy) {
+            case "heap":
+                return ScratchPolicy.of(MemoryUsageSetting.setupMainMemoryOnly());
+            case "pdfbox":
+                return ScratchPolicy.of(MemoryUsageSetting.setupMixed(HEAP_BUDGET_BYTES).setTempDir(workDir));
+            case "nio":
+                return ScratchPolicy.nio(scratchDir, HEAP_BUDGET_BYTES, 0);
+            case "mapped":
+                return ScratchPolicy.mapped(scratchDir, HEAP_BUDGET_BYTES, 0);
+            default:
+                throw new IllegalArgumentException("Unknown policy " + policy);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = workDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        workDir.delete();
+    }
+
+    @Benchmark
+    public GenerationReport generateToggleable(HeapCounters counters) throws IOException {
+        GenerationReport report = generator.createPdfWithToggleableAnnotations(sources, outputFile, "Inspection photo");
+        counters.recordPeaks();
+        return report;
+    }
+}
@@ -0,0 +1,149 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.RandomAccess;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the file-backed scratch stores hold stream data correctly, respect their budget and leave no files behind.
+ */
+public class ScratchPolicyTest {
+    private static final int PAGE_COUNT = 20;
+    private static final int IMAGE_SIZE = 64;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void nio_generatesReadablePdfWithoutLeavingFiles() throws IOException {
+        File scratchDir = tempFolder.newFolder("scratch");
+        assertGeneratesReadablePdf(ScratchPolicy.nio(scratchDir, 64 * 1024, 0));
+        assertEquals(0, scratchDir.list().length);
+    }
+
+    @Test
+    public void mapped_generatesReadablePdfWithoutLeavingFiles() throws IOException {
+        File scratchDir = tempFolder.newFolder("scratch");
+        assertGeneratesReadablePdf(ScratchPolicy.mapped(scratchDir, 64 * 1024, 0));
+        assertEquals(0, scratchDir.list().length);
+    }
+
+    @Test
+    public void budgetExceeded_failsGenerationWithoutOutput() throws IOException {
+        ScratchPolicy policy = ScratchPolicy.nio(tempFolder.newFolder("scratch"), 16 * 1024, 256 * 1024);
+        PdfGenerator generator = new PdfGenerator(policy, new SyntheticImageEncoder(IMAGE_SIZE), 1);
+        File output = new File(tempFolder.getRoot(), "too_large.pdf");
+
+        try {
+            generator.createPdfWithToggleableAnnotations(TestFixtures.sources(PAGE_COUNT), output, "inspection");
+            fail("Generation should exceed the scratch budget");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("budget"));
+        }
+        assertFalse(output.exists());
+    }
+
+    @Test
+    public void buffer_readsBackWritesAcrossHeapAndFilePages() throws IOException {
+        for (boolean mapped : new boolean[]{false, true}) {
+            try (ChannelScratchFile scratchFile = new ChannelScratchFile(tempFolder.newFolder(), mapped,
+                    2 * ChannelScratchFile.PAGE_SIZE, 0)) {
+                byte[] data = new byte[ChannelScratchFile.PAGE_SIZE * 300 + 17];
+                new Random(mapped ? 1 : 2).nextBytes(data);
+
+                RandomAccess buffer = scratchFile.createBuffer();
+                buffer.write(data, 0, 100);
+                for (int i = 100; i < 5000; i++) {
+                    buffer.write(data[i]);
+                }
+                buffer.write(data, 5000, data.length - 5000);
+                assertTrue(scratchFile.usesFile());
+                assertEquals(data.length, buffer.length());
+
+                buffer.seek(0);
+                assertArrayEquals(data, buffer.readFully(data.length));
+                assertTrue(buffer.isEOF());
+
+                buffer.seek(ChannelScratchFile.PAGE_SIZE * 3 - 1);
+                assertEquals(data[ChannelScratchFile.PAGE_SIZE * 3 - 1] & 0xFF, buffer.peek());
+                byte[] span = new byte[10];
+                assertEquals(10, buffer.read(span));
+                assertArrayEquals(Arrays.copyOfRange(data, ChannelScratchFile.PAGE_SIZE * 3 - 1,
+                        ChannelScratchFile.PAGE_SIZE * 3 + 9), span);
+
+                // Overwrite within a file page and read it back after moving elsewhere
+                buffer.seek(ChannelScratchFile.PAGE_SIZE * 100 + 5);
+                buffer.write(new byte[]{1, 2, 3});
+                buffer.seek(0);
+                buffer.read();
+                buffer.seek(ChannelScratchFile.PAGE_SIZE * 100 + 5);
+                assertArrayEquals(new byte[]{1, 2, 3}, buffer.readFully(3));
+
+                int pages = scratchFile.getPageCount();
+                buffer.close();
+                RandomAccess reused = scratchFile.createBuffer();
+                reused.write(data);
+                assertEquals(pages, scratchFile.getPageCount());
+            }
+        }
+    }
+
+    @Test
+    public void load_parsesThroughScratchStore() throws IOException {
+        File pdf = tempFolder.newFile("source.pdf");
+        new PdfGenerator(ScratchPolicy.nio(tempFolder.newFolder(), 0, 0), new SyntheticImageEncoder(IMAGE_SIZE), 1)
+                .createPdfWithToggleableAnnotations(TestFixtures.sources(PAGE_COUNT), pdf, "inspection");
+        ScratchPolicy policy = ScratchPolicy.mapped(tempFolder.newFolder(), 0, 0);
+
+        try (PDDocument document = policy.load(pdf)) {
+            assertEquals(PAGE_COUNT, document.getNumberOfPages());
+        }
+        try (InputStream in = new FileInputStream(pdf); PDDocument document = policy.load(in)) {
+            assertEquals(PAGE_COUNT, document.getNumberOfPages());
+            assertEquals("inspection", document.getPage(PAGE_COUNT - 1).getAnnotations().get(0).getContents());
+        }
+    }
+
+    private void assertGeneratesReadablePdf(ScratchPolicy policy) throws IOException {
+        SyntheticImageEncoder encoder = new SyntheticImageEncoder(IMAGE_SIZE);
+        File output = tempFolder.newFile();
+        new PdfGenerator(policy, encoder, 2)
+                .createPdfWithToggleableAnnotations(TestFixtures.sources(PAGE_COUNT), output, "inspection");
+
+        try (PDDocument document = PDDocument.load(output)) {
+            assertEquals(PAGE_COUNT, document.getNumberOfPages());
+            for (int i = 0; i < PAGE_COUNT; i++) {
+                PDImageXObject image = (PDImageXObject) document.getPage(i).getResources()
+                        .getXObject(document.getPage(i).getResources().getXObjectNames().iterator().next());
+                byte[] expected = encoder.encode(TestFixtures.sources(PAGE_COUNT).get(i)).getData();
+                try (InputStream raw = image.getCOSObject().createRawInputStream()) {
+                    assertArrayEquals("page " + i, expected, readAll(raw));
+                }
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            out.write(chunk, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,33 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Produces incompressible RGB images seeded from the source name without reading it, so every
+ * page carries its full pixel payload and the same name always encodes to the same bytes.
+ */
+class SyntheticImageEncoder implements ImageEncoder {
+    private final int size;
+
+    SyntheticImageEncoder(int size) {
+        this.size = size;
+    }
+
+    @Override
+    public EncodedImage encode(ImageSource source) throws IOException {
+        byte[] pixels = new byte[size * size * 3];
+        new Random(source.getName().hashCode()).nextBytes(pixels);
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(pixels.length);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(encoded)) {
+            out.write(pixels);
+        }
+        return new EncodedImage(encoded.toByteArray(), COSName.FLATE_DECODE, size, size, 8, PDDeviceRGB.INSTANCE);
+    }
+}
@@ -0,0 +1,70 @@
+package com.technikh.java_pdf_annotations.domain;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generators and image sources shared by the tests. Sources are only names, which
+ * {@link SyntheticImageEncoder} turns into distinct, repeatable pixels.
+ */
+final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    /**
+     * Sources named page_0..page_(n-1); the files behind them do not exist and are never read
+     */
+    static List<ImageSource> sources(int count) {
+        return sources("page", count);
+    }
+
+    /**
+     * Sources named prefix_0..prefix_(n-1), so documents built from different prefixes get different images
+     */
+    static List<ImageSource> sources(String prefix, int count) {
+        List<String> paths = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            paths.add(prefix + "_" + i);
+        }
+        return FileImageSource.fromPaths(paths);
+    }
+
+    /**
+     * Generator on the calling thread, buffering in memory, with synthetic imageSize x imageSize images
+     */
+    static PdfGenerator generator(int imageSize) {
+        return generator(new SyntheticImageEncoder(imageSize));
+    }
+
+    static PdfGenerator generator(ImageEncoder encoder) {
+        return generator(encoder, 1);
+    }
+
+    /**
+     * Generator buffering in memory with workerCount encoders; 1 encodes on the calling thread
+     */
+    static PdfGenerator generator(ImageEncoder encoder, int workerCount) {
+        return new PdfGenerator(MemoryUsageSetting.setupMainMemoryOnly(), encoder, workerCount);
+    }
+
+    /**
+     * Generator that keeps 1 MB in memory and spills the rest to tempDir, as large jobs do on a device
+     */
+    static PdfGenerator spillingGenerator(ImageEncoder encoder, int workerCount, File tempDir) {
+        MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(1024 * 1024).setTempDir(tempDir);
+        return new PdfGenerator(setting, encoder, workerCount);
+    }
+
+    /**
+     * Writes a PDF of pages synthetic imageSize x imageSize images, each with an "inspection" comment
+     */
+    static File annotatedPdf(File output, int pages, int imageSize) throws IOException {
+        generator(imageSize).createPdfWithToggleableAnnotations(sources(pages), output, "inspection");
+        return output;
+    }
+}
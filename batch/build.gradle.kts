@@ -0,0 +1,57 @@
+plugins {
+    application
+}
+
+// Headless batch generation on a plain JVM, without the Android SDK. The runner is compiled together with the
+// app's domain package, which has no Android dependencies, against the classes inside the PDFBox-Android AAR.
+// ./gradlew :batch:run --args="--images /data/scans --out /data/reports --jobs 4"
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include("com/technikh/java_pdf_annotations/domain/**")
+            include("com/technikh/java_pdf_annotations/batch/**")
+            include("android/util/**")
+        }
+    }
+}
+
+application {
+    mainClass.set("com.technikh.java_pdf_annotations.batch.BatchRunner")
+}
+
+// A JVM classpath can't hold an AAR, so its classes and its font metrics and glyph list assets are unpacked
+val pdfboxAar: Configuration by configurations.creating {
+    isTransitive = false
+}
+val extractPdfboxClasses = tasks.register<Sync>("extractPdfboxClasses") {
+    from({ pdfboxAar.map { zipTree(it) } }) {
+        include("classes.jar")
+    }
+    into(layout.buildDirectory.dir("pdfbox/classes"))
+}
+val extractPdfboxAssets = tasks.register<Sync>("extractPdfboxAssets") {
+    from({ pdfboxAar.map { zipTree(it) } }) {
+        include("assets/**")
+        eachFile { path = path.removePrefix("assets/") }
+        includeEmptyDirs = false
+    }
+    into(layout.buildDirectory.dir("pdfbox/assets"))
+}
+
+dependencies {
+    pdfboxAar(variantOf(libs.com.tom.roush.pdfbox.android) { artifactType("aar") })
+    implementation(files(layout.buildDirectory.file("pdfbox/classes/classes.jar")) {
+        builtBy(extractPdfboxClasses)
+    })
+    runtimeOnly(files(extractPdfboxAssets))
+    compileOnly(libs.annotation)
+
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,46 @@
+package android.util;
+
+/**
+ * PDFBox-Android logs through android.util.Log, which only exists on a device.
+ * On the JVM its warnings and errors go to stderr; debug and info messages are dropped.
+ */
+public final class Log {
+    private Log() {
+    }
+
+    public static int d(String tag, String message) {
+        return 0;
+    }
+
+    public static int d(String tag, String message, Throwable error) {
+        return 0;
+    }
+
+    public static int i(String tag, String message) {
+        return 0;
+    }
+
+    public static int w(String tag, String message) {
+        return print("W", tag, message, null);
+    }
+
+    public static int w(String tag, String message, Throwable error) {
+        return print("W", tag, message, error);
+    }
+
+    public static int e(String tag, String message) {
+        return print("E", tag, message, null);
+    }
+
+    public static int e(String tag, String message, Throwable error) {
+        return print("E", tag, message, error);
+    }
+
+    private static int print(String level, String tag, String message, Throwable error) {
+        System.err.println(level + "/" + tag + ": " + message);
+        if (error != null) {
+            error.printStackTrace();
+        }
+        return 0;
+    }
+}
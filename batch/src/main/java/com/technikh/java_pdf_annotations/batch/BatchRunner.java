@@ -0,0 +1,427 @@
+package com.technikh.java_pdf_annotations.batch;
+
+import com.technikh.java_pdf_annotations.domain.ChunkPolicy;
+import com.technikh.java_pdf_annotations.domain.FileImageSource;
+import com.technikh.java_pdf_annotations.domain.GenerationCheckpoint;
+import com.technikh.java_pdf_annotations.domain.GenerationJobQueue;
+import com.technikh.java_pdf_annotations.domain.GenerationManifest;
+import com.technikh.java_pdf_annotations.domain.ImageLayout;
+import com.technikh.java_pdf_annotations.domain.ImageSource;
+import com.technikh.java_pdf_annotations.domain.JobProgress;
+import com.technikh.java_pdf_annotations.domain.JpegImageEncoder;
+import com.technikh.java_pdf_annotations.domain.PdfGenerator;
+import com.technikh.java_pdf_annotations.domain.SaveOptions;
+import com.technikh.java_pdf_annotations.domain.ScratchPolicy;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates PDFs from the command line without an Android device, e.g. to pre-generate reports on a server
+ * or to measure throughput in CI. Built by the batch module, a plain JVM application compiled with the app's
+ * Android-free domain package, see batch/build.gradle.kts.
+ * Every report is a generation job on a {@link GenerationJobQueue} with a checkpoint in the output directory,
+ * so rerunning an interrupted batch only encodes the pages that are missing.
+ * Images are embedded as stored by {@link JpegImageEncoder}, since other formats need Android to decode.
+ */
+public final class BatchRunner {
+    static final String USAGE = "Usage: BatchRunner (--images <dir> | --manifest <file or dir>)... --out <dir>\n"
+            + "    [--jobs <reports at once>] [--threads <encoders per report>] [--text <annotation>] [--standard]\n"
+            + "    [--chunk-pages <pages>] [--layout fit-width|fit-page|match-image|grid:<columns>x<rows>]\n"
+            + "    [--compact <flate level 0-9>]\n"
+            + "  --images    one report per directory of JPEGs: the directory itself and each subdirectory\n"
+            + "  --manifest  a generation manifest, or a directory of *.properties manifests;\n"
+            + "              relative paths are resolved against the manifest's directory\n"
+            + "  --compact   write object streams and a cross-reference stream, compressing unfiltered streams";
+    private static final String CHECKPOINTS_DIR = ".checkpoints";
+    private static final String SCRATCH_DIR = ".scratch";
+    /**
+     * Stream data kept in memory per document before it spills to the scratch directory
+     */
+    private static final long SCRATCH_HEAP_BYTES = 8L * 1024 * 1024;
+    private static final List<String> IMAGE_EXTENSIONS = Arrays.asList(".jpg", ".jpeg");
+
+    private final PdfGenerator generator;
+    private final File checkpointsDir;
+    private final int maxConcurrentJobs;
+
+    /**
+     * @param checkpointsDir    where each running report keeps its checkpoint until it is done
+     * @param maxConcurrentJobs number of reports generated at once
+     */
+    public BatchRunner(PdfGenerator generator, File checkpointsDir, int maxConcurrentJobs) {
+        this.generator = generator;
+        this.checkpointsDir = checkpointsDir;
+        this.maxConcurrentJobs = maxConcurrentJobs;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out));
+    }
+
+    /**
+     * Runs a batch as described by the command line arguments and prints a summary
+     *
+     * @return the process exit code: 0 if every report was written, 1 if some failed, 2 for invalid arguments
+     */
+    static int run(String[] args, PrintStream out) {
+        Options options;
+        List<GenerationManifest> manifests;
+        try {
+            options = Options.parse(args);
+            manifests = options.collectManifests();
+        } catch (IllegalArgumentException | IOException e) {
+            out.println(e.getMessage());
+            out.println(USAGE);
+            return 2;
+        }
+        if (manifests.isEmpty()) {
+            out.println("No reports to generate");
+            return 0;
+        }
+
+        ScratchPolicy scratchPolicy = ScratchPolicy.nio(new File(options.outputDir, SCRATCH_DIR), SCRATCH_HEAP_BYTES, 0);
+        PdfGenerator generator = new PdfGenerator(scratchPolicy, new JpegImageEncoder(), options.threads);
+        generator.setSaveOptions(options.saveOptions);
+        BatchRunner runner = new BatchRunner(generator, new File(options.outputDir, CHECKPOINTS_DIR), options.jobs);
+        Summary summary;
+        try {
+            summary = runner.run(manifests);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.println("Interrupted");
+            return 1;
+        }
+
+        for (Map.Entry<File, String> failure : summary.getFailures().entrySet()) {
+            out.println("FAILED " + failure.getKey() + ": " + failure.getValue());
+        }
+        double seconds = summary.getElapsedMillis() / 1000.0;
+        out.println(String.format(Locale.ROOT, "%d reports, %d pages in %.1f s (%.1f pages/s), %d failed",
+                summary.getSucceeded(), summary.getPages(), seconds,
+                seconds > 0 ? summary.getPages() / seconds : 0, summary.getFailures().size()));
+        return summary.getFailures().isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * Generates every report and waits until all of them have finished or failed.
+     * A checkpoint left in the checkpoints directory by an interrupted run of the same report is resumed.
+     */
+    public Summary run(List<GenerationManifest> manifests) throws InterruptedException {
+        Map<Long, JobProgress> finished = new ConcurrentHashMap<>();
+        GenerationJobQueue queue = new GenerationJobQueue(maxConcurrentJobs, progress -> {
+            if (progress.isFinished()) {
+                finished.put(progress.getJobId(), progress);
+            }
+        });
+        Map<Long, GenerationManifest> jobs = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        try {
+            for (GenerationManifest manifest : manifests) {
+                long jobId = queue.submit(manifest.getOutputFile(), progressListener -> {
+                    File outputDir = manifest.getOutputFile().getAbsoluteFile().getParentFile();
+                    if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+                        throw new IOException("Failed to create " + outputDir);
+                    }
+                    GenerationCheckpoint checkpoint = openCheckpoint(manifest);
+                    List<ImageSource> images = new ArrayList<>(checkpoint.getManifest().getPageCount());
+                    for (String source : checkpoint.getManifest().getSources()) {
+                        images.add(new FileImageSource(new File(source)));
+                    }
+                    generator.createCheckpointedPdfs(images, checkpoint, null, progressListener);
+                    checkpoint.delete();
+                });
+                jobs.put(jobId, manifest);
+            }
+            queue.shutdown(true);
+            //noinspection StatementWithEmptyBody
+            while (!queue.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Large batches take a while
+            }
+        } finally {
+            // Only cancels anything if waiting was interrupted
+            queue.shutdown(false);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        int succeeded = 0;
+        long pages = 0;
+        Map<File, String> failures = new LinkedHashMap<>();
+        for (Map.Entry<Long, GenerationManifest> job : jobs.entrySet()) {
+            JobProgress progress = finished.get(job.getKey());
+            if (progress != null && progress.getState() == JobProgress.State.COMPLETED) {
+                succeeded++;
+                pages += job.getValue().getPageCount();
+            } else {
+                String error = progress != null ? progress.getErrorMessage() : null;
+                failures.put(job.getValue().getOutputFile(), error != null ? error : "Cancelled");
+            }
+        }
+        return new Summary(succeeded, pages, elapsedMillis, failures);
+    }
+
+    /**
+     * Resumes the checkpoint of an earlier run of the same manifest, or starts a new one.
+     * A checkpoint for the same file from a different manifest, e.g. after images were added, is discarded.
+     */
+    private GenerationCheckpoint openCheckpoint(GenerationManifest manifest) throws IOException {
+        File dir = checkpointDir(checkpointsDir, manifest.getOutputFile());
+        if (dir.isDirectory()) {
+            GenerationCheckpoint checkpoint = GenerationCheckpoint.open(dir);
+            if (checkpoint.getManifest().equals(manifest)) {
+                return checkpoint;
+            }
+            checkpoint.delete();
+        }
+        return GenerationCheckpoint.create(dir, manifest);
+    }
+
+    /**
+     * Returns the directory a run keeps the checkpoint of the report written to outputFile in
+     */
+    static File checkpointDir(File checkpointsDir, File outputFile) {
+        File file = outputFile.getAbsoluteFile();
+        return new File(checkpointsDir, file.getName() + "_" + Integer.toHexString(file.getPath().hashCode()));
+    }
+
+    /**
+     * Outcome of a batch run
+     */
+    public static final class Summary {
+        private final int succeeded;
+        private final long pages;
+        private final long elapsedMillis;
+        private final Map<File, String> failures;
+
+        Summary(int succeeded, long pages, long elapsedMillis, Map<File, String> failures) {
+            this.succeeded = succeeded;
+            this.pages = pages;
+            this.elapsedMillis = elapsedMillis;
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+
+        public int getSucceeded() {
+            return succeeded;
+        }
+
+        /**
+         * Returns the number of images in the reports that were written
+         */
+        public long getPages() {
+            return pages;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Returns the error message of every report that was not written, by output file
+         */
+        public Map<File, String> getFailures() {
+            return failures;
+        }
+    }
+
+    /**
+     * Parsed command line
+     */
+    static final class Options {
+        final List<File> imageDirs = new ArrayList<>();
+        final List<File> manifestPaths = new ArrayList<>();
+        File outputDir;
+        int jobs = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int threads = 2;
+        String text = "made in India";
+        boolean toggleable = true;
+        ChunkPolicy chunkPolicy = ChunkPolicy.NONE;
+        ImageLayout layout = ImageLayout.FIT_WIDTH;
+        SaveOptions saveOptions = SaveOptions.STANDARD;
+
+        /**
+         * @throws IllegalArgumentException if an argument is unknown, missing its value or malformed
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--standard")) {
+                    options.toggleable = false;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--images":
+                        options.imageDirs.add(new File(value));
+                        break;
+                    case "--manifest":
+                        options.manifestPaths.add(new File(value));
+                        break;
+                    case "--out":
+                        options.outputDir = new File(value);
+                        break;
+                    case "--jobs":
+                        options.jobs = positive(arg, value);
+                        break;
+                    case "--threads":
+                        options.threads = positive(arg, value);
+                        break;
+                    case "--text":
+                        options.text = value;
+                        break;
+                    case "--chunk-pages":
+                        options.chunkPolicy = ChunkPolicy.everyPages(positive(arg, value));
+                        break;
+                    case "--layout":
+                        options.layout = parseLayout(value);
+                        break;
+                    case "--compact":
+                        options.saveOptions = parseCompact(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (options.outputDir == null) {
+                throw new IllegalArgumentException("Missing --out");
+            }
+            if (options.imageDirs.isEmpty() && options.manifestPaths.isEmpty()) {
+                throw new IllegalArgumentException("Missing --images or --manifest");
+            }
+            return options;
+        }
+
+        /**
+         * Returns one manifest per report, image directories first, in file name order
+         */
+        List<GenerationManifest> collectManifests() throws IOException {
+            List<GenerationManifest> manifests = new ArrayList<>();
+            for (File imageDir : imageDirs) {
+                if (!imageDir.isDirectory()) {
+                    throw new IOException("Not a directory: " + imageDir);
+                }
+                addImageDir(imageDir, manifests);
+                for (File child : sortedFiles(imageDir)) {
+                    if (child.isDirectory()) {
+                        addImageDir(child, manifests);
+                    }
+                }
+            }
+            for (File manifestPath : manifestPaths) {
+                if (manifestPath.isDirectory()) {
+                    for (File child : sortedFiles(manifestPath)) {
+                        if (child.isFile() && child.getName().endsWith(".properties")) {
+                            manifests.add(readManifest(child));
+                        }
+                    }
+                } else {
+                    manifests.add(readManifest(manifestPath));
+                }
+            }
+            return manifests;
+        }
+
+        private void addImageDir(File dir, List<GenerationManifest> manifests) {
+            List<String> sources = new ArrayList<>();
+            for (File file : sortedFiles(dir)) {
+                String name = file.getName().toLowerCase(Locale.ROOT);
+                if (file.isFile() && IMAGE_EXTENSIONS.contains(name.substring(Math.max(0, name.lastIndexOf('.'))))) {
+                    sources.add(file.getPath());
+                }
+            }
+            if (!sources.isEmpty()) {
+                manifests.add(new GenerationManifest(new File(outputDir, dir.getName() + ".pdf"), text, toggleable,
+                        chunkPolicy, layout, sources));
+            }
+        }
+
+        /**
+         * Reads a manifest, resolving a relative output file against the output directory
+         * and relative sources against the manifest's directory
+         */
+        private GenerationManifest readManifest(File file) throws IOException {
+            GenerationManifest manifest;
+            try (InputStream in = new FileInputStream(file)) {
+                manifest = GenerationManifest.read(in);
+            } catch (IOException e) {
+                throw new IOException(file + ": " + e.getMessage(), e);
+            }
+            File baseDir = file.getAbsoluteFile().getParentFile();
+            List<String> sources = new ArrayList<>(manifest.getPageCount());
+            for (String source : manifest.getSources()) {
+                sources.add(resolve(baseDir, source).getPath());
+            }
+            return new GenerationManifest(resolve(outputDir, manifest.getOutputFile().getPath()),
+                    manifest.getAnnotationText(), manifest.isToggleable(), manifest.getChunkPolicy(),
+                    manifest.getLayout(), sources);
+        }
+
+        private static File resolve(File baseDir, String path) {
+            File file = new File(path);
+            return file.isAbsolute() ? file : new File(baseDir, path);
+        }
+
+        private static File[] sortedFiles(File dir) {
+            File[] files = dir.listFiles();
+            if (files == null) {
+                return new File[0];
+            }
+            Arrays.sort(files);
+            return files;
+        }
+
+        private static int positive(String option, String value) {
+            try {
+                int number = Integer.parseInt(value);
+                if (number > 0) {
+                    return number;
+                }
+            } catch (NumberFormatException ignored) {
+                // Reported below
+            }
+            throw new IllegalArgumentException(option + " needs a positive number: " + value);
+        }
+
+        static SaveOptions parseCompact(String value) {
+            try {
+                return SaveOptions.compact(Integer.parseInt(value));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("--compact needs a flate level from 0 to 9: " + value);
+            }
+        }
+
+        static ImageLayout parseLayout(String value) {
+            switch (value) {
+                case "fit-width":
+                    return ImageLayout.FIT_WIDTH;
+                case "fit-page":
+                    return ImageLayout.fitPage(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN, true);
+                case "match-image":
+                    return ImageLayout.matchImage(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN);
+                default:
+                    String[] grid = value.startsWith("grid:") ? value.substring(5).split("x") : new String[0];
+                    if (grid.length == 2) {
+                        return ImageLayout.grid(PDRectangle.A4, ImageLayout.DEFAULT_MARGIN,
+                                positive("--layout", grid[0]), positive("--layout", grid[1]), true);
+                    }
+                    throw new IllegalArgumentException("Unknown layout " + value);
+            }
+        }
+    }
+}
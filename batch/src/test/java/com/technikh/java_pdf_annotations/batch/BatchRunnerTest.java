@@ -0,0 +1,138 @@
+package com.technikh.java_pdf_annotations.batch;
+
+import com.technikh.java_pdf_annotations.domain.ChunkPolicy;
+import com.technikh.java_pdf_annotations.domain.GenerationCheckpoint;
+import com.technikh.java_pdf_annotations.domain.GenerationManifest;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the headless runner writes one report per image directory or manifest, in parallel and without Android.
+ */
+public class BatchRunnerTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void run_writesOneReportPerImageDirectory() throws IOException {
+        File images = tempFolder.newFolder("scans");
+        for (int report = 0; report < 5; report++) {
+            File dir = new File(images, "site_" + report);
+            assertTrue(dir.mkdir());
+            for (int page = 0; page < 3 + report; page++) {
+                writeJpeg(new File(dir, "page_" + page + ".jpg"), 40 + page, 30);
+            }
+        }
+        File out = new File(tempFolder.getRoot(), "reports");
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+
+        int exitCode = BatchRunner.run(new String[]{"--images", images.getPath(), "--out", out.getPath(),
+                "--jobs", "3", "--threads", "2", "--text", "inspected"}, new PrintStream(console, true, "UTF-8"));
+
+        assertEquals(console.toString("UTF-8"), 0, exitCode);
+        assertTrue(console.toString("UTF-8").contains("5 reports, 25 pages"));
+        for (int report = 0; report < 5; report++) {
+            try (PDDocument document = PDDocument.load(new File(out, "site_" + report + ".pdf"))) {
+                assertEquals(3 + report, document.getNumberOfPages());
+                assertEquals("inspected", document.getPage(0).getAnnotations().get(0).getContents());
+            }
+        }
+        // Finished reports leave no checkpoint behind
+        String[] checkpoints = new File(out, ".checkpoints").list();
+        assertTrue(checkpoints == null || checkpoints.length == 0);
+    }
+
+    @Test
+    public void run_readsManifestsAndReportsFailuresWithoutStoppingOthers() throws IOException {
+        File jobs = tempFolder.newFolder("jobs");
+        writeJpeg(new File(jobs, "a.jpg"), 50, 40);
+        writeJpeg(new File(jobs, "b.jpg"), 40, 50);
+        Files.write(new File(jobs, "c.png").toPath(), new byte[]{(byte) 0x89, 'P', 'N', 'G'});
+        writeManifest(new File(jobs, "good.properties"), "good.pdf", "a.jpg", "b.jpg");
+        writeManifest(new File(jobs, "bad.properties"), "bad.pdf", "a.jpg", "c.png");
+        File out = new File(tempFolder.getRoot(), "reports");
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+
+        int exitCode = BatchRunner.run(new String[]{"--manifest", jobs.getPath(), "--out", out.getPath(), "--jobs", "2"},
+                new PrintStream(console, true, "UTF-8"));
+
+        assertEquals(1, exitCode);
+        assertTrue(console.toString("UTF-8"), console.toString("UTF-8").contains("Not a JPEG image"));
+        assertFalse(new File(out, "bad.pdf").exists());
+        try (PDDocument document = PDDocument.load(new File(out, "good.pdf"))) {
+            assertEquals(2, document.getNumberOfPages());
+        }
+    }
+
+    @Test
+    public void run_discardsCheckpointOfADifferentManifest() throws IOException {
+        File images = tempFolder.newFolder("site");
+        writeJpeg(new File(images, "a.jpg"), 50, 40);
+        writeJpeg(new File(images, "b.jpg"), 40, 50);
+        File out = new File(tempFolder.getRoot(), "reports");
+        // Left behind by an interrupted run from before b.jpg was added
+        GenerationManifest stale = new GenerationManifest(new File(out, "site.pdf"), "old", true, ChunkPolicy.NONE,
+                Collections.singletonList(new File(images, "a.jpg").getPath()));
+        GenerationCheckpoint.create(BatchRunner.checkpointDir(new File(out, ".checkpoints"), stale.getOutputFile()), stale);
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+
+        int exitCode = BatchRunner.run(new String[]{"--images", images.getPath(), "--out", out.getPath(),
+                "--text", "current"}, new PrintStream(console, true, "UTF-8"));
+
+        assertEquals(console.toString("UTF-8"), 0, exitCode);
+        try (PDDocument document = PDDocument.load(new File(out, "site.pdf"))) {
+            assertEquals(2, document.getNumberOfPages());
+            assertEquals("current", document.getPage(0).getAnnotations().get(0).getContents());
+        }
+    }
+
+    @Test
+    public void run_rejectsMissingOutput() throws IOException {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+
+        int exitCode = BatchRunner.run(new String[]{"--images", tempFolder.getRoot().getPath()},
+                new PrintStream(console, true, "UTF-8"));
+
+        assertEquals(2, exitCode);
+        assertTrue(console.toString("UTF-8").startsWith("Missing --out"));
+    }
+
+    private static void writeManifest(File file, String outputFile, String... sources) throws IOException {
+        StringBuilder properties = new StringBuilder()
+                .append("outputFile=").append(outputFile).append('\n')
+                .append("annotationText=batch\n")
+                .append("toggleable=true\n")
+                .append("pageCount=").append(sources.length).append('\n');
+        for (int i = 0; i < sources.length; i++) {
+            properties.append("source.").append(i).append('=').append(sources[i]).append('\n');
+        }
+        Files.write(file.toPath(), properties.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeJpeg(File file, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, x * 5 + y * 907);
+            }
+        }
+        assertTrue(ImageIO.write(image, "jpg", file));
+    }
+}
@@ -21,4 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "java_pdf_annotations"
 include(":app")
+include(":batch")
  
\ No newline at end of file